@@ -1,7 +1,9 @@
 import joblib
+import numpy as np
 import pandas as pd
 from fastapi import FastAPI
 from pydantic import BaseModel
+from typing import List, Optional
 import uvicorn
 import logging
 
@@ -10,6 +12,11 @@ logger = logging.getLogger(__name__)
 
 model = joblib.load("random_forest_credit_score.pkl")
 trained_columns = joblib.load("trained_columns.pkl")
+column_index = {col: i for i, col in enumerate(trained_columns)}
+
+MAX_BATCH_VARIANTS = 1000
+VARIANT_NUMERIC_COLUMNS = {"landSize": "LandSize", "soilPH": "SoilPH"}
+VARIANT_CATEGORICAL_PREFIXES = {"cropTypes": "Crop Type", "soilType": "Soil Type"}
 
 app = FastAPI(title="Credit Score Prediction API",
               description="API for predicting farmer's credit score")
@@ -30,6 +37,16 @@ class CreditInput(BaseModel):
     pastRainfall: float
     avgTemperature: float
 
+class Variant(BaseModel):
+    cropTypes: Optional[str] = None
+    soilType: Optional[str] = None
+    landSize: Optional[float] = None
+    soilPH: Optional[float] = None
+
+class BatchInput(BaseModel):
+    base: CreditInput
+    variants: List[Variant]
+
 def preprocess_input(data: CreditInput):
     input_data = pd.DataFrame([data.dict()])
     logger.info("\n📌 Raw Input Data:\n%s", input_data.to_string())
@@ -75,6 +92,44 @@ def predict_credit_score(data: CreditInput):
         logger.error("Error during prediction: %s", str(e))
         return {"error": str(e)}
 
+@app.post("/predict_batch")
+def predict_credit_score_batch(data: BatchInput):
+    """API Endpoint to score a base input and its variants in a single model call.
+
+    The base input is one-hot encoded once; every variant is a copy of that row with only the
+    columns of the features it changes rewritten."""
+    try:
+        if len(data.variants) > MAX_BATCH_VARIANTS:
+            return {"error": f"at most {MAX_BATCH_VARIANTS} variants per request"}
+
+        base_row = preprocess_input(data.base).to_numpy(dtype=float)[0]
+        rows = np.tile(base_row, (len(data.variants) + 1, 1))
+        base_values = data.base.dict()
+
+        for row, variant in enumerate(data.variants, start=1):
+            for field, value in variant.dict(exclude_none=True).items():
+                if field in VARIANT_NUMERIC_COLUMNS:
+                    rows[row, column_index[VARIANT_NUMERIC_COLUMNS[field]]] = value
+                    continue
+                prefix = VARIANT_CATEGORICAL_PREFIXES[field]
+                # unseen categories have no column, exactly as get_dummies + reindex leaves them in /predict
+                old_col = column_index.get(f"{prefix}_{base_values[field]}")
+                if old_col is not None:
+                    rows[row, old_col] = 0
+                new_col = column_index.get(f"{prefix}_{value}")
+                if new_col is not None:
+                    rows[row, new_col] = 1
+
+        predictions = model.predict(pd.DataFrame(rows, columns=trained_columns))
+        scores = [round(float(p), 2) for p in predictions]
+
+        logger.info("\n🎯 Scored %d variants in one batch (base %.2f)", len(data.variants), scores[0])
+
+        return {"base_score": scores[0], "predicted_credit_scores": scores[1:]}
+    except Exception as e:
+        logger.error("Error during batch prediction: %s", str(e))
+        return {"error": str(e)}
+
 @app.post("/predict_formula")
 def predict_credit_score_formula(data: CreditInput):
     """API Endpoint to calculate credit score using the custom formula."""
@@ -98,35 +98,30 @@ export default function History({ darkMode, historyData }) {
               {/* Content Section */}
               <div className="p-4">
                 <h3 className="text-4xl font-semibold mb-2">
-                  {entry.carModel}
+                  {entry.bankName || entry.carModel}
                 </h3>
                 <p className="text-gray-600 dark:text-gray-300 mb-1">
-                  Complaint by: {entry.from}
-                </p>
-                <p className="text-gray-600 dark:text-gray-300 mb-1">
-                  Plate No: {entry.plateNo}
-                </p>
-                <p className="text-gray-600 dark:text-gray-300 mb-1">
-                  Reported on: {new Date(entry.timestamp).toLocaleString()}
+                  Status: {entry.status || entry.type}
                 </p>
+                {entry.creditScore !== undefined && (
+                  <p className="text-gray-600 dark:text-gray-300 mb-1">
+                    Credit score: {entry.creditScore}
+                  </p>
+                )}
                 <p className="text-gray-600 dark:text-gray-300 mb-1">
-                  Type: {entry.type}
+                  Date: {new Date(entry.timestamp).toLocaleString()}
                 </p>
               </div>
             
-              {/* Map Section */}
-              <div className="p-4 pt-0 relative z-1">
-                {entry.location ? (
+              {/* Map Section, only for entries that carry a location */}
+              {entry.location && (
+                <div className="p-4 pt-0 relative z-1">
                   <div 
                     ref={(el) => el && !mapsInitialized[mapId] && initializeMap(el, mapId, entry.location)}
                     className="w-full h-[200px] border-0 rounded-lg shadow-lg"
                   />
-                ) : (
-                  <div className="w-full h-[200px] flex items-center justify-center bg-gray-100 dark:bg-gray-700 rounded-lg">
-                    Loading map...
-                  </div>
-                )}
-              </div>
+                </div>
+              )}
             </div>
           );
         })}
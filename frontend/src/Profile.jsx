@@ -9,6 +9,7 @@ import Admin from "./Admin";
 export default function Profile({ darkMode }) {
   const [userInfoType, setUserInfoType] = useState('profile');
   const [userData, setUserData] = useState(null);
+  const [historyData, setHistoryData] = useState([]);
 
   useEffect(() => {
     const token = localStorage.getItem("token");
@@ -33,6 +34,31 @@ export default function Profile({ darkMode }) {
     fetchUserData();
   }, []);
 
+  // Loan history lives in its own collection now, so it is fetched when the tab is opened
+  useEffect(() => {
+    if (userInfoType !== 'history') return;
+    const token = localStorage.getItem("token");
+    const fetchHistory = async () => {
+      try {
+        const response = await fetch("http://localhost:8080/user/history?page=0&size=50", {
+          method: "GET",
+          headers: {
+            Authorization: `Bearer ${token}`,
+            "Content-Type": "application/json",
+          },
+        });
+        if (!response.ok) {
+          throw new Error("Failed to fetch loan history");
+        }
+        const data = await response.json();
+        setHistoryData(data.entries || []);
+      } catch (error) {
+        console.error("Error fetching loan history:", error);
+      }
+    };
+    fetchHistory();
+  }, [userInfoType]);
+
   // console.log("1111111111111111111111111111111111" + userInfoType);
 
   return (
@@ -49,8 +75,7 @@ export default function Profile({ darkMode }) {
       {userInfoType === 'general' ? (
         <General darkMode={darkMode} userData={userData} />
       ) : userInfoType === 'history' ? (
-        // Pass the history array if available, or an empty array otherwise
-        <History darkMode={darkMode} historyData={userData ? userData.history : []} />
+        <History darkMode={darkMode} historyData={historyData} />
       ) : userInfoType === 'details' ? (
         <>
             <Details darkMode={darkMode} userData={userData} />
@@ -0,0 +1,68 @@
+package net.engineeringdigest.journalApp.loadtest;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.commands.MongodArguments;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.transitions.Start;
+import org.bson.Document;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Profiles;
+
+import java.util.Collections;
+
+/**
+ * Starts an embedded mongod before the context is refreshed so index creation and repositories never
+ * see a missing server. It runs as a single-node replica set so change streams work locally.
+ */
+public class EmbeddedMongoEnvironmentPostProcessor implements EnvironmentPostProcessor {
+	
+	private static final String REPLICA_SET = "rs0";
+	
+	private static TransitionWalker.ReachedState<RunningMongodProcess> running;
+	
+	@Override
+	public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+		if (!environment.acceptsProfiles(Profiles.of("loadtest"))) {
+			return;
+		}
+		synchronized (EmbeddedMongoEnvironmentPostProcessor.class) {
+			if (running != null) {
+				return;
+			}
+			int port = environment.getProperty("loadtest.mongo.port", Integer.class, 27777);
+			Version.Main version = Version.Main.valueOf(environment.getProperty("loadtest.mongo.version", "V6_0"));
+			running = Mongod.instance()
+					.withNet(Start.to(Net.class).initializedWith(Net.builder().bindIp("localhost").port(port).isIpv6(false).build()))
+					.withMongodArguments(Start.to(MongodArguments.class).initializedWith(
+							MongodArguments.defaults().withReplication(Storage.of(REPLICA_SET, 0))))
+					.start(version);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> running.close()));
+			initiateReplicaSet(port);
+		}
+	}
+	
+	private static void initiateReplicaSet(int port) {
+		try (MongoClient client = MongoClients.create("mongodb://localhost:" + port + "/?directConnection=true")) {
+			Document member = new Document("_id", 0).append("host", "localhost:" + port);
+			client.getDatabase("admin").runCommand(new Document("replSetInitiate",
+					new Document("_id", REPLICA_SET).append("members", Collections.singletonList(member))));
+			long deadline = System.currentTimeMillis() + 30_000;
+			while (!Boolean.TRUE.equals(client.getDatabase("admin").runCommand(new Document("hello", 1)).getBoolean("isWritablePrimary"))) {
+				if (System.currentTimeMillis() > deadline) {
+					throw new IllegalStateException("Embedded replica set did not elect a primary");
+				}
+				Thread.sleep(100);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
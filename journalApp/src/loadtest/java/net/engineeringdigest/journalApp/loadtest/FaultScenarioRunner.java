@@ -0,0 +1,105 @@
+package net.engineeringdigest.journalApp.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Runs the WorkloadDriver workload once per fault scenario against a journalApp started with
+ * -Ploadtest (which sets faults.enabled). Each scenario installs its faults through /admin/faults,
+ * measures one warmup plus measured window, and clears them again; the report compares every
+ * endpoint's throughput, errors and p99 with the first (baseline) scenario. Core endpoints whose p99
+ * moves when an integration they do not call is slowed down are missing a timeout, bulkhead or queue.
+ * Scenarios come from the JSON file named by -DscenarioFile, or fault-scenarios.json on the classpath;
+ * -Dscenarios=a,b picks a subset by name. All WorkloadDriver properties apply.
+ */
+public class FaultScenarioRunner {
+	
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	
+	public static void main(String[] args) throws Exception {
+		List<Map<String, Object>> scenarios = load();
+		String only = System.getProperty("scenarios");
+		if (only != null) {
+			List<String> names = Arrays.asList(only.split(","));
+			scenarios.removeIf(scenario -> !names.contains(scenario.get("name")));
+		}
+		
+		WorkloadDriver driver = new WorkloadDriver();
+		driver.setup();
+		Map<String, Map<String, LatencyRecorder>> results = new LinkedHashMap<>();
+		for (Map<String, Object> scenario : scenarios) {
+			String name = (String) scenario.get("name");
+			System.out.printf("%n=== scenario %s ===%n", name);
+			check(driver.admin("DELETE", "/admin/faults", null), "clearing faults");
+			@SuppressWarnings("unchecked")
+			Map<String, Object> faults = (Map<String, Object>) scenario.get("faults");
+			for (Map.Entry<String, Object> fault : faults.entrySet()) {
+				check(driver.admin("PUT", "/admin/faults/" + fault.getKey(), fault.getValue()), "installing " + fault.getKey() + " fault");
+			}
+			try {
+				Map<String, LatencyRecorder> measured = driver.measure();
+				driver.report(measured);
+				results.put(name, measured);
+			}
+			finally {
+				driver.admin("DELETE", "/admin/faults", null);
+			}
+		}
+		compare(results, driver.getDurationSeconds());
+	}
+	
+	private static List<Map<String, Object>> load() throws IOException {
+		String file = System.getProperty("scenarioFile");
+		try (InputStream in = file != null ? new FileInputStream(file)
+				: FaultScenarioRunner.class.getClassLoader().getResourceAsStream("fault-scenarios.json")) {
+			if (in == null) {
+				throw new IllegalStateException("fault-scenarios.json not found on the classpath");
+			}
+			return MAPPER.readValue(in, new TypeReference<List<Map<String, Object>>>() {});
+		}
+	}
+	
+	private static void check(int status, String action) {
+		if (status == 404) {
+			throw new IllegalStateException("Fault injection is disabled on the target; start it with -Ploadtest or faults.enabled=true");
+		}
+		if (status >= 400) {
+			throw new IllegalStateException(action + " failed with HTTP " + status);
+		}
+	}
+	
+	//one row per endpoint and scenario; p99 is also shown relative to the first scenario
+	private static void compare(Map<String, Map<String, LatencyRecorder>> results, int durationSeconds) {
+		if (results.isEmpty()) {
+			return;
+		}
+		String baseline = results.keySet().iterator().next();
+		TreeSet<String> endpoints = new TreeSet<>();
+		for (Map<String, LatencyRecorder> run : results.values()) {
+			endpoints.addAll(run.keySet());
+		}
+		System.out.printf("%n%-28s %-16s %10s %8s %9s %12s%n", "endpoint", "scenario", "req/s", "errors", "p99 ms", "p99 vs " + baseline);
+		for (String endpoint : endpoints) {
+			LatencyRecorder reference = results.get(baseline).get(endpoint);
+			double referenceP99 = reference != null ? reference.percentileMillis(99) : 0;
+			for (Map.Entry<String, Map<String, LatencyRecorder>> run : results.entrySet()) {
+				LatencyRecorder recorder = run.getValue().get(endpoint);
+				if (recorder == null) {
+					continue;
+				}
+				double p99 = recorder.percentileMillis(99);
+				System.out.printf("%-28s %-16s %10.1f %8d %9.2f %11s%n", endpoint, run.getKey(), recorder.count() / (double) durationSeconds,
+						recorder.errors(), p99, referenceP99 > 0 ? String.format("x%.2f", p99 / referenceP99) : "-");
+			}
+		}
+	}
+}
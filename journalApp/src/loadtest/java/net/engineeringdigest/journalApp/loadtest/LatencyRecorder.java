@@ -0,0 +1,52 @@
+package net.engineeringdigest.journalApp.loadtest;
+
+import java.util.Arrays;
+
+//Per-thread latency samples in nanoseconds; merged and sorted once at the end of a run
+public class LatencyRecorder {
+	
+	private long[] samples = new long[1024];
+	private int size;
+	private long errors;
+	
+	public void record(long nanos) {
+		if (size == samples.length) {
+			samples = Arrays.copyOf(samples, size * 2);
+		}
+		samples[size++] = nanos;
+	}
+	
+	public void error() {
+		errors++;
+	}
+	
+	public void merge(LatencyRecorder other) {
+		if (size + other.size > samples.length) {
+			samples = Arrays.copyOf(samples, Math.max(samples.length * 2, size + other.size));
+		}
+		System.arraycopy(other.samples, 0, samples, size, other.size);
+		size += other.size;
+		errors += other.errors;
+	}
+	
+	public int count() {
+		return size;
+	}
+	
+	public long errors() {
+		return errors;
+	}
+	
+	//call once after all merges
+	public void sort() {
+		Arrays.sort(samples, 0, size);
+	}
+	
+	public double percentileMillis(double percentile) {
+		if (size == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+		return samples[Math.max(0, Math.min(size - 1, index))] / 1_000_000.0;
+	}
+}
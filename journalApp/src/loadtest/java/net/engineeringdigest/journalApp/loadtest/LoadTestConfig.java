@@ -0,0 +1,34 @@
+package net.engineeringdigest.journalApp.loadtest;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+//Wires the local fakes used by the loadtest profile; Mongo itself is started by EmbeddedMongoEnvironmentPostProcessor
+@Configuration
+@Profile("loadtest")
+public class LoadTestConfig {
+	
+	@Bean(initMethod = "start", destroyMethod = "stop")
+	public GreenMail greenMail(@Value("${loadtest.smtp.port}") int smtpPort) {
+		return new GreenMail(new ServerSetup(smtpPort, "localhost", ServerSetup.PROTOCOL_SMTP));
+	}
+	
+	@Bean
+	@Primary
+	public StubSmsSender stubSmsSender(@Value("${loadtest.sms.latency-ms:0}") long latencyMs) {
+		return new StubSmsSender(latencyMs);
+	}
+	
+	@Bean(initMethod = "start", destroyMethod = "stop")
+	public ScoringStubServer scoringStubServer(@Value("${loadtest.stub.port}") int port,
+	                                           @Value("${loadtest.scoring.latency-ms:50}") long latencyMs,
+	                                           @Value("${loadtest.scoring.jitter-ms:0}") long jitterMs,
+	                                           GreenMail greenMail, StubSmsSender stubSmsSender) {
+		return new ScoringStubServer(port, latencyMs, jitterMs, greenMail, stubSmsSender);
+	}
+}
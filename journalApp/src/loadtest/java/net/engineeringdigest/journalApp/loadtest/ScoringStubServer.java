@@ -0,0 +1,165 @@
+package net.engineeringdigest.journalApp.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for the onrender /predict service, on its own port and thread pool so stub latency
+ * never occupies Tomcat workers. Also exposes GET /otp?email=..|phone=.. so the workload driver can
+ * complete the OTP flow against the in-memory SMTP server and the SMS stub.
+ */
+@Slf4j
+public class ScoringStubServer {
+	
+	private static final Pattern OTP_PATTERN = Pattern.compile("OTP Code: (\\d{6})");
+	
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final int port;
+	private final long latencyMs;
+	private final long jitterMs;
+	private final GreenMail greenMail;
+	private final StubSmsSender smsSender;
+	private HttpServer server;
+	private ExecutorService executor;
+	
+	public ScoringStubServer(int port, long latencyMs, long jitterMs, GreenMail greenMail, StubSmsSender smsSender) {
+		this.port = port;
+		this.latencyMs = latencyMs;
+		this.jitterMs = jitterMs;
+		this.greenMail = greenMail;
+		this.smsSender = smsSender;
+	}
+	
+	public void start() throws IOException {
+		executor = Executors.newCachedThreadPool();
+		server = HttpServer.create(new InetSocketAddress("localhost", port), 512);
+		server.createContext("/predict", this::predict);
+		server.createContext("/predict_batch", this::predictBatch);
+		server.createContext("/otp", this::otp);
+		server.setExecutor(executor);
+		server.start();
+		log.info("Scoring stub listening on port {} (latency {}ms +/- {}ms)", port, latencyMs, jitterMs);
+	}
+	
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void predict(HttpExchange exchange) throws IOException {
+		try {
+			Map<String, Object> request = objectMapper.readValue(exchange.getRequestBody(), Map.class);
+			simulateLatency();
+			Map<String, Object> body = new HashMap<>();
+			body.put("predicted_credit_score", score(request));
+			respond(exchange, 200, objectMapper.writeValueAsBytes(body));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, new byte[0]);
+		}
+	}
+	
+	//one latency charge for the whole batch, like the real endpoint's single model call
+	@SuppressWarnings("unchecked")
+	private void predictBatch(HttpExchange exchange) throws IOException {
+		try {
+			Map<String, Object> request = objectMapper.readValue(exchange.getRequestBody(), Map.class);
+			Map<String, Object> base = (Map<String, Object>) request.get("base");
+			simulateLatency();
+			List<Double> scores = new ArrayList<>();
+			for (Map<String, Object> variant : (List<Map<String, Object>>) request.get("variants")) {
+				Map<String, Object> row = new HashMap<>(base);
+				row.putAll(variant);
+				scores.add(score(row));
+			}
+			Map<String, Object> body = new HashMap<>();
+			body.put("base_score", score(base));
+			body.put("predicted_credit_scores", scores);
+			respond(exchange, 200, objectMapper.writeValueAsBytes(body));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, new byte[0]);
+		}
+	}
+	
+	private void simulateLatency() throws InterruptedException {
+		long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(-jitterMs, jitterMs + 1) : 0);
+		if (delay > 0) {
+			Thread.sleep(delay);
+		}
+	}
+	
+	private static double score(Map<String, Object> request) {
+		double landQuality = number(request.get("landQualityScore"));
+		double soilPH = number(request.get("soilPH"));
+		double score = 600 + landQuality + 20 * (1 - Math.abs(soilPH - 6.5));
+		return Math.round(score * 100) / 100.0;
+	}
+	
+	private void otp(HttpExchange exchange) throws IOException {
+		Map<String, String> params = query(exchange.getRequestURI().getRawQuery());
+		String text = null;
+		if (params.containsKey("phone")) {
+			text = smsSender.lastMessage(params.get("phone"));
+		} else if (params.containsKey("email")) {
+			MimeMessage[] messages = greenMail.getReceivedMessagesForDomain(params.get("email"));
+			if (messages.length > 0) {
+				text = GreenMailUtil.getBody(messages[messages.length - 1]);
+			}
+		}
+		Matcher matcher = text != null ? OTP_PATTERN.matcher(text) : null;
+		if (matcher != null && matcher.find()) {
+			respond(exchange, 200, objectMapper.writeValueAsBytes(Collections.singletonMap("otp", matcher.group(1))));
+		} else {
+			respond(exchange, 404, new byte[0]);
+		}
+	}
+	
+	private static double number(Object value) {
+		return value instanceof Number ? ((Number) value).doubleValue() : 0;
+	}
+	
+	private static Map<String, String> query(String rawQuery) throws IOException {
+		Map<String, String> params = new HashMap<>();
+		if (rawQuery != null) {
+			for (String pair : rawQuery.split("&")) {
+				int eq = pair.indexOf('=');
+				if (eq > 0) {
+					params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+				}
+			}
+		}
+		return params;
+	}
+	
+	private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
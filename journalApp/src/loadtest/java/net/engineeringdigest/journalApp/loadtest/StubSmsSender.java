@@ -0,0 +1,40 @@
+package net.engineeringdigest.journalApp.loadtest;
+
+import net.engineeringdigest.journalApp.Services.SmsSender;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Replaces the Twilio transport; keeps only the last message per number so memory stays flat under load
+public class StubSmsSender implements SmsSender {
+	
+	private final Map<String, String> lastMessage = new ConcurrentHashMap<>();
+	private final AtomicLong sent = new AtomicLong();
+	private final long latencyMs;
+	
+	public StubSmsSender(long latencyMs) {
+		this.latencyMs = latencyMs;
+	}
+	
+	@Override
+	public void send(String to, String body) {
+		if (latencyMs > 0) {
+			try {
+				Thread.sleep(latencyMs);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		lastMessage.put(to, body);
+		sent.incrementAndGet();
+	}
+	
+	public String lastMessage(String to) {
+		return lastMessage.get(to);
+	}
+	
+	public long sentCount() {
+		return sent.get();
+	}
+}
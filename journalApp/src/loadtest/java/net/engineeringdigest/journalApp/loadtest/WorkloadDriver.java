@@ -0,0 +1,280 @@
+package net.engineeringdigest.journalApp.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scripted workload against a running journalApp (normally started with -Ploadtest).
+ * Every knob is a system property:
+ *   baseUrl (http://localhost:8080), stubUrl (http://localhost:8099), threads (32),
+ *   warmupSeconds (10), durationSeconds (60), farmers (200), banks (10),
+ *   mix ("profile=40,listing=15,login=10,otp=10,scoring=10,approval=10,signup=5").
+ * The reactive read path can be compared under the same load with e.g. mix=rxprofile=40,rxlisting=15,...
+ * Prints throughput and p50/p99/p999 per endpoint once the measured window ends.
+ * FaultScenarioRunner reuses one setup for several measured windows under injected faults.
+ */
+public class WorkloadDriver {
+	
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	
+	private final String baseUrl = System.getProperty("baseUrl", "http://localhost:8080");
+	private final String stubUrl = System.getProperty("stubUrl", "http://localhost:8099");
+	private final int threads = Integer.getInteger("threads", 32);
+	private final int warmupSeconds = Integer.getInteger("warmupSeconds", 10);
+	private final int durationSeconds = Integer.getInteger("durationSeconds", 60);
+	private final int farmerCount = Integer.getInteger("farmers", 200);
+	private final int bankCount = Integer.getInteger("banks", 10);
+	private final String runId = Long.toString(System.currentTimeMillis(), 36);
+	private final AtomicLong signupSeq = new AtomicLong();
+	
+	private final List<String> operations = new ArrayList<>();
+	private final List<Map<String, Object>> farmers = new ArrayList<>();
+	private final List<String> farmerTokens = new ArrayList<>();
+	private final List<String> bankTokens = new ArrayList<>();
+	private String adminToken;
+	
+	public static void main(String[] args) throws Exception {
+		new WorkloadDriver().run();
+	}
+	
+	public void run() throws Exception {
+		setup();
+		report(measure());
+	}
+	
+	//one warmup plus measured window with the current mix; setup() must have run
+	public Map<String, LatencyRecorder> measure() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+		long end = warmupEnd + TimeUnit.SECONDS.toNanos(durationSeconds);
+		List<Future<Map<String, LatencyRecorder>>> futures = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			futures.add(pool.submit(() -> worker(warmupEnd, end)));
+		}
+		Map<String, LatencyRecorder> merged = new TreeMap<>();
+		for (Future<Map<String, LatencyRecorder>> future : futures) {
+			for (Map.Entry<String, LatencyRecorder> entry : future.get().entrySet()) {
+				merged.computeIfAbsent(entry.getKey(), k -> new LatencyRecorder()).merge(entry.getValue());
+			}
+		}
+		pool.shutdown();
+		return merged;
+	}
+	
+	private void parseMix(String mix) {
+		for (String part : mix.split(",")) {
+			String[] kv = part.trim().split("=");
+			int weight = Integer.parseInt(kv[1]);
+			for (int i = 0; i < weight; i++) {
+				operations.add(kv[0]);
+			}
+		}
+	}
+	
+	public void setup() throws IOException {
+		parseMix(System.getProperty("mix", "profile=40,listing=15,login=10,otp=10,scoring=10,approval=10,signup=5"));
+		for (int i = 0; i < farmerCount; i++) {
+			Map<String, Object> farmer = newFarmer("lt-" + runId + "-f" + i);
+			call("POST", "/public/sign-up", null, farmer);
+			farmers.add(farmer);
+			farmerTokens.add(login("/public/login", farmer));
+		}
+		for (int i = 0; i < bankCount; i++) {
+			Map<String, Object> bank = new HashMap<>();
+			bank.put("bankName", "lt-" + runId + "-b" + i);
+			bank.put("bankCredentials", "secret");
+			call("POST", "/public/bsign-up", null, bank);
+			Map<String, Object> credentials = new HashMap<>();
+			credentials.put("bankName", bank.get("bankName"));
+			credentials.put("bankCredentials", "secret");
+			bankTokens.add(login("/public/blogin", credentials));
+		}
+		Map<String, Object> admin = new HashMap<>();
+		admin.put("name", System.getProperty("adminName", "lt-admin"));
+		admin.put("password", System.getProperty("adminPassword", "lt-admin-secret"));
+		adminToken = login("/public/login", admin);
+		System.out.printf("Setup complete: %d farmers, %d banks (run %s)%n", farmerCount, bankCount, runId);
+	}
+	
+	//uses the admin account the loadtest profile creates (admin.name/admin.password)
+	public int admin(String method, String path, Object body) throws IOException {
+		return call(method, path, adminToken, body).status;
+	}
+	
+	public int getDurationSeconds() {
+		return durationSeconds;
+	}
+	
+	private Map<String, Object> newFarmer(String name) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Map<String, Object> farmer = new HashMap<>();
+		farmer.put("name", name);
+		farmer.put("password", "secret");
+		farmer.put("email", name + "@loadtest.local");
+		farmer.put("phoneNo", "+1" + (2000000000L + Math.abs(name.hashCode())));
+		farmer.put("region", "Midwest");
+		farmer.put("landSize", 5 + random.nextInt(200));
+		farmer.put("soilPH", 5.5 + random.nextDouble() * 2);
+		farmer.put("landQualityScore", 40 + random.nextInt(60));
+		return farmer;
+	}
+	
+	private String login(String path, Map<String, Object> body) throws IOException {
+		Response response = call("POST", path, null, body);
+		return response.status == 200 ? response.body : null;
+	}
+	
+	private Map<String, LatencyRecorder> worker(long warmupEnd, long end) {
+		Map<String, LatencyRecorder> recorders = new HashMap<>();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long now;
+		while ((now = System.nanoTime()) < end) {
+			boolean measured = now >= warmupEnd;
+			int index = random.nextInt(farmers.size());
+			Map<String, Object> farmer = farmers.get(index);
+			String farmerToken = farmerTokens.get(index);
+			String bankToken = bankTokens.get(random.nextInt(bankTokens.size()));
+			String op = operations.get(random.nextInt(operations.size()));
+			try {
+				switch (op) {
+					case "profile":
+						timed(recorders, measured, "GET /user/getUser", "GET", "/user/getUser", farmerToken, null);
+						break;
+					case "listing":
+						timed(recorders, measured, "GET /Bank/getAllFarmers", "GET", "/Bank/getAllFarmers", bankToken, null);
+						break;
+					case "rxprofile":
+						timed(recorders, measured, "GET /user/rx/getUser", "GET", "/user/rx/getUser", farmerToken, null);
+						break;
+					case "rxlisting":
+						timed(recorders, measured, "GET /Bank/rx/getAllFarmers", "GET", "/Bank/rx/getAllFarmers", bankToken, null);
+						break;
+					case "login":
+						timed(recorders, measured, "POST /public/login", "POST", "/public/login", null, farmer);
+						break;
+					case "otp":
+						if (timed(recorders, measured, "GET /user/sendOTPEmail", "GET", "/user/sendOTPEmail", farmerToken, null)) {
+							Response otp = call("GET", stubUrl, "/otp?email=" + URLEncoder.encode((String) farmer.get("email"), "UTF-8"), null, null);
+							if (otp.status == 200) {
+								timed(recorders, measured, "POST /user/verifyEmail", "POST", "/user/verifyEmail", farmerToken,
+										MAPPER.readValue(otp.body, Map.class));
+							}
+						}
+						break;
+					case "scoring":
+						timed(recorders, measured, "GET /user/getCreditScore", "GET", "/user/getCreditScore", farmerToken, null);
+						break;
+					case "approval":
+						timed(recorders, measured, "POST /Bank/approveLoan", "POST", "/Bank/approveLoan", bankToken, farmer);
+						break;
+					case "signup":
+						timed(recorders, measured, "POST /public/sign-up", "POST", "/public/sign-up", null,
+								newFarmer("lt-" + runId + "-s" + Thread.currentThread().getId() + "-" + signupSeq.incrementAndGet()));
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown operation " + op);
+				}
+			} catch (IOException e) {
+				if (measured) {
+					recorders.computeIfAbsent("transport", k -> new LatencyRecorder()).error();
+				}
+			}
+		}
+		return recorders;
+	}
+	
+	private boolean timed(Map<String, LatencyRecorder> recorders, boolean measured, String label,
+	                      String method, String path, String token, Object body) throws IOException {
+		long start = System.nanoTime();
+		Response response = call(method, path, token, body);
+		long elapsed = System.nanoTime() - start;
+		boolean ok = response.status < 400;
+		if (measured) {
+			LatencyRecorder recorder = recorders.computeIfAbsent(label, k -> new LatencyRecorder());
+			recorder.record(elapsed);
+			if (!ok) {
+				recorder.error();
+			}
+		}
+		return ok;
+	}
+	
+	private Response call(String method, String path, String token, Object body) throws IOException {
+		return call(method, baseUrl, path, token, body);
+	}
+	
+	private Response call(String method, String base, String path, String token, Object body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+		connection.setRequestMethod(method);
+		connection.setConnectTimeout(5000);
+		connection.setReadTimeout(60000);
+		if (token != null) {
+			connection.setRequestProperty("Authorization", "Bearer " + token);
+		}
+		if (body != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			try (OutputStream out = connection.getOutputStream()) {
+				MAPPER.writeValue(out, body);
+			}
+		}
+		int status = connection.getResponseCode();
+		InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		return new Response(status, in != null ? drain(in) : "");
+	}
+	
+	private static String drain(InputStream in) throws IOException {
+		try (InputStream input = in) {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			byte[] chunk = new byte[8192];
+			int read;
+			while ((read = input.read(chunk)) != -1) {
+				buffer.write(chunk, 0, read);
+			}
+			return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+	
+	public void report(Map<String, LatencyRecorder> results) {
+		System.out.printf("%n%-28s %10s %8s %10s %9s %9s %9s%n", "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms");
+		long total = 0;
+		for (Map.Entry<String, LatencyRecorder> entry : results.entrySet()) {
+			LatencyRecorder recorder = entry.getValue();
+			recorder.sort();
+			total += recorder.count();
+			System.out.printf("%-28s %10d %8d %10.1f %9.2f %9.2f %9.2f%n", entry.getKey(), recorder.count(), recorder.errors(),
+					recorder.count() / (double) durationSeconds, recorder.percentileMillis(50),
+					recorder.percentileMillis(99), recorder.percentileMillis(99.9));
+		}
+		System.out.printf("%-28s %10d %8s %10.1f%n", "total", total, "", total / (double) durationSeconds);
+	}
+	
+	private static class Response {
+		final int status;
+		final String body;
+		
+		Response(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+	}
+}
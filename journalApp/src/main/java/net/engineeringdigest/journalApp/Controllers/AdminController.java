@@ -1,17 +1,33 @@
 package net.engineeringdigest.journalApp.Controllers;
 
 
+import lombok.extern.slf4j.Slf4j;
 import net.engineeringdigest.journalApp.Entities.UserEntity;
+import net.engineeringdigest.journalApp.Services.BulkImportService;
+import net.engineeringdigest.journalApp.Services.CascadeDeleteService;
+import net.engineeringdigest.journalApp.Services.FaultInjector;
+import net.engineeringdigest.journalApp.Services.RegionalReferenceData;
+import net.engineeringdigest.journalApp.Services.RescoringJob;
 import net.engineeringdigest.journalApp.Services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+@Slf4j
 @RestController
 @RequestMapping("/admin")
 public class AdminController {
@@ -20,6 +36,21 @@ public class AdminController {
 	@Autowired
 	public UserService userService;
 	
+	@Autowired
+	public BulkImportService bulkImportService;
+	
+	@Autowired
+	public RescoringJob rescoringJob;
+	
+	@Autowired
+	public FaultInjector faultInjector;
+	
+	@Autowired
+	public CascadeDeleteService cascadeDeleteService;
+	
+	@Autowired
+	public RegionalReferenceData regionalReferenceData;
+	
 	@GetMapping("/get-all")
 	public ResponseEntity<?> get(){
 		List<UserEntity> users=userService.getAll();
@@ -31,5 +62,102 @@ public class AdminController {
 		}
 	}
 	
+	//Body is read as a stream: text/csv with a header row, or application/x-ndjson with one farmer per line
+	@PostMapping(value = "/import/farmers", consumes = {"text/csv", "application/x-ndjson"})
+	public ResponseEntity<?> importFarmers(HttpServletRequest request){
+		try {
+			boolean ndjson = request.getContentType().startsWith("application/x-ndjson");
+			Map<String, Object> report = bulkImportService.importFarmers(request.getInputStream(), ndjson);
+			return new ResponseEntity<>(report, HttpStatus.OK);
+		}
+		catch (Exception e){
+			log.error("Error while importing farmers", e);
+			return ResponseEntity.badRequest().body("Error while importing farmers: " + e.getMessage());
+		}
+	}
+	
+	@PostMapping("/rescoring/run")
+	public ResponseEntity<?> runRescoring(){
+		if(rescoringJob.runAsync()){
+			return new ResponseEntity<>("Re-scoring started", HttpStatus.ACCEPTED);
+		}
+		return new ResponseEntity<>("Re-scoring is already running", HttpStatus.CONFLICT);
+	}
+	
+	@GetMapping("/rescoring/status")
+	public ResponseEntity<?> rescoringStatus(){
+		Map<String, Object> status = new HashMap<>();
+		status.put("running", rescoringJob.isRunning());
+		status.put("checkpoint", rescoringJob.getCheckpoint());
+		return new ResponseEntity<>(status, HttpStatus.OK);
+	}
+	
+	@GetMapping("/cascades")
+	public ResponseEntity<?> cascades(@RequestParam(required = false) String status,
+	                                  @RequestParam(defaultValue = "50") int limit){
+		return new ResponseEntity<>(cascadeDeleteService.getJobs(status, Math.max(1, Math.min(limit, 500))), HttpStatus.OK);
+	}
+	
+	@PostMapping("/cascades/compact")
+	public ResponseEntity<?> compactBankReferences(){
+		if(cascadeDeleteService.compactAsync()){
+			return new ResponseEntity<>("Bank reference compaction started", HttpStatus.ACCEPTED);
+		}
+		return new ResponseEntity<>("Bank reference compaction is already running", HttpStatus.CONFLICT);
+	}
+	
+	@GetMapping("/reference")
+	public ResponseEntity<?> referenceData(){
+		return new ResponseEntity<>(regionalReferenceData.status(), HttpStatus.OK);
+	}
+	
+	//re-reads reference.regions.location; the current data stays in place if the file is invalid
+	@PostMapping("/reference/reload")
+	public ResponseEntity<?> reloadReferenceData(){
+		if(regionalReferenceData.reload()){
+			return new ResponseEntity<>(regionalReferenceData.status(), HttpStatus.OK);
+		}
+		return new ResponseEntity<>("Reference data could not be loaded, see the log", HttpStatus.UNPROCESSABLE_ENTITY);
+	}
+	
+	//fault injection for resilience testing; answers 404 unless faults.enabled
+	@GetMapping("/faults")
+	public ResponseEntity<?> faults(){
+		if(!faultInjector.isEnabled()){
+			return new ResponseEntity<>("Fault injection is disabled", HttpStatus.NOT_FOUND);
+		}
+		return new ResponseEntity<>(faultInjector.active(), HttpStatus.OK);
+	}
+	
+	@PutMapping("/faults/{target}")
+	public ResponseEntity<?> installFault(@PathVariable String target, @RequestBody FaultInjector.FaultSpec spec){
+		if(!faultInjector.isEnabled()){
+			return new ResponseEntity<>("Fault injection is disabled", HttpStatus.NOT_FOUND);
+		}
+		try {
+			faultInjector.install(target, spec);
+			return new ResponseEntity<>(faultInjector.active(), HttpStatus.OK);
+		}
+		catch (IllegalArgumentException e){
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+	}
+	
+	@DeleteMapping("/faults/{target}")
+	public ResponseEntity<?> clearFault(@PathVariable String target){
+		if(!faultInjector.isEnabled()){
+			return new ResponseEntity<>("Fault injection is disabled", HttpStatus.NOT_FOUND);
+		}
+		return new ResponseEntity<>(faultInjector.clear(target) ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND);
+	}
+	
+	@DeleteMapping("/faults")
+	public ResponseEntity<?> clearFaults(){
+		if(!faultInjector.isEnabled()){
+			return new ResponseEntity<>("Fault injection is disabled", HttpStatus.NOT_FOUND);
+		}
+		faultInjector.clearAll();
+		return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+	}
 	
 }
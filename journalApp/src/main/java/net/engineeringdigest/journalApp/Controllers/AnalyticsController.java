@@ -0,0 +1,92 @@
+package net.engineeringdigest.journalApp.Controllers;
+
+
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Services.AnalyticsService;
+import net.engineeringdigest.journalApp.Services.FarmerColumnStore;
+import net.engineeringdigest.journalApp.utils.SecondaryReads;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+//Dashboard statistics served from the PORTFOLIO_ROLLUPS documents and the in-memory columnar snapshot
+@Slf4j
+@RestController
+@CrossOrigin(origins = "http://localhost:5173")
+public class AnalyticsController {
+	
+	@Autowired
+	private AnalyticsService analyticsService;
+	
+	@Autowired
+	private FarmerColumnStore farmerColumnStore;
+	
+	@GetMapping({"/Bank/analytics/portfolio", "/admin/analytics/portfolio"})
+	@SecondaryReads
+	public ResponseEntity<?> portfolio() {
+		try {
+			return new ResponseEntity<>(analyticsService.getDashboard(), HttpStatus.OK);
+		}
+		catch (Exception e) {
+			log.error("Error while reading portfolio analytics", e);
+			return ResponseEntity.badRequest().body("Error while reading portfolio analytics");
+		}
+	}
+	
+	//e.g. ?field=creditScore&groupBy=region&soilType=Loamy&min.landSize=5
+	@GetMapping({"/Bank/analytics/columnar/aggregate", "/admin/analytics/columnar/aggregate"})
+	public ResponseEntity<?> columnarAggregate(@RequestParam String field,
+	                                           @RequestParam(required = false) String groupBy,
+	                                           @RequestParam Map<String, String> params) {
+		try {
+			return new ResponseEntity<>(farmerColumnStore.aggregate(field, groupBy, params), HttpStatus.OK);
+		}
+		catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+		catch (IllegalStateException e) {
+			return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+		}
+	}
+	
+	@GetMapping({"/Bank/analytics/columnar/histogram", "/admin/analytics/columnar/histogram"})
+	public ResponseEntity<?> columnarHistogram(@RequestParam String field,
+	                                           @RequestParam(defaultValue = "20") int bins,
+	                                           @RequestParam float min,
+	                                           @RequestParam float max,
+	                                           @RequestParam Map<String, String> params) {
+		try {
+			return new ResponseEntity<>(farmerColumnStore.histogram(field, bins, min, max, params), HttpStatus.OK);
+		}
+		catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+		catch (IllegalStateException e) {
+			return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+		}
+	}
+	
+	@GetMapping("/admin/analytics/columnar/status")
+	public ResponseEntity<?> columnarStatus() {
+		return new ResponseEntity<>(farmerColumnStore.status(), HttpStatus.OK);
+	}
+	
+	@PostMapping("/admin/analytics/columnar/rebuild")
+	public ResponseEntity<?> columnarRebuild() {
+		farmerColumnStore.rebuild();
+		return new ResponseEntity<>(farmerColumnStore.status(), HttpStatus.OK);
+	}
+	
+	@PostMapping("/admin/analytics/reconcile")
+	public ResponseEntity<?> reconcile() {
+		analyticsService.reconcile();
+		return new ResponseEntity<>(HttpStatus.ACCEPTED);
+	}
+}
@@ -4,22 +4,37 @@ package net.engineeringdigest.journalApp.Controllers;
 import lombok.extern.slf4j.Slf4j;
 
 import net.engineeringdigest.journalApp.Entities.BankEntity;
+import net.engineeringdigest.journalApp.Entities.RankingWeights;
 import net.engineeringdigest.journalApp.Entities.UserEntity;
 import net.engineeringdigest.journalApp.Repositories.BankRepositary;
 
 import net.engineeringdigest.journalApp.Repositories.UserRepository;
 import net.engineeringdigest.journalApp.Services.BankService;
+import net.engineeringdigest.journalApp.Services.CreditScoreClient;
+import net.engineeringdigest.journalApp.Services.EligibilityService;
+import net.engineeringdigest.journalApp.Services.PortfolioExportService;
+import net.engineeringdigest.journalApp.Services.ProfileCache;
+import net.engineeringdigest.journalApp.Services.RankingService;
+import net.engineeringdigest.journalApp.Services.ResourceVersionService;
+import net.engineeringdigest.journalApp.Services.ScoreHistoryService;
 import net.engineeringdigest.journalApp.Services.UserService;
+import net.engineeringdigest.journalApp.utils.SecondaryReads;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.*;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/Bank")
@@ -39,14 +54,40 @@ public class BankController {
 	
 	@Autowired
 	private UserService userService;
+	
+	@Autowired
+	private CreditScoreClient creditScoreClient;
+	
+	@Autowired
+	private ResourceVersionService resourceVersionService;
+	
+	@Autowired
+	private PortfolioExportService portfolioExportService;
+	
+	@Autowired
+	private ProfileCache profileCache;
+	
+	@Autowired
+	private EligibilityService eligibilityService;
+	
+	@Autowired
+	private RankingService rankingService;
+	
+	@Autowired
+	private ScoreHistoryService scoreHistoryService;
 
 	@GetMapping("/getBankInfo")
-	public ResponseEntity<?> getUser(){
+	public ResponseEntity<?> getUser(WebRequest request){
 		try {
 			Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 			String name = authentication.getName();
-			BankEntity user = bankRepositary.findByBankName(name);
-			return new ResponseEntity<>(user, HttpStatus.OK);
+			ResourceVersionService.Stamp stamp = resourceVersionService.bankStamp(name);
+			if (stamp != null && request.checkNotModified(stamp.getEtag(), stamp.getLastModified())) {
+				return null;
+			}
+			//only a cached copy loaded under this same stamp is reused, so the body is never older than the ETag
+			BankEntity user = profileCache.getBank(name, stamp != null ? stamp.getEtag() : null);
+			return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(user);
 		}
 		catch (Exception e){
 			return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
@@ -55,10 +96,17 @@ public class BankController {
 
 	
 	@GetMapping("/getAllFarmers")
-	public ResponseEntity<?> getAllFarmers(){
+	@SecondaryReads
+	public ResponseEntity<?> getAllFarmers(WebRequest request){
 		try{
+			//the stamp is read on the same route as the list and before it, so both lag together and a fresh ETag is
+			//never paired with a stale list; a lagging secondary only yields an older ETag that a later request replaces
+			ResourceVersionService.Stamp stamp = resourceVersionService.collectionStamp(ResourceVersionService.USERS);
+			if (request.checkNotModified(stamp.getEtag(), stamp.getLastModified())) {
+				return null;
+			}
 			List<UserEntity> all = userService.getAll();
-			return ResponseEntity.ok(all);
+			return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(all);
 		}
 		catch (Exception e){
 			log.error("Error while fetching farmers",e);
@@ -66,6 +114,166 @@ public class BankController {
 		}
 	}
 	
+	//Streams the portfolio as CSV or NDJSON from a Mongo cursor; gzip=true sends a .gz attachment
+	@GetMapping("/export")
+	@SecondaryReads
+	public void exportFarmers(@RequestParam(defaultValue = "csv") String format,
+	                          @RequestParam(required = false) String columns,
+	                          @RequestParam(defaultValue = "false") boolean gzip,
+	                          @RequestParam Map<String, String> filters,
+	                          HttpServletResponse response) throws IOException {
+		boolean ndjson = "ndjson".equalsIgnoreCase(format);
+		if (!ndjson && !"csv".equalsIgnoreCase(format)) {
+			response.sendError(HttpStatus.BAD_REQUEST.value(), "format must be csv or ndjson");
+			return;
+		}
+		List<String> selected = portfolioExportService.resolveColumns(columns);
+		String invalid = portfolioExportService.validateColumns(selected);
+		if (invalid != null) {
+			response.sendError(HttpStatus.BAD_REQUEST.value(), invalid);
+			return;
+		}
+		Query filter;
+		try {
+			filter = portfolioExportService.buildFilter(filters);
+		}
+		catch (NumberFormatException e) {
+			response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid numeric filter: " + e.getMessage());
+			return;
+		}
+		String fileName = "farmers." + (ndjson ? "ndjson" : "csv") + (gzip ? ".gz" : "");
+		response.setContentType(gzip ? "application/gzip" : ndjson ? "application/x-ndjson" : "text/csv;charset=UTF-8");
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+		OutputStream out = response.getOutputStream();
+		if (gzip) {
+			out = new GZIPOutputStream(out, 64 * 1024, true);
+		}
+		try {
+			long rows = portfolioExportService.export(filter, selected, ndjson, out);
+			log.info("Exported {} farmers as {}", rows, fileName);
+		}
+		catch (Exception e) {
+			//headers are already committed at this point, so the truncated body is the only signal left
+			log.error("Error while exporting farmers", e);
+		}
+		finally {
+			if (out instanceof GZIPOutputStream) {
+				((GZIPOutputStream) out).finish();
+			}
+			out.flush();
+		}
+	}
+	
+	@GetMapping("/rules")
+	public ResponseEntity<?> getRules(){
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		return new ResponseEntity<>(eligibilityService.getRules(authentication.getName()), HttpStatus.OK);
+	}
+	
+	//body: {"name": "...", "expression": "creditScore > 700 AND landSize BETWEEN 5 AND 50 AND soilType IN (Loamy, Clayey)"}
+	@PostMapping("/rules")
+	public ResponseEntity<?> addRule(@RequestBody Map<String, String> request){
+		try {
+			Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+			Map<String, Object> result = eligibilityService.addRule(authentication.getName(), request.get("name"), request.get("expression"));
+			return new ResponseEntity<>(result, HttpStatus.CREATED);
+		}
+		catch (IllegalArgumentException e){
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+		catch (Exception e){
+			log.error("Error while adding eligibility rule",e);
+			return ResponseEntity.badRequest().body("Error while adding eligibility rule");
+		}
+	}
+	
+	@DeleteMapping("/rules/{ruleId}")
+	public ResponseEntity<?> removeRule(@PathVariable String ruleId){
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (eligibilityService.removeRule(authentication.getName(), ruleId)) {
+			return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+		}
+		return new ResponseEntity<>("Rule not found", HttpStatus.NOT_FOUND);
+	}
+	
+	@GetMapping("/eligibleFarmers")
+	@SecondaryReads
+	public ResponseEntity<?> getEligibleFarmers(@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "50") int size){
+		if (page < 0 || size < 1 || size > 500) {
+			return ResponseEntity.badRequest().body("page must be >= 0 and size between 1 and 500");
+		}
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		return new ResponseEntity<>(eligibilityService.getEligibleFarmers(authentication.getName(), page, size), HttpStatus.OK);
+	}
+	
+	//not @SecondaryReads: RankingService caches the ranking against the primary's USERS stamp, so it reads the primary
+	@GetMapping("/topFarmers")
+	public ResponseEntity<?> getTopFarmers(@RequestParam(defaultValue = "20") int k,
+	                                       @RequestParam(required = false) String region,
+	                                       @RequestParam(required = false) String soilType,
+	                                       @RequestParam(required = false) String cropTypes,
+	                                       @RequestParam(required = false) Double minCreditScore,
+	                                       @RequestParam(defaultValue = "false") boolean includeApproved){
+		if (k < 1 || k > rankingService.getMaxK()) {
+			return ResponseEntity.badRequest().body("k must be between 1 and " + rankingService.getMaxK());
+		}
+		try {
+			Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+			Map<String, String> filters = new HashMap<>();
+			filters.put("region", region);
+			filters.put("soilType", soilType);
+			filters.put("cropTypes", cropTypes);
+			filters.put("minCreditScore", minCreditScore != null ? minCreditScore.toString() : null);
+			filters.put("includeApproved", String.valueOf(includeApproved));
+			filters.values().removeIf(Objects::isNull);
+			return new ResponseEntity<>(rankingService.topFarmers(authentication.getName(), k, filters), HttpStatus.OK);
+		}
+		catch (Exception e){
+			log.error("Error while ranking farmers",e);
+			return ResponseEntity.badRequest().body("Error while ranking farmers");
+		}
+	}
+	
+	//a farmer's credit score trend; same parameters as /user/scoreHistory
+	@GetMapping("/scoreHistory")
+	@SecondaryReads
+	public ResponseEntity<?> getScoreHistory(@RequestParam String farmer,
+	                                         @RequestParam(defaultValue = "monthly") String granularity,
+	                                         @RequestParam(required = false) String from,
+	                                         @RequestParam(required = false) String to){
+		try {
+			UserEntity user = profileCache.getUser(farmer);
+			if (user == null) {
+				return new ResponseEntity<>("Farmer not found", HttpStatus.NOT_FOUND);
+			}
+			return new ResponseEntity<>(scoreHistoryService.getTrend(user.getId(), granularity, from, to), HttpStatus.OK);
+		}
+		catch (IllegalArgumentException e){
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+		catch (Exception e){
+			log.error("Error while fetching score history",e);
+			return new ResponseEntity<>("Error while fetching score history",HttpStatus.INTERNAL_SERVER_ERROR);
+		}
+	}
+	
+	@GetMapping("/ranking/weights")
+	public ResponseEntity<?> getRankingWeights(){
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		return new ResponseEntity<>(rankingService.getWeights(authentication.getName()), HttpStatus.OK);
+	}
+	
+	@PutMapping("/ranking/weights")
+	public ResponseEntity<?> setRankingWeights(@RequestBody RankingWeights weights){
+		try {
+			Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+			return new ResponseEntity<>(rankingService.setWeights(authentication.getName(), weights), HttpStatus.OK);
+		}
+		catch (IllegalArgumentException e){
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+	}
+	
 	@PostMapping("/approveLoan")
 	public ResponseEntity<?> approveLoan(@RequestBody UserEntity farmer){
 		try{
@@ -98,55 +306,21 @@ public class BankController {
 				return new ResponseEntity<>("User not found", HttpStatus.NOT_FOUND);
 			}
 			
-			// Create request payload with null checks and default values
-			Map<String, Object> requestMap = new HashMap<>();
-			requestMap.put("year", user.getYear() != null ? user.getYear() : "2024");
-			requestMap.put("country", user.getCountry() != null ? user.getCountry() : "USA");
-			requestMap.put("region", user.getRegion() != null ? user.getRegion() : "Midwest");
-			requestMap.put("landSize", user.getLandSize() != 0 ? user.getLandSize() : 100.5);
-			requestMap.put("soilType", user.getSoilType() != null ? user.getSoilType() : "Loamy");
-			requestMap.put("pastYield", user.getPastYield() != 0 ? user.getPastYield() : 50.2);
-			requestMap.put("cropTypes", user.getCropTypes() != null ? user.getCropTypes() : "Wheat");
-			requestMap.put("annualIncome", user.getAnnualIncome() != 0 ? user.getAnnualIncome() : 50000);
-			requestMap.put("soilPH", user.getSoilPH() != 0 ? user.getSoilPH() : 6.5);
-			requestMap.put("nitrogenLevel", user.getNitrogenLevel() != 0 ? user.getNitrogenLevel() : 30);
-			requestMap.put("organicMatterLevel", user.getOrganicMatterLevel() != 0 ? user.getOrganicMatterLevel() : 20);
-			requestMap.put("landQualityScore", user.getLandQualityScore() != 0 ? user.getLandQualityScore() : 85);
-			requestMap.put("pastRainfall", user.getPastRainfall() != 0 ? user.getPastRainfall() : 300.2);
-			requestMap.put("avgTemperature", user.getAvgTemperature() != 0 ? user.getAvgTemperature() : 25.5);
-			requestMap.put("creditScore", 0.0);
+			Map<String, Object> requestMap = creditScoreClient.buildRequest(user);
 			
 			// Log the request for debugging
 			log.info("Sending request to credit score API: {}", requestMap);
 			
-			RestTemplate restTemplate = new RestTemplate();
-			HttpHeaders headers = new HttpHeaders();
-			headers.setContentType(MediaType.APPLICATION_JSON);
-			HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestMap, headers);
-			
 			try {
-				ResponseEntity<Map> response = restTemplate.postForEntity(
-						"https://creditscoreprediction-2ccj.onrender.com/predict",
-						entity,
-						Map.class
-				);
-				
-				Map<String, Object> responseBody = response.getBody();
+				Map<String, Object> responseBody = creditScoreClient.predict(requestMap);
 				log.info("API Response: {}", responseBody);
 				
 				// Check if response contains prediction key (the API might have a different structure)
 				if (responseBody != null) {
-					// Try to find the credit score in the response - could be under different keys
-					Object creditScoreObj = responseBody.get("predicted_credit_score");
-					if (creditScoreObj == null) {
-						creditScoreObj = responseBody.get("prediction");
-					}
+					Float creditScore = creditScoreClient.extractScore(responseBody);
 					
-					if (creditScoreObj != null) {
-						float creditScore = Float.parseFloat(creditScoreObj.toString());
-						user.setCreditScore(creditScore);
-						user.setCreditScoreVerified(true);
-						userRepository.save(user);
+					if (creditScore != null) {
+						userService.applyCreditScore(user, creditScore);
 						
 						return new ResponseEntity<>(creditScore, HttpStatus.OK);
 					} else {
@@ -1,17 +1,50 @@
 package net.engineeringdigest.journalApp.Controllers;
 
 
+import net.engineeringdigest.journalApp.Services.HealthProbeService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/health")
 public class HealthCheck {
 	
+	@Autowired
+	public HealthProbeService healthProbeService;
+	
 	@GetMapping("/check")
 	public String check() {
 		return "working fine";
 	}
 	
+	//liveness only fails when the process itself is broken (deadlocked threads), never because a dependency is down
+	@GetMapping("/live")
+	public ResponseEntity<?> live() {
+		HttpStatus status = healthProbeService.isLive() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+		return ResponseEntity.status(status).cacheControl(CacheControl.noStore())
+				.body(Collections.singletonMap("status", status == HttpStatus.OK ? "UP" : "DOWN"));
+	}
+	
+	//served from the cached probe results, 503 tells the load balancer to stop routing here;
+	//the per-dependency report (hosts, latencies, errors) is only shown to operators
+	@GetMapping("/ready")
+	public ResponseEntity<?> ready(HttpServletRequest request) {
+		if (!request.isUserInRole("ADMIN")) {
+			HttpStatus status = healthProbeService.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+			return ResponseEntity.status(status).cacheControl(CacheControl.noStore()).build();
+		}
+		Map<String, Object> report = healthProbeService.report();
+		HttpStatus status = "UP".equals(report.get("status")) ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+		return ResponseEntity.status(status).cacheControl(CacheControl.noStore()).body(report);
+	}
+	
 }
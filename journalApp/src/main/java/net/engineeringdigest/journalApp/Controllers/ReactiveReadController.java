@@ -0,0 +1,59 @@
+package net.engineeringdigest.journalApp.Controllers;
+
+
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.BankEntity;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import net.engineeringdigest.journalApp.Repositories.ReactiveBankRepository;
+import net.engineeringdigest.journalApp.Repositories.ReactiveUserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive versions of the read-heavy endpoints, served next to the blocking ones under an /rx prefix.
+ * The servlet thread is released as soon as the Mono/Flux is returned; results are produced by the
+ * reactive Mongo driver and the listing is streamed as NDJSON, one document per line, with demand
+ * driven by how fast the client drains the response. The bank profile is read without its loansApproved
+ * references (the reactive driver does not resolve DBRefs) and the farmer listing without credentials.
+ */
+@Slf4j
+@RestController
+@CrossOrigin(origins = "http://localhost:5173")
+public class ReactiveReadController {
+	
+	@Autowired
+	private ReactiveUserRepository reactiveUserRepository;
+	
+	@Autowired
+	private ReactiveBankRepository reactiveBankRepository;
+	
+	@GetMapping("/user/rx/getUser")
+	public Mono<ResponseEntity<UserEntity>> getUser() {
+		String name = SecurityContextHolder.getContext().getAuthentication().getName();
+		return reactiveUserRepository.findByName(name)
+				.map(ResponseEntity::ok)
+				.defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+	}
+	
+	@GetMapping("/Bank/rx/getBankInfo")
+	public Mono<ResponseEntity<BankEntity>> getBankInfo() {
+		String name = SecurityContextHolder.getContext().getAuthentication().getName();
+		return reactiveBankRepository.findByBankName(name)
+				.map(ResponseEntity::ok)
+				.defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+	}
+	
+	@GetMapping(value = "/Bank/rx/getAllFarmers", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public Flux<UserEntity> getAllFarmers() {
+		return reactiveUserRepository.findByRoles("User")
+				.doOnError(e -> log.error("Error while streaming farmers", e));
+	}
+}
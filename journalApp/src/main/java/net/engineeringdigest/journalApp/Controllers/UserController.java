@@ -3,10 +3,18 @@ package net.engineeringdigest.journalApp.Controllers;
 
 import lombok.extern.slf4j.Slf4j;
 import net.engineeringdigest.journalApp.Entities.OtpValidate;
+import net.engineeringdigest.journalApp.Entities.ScoreSimulationRequest;
 import net.engineeringdigest.journalApp.Entities.UserEntity;
 import net.engineeringdigest.journalApp.Repositories.UserRepository;
+import net.engineeringdigest.journalApp.Services.CreditScoreClient;
 import net.engineeringdigest.journalApp.Services.EmailService;
+import net.engineeringdigest.journalApp.Services.LoanHistoryService;
 import net.engineeringdigest.journalApp.Services.OtpService;
+import net.engineeringdigest.journalApp.Services.ProfileCache;
+import net.engineeringdigest.journalApp.Services.ResourceVersionService;
+import net.engineeringdigest.journalApp.Services.ScoreHistoryService;
+import net.engineeringdigest.journalApp.Services.ScoreSimulationService;
+import net.engineeringdigest.journalApp.Services.UserEventService;
 import net.engineeringdigest.journalApp.Services.UserService;
 import net.engineeringdigest.journalApp.utils.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,10 +22,11 @@ import org.springframework.http.*;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.Instant;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -42,15 +51,45 @@ public class UserController {
 	@Autowired
 	public OtpService otpService;
 	
+	@Autowired
+	public CreditScoreClient creditScoreClient;
+	
+	@Autowired
+	public ResourceVersionService resourceVersionService;
+	
+	@Autowired
+	public LoanHistoryService loanHistoryService;
+	
+	@Autowired
+	public ProfileCache profileCache;
+	
+	@Autowired
+	public ScoreSimulationService scoreSimulationService;
+	
+	@Autowired
+	public UserEventService userEventService;
+	
+	@Autowired
+	public ScoreHistoryService scoreHistoryService;
+	
 	
 	//CRUD OPERATIOM FOR USER
 	@GetMapping("/getUser")
-	public ResponseEntity<?> getUser(){
+	public ResponseEntity<?> getUser(WebRequest request){
 		try {
 			Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 			String name = authentication.getName();
-			UserEntity user = userRepository.findByName(name);
-			return new ResponseEntity<>(user, HttpStatus.OK);
+			ResourceVersionService.Stamp stamp = resourceVersionService.userStamp(name);
+			if (stamp != null && request.checkNotModified(stamp.getEtag(), stamp.getLastModified())) {
+				return null;
+			}
+			UserEntity user = profileCache.getUser(name);
+			//a cached copy older than the stamp would be served under the new ETag and then kept by the client, so reload it
+			if (user != null && stamp != null && !stamp.getEtag().equals(resourceVersionService.userStamp(user).getEtag())) {
+				profileCache.evictUser(name);
+				user = profileCache.getUser(name);
+			}
+			return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(user);
 		}
 		catch (Exception e){
 			return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
@@ -68,9 +107,12 @@ public class UserController {
 				return new ResponseEntity<>("User Not Found", HttpStatus.NOT_FOUND);
 			}
 			
-			userService.updateUser(UpdateUser, existingUser);
+			UserEntity updated = userService.updateUser(UpdateUser, existingUser);
+			if (updated == null) {
+				return new ResponseEntity<>("User Not Found", HttpStatus.NOT_FOUND);
+			}
 			
-			return new ResponseEntity<>(existingUser, HttpStatus.OK);
+			return new ResponseEntity<>(updated, HttpStatus.OK);
 		}catch (Exception e) {
 			return new ResponseEntity<>("Error while updating User. Please Try Again Later", HttpStatus.UNAUTHORIZED);
 		}
@@ -81,7 +123,7 @@ public class UserController {
 	public ResponseEntity<?> deleteUser(){
 		try {
 			Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-			if (userRepository.findByName(authentication.getName())!=null) {
+			if (profileCache.getUser(authentication.getName())!=null) {
 				userService.deleteByUserName(authentication.getName());
 				return new ResponseEntity<>(HttpStatus.NO_CONTENT);
 			} else {
@@ -94,6 +136,13 @@ public class UserController {
 		}
 	}
 	
+	//pushes loanApproved, creditScore and verified events; EventSource clients pass ?access_token=<jwt>
+	@GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter events(){
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		return userEventService.subscribe(authentication.getName());
+	}
+	
 	//USER Verification started
 	@GetMapping("/sendOTPEmail")
 	public ResponseEntity<?> generateOTP(){
@@ -155,9 +204,19 @@ public class UserController {
 			Instant now = Instant.now();
 			if(user.getOTP().equals(otpValidate.getOtp())){
 				if (now.isBefore(user.getOtpExpiryTime())) {
-					user.setOTP(null);
-					user.setEmailVerified(true);
-					userRepository.save(user);
+					//re-checked on every attempt: a concurrent resend replaces the OTP
+					UserEntity verified = userService.update("verifyEmail", user, current -> {
+						if (!otpValidate.getOtp().equals(current.getOTP())) {
+							return false;
+						}
+						current.setOTP(null);
+						current.setEmailVerified(true);
+						return true;
+					});
+					if (verified == null) {
+						return new ResponseEntity<>("Invalid OTP ", HttpStatus.BAD_REQUEST);
+					}
+					userEventService.publish(username, UserEventService.VERIFIED, Collections.singletonMap("channel", "email"));
 					return new ResponseEntity<>("Email verified successfully ", HttpStatus.ACCEPTED);
 				}
 				else {
@@ -183,9 +242,18 @@ public class UserController {
 			Instant now = Instant.now();
 			if(user.getOTP().equals(otpValidate.getOtp())){
 				if (now.isBefore(user.getOtpExpiryTime())) {
-					user.setOTP(null);
-					user.setPhoneVerified(true);
-					userRepository.save(user);
+					UserEntity verified = userService.update("verifyPhone", user, current -> {
+						if (!otpValidate.getOtp().equals(current.getOTP())) {
+							return false;
+						}
+						current.setOTP(null);
+						current.setPhoneVerified(true);
+						return true;
+					});
+					if (verified == null) {
+						return new ResponseEntity<>("Invalid OTP ", HttpStatus.BAD_REQUEST);
+					}
+					userEventService.publish(username, UserEventService.VERIFIED, Collections.singletonMap("channel", "phone"));
 					return new ResponseEntity<>("Phone Number verified succesfully ", HttpStatus.ACCEPTED);
 				}
 				else {
@@ -202,6 +270,47 @@ public class UserController {
 	}
 	//USER Verification ended
 	
+	@GetMapping("/history")
+	public ResponseEntity<?> getHistory(@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int size){
+		try {
+			Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+			UserEntity user = profileCache.getUser(authentication.getName());
+			if (user == null) {
+				return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+			}
+			if (page < 0 || size < 1 || size > 100) {
+				return ResponseEntity.badRequest().body("page must be >= 0 and size between 1 and 100");
+			}
+			return new ResponseEntity<>(loanHistoryService.getPage(user.getId(), page, size), HttpStatus.OK);
+		}
+		catch (Exception e){
+			log.error("Error while fetching loan history",e);
+			return new ResponseEntity<>("Error while fetching loan history",HttpStatus.BAD_REQUEST);
+		}
+	}
+	
+	//granularity raw, daily, weekly or monthly; from/to are ISO dates and default to a recent window
+	@GetMapping("/scoreHistory")
+	public ResponseEntity<?> getScoreHistory(@RequestParam(defaultValue = "daily") String granularity,
+	                                         @RequestParam(required = false) String from,
+	                                         @RequestParam(required = false) String to){
+		try {
+			Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+			UserEntity user = profileCache.getUser(authentication.getName());
+			if (user == null) {
+				return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+			}
+			return new ResponseEntity<>(scoreHistoryService.getTrend(user.getId(), granularity, from, to), HttpStatus.OK);
+		}
+		catch (IllegalArgumentException e){
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+		catch (Exception e){
+			log.error("Error while fetching score history",e);
+			return new ResponseEntity<>("Error while fetching score history",HttpStatus.INTERNAL_SERVER_ERROR);
+		}
+	}
+	
 	@GetMapping("/getCreditScore")
 	public ResponseEntity<?> getCreditScore() {
 		try {
@@ -213,55 +322,21 @@ public class UserController {
 				return new ResponseEntity<>("User not found", HttpStatus.NOT_FOUND);
 			}
 			
-			// Create request payload with null checks and default values
-			Map<String, Object> requestMap = new HashMap<>();
-			requestMap.put("year", user.getYear() != null ? user.getYear() : "2024");
-			requestMap.put("country", user.getCountry() != null ? user.getCountry() : "USA");
-			requestMap.put("region", user.getRegion() != null ? user.getRegion() : "Midwest");
-			requestMap.put("landSize", user.getLandSize() != 0 ? user.getLandSize() : 100.5);
-			requestMap.put("soilType", user.getSoilType() != null ? user.getSoilType() : "Loamy");
-			requestMap.put("pastYield", user.getPastYield() != 0 ? user.getPastYield() : 50.2);
-			requestMap.put("cropTypes", user.getCropTypes() != null ? user.getCropTypes() : "Wheat");
-			requestMap.put("annualIncome", user.getAnnualIncome() != 0 ? user.getAnnualIncome() : 50000);
-			requestMap.put("soilPH", user.getSoilPH() != 0 ? user.getSoilPH() : 6.5);
-			requestMap.put("nitrogenLevel", user.getNitrogenLevel() != 0 ? user.getNitrogenLevel() : 30);
-			requestMap.put("organicMatterLevel", user.getOrganicMatterLevel() != 0 ? user.getOrganicMatterLevel() : 20);
-			requestMap.put("landQualityScore", user.getLandQualityScore() != 0 ? user.getLandQualityScore() : 85);
-			requestMap.put("pastRainfall", user.getPastRainfall() != 0 ? user.getPastRainfall() : 300.2);
-			requestMap.put("avgTemperature", user.getAvgTemperature() != 0 ? user.getAvgTemperature() : 25.5);
-			requestMap.put("creditScore", 0.0);
+			Map<String, Object> requestMap = creditScoreClient.buildRequest(user);
 			
 			// Log the request for debugging
 			log.info("Sending request to credit score API: {}", requestMap);
 			
-			RestTemplate restTemplate = new RestTemplate();
-			HttpHeaders headers = new HttpHeaders();
-			headers.setContentType(MediaType.APPLICATION_JSON);
-			HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestMap, headers);
-			
 			try {
-				ResponseEntity<Map> response = restTemplate.postForEntity(
-						"https://creditscoreprediction-2ccj.onrender.com/predict",
-						entity,
-						Map.class
-				);
-				
-				Map<String, Object> responseBody = response.getBody();
+				Map<String, Object> responseBody = creditScoreClient.predict(requestMap);
 				log.info("API Response: {}", responseBody);
 				
 				// Check if response contains prediction key (the API might have a different structure)
 				if (responseBody != null) {
-					// Try to find the credit score in the response - could be under different keys
-					Object creditScoreObj = responseBody.get("predicted_credit_score");
-					if (creditScoreObj == null) {
-						creditScoreObj = responseBody.get("prediction");
-					}
+					Float creditScore = creditScoreClient.extractScore(responseBody);
 					
-					if (creditScoreObj != null) {
-						float creditScore = Float.parseFloat(creditScoreObj.toString());
-						user.setCreditScore(creditScore);
-						user.setCreditScoreVerified(true);
-						userRepository.save(user);
+					if (creditScore != null) {
+						userService.applyCreditScore(user, creditScore);
 						
 						return new ResponseEntity<>(creditScore, HttpStatus.OK);
 					} else {
@@ -282,7 +357,24 @@ public class UserController {
 					HttpStatus.INTERNAL_SERVER_ERROR);
 		}
 	}
-
-	
 	
+	//what-if scores for a grid of crop, soil, land size and pH changes; the stored score is not updated
+	@PostMapping("/simulateScore")
+	public ResponseEntity<?> simulateScore(@RequestBody ScoreSimulationRequest simulationRequest) {
+		try {
+			Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+			UserEntity user = profileCache.getUser(authentication.getName());
+			if (user == null) {
+				return new ResponseEntity<>("User not found", HttpStatus.NOT_FOUND);
+			}
+			return new ResponseEntity<>(scoreSimulationService.simulate(user, simulationRequest), HttpStatus.OK);
+		}
+		catch (IllegalArgumentException e) {
+			return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+		}
+		catch (Exception e) {
+			log.error("Error simulating credit score", e);
+			return new ResponseEntity<>("Failed to simulate credit score: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+		}
+	}
 }
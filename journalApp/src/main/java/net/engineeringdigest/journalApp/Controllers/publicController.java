@@ -6,6 +6,7 @@ import net.engineeringdigest.journalApp.Entities.UserEntity;
 import net.engineeringdigest.journalApp.Repositories.UserRepository;
 import net.engineeringdigest.journalApp.Services.BankDetailsServiceImpl;
 import net.engineeringdigest.journalApp.Services.BankService;
+import net.engineeringdigest.journalApp.Services.ProfileCache;
 import net.engineeringdigest.journalApp.Services.UserDetailServiceImpl;
 import net.engineeringdigest.journalApp.Services.UserService;
 import net.engineeringdigest.journalApp.utils.JwtUtil;
@@ -50,6 +51,9 @@ public class publicController {
 	@Autowired
 	private BankDetailsServiceImpl bankDetailsService;
 
+	@Autowired
+	private ProfileCache profileCache;
+
 	@PostMapping("/bsign-up")
 	public ResponseEntity<?> signUp(@RequestBody BankEntity user){
 		try{
@@ -91,7 +95,7 @@ public class publicController {
 	@PostMapping("/refresh-token")
 	public ResponseEntity<?> refreshToken(@RequestBody Map<String, String> request) {
 		String username = request.get("username");
-		UserEntity user= userRepository.findByName(username);
+		UserEntity user= profileCache.getUser(username);
 		UserDetails userDetails = userDetailsService.loadUserByUsername(user.getName());
 		String jwt=jwtUtil.generateToken(userDetails.getUsername());
 		return ResponseEntity.ok(jwt);
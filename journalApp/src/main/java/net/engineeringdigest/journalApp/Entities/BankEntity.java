@@ -7,13 +7,19 @@ import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
 @Document(collection = "BANKS")
+//lets a farmer's deletion find the banks that still reference it
+@CompoundIndex(name = "loans_approved_ref", def = "{'loansApproved.$id': 1}")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -22,11 +28,16 @@ public class BankEntity {
 	@Id
 	private ObjectId id;
 	@NonNull
+	@Indexed(unique = true)
 	private String bankName;
 	@NonNull
 	private String bankCredentials;
 	@DBRef
 	private List<UserEntity> loansApproved=new ArrayList<>();
 	private List<String> roles;
+	private List<EligibilityRule> eligibilityRules=new ArrayList<>();
+	private RankingWeights rankingWeights;
+	@LastModifiedDate
+	private Instant lastModified;
 	
 }
@@ -0,0 +1,53 @@
+package net.engineeringdigest.journalApp.Entities;
+
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+//Clean-up still owed for a deleted farmer; the farmer's fields the rollups need are copied here because the USERS document is gone
+@Document(collection = "CASCADE_JOBS")
+@CompoundIndex(name = "status_created", def = "{'status': 1, 'createdAt': 1}")
+@Data
+@NoArgsConstructor
+public class CascadeJob {
+	
+	public static final String PENDING = "PENDING";
+	public static final String RUNNING = "RUNNING";
+	public static final String DONE = "DONE";
+	public static final String FAILED = "FAILED";
+	
+	@Id
+	private ObjectId id;
+	private ObjectId farmerId;
+	private String farmerName;
+	private String region;
+	private String cropTypes;
+	private float landSize;
+	private boolean creditScoreVerified;
+	private float creditScore;
+	
+	private String status;
+	//steps finished so far, in order; a retried job resumes at the next one
+	private int completedSteps;
+	private ObjectId lastBankId;
+	private long banksUpdated;
+	private long historyBucketsRemoved;
+	private long eligibilityRemoved;
+	private long scoreBucketsRemoved;
+	private int attempts;
+	private String lastError;
+	//a failed job is not claimed again before this; null once it may run
+	private Instant nextAttemptAt;
+	private Instant createdAt;
+	private Instant updatedAt;
+	//finished jobs are kept 30 days for the admin view; failed ones stay until someone looks at them
+	@Indexed(expireAfterSeconds = 2592000)
+	private Instant completedAt;
+}
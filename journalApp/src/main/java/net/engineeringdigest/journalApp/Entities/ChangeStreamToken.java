@@ -0,0 +1,26 @@
+package net.engineeringdigest.journalApp.Entities;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+
+import java.time.Instant;
+
+//Last processed resume token per watched collection and instance ("<collection>:<instance-id>"), so listeners pick up
+//where they stopped after a restart; tokens of instances that are gone expire, they would be outside the oplog by then
+@org.springframework.data.mongodb.core.mapping.Document(collection = "CHANGE_STREAM_TOKENS")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeStreamToken {
+	
+	@Id
+	private String id;
+	private Document token;
+	@Indexed(expireAfterSeconds = 604800)
+	private Instant updatedAt;
+}
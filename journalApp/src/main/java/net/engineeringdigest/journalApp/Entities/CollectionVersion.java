@@ -0,0 +1,23 @@
+package net.engineeringdigest.journalApp.Entities;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+//Monotonic change counter per collection, bumped on every write; listing ETags are derived from it
+@Document(collection = "COLLECTION_VERSIONS")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CollectionVersion {
+	
+	@Id
+	private String id;
+	private long version;
+	private Instant updatedAt;
+}
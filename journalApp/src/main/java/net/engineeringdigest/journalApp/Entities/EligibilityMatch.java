@@ -0,0 +1,36 @@
+package net.engineeringdigest.journalApp.Entities;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+//One farmer satisfying one bank rule; _id is bankName|ruleId|farmerId so re-evaluation is an idempotent upsert
+@Document(collection = "ELIGIBILITY")
+@CompoundIndex(name = "bank_score", def = "{'bankName': 1, 'creditScore': -1}")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EligibilityMatch {
+	
+	@Id
+	private String id;
+	private String bankName;
+	private String ruleId;
+	@Indexed
+	private ObjectId farmerId;
+	private String farmerName;
+	private float creditScore;
+	private Instant matchedAt;
+	
+	public static String matchId(String bankName, String ruleId, ObjectId farmerId) {
+		return bankName + "|" + ruleId + "|" + farmerId.toHexString();
+	}
+}
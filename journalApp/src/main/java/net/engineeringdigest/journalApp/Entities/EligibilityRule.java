@@ -0,0 +1,20 @@
+package net.engineeringdigest.journalApp.Entities;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+//Standing loan criterion of a bank, e.g. "creditScore > 700 AND soilType IN (Loamy, Clayey)"; embedded in BankEntity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EligibilityRule {
+	
+	private String id;
+	private String name;
+	private String expression;
+	private Instant createdAt;
+}
@@ -0,0 +1,33 @@
+package net.engineeringdigest.journalApp.Entities;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+//Progress of a chunked batch job: the last _id fully written, so an interrupted run resumes after it.
+//owner/leaseUntil let one instance at a time run the job; a lapsed lease can be taken over
+@Document(collection = "JOB_CHECKPOINTS")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobCheckpoint {
+	
+	@Id
+	private String id;
+	private ObjectId lastId;
+	private String modelVersion;
+	private boolean completed;
+	private long scanned;
+	private long rescored;
+	private long failed;
+	private Instant startedAt;
+	private Instant updatedAt;
+	private String owner;
+	private Instant leaseUntil;
+}
@@ -0,0 +1,36 @@
+package net.engineeringdigest.journalApp.Entities;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+//Fixed-size slice of a farmer's loan history (bucket pattern); a farmer has as many buckets as needed
+//farmer_open allows one open live bucket per farmer, so concurrent appends cannot both open one (50 = BUCKET_SIZE)
+@Document(collection = "LOAN_HISTORY")
+@CompoundIndex(name = "farmer_recent", def = "{'farmerId': 1, 'firstTimestamp': -1}")
+@CompoundIndex(name = "farmer_open", def = "{'farmerId': 1}", unique = true, partialFilter = "{'count': {'$lt': 50}, 'migrated': false}")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanHistoryBucket {
+	
+	public static final int BUCKET_SIZE = 50;
+	
+	@Id
+	private ObjectId id;
+	private ObjectId farmerId;
+	private int count;
+	private Instant firstTimestamp;
+	private Instant lastTimestamp;
+	private boolean migrated;
+	private List<LoanHistoryEntry> entries = new ArrayList<>();
+}
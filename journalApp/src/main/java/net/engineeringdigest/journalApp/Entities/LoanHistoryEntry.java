@@ -0,0 +1,21 @@
+package net.engineeringdigest.journalApp.Entities;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanHistoryEntry {
+	private Instant timestamp;
+	private ObjectId bankId;
+	private String bankName;
+	private String status;
+	//farmer's credit score when the bank acted on the loan
+	private float creditScore;
+}
@@ -0,0 +1,35 @@
+package net.engineeringdigest.journalApp.Entities;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+//One document per dashboard dimension value, e.g. "global", "region:Punjab", "crop:Wheat", "bank:SBI"
+@Document(collection = "PORTFOLIO_ROLLUPS")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioRollup {
+	
+	@Id
+	private String id;
+	private String dimension;
+	private String value;
+	private long farmerCount;
+	private long scoredCount;
+	private double creditScoreSum;
+	private long loansApproved;
+	private Map<String, Long> landSizeBuckets = new HashMap<>();
+	private Instant updatedAt;
+	
+	public double getAverageCreditScore() {
+		return scoredCount == 0 ? 0 : creditScoreSum / scoredCount;
+	}
+}
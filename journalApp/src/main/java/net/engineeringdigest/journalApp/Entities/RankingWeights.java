@@ -0,0 +1,18 @@
+package net.engineeringdigest.journalApp.Entities;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Per-bank weights of the top-farmer composite score; embedded in BankEntity, each factor is normalised to roughly 0..1 first
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RankingWeights {
+	
+	private double creditScore = 0.5;
+	private double landQualityScore = 0.2;
+	private double pastYield = 0.15;
+	private double annualIncome = 0.15;
+}
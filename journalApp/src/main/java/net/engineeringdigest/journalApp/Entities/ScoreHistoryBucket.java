@@ -0,0 +1,54 @@
+package net.engineeringdigest.journalApp.Entities;
+
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//One farmer's credit scores for one UTC month; _id is farmerId:yyyyMM so any date range of a farmer is one _id index range
+@Document(collection = "SCORE_HISTORY")
+@Data
+@NoArgsConstructor
+public class ScoreHistoryBucket {
+	
+	//newest raw points kept per month; the month and day summaries still count every score
+	public static final int MAX_ENTRIES = 500;
+	
+	private static final DateTimeFormatter MONTH_KEY = DateTimeFormatter.ofPattern("yyyyMM");
+	
+	@Id
+	private String id;
+	private ObjectId farmerId;
+	@Indexed
+	private Instant month;
+	private int count;
+	private double sum;
+	private float min;
+	private float max;
+	private float lastScore;
+	private Instant lastTimestamp;
+	private String lastModelVersion;
+	//keyed d01..d31; kept when retention drops the raw entries
+	private Map<String, ScoreSummary> days = new HashMap<>();
+	private boolean compacted;
+	private List<ScorePoint> entries = new ArrayList<>();
+	
+	public static String bucketId(ObjectId farmerId, YearMonth month) {
+		return farmerId.toHexString() + ":" + month.format(MONTH_KEY);
+	}
+	
+	public static String dayKey(int dayOfMonth) {
+		return dayOfMonth < 10 ? "d0" + dayOfMonth : "d" + dayOfMonth;
+	}
+}
@@ -0,0 +1,19 @@
+package net.engineeringdigest.journalApp.Entities;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+//One credit score computation, with what produced it
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScorePoint {
+	private Instant timestamp;
+	private float score;
+	private String modelVersion;
+	private String inputsHash;
+}
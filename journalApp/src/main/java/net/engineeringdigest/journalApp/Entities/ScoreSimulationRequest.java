@@ -0,0 +1,19 @@
+package net.engineeringdigest.journalApp.Entities;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScoreSimulationRequest {
+	//feature set to vary; the caller's stored profile when omitted
+	private UserEntity base;
+	//cropTypes, soilType, landSize and/or soilPH -> values to try
+	private Map<String, List<Object>> grid;
+}
@@ -0,0 +1,18 @@
+package net.engineeringdigest.journalApp.Entities;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Downsampled scores for one period: enough for avg/min/max/last without the raw points
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScoreSummary {
+	private int count;
+	private double sum;
+	private float min;
+	private float max;
+	private float last;
+}
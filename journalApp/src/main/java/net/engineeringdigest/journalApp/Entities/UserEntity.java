@@ -1,16 +1,19 @@
 package net.engineeringdigest.journalApp.Entities;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
 
 @Document(collection = "USERS")
@@ -21,11 +24,14 @@ public class UserEntity {
 	@Id
 	private ObjectId id;
 	@NonNull
+	@Indexed(unique = true)
 	private String name;
 	@NonNull
 	private String password;
+	@Indexed
 	private String phoneNo;
 	@NonNull
+	@Indexed(unique = true)
 	private String email;
 	private List<String> roles;
 	private String OTP;
@@ -36,6 +42,7 @@ public class UserEntity {
 	private boolean isLoanApproved;
 	private String year;
 	private String country;
+	@Indexed
 	private String region;
 	private float landSize;
 	private String soilType;
@@ -49,6 +56,19 @@ public class UserEntity {
 	private float pastRainfall;
 	private float avgTemperature;
 	private boolean isCreditScoreVerified;
+	@Indexed
 	private float creditScore;
-	private List<String> history=new ArrayList<>();
+	private String scoreModelVersion;
+	private String scoreInputsHash;
+	//legacy bank-name list, read-only: kept on the entity so save() does not drop it before
+	//LoanHistoryMigration has moved it into LOAN_HISTORY and unset it; new approvals never write here
+	@Deprecated
+	@JsonIgnore
+	private List<String> history;
+	@LastModifiedDate
+	private Instant lastModified;
+	
+	//optimistic locking: save() only succeeds against the version it was loaded with
+	@Version
+	private Long version;
 }
@@ -0,0 +1,14 @@
+package net.engineeringdigest.journalApp.Repositories;
+
+
+import net.engineeringdigest.journalApp.Entities.BankEntity;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveBankRepository extends ReactiveMongoRepository<BankEntity, ObjectId> {
+	//the reactive mapping cannot resolve the loansApproved DBRefs, so they are left out of the document
+	@Query(value = "{'bankName': ?0}", fields = "{'loansApproved': 0, 'bankCredentials': 0}")
+	Mono<BankEntity> findByBankName(String bankName);
+}
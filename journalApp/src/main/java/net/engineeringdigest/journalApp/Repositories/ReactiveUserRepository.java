@@ -0,0 +1,18 @@
+package net.engineeringdigest.journalApp.Repositories;
+
+
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+//Non-blocking counterpart of UserRepository used by the reactive read endpoints
+public interface ReactiveUserRepository extends ReactiveMongoRepository<UserEntity, ObjectId> {
+	Mono<UserEntity> findByName(String name);
+	
+	//farmer listing for banks; admin accounts share the collection and credentials never leave it
+	@Query(value = "{'roles': ?0}", fields = "{'password': 0, 'OTP': 0, 'otpExpiryTime': 0}")
+	Flux<UserEntity> findByRoles(String role);
+}
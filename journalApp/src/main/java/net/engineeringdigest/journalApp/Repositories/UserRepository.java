@@ -3,10 +3,12 @@ package net.engineeringdigest.journalApp.Repositories;
 
 
 import net.engineeringdigest.journalApp.Entities.UserEntity;
+import net.engineeringdigest.journalApp.utils.SecondaryReads;
 import org.bson.types.ObjectId;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends MongoRepository<UserEntity, ObjectId>{
@@ -18,4 +20,13 @@ public interface UserRepository extends MongoRepository<UserEntity, ObjectId>{
 	boolean existsByPhoneNo(String phoneNo);
 	void deleteByName(String name);
 	
+	//full listings for bank browsing tolerate a slightly stale secondary
+	@Override
+	@SecondaryReads
+	List<UserEntity> findAll();
+	
+	//farmer listings; admin accounts share the collection
+	@SecondaryReads
+	List<UserEntity> findByRoles(String role);
+	
 }
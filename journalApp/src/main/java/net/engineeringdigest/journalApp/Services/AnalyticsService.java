@@ -0,0 +1,452 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import com.mongodb.bulk.BulkWriteError;
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.PortfolioRollup;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains the PORTFOLIO_ROLLUPS documents behind the bank and admin dashboards.
+ * Every signup, score change and loan approval applies $inc deltas to the handful of rollups it
+ * touches in a single unordered bulk write, so dashboard reads never scan USERS. The nightly
+ * reconcile() rebuilds everything from aggregation pipelines and applies the difference to the stored
+ * rollups as $inc corrections, to repair any drift without overwriting concurrent deltas; a rollup a live
+ * update touched while the rebuild ran is skipped and corrected on the next run.
+ */
+@Slf4j
+@Service
+public class AnalyticsService {
+	
+	public static final String GLOBAL = "global";
+	public static final String REGION = "region";
+	public static final String CROP = "crop";
+	public static final String BANK = "bank";
+	
+	private static final int DUPLICATE_KEY = 11000;
+	
+	private static final double[] LAND_SIZE_BOUNDS = {5, 10, 25, 50, 100, 250};
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	public void recordSignup(UserEntity user) {
+		try {
+			Update update = new Update().inc("farmerCount", 1).inc("landSizeBuckets." + landSizeBucket(user.getLandSize()), 1);
+			if (user.isCreditScoreVerified()) {
+				update.inc("scoredCount", 1).inc("creditScoreSum", user.getCreditScore());
+			}
+			applyToFarmerRollups(user, update);
+		}
+		catch (Exception e) {
+			log.error("Error while updating rollups for signup of {}", user.getName(), e);
+		}
+	}
+	
+	//undoes recordSignup for a deleted farmer; failures propagate so the cascade job can retry the step
+	public void recordRemoval(UserEntity user) {
+		Update update = new Update().inc("farmerCount", -1).inc("landSizeBuckets." + landSizeBucket(user.getLandSize()), -1);
+		if (user.isCreditScoreVerified()) {
+			update.inc("scoredCount", -1).inc("creditScoreSum", -user.getCreditScore());
+		}
+		applyToFarmerRollups(user, update);
+	}
+	
+	//bulk-import variant: deltas are summed per rollup in memory and written in one bulk operation
+	public void recordSignups(List<UserEntity> users) {
+		try {
+			Map<String, Map<String, Double>> deltas = new LinkedHashMap<>();
+			Map<String, String[]> keys = new HashMap<>();
+			for (UserEntity user : users) {
+				addSignupDelta(deltas, keys, GLOBAL, null, user);
+				if (user.getRegion() != null) {
+					addSignupDelta(deltas, keys, REGION, user.getRegion(), user);
+				}
+				if (user.getCropTypes() != null) {
+					addSignupDelta(deltas, keys, CROP, user.getCropTypes(), user);
+				}
+			}
+			if (deltas.isEmpty()) {
+				return;
+			}
+			BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PortfolioRollup.class);
+			for (Map.Entry<String, Map<String, Double>> entry : deltas.entrySet()) {
+				String[] key = keys.get(entry.getKey());
+				Update update = new Update();
+				for (Map.Entry<String, Double> field : entry.getValue().entrySet()) {
+					if (field.getKey().equals("creditScoreSum")) {
+						update.inc(field.getKey(), field.getValue());
+					}
+					else {
+						update.inc(field.getKey(), field.getValue().longValue());
+					}
+				}
+				bulk.upsert(byId(key[0], key[1]), stamped(update, key[0], key[1]));
+			}
+			bulk.execute();
+		}
+		catch (Exception e) {
+			log.error("Error while updating rollups for {} imported farmers", users.size(), e);
+		}
+	}
+	
+	//Update.inc replaces an earlier $inc on the same field, so the sums are accumulated here first
+	private static void addSignupDelta(Map<String, Map<String, Double>> deltas, Map<String, String[]> keys, String dimension, String value, UserEntity user) {
+		String id = rollupId(dimension, value);
+		Map<String, Double> delta = deltas.computeIfAbsent(id, k -> new HashMap<>());
+		keys.putIfAbsent(id, new String[]{dimension, value});
+		delta.merge("farmerCount", 1.0, Double::sum);
+		delta.merge("landSizeBuckets." + landSizeBucket(user.getLandSize()), 1.0, Double::sum);
+		if (user.isCreditScoreVerified()) {
+			delta.merge("scoredCount", 1.0, Double::sum);
+			delta.merge("creditScoreSum", (double) user.getCreditScore(), Double::sum);
+		}
+	}
+	
+	public void recordScoreChange(UserEntity user, boolean wasScored, float previousScore) {
+		try {
+			Update update = new Update();
+			if (wasScored) {
+				update.inc("creditScoreSum", (double) user.getCreditScore() - previousScore);
+			}
+			else {
+				update.inc("scoredCount", 1).inc("creditScoreSum", user.getCreditScore());
+			}
+			applyToFarmerRollups(user, update);
+		}
+		catch (Exception e) {
+			log.error("Error while updating rollups for score of {}", user.getName(), e);
+		}
+	}
+	
+	//batch variant for the re-scoring job; previousScores holds the old score of farmers that were already scored
+	public void recordScoreChanges(List<UserEntity> users, Map<ObjectId, Float> previousScores) {
+		try {
+			Map<String, Map<String, Double>> deltas = new LinkedHashMap<>();
+			Map<String, String[]> keys = new HashMap<>();
+			for (UserEntity user : users) {
+				Float previous = previousScores.get(user.getId());
+				addScoreDelta(deltas, keys, GLOBAL, null, user, previous);
+				if (user.getRegion() != null) {
+					addScoreDelta(deltas, keys, REGION, user.getRegion(), user, previous);
+				}
+				if (user.getCropTypes() != null) {
+					addScoreDelta(deltas, keys, CROP, user.getCropTypes(), user, previous);
+				}
+			}
+			if (deltas.isEmpty()) {
+				return;
+			}
+			BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PortfolioRollup.class);
+			for (Map.Entry<String, Map<String, Double>> entry : deltas.entrySet()) {
+				String[] key = keys.get(entry.getKey());
+				Update update = new Update().inc("creditScoreSum", entry.getValue().get("creditScoreSum"));
+				Double scored = entry.getValue().get("scoredCount");
+				if (scored != null) {
+					update.inc("scoredCount", scored.longValue());
+				}
+				bulk.upsert(byId(key[0], key[1]), stamped(update, key[0], key[1]));
+			}
+			bulk.execute();
+		}
+		catch (Exception e) {
+			log.error("Error while updating rollups for {} re-scored farmers", users.size(), e);
+		}
+	}
+	
+	private static void addScoreDelta(Map<String, Map<String, Double>> deltas, Map<String, String[]> keys, String dimension, String value, UserEntity user, Float previousScore) {
+		String id = rollupId(dimension, value);
+		Map<String, Double> delta = deltas.computeIfAbsent(id, k -> new HashMap<>());
+		keys.putIfAbsent(id, new String[]{dimension, value});
+		if (previousScore != null) {
+			delta.merge("creditScoreSum", (double) user.getCreditScore() - previousScore, Double::sum);
+		}
+		else {
+			delta.merge("scoredCount", 1.0, Double::sum);
+			delta.merge("creditScoreSum", (double) user.getCreditScore(), Double::sum);
+		}
+	}
+	
+	public void recordApproval(String bankName) {
+		try {
+			BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PortfolioRollup.class);
+			bulk.upsert(byId(BANK, bankName), stamped(new Update().inc("loansApproved", 1), BANK, bankName));
+			bulk.upsert(byId(GLOBAL, null), stamped(new Update().inc("loansApproved", 1), GLOBAL, null));
+			bulk.execute();
+		}
+		catch (Exception e) {
+			log.error("Error while updating rollups for approval by {}", bankName, e);
+		}
+	}
+	
+	public List<PortfolioRollup> getRollups() {
+		return mongoTemplate.findAll(PortfolioRollup.class);
+	}
+	
+	public Map<String, Object> getDashboard() {
+		Map<String, Object> dashboard = new LinkedHashMap<>();
+		Map<String, PortfolioRollup> regions = new LinkedHashMap<>();
+		Map<String, PortfolioRollup> crops = new LinkedHashMap<>();
+		Map<String, PortfolioRollup> banks = new LinkedHashMap<>();
+		PortfolioRollup global = null;
+		for (PortfolioRollup rollup : getRollups()) {
+			switch (rollup.getDimension()) {
+				case GLOBAL:
+					global = rollup;
+					break;
+				case REGION:
+					regions.put(rollup.getValue(), rollup);
+					break;
+				case CROP:
+					crops.put(rollup.getValue(), rollup);
+					break;
+				case BANK:
+					banks.put(rollup.getValue(), rollup);
+					break;
+				default:
+					break;
+			}
+		}
+		long farmers = global != null ? global.getFarmerCount() : 0;
+		Map<String, Double> approvalRates = new LinkedHashMap<>();
+		for (Map.Entry<String, PortfolioRollup> bank : banks.entrySet()) {
+			long approved = bank.getValue().getLoansApproved();
+			approvalRates.put(bank.getKey(), farmers == 0 ? 0 : (double) approved / farmers);
+		}
+		dashboard.put("global", global);
+		dashboard.put("byRegion", regions);
+		dashboard.put("byCrop", crops);
+		dashboard.put("approvalRateByBank", approvalRates);
+		return dashboard;
+	}
+	
+	//Periodic full rebuild from USERS and BANKS; the only place that scans the collections
+	@Scheduled(cron = "${analytics.reconcile-cron:0 0 3 * * *}")
+	public void reconcile() {
+		try {
+			long start = System.currentTimeMillis();
+			//the stored rollups are read before the aggregation, and each correction below only applies while the rollup still
+			//carries the updatedAt read here: a live $inc landing during the run is then neither subtracted as drift nor
+			//counted twice, and that rollup is simply left for the next run
+			Map<String, Document> current = new HashMap<>();
+			for (Document rollup : mongoTemplate.findAll(Document.class, "PORTFOLIO_ROLLUPS")) {
+				current.put(rollup.getString("_id"), rollup);
+			}
+			Map<String, Document> rebuilt = new HashMap<>();
+			rebuild(rebuilt, GLOBAL, null);
+			rebuild(rebuilt, REGION, "$region");
+			rebuild(rebuilt, CROP, "$cropTypes");
+			List<Document> bankCounts = mongoTemplate.getCollection("BANKS").aggregate(Arrays.asList(
+					new Document("$project", new Document("bankName", 1)
+							.append("approved", new Document("$size", new Document("$ifNull", Arrays.asList("$loansApproved", new ArrayList<>())))))
+			)).into(new ArrayList<>());
+			long totalApproved = 0;
+			for (Document bank : bankCounts) {
+				long approved = ((Number) bank.get("approved")).longValue();
+				totalApproved += approved;
+				rollupDocument(rebuilt, BANK, bank.getString("bankName")).append("loansApproved", approved);
+			}
+			rollupDocument(rebuilt, GLOBAL, null).append("loansApproved", totalApproved);
+			
+			BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PortfolioRollup.class);
+			int corrected = 0;
+			for (Map.Entry<String, Document> entry : rebuilt.entrySet()) {
+				Document target = entry.getValue();
+				Document stored = current.get(entry.getKey());
+				Update correction = correction(target, stored);
+				if (!correction.getUpdateObject().isEmpty()) {
+					//a rollup a live update touched or created since it was read no longer matches, so the upsert fails on its _id
+					Criteria unchanged = Criteria.where("_id").is(entry.getKey()).and("updatedAt").is(stored != null ? stored.get("updatedAt") : null);
+					bulk.upsert(new Query(unchanged), stamped(correction, target.getString("dimension"), target.getString("value")));
+					corrected++;
+				}
+			}
+			//rollups nothing maps to any more go, unless a live update touched them after they were read
+			for (Document rollup : current.values()) {
+				if (!rebuilt.containsKey(rollup.getString("_id"))) {
+					bulk.remove(new Query(Criteria.where("_id").is(rollup.getString("_id")).and("updatedAt").is(rollup.get("updatedAt"))));
+					corrected++;
+				}
+			}
+			int skipped = 0;
+			if (corrected > 0) {
+				try {
+					bulk.execute();
+				}
+				catch (BulkOperationException e) {
+					for (BulkWriteError error : e.getErrors()) {
+						if (error.getCode() != DUPLICATE_KEY) {
+							throw e;
+						}
+					}
+					skipped = e.getErrors().size();
+				}
+			}
+			log.info("Reconciled {} portfolio rollups in {} ms, {} corrected, {} left for the next run as live updates created them meanwhile",
+					rebuilt.size(), System.currentTimeMillis() - start, corrected - skipped, skipped);
+		}
+		catch (Exception e) {
+			log.error("Error while reconciling portfolio rollups", e);
+		}
+	}
+	
+	//$inc that moves the stored rollup onto the rebuilt counts; empty when they already agree
+	private static Update correction(Document target, Document stored) {
+		Update update = new Update();
+		for (String field : Arrays.asList("farmerCount", "scoredCount", "loansApproved")) {
+			long diff = number(target, field).longValue() - number(stored, field).longValue();
+			if (diff != 0) {
+				update.inc(field, diff);
+			}
+		}
+		double scoreDiff = number(target, "creditScoreSum").doubleValue() - number(stored, "creditScoreSum").doubleValue();
+		if (Math.abs(scoreDiff) > 1e-6) {
+			update.inc("creditScoreSum", scoreDiff);
+		}
+		Document targetBuckets = subDocument(target, "landSizeBuckets");
+		Document storedBuckets = subDocument(stored, "landSizeBuckets");
+		Set<String> buckets = new HashSet<>(targetBuckets.keySet());
+		buckets.addAll(storedBuckets.keySet());
+		for (String bucket : buckets) {
+			long diff = number(targetBuckets, bucket).longValue() - number(storedBuckets, bucket).longValue();
+			if (diff != 0) {
+				update.inc("landSizeBuckets." + bucket, diff);
+			}
+		}
+		return update;
+	}
+	
+	private static Number number(Document document, String field) {
+		Object value = document != null ? document.get(field) : null;
+		return value instanceof Number ? (Number) value : 0;
+	}
+	
+	private static Document subDocument(Document document, String field) {
+		Object value = document != null ? document.get(field) : null;
+		return value instanceof Document ? (Document) value : new Document();
+	}
+	
+	private void rebuild(Map<String, Document> rebuilt, String dimension, String groupField) {
+		List<String> boundaries = new ArrayList<>();
+		List<Object> bucketBounds = new ArrayList<>();
+		bucketBounds.add(Double.NEGATIVE_INFINITY);
+		for (double bound : LAND_SIZE_BOUNDS) {
+			bucketBounds.add(bound);
+		}
+		bucketBounds.add(Double.POSITIVE_INFINITY);
+		Document group = new Document("_id", groupField)
+				.append("farmerCount", new Document("$sum", 1))
+				.append("scoredCount", new Document("$sum", new Document("$cond", Arrays.asList("$isCreditScoreVerified", 1, 0))))
+				.append("creditScoreSum", new Document("$sum", new Document("$cond", Arrays.asList("$isCreditScoreVerified", "$creditScore", 0))));
+		for (int i = 0; i <= LAND_SIZE_BOUNDS.length; i++) {
+			String bucket = bucketName(i);
+			boundaries.add(bucket);
+			Document inBucket = new Document("$and", Arrays.asList(
+					new Document("$gte", Arrays.asList("$landSize", bucketBounds.get(i))),
+					new Document("$lt", Arrays.asList("$landSize", bucketBounds.get(i + 1)))));
+			group.append("land_" + i, new Document("$sum", new Document("$cond", Arrays.asList(inBucket, 1, 0))));
+		}
+		//USERS also holds the operator account, which live updates never count
+		Document farmersOnly = new Document("$match", new Document("roles", "User"));
+		for (Document row : mongoTemplate.getCollection("USERS").aggregate(Arrays.asList(farmersOnly, new Document("$group", group))).allowDiskUse(true)) {
+			Object key = row.get("_id");
+			if (groupField != null && key == null) {
+				continue;
+			}
+			Document rollup = rollupDocument(rebuilt, dimension, key != null ? key.toString() : null)
+					.append("farmerCount", ((Number) row.get("farmerCount")).longValue())
+					.append("scoredCount", ((Number) row.get("scoredCount")).longValue())
+					.append("creditScoreSum", ((Number) row.get("creditScoreSum")).doubleValue());
+			Document buckets = new Document();
+			for (int i = 0; i < boundaries.size(); i++) {
+				long count = ((Number) row.get("land_" + i)).longValue();
+				if (count > 0) {
+					buckets.append(boundaries.get(i), count);
+				}
+			}
+			rollup.append("landSizeBuckets", buckets);
+		}
+	}
+	
+	private Document rollupDocument(Map<String, Document> rebuilt, String dimension, String value) {
+		return rebuilt.computeIfAbsent(rollupId(dimension, value), id -> new Document("_id", id)
+				.append("dimension", dimension)
+				.append("value", value)
+				.append("farmerCount", 0L)
+				.append("scoredCount", 0L)
+				.append("creditScoreSum", 0.0)
+				.append("loansApproved", 0L)
+				.append("landSizeBuckets", new Document())
+				.append("updatedAt", Instant.now()));
+	}
+	
+	private void applyToFarmerRollups(UserEntity user, Update update) {
+		BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PortfolioRollup.class);
+		bulk.upsert(byId(GLOBAL, null), stamped(copy(update), GLOBAL, null));
+		if (user.getRegion() != null) {
+			bulk.upsert(byId(REGION, user.getRegion()), stamped(copy(update), REGION, user.getRegion()));
+		}
+		if (user.getCropTypes() != null) {
+			bulk.upsert(byId(CROP, user.getCropTypes()), stamped(copy(update), CROP, user.getCropTypes()));
+		}
+		bulk.execute();
+	}
+	
+	private static Update copy(Update update) {
+		return Update.fromDocument(new Document(update.getUpdateObject()));
+	}
+	
+	private static Update stamped(Update update, String dimension, String value) {
+		return update.set("updatedAt", Instant.now())
+				.setOnInsert("dimension", dimension)
+				.setOnInsert("value", value);
+	}
+	
+	private static Query byId(String dimension, String value) {
+		return new Query(Criteria.where("_id").is(rollupId(dimension, value)));
+	}
+	
+	public static String rollupId(String dimension, String value) {
+		return value == null ? dimension : dimension + ":" + value;
+	}
+	
+	public static String landSizeBucket(float landSize) {
+		for (int i = 0; i < LAND_SIZE_BOUNDS.length; i++) {
+			if (landSize < LAND_SIZE_BOUNDS[i]) {
+				return bucketName(i);
+			}
+		}
+		return bucketName(LAND_SIZE_BOUNDS.length);
+	}
+	
+	private static String bucketName(int index) {
+		if (index == 0) {
+			return "lt" + (int) LAND_SIZE_BOUNDS[0];
+		}
+		if (index == LAND_SIZE_BOUNDS.length) {
+			return "gte" + (int) LAND_SIZE_BOUNDS[index - 1];
+		}
+		return (int) LAND_SIZE_BOUNDS[index - 1] + "to" + (int) LAND_SIZE_BOUNDS[index];
+	}
+}
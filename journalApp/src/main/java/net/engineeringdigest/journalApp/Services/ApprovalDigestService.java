@@ -0,0 +1,163 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collapses loan-approval emails per farmer. The first approval opens a window of
+ * notifications.digest.window-seconds; further approvals by other banks join it, and when the window
+ * expires (or notifications.digest.max-banks banks have approved) the farmer gets one email: the usual
+ * approval alert for a single bank, a digest listing every bank otherwise. Mail goes out on a dedicated
+ * sender thread so neither the approving request nor the scheduler waits on SMTP. Time comes from the
+ * injected Clock, so window handling can be driven by a fixed clock in tests. A window of 0 sends every
+ * approval immediately, as before.
+ */
+@Slf4j
+@Service
+public class ApprovalDigestService implements QueueDepthSource {
+	
+	@Autowired
+	private EmailService emailService;
+	
+	@Autowired
+	private Clock clock;
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	@Value("${notifications.digest.window-seconds:120}")
+	private long windowSeconds;
+	
+	@Value("${notifications.digest.max-banks:10}")
+	private int maxBanks;
+	
+	//keyed by farmer name; a farmer's buffer is only touched inside compute/computeIfPresent
+	private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+	
+	private ThreadPoolExecutor sender;
+	
+	private static class Pending {
+		final Instant openedAt;
+		final Set<String> bankNames = new LinkedHashSet<>();
+		UserEntity farmer;
+		
+		Pending(Instant openedAt) {
+			this.openedAt = openedAt;
+		}
+	}
+	
+	@PostConstruct
+	public void setup() {
+		sender = (ThreadPoolExecutor) Executors.newFixedThreadPool(1, r -> {
+			Thread thread = new Thread(r, "approval-mail");
+			thread.setDaemon(true);
+			return thread;
+		});
+		meterRegistry.gaugeMapSize("notifications.approval.windows", Collections.emptyList(), pending);
+	}
+	
+	//open windows are sent straight away on shutdown rather than dropped
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		for (String name : new ArrayList<>(pending.keySet())) {
+			Pending open = pending.remove(name);
+			if (open != null) {
+				dispatch(open);
+			}
+		}
+		sender.shutdown();
+		sender.awaitTermination(30, TimeUnit.SECONDS);
+	}
+	
+	public void approved(UserEntity farmer, String bankName) {
+		meterRegistry.counter("notifications.approval.events").increment();
+		if (windowSeconds <= 0) {
+			Pending single = new Pending(clock.instant());
+			single.farmer = farmer;
+			single.bankNames.add(bankName);
+			dispatch(single);
+			return;
+		}
+		Pending[] full = new Pending[1];
+		pending.compute(farmer.getName(), (name, current) -> {
+			if (current == null) {
+				current = new Pending(clock.instant());
+			}
+			current.farmer = farmer;
+			current.bankNames.add(bankName);
+			if (current.bankNames.size() >= maxBanks) {
+				full[0] = current;
+				return null;
+			}
+			return current;
+		});
+		if (full[0] != null) {
+			dispatch(full[0]);
+		}
+	}
+	
+	@Scheduled(fixedDelayString = "${notifications.digest.tick-ms:1000}")
+	public void flushExpired() {
+		Instant cutoff = clock.instant().minusSeconds(windowSeconds);
+		for (String name : pending.keySet()) {
+			Pending[] expired = new Pending[1];
+			pending.computeIfPresent(name, (key, current) -> {
+				if (current.openedAt.isAfter(cutoff)) {
+					return current;
+				}
+				expired[0] = current;
+				return null;
+			});
+			if (expired[0] != null) {
+				dispatch(expired[0]);
+			}
+		}
+	}
+	
+	@Override
+	public String queueName() {
+		return "approval-digest";
+	}
+	
+	//only mail waiting on the sender is backlog; open windows are deliberately held for window-seconds
+	//and are tracked by the notifications.approval.windows gauge instead
+	@Override
+	public int queueDepth() {
+		return sender.getQueue().size();
+	}
+	
+	private void dispatch(Pending closed) {
+		UserEntity farmer = closed.farmer;
+		List<String> bankNames = new ArrayList<>(closed.bankNames);
+		sender.execute(() -> {
+			if (bankNames.size() == 1) {
+				emailService.sendAlert(farmer, bankNames.get(0));
+			}
+			else {
+				emailService.sendDigest(farmer, bankNames);
+			}
+			meterRegistry.counter("notifications.approval.emails", "type", bankNames.size() == 1 ? "single" : "digest").increment();
+		});
+	}
+}
@@ -1,27 +1,34 @@
 package net.engineeringdigest.journalApp.Services;
 
-import net.engineeringdigest.journalApp.Entities.BankEntity;
-import net.engineeringdigest.journalApp.Repositories.BankRepositary;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service("bankDetailsServiceImpl")
 public class BankDetailsServiceImpl implements BankDetailsService {
 
     @Autowired
-    private BankRepositary bankRepository;
+    private MongoTemplate mongoTemplate;
 
+    //credentials are read fresh from BANKS on every call, without resolving the loansApproved DBRefs
     @Override
     public UserDetails loadUserByUsername(String bankName) throws UsernameNotFoundException {
-        BankEntity bank = bankRepository.findByBankName(bankName);
+        Query query = new Query(Criteria.where("bankName").is(bankName));
+        query.fields().include("bankName").include("bankCredentials").include("roles");
+        Document bank = mongoTemplate.findOne(query, Document.class, ResourceVersionService.BANKS);
         if (bank != null) {
+            List<String> roles = bank.getList("roles", String.class);
             UserDetails userDetails = org.springframework.security.core.userdetails.User.builder()
-                    .username(bank.getBankName())
-                    .password(bank.getBankCredentials())
-                    .roles(bank.getRoles().toArray(new String[0]))
+                    .username(bank.getString("bankName"))
+                    .password(bank.getString("bankCredentials"))
+                    .roles(roles != null ? roles.toArray(new String[0]) : new String[0])
                     .build();
             return userDetails;
         }
@@ -7,10 +7,15 @@ import net.engineeringdigest.journalApp.Entities.UserEntity;
 import net.engineeringdigest.journalApp.Repositories.BankRepositary;
 import net.engineeringdigest.journalApp.Repositories.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 @Slf4j
@@ -24,16 +29,34 @@ public class BankService {
 	private UserRepository userRepository;
 	
 	@Autowired
-	private EmailService emailService;
+	private ApprovalDigestService approvalDigestService;
+	
+	@Autowired
+	private UserService userService;
 	
 	@Autowired
 	public PasswordEncoder passwordEncoder;
 	
+	@Autowired
+	private AnalyticsService analyticsService;
+	
+	@Autowired
+	private LoanHistoryService loanHistoryService;
+	
+	@Autowired
+	private ProfileCache profileCache;
+	
+	@Autowired
+	private UserEventService userEventService;
+	
+	@Autowired
+	private ResourceVersionService resourceVersionService;
+	
 	
 	
 	public List<UserEntity> getAllFarmers() {
 		try{
-			List<UserEntity> all = userRepository.findAll();
+			List<UserEntity> all = userRepository.findByRoles("User");
 			return all;
 		}
 		catch (Exception e){
@@ -45,12 +68,25 @@ public class BankService {
 	public void approveLoan(String loggedInBank, UserEntity farmer) {
 		try {
 			BankEntity currBank = bankRepositary.findByBankName(loggedInBank);
-			List<UserEntity> loansApproved = currBank.getLoansApproved();
-			farmer.setLoanApproved(true);
-			loansApproved.add(farmer);
-			List<String> BanksAdded=farmer.getHistory();
-			BanksAdded.add(loggedInBank);
-			emailService.sendAlert(farmer,loggedInBank);
+			UserEntity storedFarmer = userRepository.findByName(farmer.getName());
+			if (storedFarmer == null) {
+				throw new IllegalArgumentException("Farmer not found: " + farmer.getName());
+			}
+			storedFarmer = userService.update("approveLoan", storedFarmer, current -> {
+				current.setLoanApproved(true);
+				return true;
+			});
+			if (storedFarmer == null) {
+				throw new IllegalArgumentException("Farmer not found: " + farmer.getName());
+			}
+			//$push instead of saving the loaded bank, so rules or weights changed meanwhile are not overwritten
+			resourceVersionService.updateFirst(new Query(Criteria.where("_id").is(currBank.getId())),
+					new Update().push("loansApproved", storedFarmer).set("lastModified", Instant.now()), BankEntity.class);
+			profileCache.evictBank(loggedInBank);
+			loanHistoryService.record(storedFarmer, currBank, LoanHistoryService.APPROVED);
+			analyticsService.recordApproval(loggedInBank);
+			approvalDigestService.approved(storedFarmer,loggedInBank);
+			userEventService.publish(storedFarmer.getName(), UserEventService.LOAN_APPROVED, Collections.singletonMap("bank", loggedInBank));
 		}
 		catch (Exception e){
 			throw e;
@@ -62,6 +98,7 @@ public class BankService {
 			bankEntity.setBankCredentials(passwordEncoder.encode(bankEntity.getBankCredentials()));
 			bankEntity.setRoles(Arrays.asList("BANK"));
 			bankRepositary.save(bankEntity);
+			profileCache.evictBank(bankEntity.getBankName());
 			return true;
 		}
 		catch (Exception e){
@@ -0,0 +1,416 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Streams farmer rows (CSV with a header line, or NDJSON) from the request body and ingests them in
+ * batches: rows are reduced to the importable profile fields, validated, checked for duplicates inside the batch and against USERS with a single
+ * $in query, BCrypt-hashed in parallel on a bounded pool and written with one unordered insertMany.
+ * Only the current batch is held in memory.
+ */
+@Slf4j
+@Service
+public class BulkImportService implements QueueDepthSource {
+	
+	private static final int DUPLICATE_KEY = 11000;
+	
+	private static final Set<String> IMPORTABLE_FIELDS = new HashSet<>(Arrays.asList("name", "password", "phoneNo", "email",
+			"year", "country", "region", "landSize", "soilType", "pastYield", "cropTypes", "annualIncome", "soilPH",
+			"nitrogenLevel", "organicMatterLevel", "landQualityScore", "pastRainfall", "avgTemperature"));
+	
+	private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {
+	};
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Autowired
+	private PasswordEncoder passwordEncoder;
+	
+	@Autowired
+	private ObjectMapper objectMapper;
+	
+	@Autowired
+	private AnalyticsService analyticsService;
+	
+	@Autowired
+	private ResourceVersionService resourceVersionService;
+	
+	@Autowired
+	private EligibilityService eligibilityService;
+	
+	@Autowired
+	private FarmerColumnStore farmerColumnStore;
+	
+	@Value("${import.batch-size:1000}")
+	private int batchSize;
+	
+	@Value("${import.hash-threads:0}")
+	private int hashThreads;
+	
+	@Value("${import.max-reported-failures:1000}")
+	private int maxReportedFailures;
+	
+	private ThreadPoolExecutor hashPool;
+	
+	@PostConstruct
+	public void setup() {
+		int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+		hashPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "import-hash");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		hashPool.shutdownNow();
+	}
+	
+	@Override
+	public String queueName() {
+		return "import-hash";
+	}
+	
+	@Override
+	public int queueDepth() {
+		return hashPool.getQueue().size();
+	}
+	
+	public Map<String, Object> importFarmers(InputStream in, boolean ndjson) throws IOException {
+		ImportReport report = new ImportReport();
+		List<Row> batch = new ArrayList<>(batchSize);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		if (ndjson) {
+			//one object per physical line, so a malformed line is reported under its own number and skipped
+			String text;
+			long line = 0;
+			while ((text = reader.readLine()) != null) {
+				line++;
+				if (text.trim().isEmpty()) {
+					continue;
+				}
+				Map<String, Object> fields;
+				try {
+					fields = objectMapper.readValue(text, MAP_TYPE);
+				}
+				catch (JsonProcessingException e) {
+					report.total++;
+					report.fail(line, null, "Malformed JSON: " + e.getOriginalMessage());
+					continue;
+				}
+				if (fields == null) {
+					report.total++;
+					report.fail(line, null, "Malformed JSON: expected an object");
+					continue;
+				}
+				batch.add(new Row(line, fields));
+				if (batch.size() == batchSize) {
+					processBatch(batch, report);
+					batch = new ArrayList<>(batchSize);
+				}
+			}
+		}
+		else {
+			String headerLine = reader.readLine();
+			if (headerLine == null) {
+				return report.toMap();
+			}
+			List<String> header = parseCsvLine(headerLine);
+			String text;
+			long line = 1;
+			while ((text = reader.readLine()) != null) {
+				line++;
+				if (text.trim().isEmpty()) {
+					continue;
+				}
+				List<String> values = parseCsvLine(text);
+				Map<String, Object> fields = new LinkedHashMap<>();
+				for (int i = 0; i < header.size() && i < values.size(); i++) {
+					if (!values.get(i).isEmpty()) {
+						fields.put(header.get(i).trim(), values.get(i));
+					}
+				}
+				batch.add(new Row(line, fields));
+				if (batch.size() == batchSize) {
+					processBatch(batch, report);
+					batch = new ArrayList<>(batchSize);
+				}
+			}
+		}
+		if (!batch.isEmpty()) {
+			processBatch(batch, report);
+		}
+		return report.toMap();
+	}
+	
+	private void processBatch(List<Row> rows, ImportReport report) {
+		report.total += rows.size();
+		List<Row> valid = new ArrayList<>(rows.size());
+		Set<String> names = new HashSet<>();
+		Set<String> emails = new HashSet<>();
+		Set<String> phones = new HashSet<>();
+		for (Row row : rows) {
+			try {
+				//scores, approval, OTP and verification flags are set by the app, never by an import
+				row.fields.keySet().retainAll(IMPORTABLE_FIELDS);
+				UserEntity user = objectMapper.convertValue(row.fields, UserEntity.class);
+				String problem = validate(user);
+				if (problem != null) {
+					report.fail(row.line, user.getName(), problem);
+				}
+				else if (names.contains(user.getName()) || emails.contains(user.getEmail())
+						|| (user.getPhoneNo() != null && phones.contains(user.getPhoneNo()))) {
+					report.duplicate(row.line, user.getName(), "Duplicate of an earlier row in this import");
+				}
+				else {
+					//only accepted rows claim their keys, so a rejected row does not block a later one
+					names.add(user.getName());
+					emails.add(user.getEmail());
+					if (user.getPhoneNo() != null) {
+						phones.add(user.getPhoneNo());
+					}
+					row.user = user;
+					valid.add(row);
+				}
+			}
+			catch (IllegalArgumentException e) {
+				report.fail(row.line, String.valueOf(row.fields.get("name")), "Invalid field value: " + e.getMessage());
+			}
+		}
+		if (valid.isEmpty()) {
+			return;
+		}
+		
+		Set<String> existing = existingKeys(names, emails, phones);
+		List<Row> toInsert = new ArrayList<>(valid.size());
+		for (Row row : valid) {
+			UserEntity user = row.user;
+			if (existing.contains("n:" + user.getName()) || existing.contains("e:" + user.getEmail())
+					|| (user.getPhoneNo() != null && existing.contains("p:" + user.getPhoneNo()))) {
+				report.duplicate(row.line, user.getName(), "Username, email or phone number is already registered");
+			}
+			else {
+				toInsert.add(row);
+			}
+		}
+		if (toInsert.isEmpty()) {
+			return;
+		}
+		
+		List<Future<String>> hashes = new ArrayList<>(toInsert.size());
+		for (Row row : toInsert) {
+			String raw = row.user.getPassword();
+			hashes.add(hashPool.submit(() -> passwordEncoder.encode(raw)));
+		}
+		List<Document> documents = new ArrayList<>(toInsert.size());
+		for (int i = 0; i < toInsert.size(); i++) {
+			UserEntity user = toInsert.get(i).user;
+			try {
+				user.setPassword(hashes.get(i).get());
+			}
+			catch (Exception e) {
+				throw new IllegalStateException("Password hashing failed", e);
+			}
+			user.setRoles(Arrays.asList("User"));
+			user.setVersion(0L);
+			//the converter skips auditing, so the timestamp repository saves would set is set here
+			user.setLastModified(Instant.now());
+			Document document = new Document();
+			mongoTemplate.getConverter().write(user, document);
+			documents.add(document);
+		}
+		
+		boolean[] failed = new boolean[documents.size()];
+		try {
+			mongoTemplate.getCollection("USERS").insertMany(documents, new InsertManyOptions().ordered(false));
+		}
+		catch (MongoBulkWriteException e) {
+			for (BulkWriteError error : e.getWriteErrors()) {
+				Row row = toInsert.get(error.getIndex());
+				failed[error.getIndex()] = true;
+				if (error.getCode() == DUPLICATE_KEY) {
+					report.duplicate(row.line, row.user.getName(), "Duplicate key: " + error.getMessage());
+				}
+				else {
+					report.fail(row.line, row.user.getName(), error.getMessage());
+				}
+			}
+		}
+		List<UserEntity> inserted = new ArrayList<>(toInsert.size());
+		for (int i = 0; i < toInsert.size(); i++) {
+			if (!failed[i]) {
+				UserEntity user = toInsert.get(i).user;
+				user.setId(documents.get(i).getObjectId("_id"));
+				inserted.add(user);
+			}
+		}
+		report.inserted += inserted.size();
+		if (!inserted.isEmpty()) {
+			analyticsService.recordSignups(inserted);
+			eligibilityService.reevaluate(inserted);
+			//insertMany publishes no mapping events, so the columnar snapshot is fed here
+			farmerColumnStore.upsertAll(inserted);
+			resourceVersionService.bump(ResourceVersionService.USERS);
+		}
+	}
+	
+	private Set<String> existingKeys(Set<String> names, Set<String> emails, Set<String> phones) {
+		List<Criteria> any = new ArrayList<>();
+		any.add(Criteria.where("name").in(names));
+		any.add(Criteria.where("email").in(emails));
+		if (!phones.isEmpty()) {
+			any.add(Criteria.where("phoneNo").in(phones));
+		}
+		Query query = new Query(new Criteria().orOperator(any.toArray(new Criteria[0])));
+		query.fields().include("name").include("email").include("phoneNo");
+		Set<String> keys = new HashSet<>();
+		for (Document doc : mongoTemplate.find(query, Document.class, "USERS")) {
+			keys.add("n:" + doc.getString("name"));
+			keys.add("e:" + doc.getString("email"));
+			if (doc.getString("phoneNo") != null) {
+				keys.add("p:" + doc.getString("phoneNo"));
+			}
+		}
+		return keys;
+	}
+	
+	private static String validate(UserEntity user) {
+		if (isBlank(user.getName())) {
+			return "name is required";
+		}
+		if (isBlank(user.getPassword())) {
+			return "password is required";
+		}
+		if (isBlank(user.getEmail()) || !user.getEmail().contains("@")) {
+			return "a valid email is required";
+		}
+		return null;
+	}
+	
+	private static boolean isBlank(String value) {
+		return value == null || value.trim().isEmpty();
+	}
+	
+	//RFC 4180 style: comma separated, double quotes around fields, "" for a literal quote (no embedded newlines)
+	static List<String> parseCsvLine(String line) {
+		List<String> values = new ArrayList<>();
+		StringBuilder current = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"') {
+					if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+						current.append('"');
+						i++;
+					}
+					else {
+						quoted = false;
+					}
+				}
+				else {
+					current.append(c);
+				}
+			}
+			else if (c == '"') {
+				quoted = true;
+			}
+			else if (c == ',') {
+				values.add(current.toString());
+				current.setLength(0);
+			}
+			else {
+				current.append(c);
+			}
+		}
+		values.add(current.toString());
+		return values;
+	}
+	
+	private static class Row {
+		final long line;
+		final Map<String, Object> fields;
+		UserEntity user;
+		
+		Row(long line, Map<String, Object> fields) {
+			this.line = line;
+			this.fields = fields;
+		}
+	}
+	
+	private class ImportReport {
+		long total;
+		long inserted;
+		long failed;
+		long duplicates;
+		final List<Map<String, Object>> failures = new ArrayList<>();
+		
+		void fail(long line, String name, String reason) {
+			failed++;
+			add(line, name, reason);
+		}
+		
+		void duplicate(long line, String name, String reason) {
+			duplicates++;
+			add(line, name, reason);
+		}
+		
+		private void add(long line, String name, String reason) {
+			if (failures.size() < maxReportedFailures) {
+				Map<String, Object> failure = new LinkedHashMap<>();
+				failure.put("line", line);
+				failure.put("name", name);
+				failure.put("reason", reason);
+				failures.add(failure);
+			}
+		}
+		
+		Map<String, Object> toMap() {
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("total", total);
+			result.put("inserted", inserted);
+			result.put("failed", failed);
+			result.put("duplicates", duplicates);
+			result.put("failures", failures);
+			result.put("failuresTruncated", failed + duplicates > failures.size());
+			return result;
+		}
+	}
+}
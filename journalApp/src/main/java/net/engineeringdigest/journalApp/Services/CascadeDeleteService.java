@@ -0,0 +1,397 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import com.mongodb.DBRef;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.CascadeJob;
+import net.engineeringdigest.journalApp.Entities.LoanHistoryBucket;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background clean-up after a farmer is deleted. UserService.deleteByUserName removes the USERS document
+ * and records a CascadeJob; this service then works through the job's steps on its own thread: $pull the
+ * farmer's DBRef out of BANKS.loansApproved in batches of cascade.batch-size banks (pausing
+ * cascade.pause-ms between batches), drop the loan history buckets, eligibility matches and score
+ * history, take the farmer out of the portfolio rollups, and clear the profile cache and column store.
+ * Progress is saved after every batch and step, so a job interrupted by a restart resumes where it
+ * stopped; jobs whose lease lapsed are picked up by any instance, and a failed job is retried after
+ * cascade.retry-backoff-ms, doubling per attempt, until cascade.max-attempts. A nightly compaction also
+ * removes references to farmers that vanished without a job, e.g. deleted before this existed.
+ */
+@Slf4j
+@Service
+public class CascadeDeleteService implements QueueDepthSource {
+	
+	private static final int STEP_BANKS = 0;
+	private static final int STEP_HISTORY = 1;
+	private static final int STEP_ELIGIBILITY = 2;
+	private static final int STEP_ROLLUPS = 3;
+	private static final int STEP_CACHES = 4;
+	private static final int STEP_SCORE_HISTORY = 5;
+	private static final int STEPS = 6;
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Autowired
+	private AnalyticsService analyticsService;
+	
+	@Autowired
+	private EligibilityService eligibilityService;
+	
+	@Autowired
+	private ScoreHistoryService scoreHistoryService;
+	
+	@Autowired
+	private ProfileCache profileCache;
+	
+	@Autowired
+	private FarmerColumnStore farmerColumnStore;
+	
+	@Autowired
+	private ResourceVersionService resourceVersionService;
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	@Value("${cascade.batch-size:200}")
+	private int batchSize;
+	
+	@Value("${cascade.pause-ms:50}")
+	private long pauseMs;
+	
+	@Value("${cascade.lease-seconds:300}")
+	private long leaseSeconds;
+	
+	@Value("${cascade.max-attempts:5}")
+	private int maxAttempts;
+	
+	@Value("${cascade.retry-backoff-ms:30000}")
+	private long retryBackoffMs;
+	
+	private ThreadPoolExecutor worker;
+	
+	//set while a drain is queued or running, so bursts of deletions share one pass
+	private final AtomicBoolean draining = new AtomicBoolean();
+	
+	private final AtomicBoolean compacting = new AtomicBoolean();
+	
+	private final AtomicLong backlog = new AtomicLong();
+	
+	private volatile boolean stopRequested;
+	
+	@PostConstruct
+	public void setup() {
+		worker = (ThreadPoolExecutor) Executors.newFixedThreadPool(1, r -> {
+			Thread thread = new Thread(r, "cascade-delete");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		stopRequested = true;
+		worker.shutdownNow();
+	}
+	
+	//called after the USERS document is gone; only inserts the job, the work happens on the cascade thread
+	public void enqueue(UserEntity farmer) {
+		CascadeJob job = new CascadeJob();
+		job.setFarmerId(farmer.getId());
+		job.setFarmerName(farmer.getName());
+		job.setRegion(farmer.getRegion());
+		job.setCropTypes(farmer.getCropTypes());
+		job.setLandSize(farmer.getLandSize());
+		job.setCreditScoreVerified(farmer.isCreditScoreVerified());
+		job.setCreditScore(farmer.getCreditScore());
+		job.setStatus(CascadeJob.PENDING);
+		job.setCreatedAt(Instant.now());
+		job.setUpdatedAt(job.getCreatedAt());
+		mongoTemplate.insert(job);
+		backlog.incrementAndGet();
+		kick();
+	}
+	
+	//also picks up jobs left behind by a crashed instance
+	@Scheduled(fixedDelayString = "${cascade.poll-ms:30000}")
+	public void poll() {
+		kick();
+	}
+	
+	public List<CascadeJob> getJobs(String status, int limit) {
+		Query query = status != null ? new Query(Criteria.where("status").is(status)) : new Query();
+		return mongoTemplate.find(query.with(Sort.by(Sort.Direction.DESC, "createdAt")).limit(limit), CascadeJob.class);
+	}
+	
+	//returns false when a compaction is already running
+	public boolean compactAsync() {
+		if (compacting.get()) {
+			return false;
+		}
+		Thread thread = new Thread(this::compactBankReferences, "cascade-compaction");
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+	
+	@Scheduled(cron = "${cascade.compaction-cron:0 0 4 * * *}")
+	public void scheduledCompaction() {
+		compactAsync();
+	}
+	
+	@Override
+	public String queueName() {
+		return "cascade-delete";
+	}
+	
+	@Override
+	public int queueDepth() {
+		return (int) backlog.get();
+	}
+	
+	private void kick() {
+		if (draining.compareAndSet(false, true)) {
+			try {
+				worker.execute(this::drain);
+			}
+			catch (RejectedExecutionException e) {
+				draining.set(false);
+			}
+		}
+	}
+	
+	private void drain() {
+		try {
+			CascadeJob job;
+			while (!stopRequested && (job = claim()) != null) {
+				run(job);
+			}
+			backlog.set(mongoTemplate.count(new Query(Criteria.where("status").in(CascadeJob.PENDING, CascadeJob.RUNNING)), CascadeJob.class));
+		}
+		catch (Exception e) {
+			log.error("Error while draining cascade jobs", e);
+		}
+		finally {
+			draining.set(false);
+		}
+	}
+	
+	private CascadeJob claim() {
+		Instant now = Instant.now();
+		//$not $gt also matches jobs without nextAttemptAt
+		Query claimable = new Query(new Criteria().orOperator(
+				Criteria.where("status").is(CascadeJob.PENDING).and("nextAttemptAt").not().gt(now),
+				Criteria.where("status").is(CascadeJob.RUNNING).and("updatedAt").lt(now.minusSeconds(leaseSeconds))))
+				.with(Sort.by("createdAt"));
+		Update update = new Update().set("status", CascadeJob.RUNNING).set("updatedAt", now).inc("attempts", 1);
+		return mongoTemplate.findAndModify(claimable, update, FindAndModifyOptions.options().returnNew(true), CascadeJob.class);
+	}
+	
+	private void run(CascadeJob job) {
+		long start = System.nanoTime();
+		try {
+			while (job.getCompletedSteps() < STEPS && !stopRequested) {
+				runStep(job, job.getCompletedSteps());
+				job.setCompletedSteps(job.getCompletedSteps() + 1);
+				job.setUpdatedAt(Instant.now());
+				mongoTemplate.save(job);
+			}
+			if (job.getCompletedSteps() < STEPS) {
+				//stopping: hand the job back so the next start resumes it straight away
+				job.setStatus(CascadeJob.PENDING);
+				job.setNextAttemptAt(null);
+				mongoTemplate.save(job);
+				return;
+			}
+			job.setStatus(CascadeJob.DONE);
+			job.setCompletedAt(Instant.now());
+			job.setUpdatedAt(job.getCompletedAt());
+			job.setLastError(null);
+			mongoTemplate.save(job);
+			meterRegistry.timer("cascade.job.duration").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			log.info("Cascade for deleted farmer {} done: {} banks updated, {} history buckets, {} eligibility matches removed",
+					job.getFarmerName(), job.getBanksUpdated(), job.getHistoryBucketsRemoved(), job.getEligibilityRemoved());
+		}
+		catch (Exception e) {
+			job.setStatus(job.getAttempts() >= maxAttempts ? CascadeJob.FAILED : CascadeJob.PENDING);
+			job.setLastError(e.getClass().getSimpleName() + ": " + e.getMessage());
+			job.setUpdatedAt(Instant.now());
+			job.setNextAttemptAt(job.getUpdatedAt().plusMillis(retryBackoffMs << Math.min(job.getAttempts() - 1, 10)));
+			mongoTemplate.save(job);
+			meterRegistry.counter("cascade.job.failures").increment();
+			log.error("Cascade for deleted farmer {} failed at step {} (attempt {})", job.getFarmerName(), job.getCompletedSteps(), job.getAttempts(), e);
+		}
+	}
+	
+	private void runStep(CascadeJob job, int step) throws InterruptedException {
+		switch (step) {
+			case STEP_BANKS:
+				pullFromBanks(job);
+				break;
+			case STEP_HISTORY:
+				job.setHistoryBucketsRemoved(mongoTemplate.remove(new Query(Criteria.where("farmerId").is(job.getFarmerId())), LoanHistoryBucket.class).getDeletedCount());
+				break;
+			case STEP_ELIGIBILITY:
+				job.setEligibilityRemoved(eligibilityService.removeFarmer(job.getFarmerId()));
+				break;
+			case STEP_ROLLUPS:
+				//a crash between this write and the saved step would apply it twice; the nightly reconcile repairs that
+				analyticsService.recordRemoval(snapshot(job));
+				break;
+			case STEP_CACHES:
+				profileCache.evictUser(job.getFarmerName());
+				farmerColumnStore.remove(job.getFarmerId());
+				resourceVersionService.bump(ResourceVersionService.USERS);
+				break;
+			case STEP_SCORE_HISTORY:
+				job.setScoreBucketsRemoved(scoreHistoryService.removeFarmer(job.getFarmerId()));
+				break;
+			default:
+				throw new IllegalStateException("Unknown cascade step " + step);
+		}
+	}
+	
+	//banks are read as raw documents so the DBRefs are never resolved; each batch is one unordered bulk write
+	private void pullFromBanks(CascadeJob job) throws InterruptedException {
+		DBRef reference = new DBRef(ResourceVersionService.USERS, job.getFarmerId());
+		while (!stopRequested) {
+			Criteria criteria = Criteria.where("loansApproved.$id").is(job.getFarmerId());
+			if (job.getLastBankId() != null) {
+				criteria = criteria.and("_id").gt(job.getLastBankId());
+			}
+			Query query = new Query(criteria).with(Sort.by("_id")).limit(batchSize);
+			query.fields().include("_id").include("bankName");
+			List<Document> banks = mongoTemplate.find(query, Document.class, ResourceVersionService.BANKS);
+			if (banks.isEmpty()) {
+				break;
+			}
+			BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ResourceVersionService.BANKS);
+			for (Document bank : banks) {
+				bulk.updateOne(new Query(Criteria.where("_id").is(bank.getObjectId("_id"))), new Update().pull("loansApproved", reference));
+			}
+			int modified = resourceVersionService.execute(bulk, ResourceVersionService.BANKS).getModifiedCount();
+			for (Document bank : banks) {
+				profileCache.evictBank(bank.getString("bankName"));
+			}
+			job.setBanksUpdated(job.getBanksUpdated() + modified);
+			job.setLastBankId(banks.get(banks.size() - 1).getObjectId("_id"));
+			job.setUpdatedAt(Instant.now());
+			mongoTemplate.save(job);
+			meterRegistry.counter("cascade.references.removed", "source", "job").increment(modified);
+			if (banks.size() < batchSize) {
+				break;
+			}
+			Thread.sleep(pauseMs);
+		}
+	}
+	
+	/**
+	 * Removes DBRefs to farmers that no longer exist from every bank, batchSize references per existence
+	 * check. Returns the number of banks that were changed.
+	 */
+	public long compactBankReferences() {
+		if (!compacting.compareAndSet(false, true)) {
+			return 0;
+		}
+		long banksChanged = 0;
+		long removed = 0;
+		try {
+			Query query = new Query().with(Sort.by("_id"));
+			query.fields().include("_id").include("bankName").include("loansApproved");
+			try (CloseableIterator<Document> banks = mongoTemplate.stream(query, Document.class, ResourceVersionService.BANKS)) {
+				while (banks.hasNext() && !stopRequested) {
+					Document bank = banks.next();
+					List<DBRef> dangling = danglingReferences(bank.getList("loansApproved", DBRef.class));
+					if (dangling.isEmpty()) {
+						continue;
+					}
+					resourceVersionService.updateFirst(new Query(Criteria.where("_id").is(bank.getObjectId("_id"))),
+							new Update().pullAll("loansApproved", dangling.toArray()), ResourceVersionService.BANKS);
+					profileCache.evictBank(bank.getString("bankName"));
+					banksChanged++;
+					removed += dangling.size();
+					Thread.sleep(pauseMs);
+				}
+			}
+			meterRegistry.counter("cascade.references.removed", "source", "compaction").increment(removed);
+			log.info("Bank reference compaction removed {} dangling farmer references from {} banks", removed, banksChanged);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (Exception e) {
+			log.error("Error while compacting bank references", e);
+		}
+		finally {
+			compacting.set(false);
+		}
+		return banksChanged;
+	}
+	
+	private List<DBRef> danglingReferences(List<DBRef> references) {
+		List<DBRef> dangling = new ArrayList<>();
+		if (references == null || references.isEmpty()) {
+			return dangling;
+		}
+		for (int from = 0; from < references.size(); from += batchSize) {
+			List<DBRef> slice = references.subList(from, Math.min(references.size(), from + batchSize));
+			Set<Object> ids = new HashSet<>();
+			for (DBRef reference : slice) {
+				ids.add(reference.getId());
+			}
+			Query existing = new Query(Criteria.where("_id").in(ids));
+			existing.fields().include("_id");
+			Set<Object> found = new HashSet<>();
+			for (Document user : mongoTemplate.find(existing, Document.class, ResourceVersionService.USERS)) {
+				found.add(user.get("_id"));
+			}
+			for (DBRef reference : slice) {
+				if (!found.contains(reference.getId())) {
+					dangling.add(reference);
+				}
+			}
+		}
+		return dangling;
+	}
+	
+	private static UserEntity snapshot(CascadeJob job) {
+		UserEntity farmer = new UserEntity();
+		farmer.setId(job.getFarmerId());
+		farmer.setName(job.getFarmerName());
+		farmer.setRegion(job.getRegion());
+		farmer.setCropTypes(job.getCropTypes());
+		farmer.setLandSize(job.getLandSize());
+		farmer.setCreditScoreVerified(job.isCreditScoreVerified());
+		farmer.setCreditScore(job.getCreditScore());
+		return farmer;
+	}
+}
@@ -0,0 +1,24 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.Set;
+
+//Typed view of a change-stream document handed to ChangeEventHandlers
+@Data
+@AllArgsConstructor
+public class ChangeEvent {
+	
+	public enum Type { INSERT, UPDATE, REPLACE, DELETE, OTHER }
+	
+	private String collection;
+	private Type type;
+	private ObjectId documentId;
+	//post-image looked up by the server for inserts/updates/replaces, null for deletes
+	private Document fullDocument;
+	private Set<String> updatedFields;
+}
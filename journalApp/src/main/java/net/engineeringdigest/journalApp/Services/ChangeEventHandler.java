@@ -0,0 +1,18 @@
+package net.engineeringdigest.journalApp.Services;
+
+import java.util.List;
+
+/**
+ * Receives batches of changes for one collection from ChangeStreamService.
+ * Handlers run on the listener thread, never on a request thread.
+ */
+public interface ChangeEventHandler {
+	
+	String collection();
+	
+	void onChanges(List<ChangeEvent> events);
+	
+	//called when the stream had to restart without a usable resume token, i.e. changes may have been missed
+	default void onReset() {
+	}
+}
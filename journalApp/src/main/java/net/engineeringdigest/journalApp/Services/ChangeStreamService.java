@@ -0,0 +1,265 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.ChangeStreamToken;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tails the change streams of the collections that have registered ChangeEventHandlers (one daemon
+ * thread per collection) and dispatches typed events in batches of up to changestream.batch-size or
+ * whatever arrived within changestream.max-wait-ms. The resume token is persisted once per batch after
+ * the handlers ran, so delivery is at-least-once across restarts and the request path pays nothing.
+ * Tokens are kept per collection and per instance (changestream.instance-id, the host name by default),
+ * since every instance feeds its own in-process handlers; while a collection is quiet the cursor's
+ * post-batch token is saved every changestream.idle-save-ms, so a restart never resumes from a position
+ * that has meanwhile fallen out of the oplog.
+ * Needs a replica set (Atlas, or the single-node set started by the loadtest profile).
+ */
+@Slf4j
+@Service
+public class ChangeStreamService {
+	
+	private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+	private static final int CHANGE_STREAM_FATAL = 280;
+	private static final int NOT_A_REPLICA_SET = 40573;
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Autowired(required = false)
+	private List<ChangeEventHandler> handlers = Collections.emptyList();
+	
+	@Value("${changestream.enabled:false}")
+	private boolean enabled;
+	
+	@Value("${changestream.batch-size:100}")
+	private int batchSize;
+	
+	@Value("${changestream.max-wait-ms:200}")
+	private long maxWaitMs;
+	
+	@Value("${changestream.idle-save-ms:10000}")
+	private long idleSaveMs;
+	
+	//stable across restarts of the same instance, so it resumes its own position and not another instance's
+	@Value("${changestream.instance-id:${HOSTNAME:}}")
+	private String instanceId;
+	
+	private final List<Thread> listeners = new ArrayList<>();
+	private volatile boolean running;
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		if (!enabled || handlers.isEmpty()) {
+			return;
+		}
+		if (instanceId.isEmpty()) {
+			instanceId = hostName();
+		}
+		running = true;
+		Map<String, List<ChangeEventHandler>> byCollection = new LinkedHashMap<>();
+		for (ChangeEventHandler handler : handlers) {
+			byCollection.computeIfAbsent(handler.collection(), c -> new ArrayList<>()).add(handler);
+		}
+		for (Map.Entry<String, List<ChangeEventHandler>> entry : byCollection.entrySet()) {
+			Thread thread = new Thread(() -> listen(entry.getKey(), entry.getValue()), "change-stream-" + entry.getKey());
+			thread.setDaemon(true);
+			thread.start();
+			listeners.add(thread);
+		}
+		log.info("Change stream listeners started for {} as {}", byCollection.keySet(), instanceId);
+	}
+	
+	@PreDestroy
+	public void stop() {
+		running = false;
+		for (Thread thread : listeners) {
+			thread.interrupt();
+		}
+	}
+	
+	private void listen(String collection, List<ChangeEventHandler> collectionHandlers) {
+		long backoffMs = 500;
+		while (running) {
+			try {
+				tail(collection, collectionHandlers);
+				backoffMs = 500;
+			}
+			catch (MongoCommandException e) {
+				if (e.getErrorCode() == NOT_A_REPLICA_SET) {
+					log.warn("Change streams need a replica set; listener for {} stopped", collection);
+					return;
+				}
+				if (e.getErrorCode() == CHANGE_STREAM_HISTORY_LOST || e.getErrorCode() == CHANGE_STREAM_FATAL) {
+					log.warn("Resume token for {} is no longer usable, restarting from now", collection);
+					mongoTemplate.remove(new Query(Criteria.where("_id").is(tokenId(collection))), ChangeStreamToken.class);
+					for (ChangeEventHandler handler : collectionHandlers) {
+						handler.onReset();
+					}
+				}
+				else {
+					log.error("Change stream for {} failed", collection, e);
+				}
+			}
+			catch (Exception e) {
+				if (!running) {
+					return;
+				}
+				log.error("Change stream for {} failed", collection, e);
+			}
+			try {
+				TimeUnit.MILLISECONDS.sleep(backoffMs);
+			}
+			catch (InterruptedException e) {
+				return;
+			}
+			backoffMs = Math.min(backoffMs * 2, 30_000);
+		}
+	}
+	
+	private void tail(String collection, List<ChangeEventHandler> collectionHandlers) {
+		ChangeStreamIterable<Document> stream = mongoTemplate.getCollection(collection).watch()
+				.fullDocument(FullDocument.UPDATE_LOOKUP)
+				.batchSize(batchSize)
+				.maxAwaitTime(maxWaitMs, TimeUnit.MILLISECONDS);
+		ChangeStreamToken stored = mongoTemplate.findById(tokenId(collection), ChangeStreamToken.class);
+		if (stored != null && stored.getToken() != null) {
+			stream = stream.resumeAfter(BsonDocument.parse(stored.getToken().toJson()));
+		}
+		try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+			List<ChangeEvent> batch = new ArrayList<>(batchSize);
+			BsonDocument lastToken = null;
+			BsonDocument savedToken = null;
+			long deadline = 0;
+			long savedAt = System.currentTimeMillis();
+			while (running) {
+				ChangeStreamDocument<Document> change = cursor.tryNext();
+				if (change != null) {
+					if (batch.isEmpty()) {
+						deadline = System.currentTimeMillis() + maxWaitMs;
+					}
+					batch.add(toEvent(collection, change));
+					lastToken = change.getResumeToken();
+				}
+				if (!batch.isEmpty() && (batch.size() >= batchSize || System.currentTimeMillis() >= deadline)) {
+					dispatch(collectionHandlers, batch);
+					saveToken(collection, lastToken);
+					savedToken = lastToken;
+					savedAt = System.currentTimeMillis();
+					batch = new ArrayList<>(batchSize);
+				}
+				else if (change == null && batch.isEmpty() && System.currentTimeMillis() - savedAt >= idleSaveMs) {
+					//nothing pending, so the post-batch token covers everything handled; it moves even when no event for this collection arrives
+					BsonDocument idleToken = cursor.getResumeToken();
+					if (idleToken != null && !idleToken.equals(savedToken)) {
+						saveToken(collection, idleToken);
+						savedToken = idleToken;
+					}
+					savedAt = System.currentTimeMillis();
+				}
+			}
+		}
+	}
+	
+	private void dispatch(List<ChangeEventHandler> collectionHandlers, List<ChangeEvent> batch) {
+		List<ChangeEvent> events = Collections.unmodifiableList(batch);
+		for (ChangeEventHandler handler : collectionHandlers) {
+			try {
+				handler.onChanges(events);
+			}
+			catch (Exception e) {
+				log.error("Change handler {} failed on a batch of {} events", handler.getClass().getSimpleName(), events.size(), e);
+			}
+		}
+	}
+	
+	private void saveToken(String collection, BsonDocument token) {
+		if (token != null) {
+			mongoTemplate.save(new ChangeStreamToken(tokenId(collection), Document.parse(token.toJson()), Instant.now()));
+		}
+	}
+	
+	private String tokenId(String collection) {
+		return collection + ":" + instanceId;
+	}
+	
+	private static String hostName() {
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		}
+		catch (UnknownHostException e) {
+			return UUID.randomUUID().toString();
+		}
+	}
+	
+	private static ChangeEvent toEvent(String collection, ChangeStreamDocument<Document> change) {
+		ChangeEvent.Type type;
+		switch (change.getOperationType()) {
+			case INSERT:
+				type = ChangeEvent.Type.INSERT;
+				break;
+			case UPDATE:
+				type = ChangeEvent.Type.UPDATE;
+				break;
+			case REPLACE:
+				type = ChangeEvent.Type.REPLACE;
+				break;
+			case DELETE:
+				type = ChangeEvent.Type.DELETE;
+				break;
+			default:
+				type = ChangeEvent.Type.OTHER;
+		}
+		ObjectId id = null;
+		if (change.getDocumentKey() != null) {
+			BsonValue key = change.getDocumentKey().get("_id");
+			if (key != null && key.isObjectId()) {
+				id = key.asObjectId().getValue();
+			}
+		}
+		Set<String> updatedFields = Collections.emptySet();
+		UpdateDescription description = change.getUpdateDescription();
+		if (description != null) {
+			updatedFields = new HashSet<>();
+			if (description.getUpdatedFields() != null) {
+				updatedFields.addAll(description.getUpdatedFields().keySet());
+			}
+			if (description.getRemovedFields() != null) {
+				updatedFields.addAll(description.getRemovedFields());
+			}
+		}
+		return new ChangeEvent(collection, type, id, change.getFullDocument(), updatedFields);
+	}
+}
@@ -0,0 +1,39 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+//Bumps the per-collection change counter after repository/template saves and deletes on USERS and BANKS
+@Slf4j
+@Component
+public class CollectionVersionListener extends AbstractMongoEventListener<Object> {
+	
+	@Autowired
+	private ResourceVersionService resourceVersionService;
+	
+	@Override
+	public void onAfterSave(AfterSaveEvent<Object> event) {
+		bump(event.getCollectionName());
+	}
+	
+	@Override
+	public void onAfterDelete(AfterDeleteEvent<Object> event) {
+		bump(event.getCollectionName());
+	}
+	
+	private void bump(String collection) {
+		if (ResourceVersionService.USERS.equals(collection) || ResourceVersionService.BANKS.equals(collection)) {
+			try {
+				resourceVersionService.bump(collection);
+			}
+			catch (Exception e) {
+				log.error("Error while bumping version of {}", collection, e);
+			}
+		}
+	}
+}
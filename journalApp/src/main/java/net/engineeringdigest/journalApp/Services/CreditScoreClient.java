@@ -0,0 +1,203 @@
+package net.engineeringdigest.journalApp.Services;
+
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Slf4j
+@Service
+public class CreditScoreClient {
+	
+	@Value("${scoring.url}")
+	private String scoringUrl;
+	
+	@Value("${scoring.model-version:v1}")
+	private String modelVersion;
+	
+	@Value("${scoring.connect-timeout-ms:2000}")
+	private long connectTimeoutMs;
+	
+	@Value("${scoring.read-timeout-ms:10000}")
+	private long readTimeoutMs;
+	
+	//defaults to scoring.url with /predict replaced by /predict_batch
+	@Value("${scoring.batch-url:}")
+	private String batchUrl;
+	
+	@Value("${scoring.batch-fallback-parallelism:4}")
+	private int fallbackParallelism;
+	
+	@Autowired
+	private FaultInjector faultInjector;
+	
+	@Autowired
+	private RegionalReferenceData regionalReferenceData;
+	
+	private RestTemplate restTemplate;
+	
+	private ExecutorService fallbackPool;
+	
+	@PostConstruct
+	public void setup() {
+		restTemplate = new RestTemplateBuilder()
+				.setConnectTimeout(Duration.ofMillis(connectTimeoutMs))
+				.setReadTimeout(Duration.ofMillis(readTimeoutMs))
+				.build();
+		if (batchUrl == null || batchUrl.isEmpty()) {
+			batchUrl = scoringUrl.replaceFirst("/predict/?$", "/predict_batch");
+		}
+		fallbackPool = Executors.newFixedThreadPool(fallbackParallelism, r -> {
+			Thread thread = new Thread(r, "scoring-fallback");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		fallbackPool.shutdownNow();
+	}
+	
+	// Create request payload; empty agronomic fields are filled from the farmer's region (RegionalReferenceData)
+	public Map<String, Object> buildRequest(UserEntity user) {
+		RegionalReferenceData.RegionProfile defaults = regionalReferenceData.resolve(user.getCountry(), user.getRegion());
+		Map<String, Object> requestMap = new HashMap<>();
+		requestMap.put("year", user.getYear() != null ? user.getYear() : "2024");
+		requestMap.put("country", user.getCountry() != null ? user.getCountry() : defaults.getCountry());
+		requestMap.put("region", region(user, defaults));
+		requestMap.put("landSize", user.getLandSize() != 0 ? user.getLandSize() : defaults.getLandSize());
+		requestMap.put("soilType", user.getSoilType() != null ? user.getSoilType() : defaults.getSoilType());
+		requestMap.put("pastYield", user.getPastYield() != 0 ? user.getPastYield() : defaults.getPastYield());
+		requestMap.put("cropTypes", user.getCropTypes() != null ? user.getCropTypes() : defaults.getCropTypes());
+		requestMap.put("annualIncome", user.getAnnualIncome() != 0 ? user.getAnnualIncome() : 50000);
+		requestMap.put("soilPH", user.getSoilPH() != 0 ? user.getSoilPH() : defaults.getSoilPH());
+		requestMap.put("nitrogenLevel", user.getNitrogenLevel() != 0 ? user.getNitrogenLevel() : defaults.getNitrogenLevel());
+		requestMap.put("organicMatterLevel", user.getOrganicMatterLevel() != 0 ? user.getOrganicMatterLevel() : defaults.getOrganicMatterLevel());
+		requestMap.put("landQualityScore", user.getLandQualityScore() != 0 ? user.getLandQualityScore() : defaults.getLandQualityScore());
+		requestMap.put("pastRainfall", user.getPastRainfall() != 0 ? user.getPastRainfall() : defaults.getPastRainfall());
+		requestMap.put("avgTemperature", user.getAvgTemperature() != 0 ? user.getAvgTemperature() : defaults.getAvgTemperature());
+		requestMap.put("creditScore", 0.0);
+		return requestMap;
+	}
+	
+	//without a country the farmer's region is only sent when it is what the profile resolved to;
+	//an ambiguous or unknown region would otherwise go out paired with the default country
+	private static String region(UserEntity user, RegionalReferenceData.RegionProfile defaults) {
+		if (user.getRegion() == null) {
+			return defaults.getRegion();
+		}
+		if (user.getCountry() == null && !defaults.getRegion().equalsIgnoreCase(user.getRegion().trim())) {
+			return defaults.getRegion();
+		}
+		return user.getRegion();
+	}
+	
+	public String getModelVersion() {
+		return modelVersion;
+	}
+	
+	//Fingerprint of everything sent to the model, so stale scores can be found without re-scoring everyone
+	public String inputsHash(UserEntity user) {
+		Map<String, Object> inputs = new TreeMap<>(buildRequest(user));
+		inputs.remove("creditScore");
+		return DigestUtils.md5DigestAsHex(inputs.toString().getBytes(StandardCharsets.UTF_8));
+	}
+	
+	@SuppressWarnings("unchecked")
+	public Map<String, Object> predict(Map<String, Object> requestMap) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestMap, headers);
+		faultInjector.inject(FaultInjector.SCORING);
+		ResponseEntity<Map> response = restTemplate.postForEntity(scoringUrl, entity, Map.class);
+		return response.getBody();
+	}
+	
+	/**
+	 * Scores a base request and a list of variants of it in one call to the batch endpoint. A variant only
+	 * holds the inputs it changes; the service encodes the base once and rewrites just those columns per row.
+	 * The returned list starts with the base score followed by one score per variant. Against a scoring
+	 * service without /predict_batch (404) every row is sent to /predict instead, at most
+	 * scoring.batch-fallback-parallelism at a time.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Float> predictBatch(Map<String, Object> baseRequest, List<Map<String, Object>> variants) {
+		Map<String, Object> payload = new HashMap<>();
+		payload.put("base", baseRequest);
+		payload.put("variants", variants);
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		Map<String, Object> body;
+		faultInjector.inject(FaultInjector.SCORING);
+		try {
+			body = restTemplate.postForEntity(batchUrl, new HttpEntity<>(payload, headers), Map.class).getBody();
+		}
+		catch (HttpClientErrorException.NotFound e) {
+			log.warn("Batch scoring endpoint {} not found, scoring {} variants one by one", batchUrl, variants.size());
+			return predictEach(baseRequest, variants);
+		}
+		if (body == null || body.get("error") != null) {
+			throw new IllegalStateException("Batch scoring failed: " + (body == null ? "empty response" : body.get("error")));
+		}
+		List<Float> scores = new ArrayList<>(variants.size() + 1);
+		scores.add(Float.parseFloat(body.get("base_score").toString()));
+		for (Object score : (List<Object>) body.get("predicted_credit_scores")) {
+			scores.add(Float.parseFloat(score.toString()));
+		}
+		if (scores.size() != variants.size() + 1) {
+			throw new IllegalStateException("Batch scoring returned " + (scores.size() - 1) + " scores for " + variants.size() + " variants");
+		}
+		return scores;
+	}
+	
+	private List<Float> predictEach(Map<String, Object> baseRequest, List<Map<String, Object>> variants) {
+		List<CompletableFuture<Float>> pending = new ArrayList<>(variants.size() + 1);
+		pending.add(CompletableFuture.supplyAsync(() -> extractScore(predict(baseRequest)), fallbackPool));
+		for (Map<String, Object> variant : variants) {
+			Map<String, Object> request = new HashMap<>(baseRequest);
+			request.putAll(variant);
+			pending.add(CompletableFuture.supplyAsync(() -> extractScore(predict(request)), fallbackPool));
+		}
+		List<Float> scores = new ArrayList<>(pending.size());
+		for (CompletableFuture<Float> pendingScore : pending) {
+			Float score = pendingScore.join();
+			if (score == null) {
+				throw new IllegalStateException("Credit score not found in API response");
+			}
+			scores.add(score);
+		}
+		return scores;
+	}
+	
+	// Try to find the credit score in the response - could be under different keys
+	public Float extractScore(Map<String, Object> responseBody) {
+		Object creditScoreObj = responseBody.get("predicted_credit_score");
+		if (creditScoreObj == null) {
+			creditScoreObj = responseBody.get("prediction");
+		}
+		return creditScoreObj != null ? Float.parseFloat(creditScoreObj.toString()) : null;
+	}
+}
@@ -0,0 +1,272 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.BankEntity;
+import net.engineeringdigest.journalApp.Entities.EligibilityMatch;
+import net.engineeringdigest.journalApp.Entities.EligibilityRule;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import net.engineeringdigest.journalApp.Repositories.BankRepositary;
+import net.engineeringdigest.journalApp.utils.RuleExpression;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps the ELIGIBILITY collection in step with the banks' rules. A new rule is matched once against
+ * USERS with its compiled Criteria; after that every farmer write re-evaluates just that farmer against
+ * the in-memory compiled rules and upserts/removes its matches in one bulk write, so a bank's eligible
+ * list is read from ELIGIBILITY and never from a USERS scan. Rules edited on another instance are picked
+ * up by refresh() when the BANKS version moves. Until then an instance only removes matches of rules it
+ * has loaded, and reads keep only matches of rules the bank still has, so refresh lag neither drops the
+ * matches of a new rule nor brings back those of a removed one.
+ */
+@Slf4j
+@Service
+public class EligibilityService {
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Autowired
+	private BankRepositary bankRepositary;
+	
+	@Autowired
+	private ProfileCache profileCache;
+	
+	@Autowired
+	private ResourceVersionService resourceVersionService;
+	
+	@Value("${eligibility.max-rules-per-bank:20}")
+	private int maxRulesPerBank;
+	
+	@Value("${eligibility.batch-size:1000}")
+	private int batchSize;
+	
+	private volatile CompiledRule[] rules = new CompiledRule[0];
+	
+	private volatile String loadedBanksVersion;
+	
+	private static final class CompiledRule {
+		private final String bankName;
+		private final String ruleId;
+		private final RuleExpression expression;
+		
+		CompiledRule(String bankName, String ruleId, RuleExpression expression) {
+			this.bankName = bankName;
+			this.ruleId = ruleId;
+			this.expression = expression;
+		}
+	}
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		try {
+			String version = resourceVersionService.collectionStamp(ResourceVersionService.BANKS).getEtag();
+			Query query = new Query(Criteria.where("eligibilityRules.0").exists(true));
+			query.fields().include("bankName").include("eligibilityRules");
+			List<CompiledRule> compiled = new ArrayList<>();
+			for (BankEntity bank : mongoTemplate.find(query, BankEntity.class)) {
+				for (EligibilityRule rule : bank.getEligibilityRules()) {
+					try {
+						compiled.add(new CompiledRule(bank.getBankName(), rule.getId(), RuleExpression.parse(rule.getExpression())));
+					}
+					catch (IllegalArgumentException e) {
+						log.warn("Skipping invalid rule {} of {}: {}", rule.getId(), bank.getBankName(), e.getMessage());
+					}
+				}
+			}
+			rules = compiled.toArray(new CompiledRule[0]);
+			loadedBanksVersion = version;
+		}
+		catch (Exception e) {
+			log.error("Error while loading eligibility rules", e);
+		}
+	}
+	
+	@Scheduled(fixedDelayString = "${eligibility.refresh-ms:30000}")
+	public void refresh() {
+		if (loadedBanksVersion != null && !loadedBanksVersion.equals(resourceVersionService.collectionStamp(ResourceVersionService.BANKS).getEtag())) {
+			load();
+		}
+	}
+	
+	public List<EligibilityRule> getRules(String bankName) {
+		BankEntity bank = bankRepositary.findByBankName(bankName);
+		return bank != null ? bank.getEligibilityRules() : new ArrayList<>();
+	}
+	
+	//validates and stores the rule, then matches it against USERS once; returns the number of matching farmers.
+	//Rules are changed with $push/$pull on the one field, so a concurrent save of the bank (a loan approval)
+	//neither loses the rule nor is overwritten by it
+	public Map<String, Object> addRule(String bankName, String name, String expression) {
+		RuleExpression compiled = RuleExpression.parse(expression);
+		EligibilityRule rule = new EligibilityRule(UUID.randomUUID().toString(), name, compiled.getSource(), Instant.now());
+		//the guard on the last allowed index enforces the limit in the same write
+		Query bankWithRoom = new Query(Criteria.where("bankName").is(bankName).and("eligibilityRules." + (maxRulesPerBank - 1)).exists(false));
+		Update push = new Update().push("eligibilityRules", rule).set("lastModified", rule.getCreatedAt());
+		if (resourceVersionService.updateFirst(bankWithRoom, push, BankEntity.class).getModifiedCount() == 0) {
+			if (!mongoTemplate.exists(new Query(Criteria.where("bankName").is(bankName)), BankEntity.class)) {
+				throw new IllegalArgumentException("Bank not found: " + bankName);
+			}
+			throw new IllegalArgumentException("A bank may have at most " + maxRulesPerBank + " rules");
+		}
+		profileCache.evictBank(bankName);
+		long matched = matchAll(bankName, rule.getId(), compiled);
+		load();
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("rule", rule);
+		result.put("matched", matched);
+		return result;
+	}
+	
+	public boolean removeRule(String bankName, String ruleId) {
+		Update pull = new Update().pull("eligibilityRules", new Query(Criteria.where("id").is(ruleId))).set("lastModified", Instant.now());
+		if (resourceVersionService.updateFirst(new Query(Criteria.where("bankName").is(bankName).and("eligibilityRules.id").is(ruleId)), pull, BankEntity.class).getModifiedCount() == 0) {
+			return false;
+		}
+		profileCache.evictBank(bankName);
+		mongoTemplate.remove(new Query(Criteria.where("bankName").is(bankName).and("ruleId").is(ruleId)), EligibilityMatch.class);
+		load();
+		return true;
+	}
+	
+	//one row per farmer with the ids of the rules it satisfies, best credit score first
+	public List<Document> getEligibleFarmers(String bankName, int page, int size) {
+		List<String> ruleIds = liveRuleIds(bankName);
+		if (ruleIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+		return mongoTemplate.getCollection("ELIGIBILITY").aggregate(Arrays.asList(
+				new Document("$match", new Document("bankName", bankName).append("ruleId", new Document("$in", ruleIds))),
+				new Document("$group", new Document("_id", "$farmerId")
+						.append("farmerName", new Document("$first", "$farmerName"))
+						.append("creditScore", new Document("$max", "$creditScore"))
+						.append("rules", new Document("$push", "$ruleId"))),
+				new Document("$sort", new Document("creditScore", -1).append("_id", 1)),
+				new Document("$skip", (long) page * size),
+				new Document("$limit", size),
+				new Document("$project", new Document("_id", 0)
+						.append("farmerId", new Document("$toString", "$_id"))
+						.append("farmerName", 1)
+						.append("creditScore", 1)
+						.append("rules", 1))
+		)).into(new ArrayList<>());
+	}
+	
+	public void reevaluate(UserEntity farmer) {
+		reevaluate(Arrays.asList(farmer));
+	}
+	
+	//upserts the matches each farmer now satisfies and drops the rest, all in one unordered bulk write
+	public void reevaluate(List<UserEntity> farmers) {
+		try {
+			CompiledRule[] current = rules;
+			if (current.length == 0) {
+				return;
+			}
+			List<String> loadedRuleIds = new ArrayList<>(current.length);
+			for (CompiledRule rule : current) {
+				loadedRuleIds.add(rule.ruleId);
+			}
+			BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EligibilityMatch.class);
+			boolean hasWork = false;
+			for (UserEntity farmer : farmers) {
+				if (farmer.getId() == null) {
+					continue;
+				}
+				List<String> matched = new ArrayList<>();
+				for (CompiledRule rule : current) {
+					if (rule.expression.matches(farmer)) {
+						String id = EligibilityMatch.matchId(rule.bankName, rule.ruleId, farmer.getId());
+						matched.add(id);
+						bulk.upsert(new Query(Criteria.where("_id").is(id)), matchUpdate(rule.bankName, rule.ruleId, farmer.getId(), farmer.getName(), farmer.getCreditScore()));
+					}
+				}
+				//matches of rules this instance has not loaded yet are left alone
+				bulk.remove(new Query(Criteria.where("farmerId").is(farmer.getId()).and("ruleId").in(loadedRuleIds).and("_id").nin(matched)));
+				hasWork = true;
+			}
+			if (hasWork) {
+				bulk.execute();
+			}
+		}
+		catch (Exception e) {
+			log.error("Error while re-evaluating eligibility of {} farmers", farmers.size(), e);
+		}
+	}
+	
+	public long removeFarmer(ObjectId farmerId) {
+		return mongoTemplate.remove(new Query(Criteria.where("farmerId").is(farmerId)), EligibilityMatch.class).getDeletedCount();
+	}
+	
+	private List<String> liveRuleIds(String bankName) {
+		Query query = new Query(Criteria.where("bankName").is(bankName));
+		query.fields().include("bankName").include("eligibilityRules");
+		BankEntity bank = mongoTemplate.findOne(query, BankEntity.class);
+		List<String> ids = new ArrayList<>();
+		if (bank != null && bank.getEligibilityRules() != null) {
+			for (EligibilityRule rule : bank.getEligibilityRules()) {
+				ids.add(rule.getId());
+			}
+		}
+		return ids;
+	}
+	
+	private long matchAll(String bankName, String ruleId, RuleExpression expression) {
+		Query query = new Query(new Criteria().andOperator(Criteria.where("roles").is("User"), expression.toCriteria()));
+		query.fields().include("_id").include("name").include("creditScore");
+		query.cursorBatchSize(batchSize);
+		long matched = 0;
+		BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EligibilityMatch.class);
+		int pending = 0;
+		try (CloseableIterator<Document> farmers = mongoTemplate.stream(query, Document.class, "USERS")) {
+			while (farmers.hasNext()) {
+				Document farmer = farmers.next();
+				ObjectId farmerId = farmer.getObjectId("_id");
+				Number score = (Number) farmer.get("creditScore");
+				bulk.upsert(new Query(Criteria.where("_id").is(EligibilityMatch.matchId(bankName, ruleId, farmerId))),
+						matchUpdate(bankName, ruleId, farmerId, farmer.getString("name"), score != null ? score.floatValue() : 0));
+				matched++;
+				if (++pending == batchSize) {
+					bulk.execute();
+					bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EligibilityMatch.class);
+					pending = 0;
+				}
+			}
+		}
+		if (pending > 0) {
+			bulk.execute();
+		}
+		return matched;
+	}
+	
+	private static Update matchUpdate(String bankName, String ruleId, ObjectId farmerId, String farmerName, float creditScore) {
+		return new Update()
+				.set("farmerName", farmerName)
+				.set("creditScore", creditScore)
+				.setOnInsert("bankName", bankName)
+				.setOnInsert("ruleId", ruleId)
+				.setOnInsert("farmerId", farmerId)
+				.setOnInsert("matchedAt", Instant.now());
+	}
+}
@@ -7,6 +7,8 @@ import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+
 @Service
 @Slf4j
 public class EmailService {
@@ -15,12 +17,16 @@ public class EmailService {
 	@Autowired
 	private JavaMailSender javaMailSender;
 	
+	@Autowired
+	private FaultInjector faultInjector;
+	
 	public void sendEmail(String to,String subject,String body){
 		try{
 			SimpleMailMessage mail=new SimpleMailMessage();
 			mail.setTo(to);
 			mail.setSubject(subject);
 			mail.setText(body);
+			faultInjector.inject(FaultInjector.SMTP);
 			javaMailSender.send(mail);
 			
 		}
@@ -40,6 +46,23 @@ public class EmailService {
 				+ BankName;
 		sendEmail(farmer.getEmail(), subject, message);
 	}
+	public void sendDigest(UserEntity farmer, Collection<String> bankNames) {
+		String subject = "Loan Approval Confirmation: " + bankNames.size() + " banks";
+		StringBuilder banks = new StringBuilder();
+		for (String bankName : bankNames) {
+			banks.append("  - ").append(bankName).append("\n");
+		}
+		String message = "Dear "+farmer.getName()+",\n\n"
+				+ "We are pleased to inform you that your loan application has been approved by the following banks:\n\n"
+				+ banks
+				+ "\nEach bank will contact you about crediting the approved amount to your registered bank account.\n\n"
+				+ "If you have any questions or require further assistance, please feel free to contact our support team.\n\n"
+				+ "Thank you for choosing our services. We wish you success in your farming endeavors!\n\n"
+				+ "Best regards,\n"
+				+ "Farmer Helping Team";
+		sendEmail(farmer.getEmail(), subject, message);
+	}
+	
 	public void sendOTP(UserEntity farmer,String OTP){
 		String subject = "Your OTP Verification Code for Secure Login";
 		String message = "Dear User,\n\n"
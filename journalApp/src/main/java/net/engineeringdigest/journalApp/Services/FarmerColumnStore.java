@@ -0,0 +1,579 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import net.engineeringdigest.journalApp.utils.FloatColumn;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * In-process columnar copy of the farmers' numeric agronomic fields for dashboard scans. Each field is
+ * a FloatColumn (optionally off-heap) and region, soilType and cropTypes are dictionary-encoded int
+ * codes, so a filtered aggregation or histogram is one pass over primitive columns split across the
+ * common fork-join pool. The snapshot is built from USERS on the columnar-snapshot thread at startup
+ * and on columnar.rebuild-ms, and kept fresh in between by repository saves (FarmerColumnStoreListener),
+ * by the writers that bypass save() (bulk import, re-scoring) calling upsertAll, and, when enabled, by
+ * the USERS change stream, which also carries other instances' writes. Changes
+ * that arrive while a rebuild streams the collection are recorded and replayed onto the new snapshot
+ * before it is swapped in, so a rebuild never drops a write made during it.
+ */
+@Slf4j
+@Service
+public class FarmerColumnStore implements ChangeEventHandler {
+
+	public static final List<String> NUMERIC_FIELDS = Collections.unmodifiableList(Arrays.asList(
+			"landSize", "pastYield", "annualIncome", "soilPH", "nitrogenLevel", "organicMatterLevel",
+			"landQualityScore", "pastRainfall", "avgTemperature", "creditScore"));
+
+	public static final List<String> DIMENSIONS = Collections.unmodifiableList(Arrays.asList("region", "soilType", "cropTypes"));
+
+	private static final int CHUNK_ROWS = 1 << 16;
+	private static final int ANY = -2;
+	private static final int NO_MATCH = -3;
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Value("${columnar.enabled:true}")
+	private boolean enabled;
+
+	@Value("${columnar.off-heap:false}")
+	private boolean offHeap;
+
+	@Value("${columnar.initial-capacity:65536}")
+	private int initialCapacity;
+
+	private volatile Snapshot snapshot;
+
+	private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+	//changes seen while a rebuild runs, replayed onto its snapshot before the swap; null when none runs
+	private List<Change> pending;
+
+	private final Object changes = new Object();
+
+	//one farmer write; values are null for a delete
+	private static final class Change {
+		private final ObjectId id;
+		private final float[] values;
+		private final String[] dimensions;
+
+		Change(ObjectId id, float[] values, String[] dimensions) {
+			this.id = id;
+			this.values = values;
+			this.dimensions = dimensions;
+		}
+
+		void applyTo(Snapshot snapshot) {
+			if (values == null) {
+				snapshot.remove(id);
+			}
+			else {
+				snapshot.put(id, values, dimensions);
+			}
+		}
+	}
+
+	//value <-> code mapping of one dimension; codes are never reused, -1 stands for a missing value
+	private static final class Dictionary {
+		private final Map<String, Integer> codes = new HashMap<>();
+		private final List<String> values = new ArrayList<>();
+
+		int encode(String value) {
+			if (value == null) {
+				return -1;
+			}
+			Integer code = codes.get(value);
+			if (code == null) {
+				code = values.size();
+				codes.put(value, code);
+				values.add(value);
+			}
+			return code;
+		}
+
+		int lookup(String value) {
+			Integer code = codes.get(value);
+			return code != null ? code : NO_MATCH;
+		}
+	}
+
+	private static final class Snapshot {
+		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		private final boolean offHeap;
+		private final Dictionary[] dictionaries = new Dictionary[DIMENSIONS.size()];
+		private final Map<ObjectId, Integer> rowOf = new HashMap<>();
+		private final ArrayDeque<Integer> freeRows = new ArrayDeque<>();
+		private FloatColumn[] columns = new FloatColumn[NUMERIC_FIELDS.size()];
+		private int[][] codes = new int[DIMENSIONS.size()][];
+		private boolean[] deleted;
+		private int rows;
+		private final long builtAt = System.currentTimeMillis();
+
+		Snapshot(int capacity, boolean offHeap) {
+			this.offHeap = offHeap;
+			for (int f = 0; f < columns.length; f++) {
+				columns[f] = FloatColumn.allocate(capacity, offHeap);
+			}
+			for (int d = 0; d < codes.length; d++) {
+				codes[d] = new int[capacity];
+				dictionaries[d] = new Dictionary();
+			}
+			deleted = new boolean[capacity];
+		}
+
+		//caller holds the write lock (or owns a snapshot nobody else can see yet)
+		void put(ObjectId id, float[] values, String[] dimensions) {
+			Integer row = rowOf.get(id);
+			if (row == null) {
+				row = !freeRows.isEmpty() ? freeRows.poll() : rows++;
+				if (row >= deleted.length) {
+					grow(deleted.length * 2);
+				}
+				rowOf.put(id, row);
+			}
+			for (int f = 0; f < columns.length; f++) {
+				columns[f].set(row, values[f]);
+			}
+			for (int d = 0; d < codes.length; d++) {
+				codes[d][row] = dictionaries[d].encode(dimensions[d]);
+			}
+			deleted[row] = false;
+		}
+
+		void remove(ObjectId id) {
+			Integer row = rowOf.remove(id);
+			if (row != null) {
+				deleted[row] = true;
+				freeRows.push(row);
+			}
+		}
+
+		private void grow(int capacity) {
+			int used = deleted.length;
+			for (int f = 0; f < columns.length; f++) {
+				columns[f] = columns[f].resize(capacity, used);
+			}
+			for (int d = 0; d < codes.length; d++) {
+				codes[d] = Arrays.copyOf(codes[d], capacity);
+			}
+			deleted = Arrays.copyOf(deleted, capacity);
+		}
+	}
+
+	//compiled filter: a dictionary code (or ANY) per dimension and an inclusive [lo, hi] per numeric field
+	private static final class Filter {
+		private final int[] codes = new int[DIMENSIONS.size()];
+		private final float[] lo = new float[NUMERIC_FIELDS.size()];
+		private final float[] hi = new float[NUMERIC_FIELDS.size()];
+		private final int[] rangeFields;
+
+		Filter(Snapshot snapshot, Map<String, String> params) {
+			Arrays.fill(lo, Float.NEGATIVE_INFINITY);
+			Arrays.fill(hi, Float.POSITIVE_INFINITY);
+			List<Integer> ranged = new ArrayList<>();
+			for (int d = 0; d < codes.length; d++) {
+				String value = params.get(DIMENSIONS.get(d));
+				codes[d] = value == null ? ANY : snapshot.dictionaries[d].lookup(value);
+			}
+			for (int f = 0; f < lo.length; f++) {
+				String min = params.get("min." + NUMERIC_FIELDS.get(f));
+				String max = params.get("max." + NUMERIC_FIELDS.get(f));
+				if (min != null || max != null) {
+					lo[f] = min != null ? Float.parseFloat(min) : Float.NEGATIVE_INFINITY;
+					hi[f] = max != null ? Float.parseFloat(max) : Float.POSITIVE_INFINITY;
+					ranged.add(f);
+				}
+			}
+			rangeFields = ranged.stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		boolean matches(Snapshot snapshot, int row) {
+			if (snapshot.deleted[row]) {
+				return false;
+			}
+			for (int d = 0; d < codes.length; d++) {
+				if (codes[d] != ANY && snapshot.codes[d][row] != codes[d]) {
+					return false;
+				}
+			}
+			for (int f : rangeFields) {
+				float value = snapshot.columns[f].get(row);
+				if (value < lo[f] || value > hi[f]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	@Override
+	public String collection() {
+		return "USERS";
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		if (enabled) {
+			rebuildAsync();
+		}
+	}
+
+	//the scan streams all farmers, so it runs on its own thread instead of holding up the shared scheduler
+	@Scheduled(fixedDelayString = "${columnar.rebuild-ms:600000}", initialDelayString = "${columnar.rebuild-ms:600000}")
+	public void scheduledRebuild() {
+		if (enabled) {
+			rebuildAsync();
+		}
+	}
+
+	//false when a rebuild is already running
+	public boolean rebuildAsync() {
+		if (rebuilding.get()) {
+			return false;
+		}
+		Thread thread = new Thread(this::rebuild, "columnar-snapshot");
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+	//builds a fresh snapshot off to the side and swaps it in; readers keep using the old one meanwhile
+	public void rebuild() {
+		if (!rebuilding.compareAndSet(false, true)) {
+			return;
+		}
+		synchronized (changes) {
+			pending = new ArrayList<>();
+		}
+		try {
+			long start = System.currentTimeMillis();
+			Snapshot fresh = new Snapshot(Math.max(initialCapacity, 1024), offHeap);
+			Query query = new Query(Criteria.where("roles").is("User"));
+			for (String field : NUMERIC_FIELDS) {
+				query.fields().include(field);
+			}
+			for (String dimension : DIMENSIONS) {
+				query.fields().include(dimension);
+			}
+			query.cursorBatchSize(5000);
+			float[] values = new float[NUMERIC_FIELDS.size()];
+			String[] dimensions = new String[DIMENSIONS.size()];
+			try (CloseableIterator<Document> farmers = mongoTemplate.stream(query, Document.class, "USERS")) {
+				while (farmers.hasNext()) {
+					Document farmer = farmers.next();
+					read(farmer, values, dimensions);
+					fresh.put(farmer.getObjectId("_id"), values, dimensions);
+				}
+			}
+			int replayed;
+			synchronized (changes) {
+				for (Change change : pending) {
+					change.applyTo(fresh);
+				}
+				replayed = pending.size();
+				pending = null;
+				snapshot = fresh;
+			}
+			log.info("Columnar snapshot of {} farmers built in {} ms ({}), {} concurrent changes replayed", fresh.rowOf.size(),
+					System.currentTimeMillis() - start, offHeap ? "off-heap" : "on-heap", replayed);
+		}
+		catch (Exception e) {
+			log.error("Error while building columnar snapshot", e);
+		}
+		finally {
+			synchronized (changes) {
+				pending = null;
+			}
+			rebuilding.set(false);
+		}
+	}
+
+	public void upsert(UserEntity farmer) {
+		upsertAll(Collections.singletonList(farmer));
+	}
+
+	//for template and bulk writes, which publish no mapping events; the entities must carry roles and every column field
+	public void upsertAll(List<UserEntity> farmers) {
+		List<Change> batch = new ArrayList<>(farmers.size());
+		for (UserEntity farmer : farmers) {
+			//anything but a farmer (the operator account) is skipped, as in onChanges
+			if (farmer.getId() == null || farmer.getRoles() == null || !farmer.getRoles().contains("User")) {
+				continue;
+			}
+			float[] values = {farmer.getLandSize(), farmer.getPastYield(), farmer.getAnnualIncome(), farmer.getSoilPH(),
+					farmer.getNitrogenLevel(), farmer.getOrganicMatterLevel(), farmer.getLandQualityScore(),
+					farmer.getPastRainfall(), farmer.getAvgTemperature(), farmer.getCreditScore()};
+			String[] dimensions = {farmer.getRegion(), farmer.getSoilType(), farmer.getCropTypes()};
+			batch.add(new Change(farmer.getId(), values, dimensions));
+		}
+		apply(batch);
+	}
+
+	public void remove(ObjectId farmerId) {
+		apply(Collections.singletonList(new Change(farmerId, null, null)));
+	}
+
+	@Override
+	public void onChanges(List<ChangeEvent> events) {
+		List<Change> batch = new ArrayList<>(events.size());
+		for (ChangeEvent event : events) {
+			if (event.getType() == ChangeEvent.Type.DELETE) {
+				batch.add(new Change(event.getDocumentId(), null, null));
+			}
+			else if (event.getFullDocument() != null) {
+				List<?> roles = event.getFullDocument().getList("roles", Object.class);
+				if (roles != null && roles.contains("User")) {
+					float[] values = new float[NUMERIC_FIELDS.size()];
+					String[] dimensions = new String[DIMENSIONS.size()];
+					read(event.getFullDocument(), values, dimensions);
+					batch.add(new Change(event.getDocumentId(), values, dimensions));
+				}
+			}
+		}
+		apply(batch);
+	}
+
+	//a rebuild in progress gets a copy of the changes; the swap happens under the same monitor, so every
+	//change reaches either the snapshot being built or the one that replaced it
+	private void apply(List<Change> batch) {
+		Snapshot current;
+		synchronized (changes) {
+			if (pending != null) {
+				pending.addAll(batch);
+			}
+			current = snapshot;
+		}
+		if (current == null || batch.isEmpty()) {
+			return;
+		}
+		current.lock.writeLock().lock();
+		try {
+			for (Change change : batch) {
+				change.applyTo(current);
+			}
+		}
+		finally {
+			current.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void onReset() {
+		rebuild();
+	}
+
+	public Map<String, Object> status() {
+		Snapshot current = snapshot;
+		Map<String, Object> status = new LinkedHashMap<>();
+		status.put("ready", current != null);
+		if (current != null) {
+			status.put("farmers", current.rowOf.size());
+			status.put("offHeap", current.offHeap);
+			status.put("builtAt", current.builtAt);
+		}
+		return status;
+	}
+
+	/**
+	 * count/sum/min/max/mean of one numeric field over the filtered farmers, optionally grouped by a
+	 * dimension. Filters: region/soilType/cropTypes=value and min.&lt;field&gt;/max.&lt;field&gt;.
+	 */
+	public Map<String, Object> aggregate(String field, String groupBy, Map<String, String> params) {
+		Snapshot current = requireSnapshot();
+		int f = fieldIndex(field);
+		int d = groupBy != null ? dimensionIndex(groupBy) : -1;
+		long start = System.nanoTime();
+		current.lock.readLock().lock();
+		try {
+			Filter filter = new Filter(current, params);
+			int groups = d < 0 ? 1 : current.dictionaries[d].values.size() + 1;
+			int rows = current.rows;
+			int chunks = Math.max(1, (rows + CHUNK_ROWS - 1) / CHUNK_ROWS);
+			//per group: count, sum, min, max
+			double[] totals = IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+				double[] partial = newStats(groups);
+				int to = Math.min(rows, (chunk + 1) * CHUNK_ROWS);
+				for (int row = chunk * CHUNK_ROWS; row < to; row++) {
+					if (filter.matches(current, row)) {
+						int group = d < 0 ? 0 : current.codes[d][row] + 1;
+						float value = current.columns[f].get(row);
+						int base = group * 4;
+						partial[base]++;
+						partial[base + 1] += value;
+						partial[base + 2] = Math.min(partial[base + 2], value);
+						partial[base + 3] = Math.max(partial[base + 3], value);
+					}
+				}
+				return partial;
+			}).reduce(newStats(groups), FarmerColumnStore::mergeStats);
+
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("field", field);
+			if (d < 0) {
+				result.putAll(stats(totals, 0));
+			}
+			else {
+				Map<String, Object> byGroup = new LinkedHashMap<>();
+				for (int group = 0; group < groups; group++) {
+					if (totals[group * 4] > 0) {
+						byGroup.put(group == 0 ? "(none)" : current.dictionaries[d].values.get(group - 1), stats(totals, group));
+					}
+				}
+				result.put("groupBy", groupBy);
+				result.put("groups", byGroup);
+			}
+			result.put("tookMicros", (System.nanoTime() - start) / 1000);
+			return result;
+		}
+		finally {
+			current.lock.readLock().unlock();
+		}
+	}
+
+	//equal-width histogram of one field over [min, max); values outside the range are counted separately
+	public Map<String, Object> histogram(String field, int bins, float min, float max, Map<String, String> params) {
+		if (bins < 1 || bins > 1000 || !(max > min)) {
+			throw new IllegalArgumentException("bins must be 1..1000 and max greater than min");
+		}
+		Snapshot current = requireSnapshot();
+		int f = fieldIndex(field);
+		long start = System.nanoTime();
+		current.lock.readLock().lock();
+		try {
+			Filter filter = new Filter(current, params);
+			int rows = current.rows;
+			int chunks = Math.max(1, (rows + CHUNK_ROWS - 1) / CHUNK_ROWS);
+			float width = (max - min) / bins;
+			//slots: bins, then below-range, then above-range
+			long[] counts = IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+				long[] partial = new long[bins + 2];
+				int to = Math.min(rows, (chunk + 1) * CHUNK_ROWS);
+				for (int row = chunk * CHUNK_ROWS; row < to; row++) {
+					if (filter.matches(current, row)) {
+						float value = current.columns[f].get(row);
+						if (value < min) {
+							partial[bins]++;
+						}
+						else if (value >= max) {
+							partial[bins + 1]++;
+						}
+						else {
+							partial[Math.min(bins - 1, (int) ((value - min) / width))]++;
+						}
+					}
+				}
+				return partial;
+			}).reduce(new long[bins + 2], (a, b) -> {
+				long[] merged = new long[a.length];
+				for (int i = 0; i < a.length; i++) {
+					merged[i] = a[i] + b[i];
+				}
+				return merged;
+			});
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("field", field);
+			result.put("min", min);
+			result.put("max", max);
+			result.put("binWidth", width);
+			result.put("counts", Arrays.copyOf(counts, bins));
+			result.put("belowMin", counts[bins]);
+			result.put("aboveMax", counts[bins + 1]);
+			result.put("tookMicros", (System.nanoTime() - start) / 1000);
+			return result;
+		}
+		finally {
+			current.lock.readLock().unlock();
+		}
+	}
+
+	private Snapshot requireSnapshot() {
+		Snapshot current = snapshot;
+		if (current == null) {
+			throw new IllegalStateException("Columnar snapshot is not built yet");
+		}
+		return current;
+	}
+
+	private static void read(Document farmer, float[] values, String[] dimensions) {
+		for (int f = 0; f < values.length; f++) {
+			Object value = farmer.get(NUMERIC_FIELDS.get(f));
+			values[f] = value instanceof Number ? ((Number) value).floatValue() : 0f;
+		}
+		for (int d = 0; d < dimensions.length; d++) {
+			Object value = farmer.get(DIMENSIONS.get(d));
+			dimensions[d] = value != null ? value.toString() : null;
+		}
+	}
+
+	private static int fieldIndex(String field) {
+		int index = NUMERIC_FIELDS.indexOf(field);
+		if (index < 0) {
+			throw new IllegalArgumentException("Unknown field '" + field + "'. Allowed: " + NUMERIC_FIELDS);
+		}
+		return index;
+	}
+
+	private static int dimensionIndex(String dimension) {
+		int index = DIMENSIONS.indexOf(dimension);
+		if (index < 0) {
+			throw new IllegalArgumentException("Unknown groupBy '" + dimension + "'. Allowed: " + DIMENSIONS);
+		}
+		return index;
+	}
+
+	private static double[] newStats(int groups) {
+		double[] stats = new double[groups * 4];
+		for (int group = 0; group < groups; group++) {
+			stats[group * 4 + 2] = Double.POSITIVE_INFINITY;
+			stats[group * 4 + 3] = Double.NEGATIVE_INFINITY;
+		}
+		return stats;
+	}
+
+	private static double[] mergeStats(double[] a, double[] b) {
+		double[] merged = new double[a.length];
+		for (int base = 0; base < a.length; base += 4) {
+			merged[base] = a[base] + b[base];
+			merged[base + 1] = a[base + 1] + b[base + 1];
+			merged[base + 2] = Math.min(a[base + 2], b[base + 2]);
+			merged[base + 3] = Math.max(a[base + 3], b[base + 3]);
+		}
+		return merged;
+	}
+
+	private static Map<String, Object> stats(double[] totals, int group) {
+		int base = group * 4;
+		long count = (long) totals[base];
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("count", count);
+		stats.put("sum", totals[base + 1]);
+		stats.put("min", count > 0 ? totals[base + 2] : null);
+		stats.put("max", count > 0 ? totals[base + 3] : null);
+		stats.put("mean", count > 0 ? totals[base + 1] / count : null);
+		return stats;
+	}
+}
@@ -0,0 +1,31 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+//Applies this instance's own farmer saves to the columnar snapshot; other instances' writes arrive via the change stream
+@Component
+public class FarmerColumnStoreListener extends AbstractMongoEventListener<UserEntity> {
+	
+	@Autowired
+	private FarmerColumnStore farmerColumnStore;
+	
+	@Override
+	public void onAfterSave(AfterSaveEvent<UserEntity> event) {
+		farmerColumnStore.upsert(event.getSource());
+	}
+	
+	@Override
+	public void onAfterDelete(AfterDeleteEvent<UserEntity> event) {
+		Object id = event.getSource().get("_id");
+		if (id instanceof ObjectId) {
+			farmerColumnStore.remove((ObjectId) id);
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runtime fault injection for the external integrations: SMTP (EmailService.sendEmail), SMS
+ * (PhoneService.sendOTP), the scoring API (CreditScoreClient) and the blocking Mongo repositories.
+ * Each call site asks inject(target) before doing the real work; with a fault installed for that target
+ * the call is delayed (fixed, uniform or exponential latency), fails with an InjectedFault at the given
+ * error rate, or hangs at the given hang rate until the fault is cleared or faults.max-hang-ms passes.
+ * Faults are installed through /admin/faults and expire after their duration. Off unless faults.enabled,
+ * in which case inject is a single field read.
+ */
+@Slf4j
+@Service
+public class FaultInjector {
+	
+	public static final String SMTP = "smtp";
+	public static final String SMS = "sms";
+	public static final String SCORING = "scoring";
+	public static final String MONGO = "mongo";
+	public static final List<String> TARGETS = Arrays.asList(SMTP, SMS, SCORING, MONGO);
+	
+	public static final String FIXED = "fixed";
+	public static final String UNIFORM = "uniform";
+	public static final String EXPONENTIAL = "exponential";
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	@Value("${faults.enabled:false}")
+	private boolean enabled;
+	
+	@Value("${faults.max-hang-ms:600000}")
+	private long maxHangMs;
+	
+	private final Map<String, Fault> faults = new ConcurrentHashMap<>();
+	
+	//what an operator asks for; latencyMs is the fixed delay, the uniform minimum or the exponential mean
+	@Getter
+	@Setter
+	public static class FaultSpec {
+		private String distribution = FIXED;
+		private long latencyMs;
+		private long maxLatencyMs;
+		private double errorRate;
+		private double hangRate;
+		//0 keeps the fault until it is cleared
+		private long durationSeconds;
+	}
+	
+	public static class InjectedFault extends RuntimeException {
+		public InjectedFault(String message) {
+			super(message);
+		}
+	}
+	
+	private static class Fault {
+		final FaultSpec spec;
+		final long installedAt = System.currentTimeMillis();
+		final long expiresAt;
+		//released when the fault is cleared or replaced, waking every hung call
+		final CountDownLatch released = new CountDownLatch(1);
+		
+		Fault(FaultSpec spec) {
+			this.spec = spec;
+			this.expiresAt = spec.getDurationSeconds() > 0 ? installedAt + TimeUnit.SECONDS.toMillis(spec.getDurationSeconds()) : Long.MAX_VALUE;
+		}
+	}
+	
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	public void inject(String target) {
+		if (!enabled) {
+			return;
+		}
+		Fault fault = faults.get(target);
+		if (fault == null) {
+			return;
+		}
+		if (System.currentTimeMillis() >= fault.expiresAt) {
+			if (faults.remove(target, fault)) {
+				fault.released.countDown();
+				log.info("Fault on {} expired", target);
+			}
+			return;
+		}
+		FaultSpec spec = fault.spec;
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		try {
+			if (spec.getHangRate() > 0 && random.nextDouble() < spec.getHangRate()) {
+				count(target, "hang");
+				fault.released.await(Math.min(maxHangMs, fault.expiresAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+				//a hang ends the way a read timeout would
+				throw new InjectedFault("Injected hang on " + target);
+			}
+			long delay = delay(spec, random);
+			if (delay > 0) {
+				count(target, "latency");
+				Thread.sleep(delay);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InjectedFault("Interrupted during injected fault on " + target);
+		}
+		if (spec.getErrorRate() > 0 && random.nextDouble() < spec.getErrorRate()) {
+			count(target, "error");
+			throw new InjectedFault("Injected failure on " + target);
+		}
+	}
+	
+	public void install(String target, FaultSpec spec) {
+		if (!TARGETS.contains(target)) {
+			throw new IllegalArgumentException("Unknown fault target " + target + ", expected one of " + TARGETS);
+		}
+		if (!Arrays.asList(FIXED, UNIFORM, EXPONENTIAL).contains(spec.getDistribution())) {
+			throw new IllegalArgumentException("distribution must be fixed, uniform or exponential");
+		}
+		if (spec.getErrorRate() < 0 || spec.getErrorRate() > 1 || spec.getHangRate() < 0 || spec.getHangRate() > 1) {
+			throw new IllegalArgumentException("errorRate and hangRate must be between 0 and 1");
+		}
+		if (spec.getLatencyMs() < 0 || (UNIFORM.equals(spec.getDistribution()) && spec.getMaxLatencyMs() < spec.getLatencyMs())) {
+			throw new IllegalArgumentException("latencyMs must be >= 0 and maxLatencyMs >= latencyMs for uniform latency");
+		}
+		Fault previous = faults.put(target, new Fault(spec));
+		if (previous != null) {
+			previous.released.countDown();
+		}
+		log.warn("Fault installed on {}: {} latency {}-{}ms, error rate {}, hang rate {}, for {}s", target, spec.getDistribution(),
+				spec.getLatencyMs(), spec.getMaxLatencyMs(), spec.getErrorRate(), spec.getHangRate(), spec.getDurationSeconds());
+	}
+	
+	public boolean clear(String target) {
+		Fault removed = faults.remove(target);
+		if (removed != null) {
+			removed.released.countDown();
+			log.warn("Fault on {} cleared", target);
+		}
+		return removed != null;
+	}
+	
+	public void clearAll() {
+		for (String target : TARGETS) {
+			clear(target);
+		}
+	}
+	
+	public Map<String, Object> active() {
+		Map<String, Object> active = new LinkedHashMap<>();
+		long now = System.currentTimeMillis();
+		for (String target : TARGETS) {
+			Fault fault = faults.get(target);
+			if (fault != null && now < fault.expiresAt) {
+				Map<String, Object> entry = new LinkedHashMap<>();
+				entry.put("spec", fault.spec);
+				entry.put("ageSeconds", TimeUnit.MILLISECONDS.toSeconds(now - fault.installedAt));
+				active.put(target, entry);
+			}
+		}
+		return active;
+	}
+	
+	private static long delay(FaultSpec spec, ThreadLocalRandom random) {
+		switch (spec.getDistribution()) {
+			case UNIFORM:
+				return spec.getLatencyMs() + (long) (random.nextDouble() * (spec.getMaxLatencyMs() - spec.getLatencyMs()));
+			case EXPONENTIAL:
+				//long-tailed around the mean, optionally capped by maxLatencyMs
+				long sample = (long) (-spec.getLatencyMs() * Math.log(1 - random.nextDouble()));
+				return spec.getMaxLatencyMs() > 0 ? Math.min(sample, spec.getMaxLatencyMs()) : sample;
+			default:
+				return spec.getLatencyMs();
+		}
+	}
+	
+	private void count(String target, String kind) {
+		meterRegistry.counter("faults.injected", "target", target, "kind", kind).increment();
+	}
+}
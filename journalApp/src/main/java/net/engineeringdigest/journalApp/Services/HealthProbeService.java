@@ -0,0 +1,314 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Background probes behind /health/ready and /health/live. Each dependency (Mongo latency and pool wait
+ * queue, Redis, the scoring service, SMTP, in-process queue depths) is probed on its own thread at a
+ * fixed delay and only the latest result is kept, so load-balancer checks are answered from memory and
+ * never add load to the dependencies themselves. A result older than health.stale-after-intervals probe
+ * intervals counts as DOWN, which also covers a probe stuck on a hung dependency. Only the probes listed
+ * in health.required decide readiness; the others are reported but informational. The scoring service and
+ * SMTP are external and shared by every instance, so by default they are informational: a blip in either
+ * would otherwise mark the whole fleet not-ready at once.
+ */
+@Slf4j
+@Service
+public class HealthProbeService {
+	
+	public static final String MONGO = "mongo";
+	public static final String REDIS = "redis";
+	public static final String SCORING = "scoring";
+	public static final String SMTP = "smtp";
+	public static final String QUEUES = "queues";
+	public static final String DEADLOCKS = "deadlocks";
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Autowired
+	private ObjectProvider<RedisConnectionFactory> redisConnectionFactoryProvider;
+	
+	@Autowired
+	private ObjectProvider<JavaMailSender> mailSenderProvider;
+	
+	@Autowired
+	private List<QueueDepthSource> queueDepthSources;
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	@Value("${health.required:mongo,redis,queues}")
+	private Set<String> required;
+	
+	@Value("${health.probe-interval-ms:5000}")
+	private long probeIntervalMs;
+	
+	@Value("${health.smtp.interval-ms:60000}")
+	private long smtpIntervalMs;
+	
+	@Value("${health.stale-after-intervals:3}")
+	private int staleAfterIntervals;
+	
+	@Value("${health.mongo.max-latency-ms:250}")
+	private long mongoMaxLatencyMs;
+	
+	@Value("${health.mongo.max-wait-queue:10}")
+	private int mongoMaxWaitQueue;
+	
+	@Value("${health.redis.enabled:${cache.profile.redis.enabled:false}}")
+	private boolean redisEnabled;
+	
+	@Value("${health.scoring.url:${scoring.url}}")
+	private String scoringUrl;
+	
+	@Value("${health.scoring.timeout-ms:2000}")
+	private int scoringTimeoutMs;
+	
+	@Value("${health.queue.max-depth:1000}")
+	private int maxQueueDepth;
+	
+	private final Map<String, ProbeResult> results = new ConcurrentHashMap<>();
+	
+	//probe name -> interval, published once all probes are scheduled; empty until the app is ready
+	private volatile Map<String, Long> intervals = Collections.emptyMap();
+	
+	private ScheduledExecutorService scheduler;
+	
+	@Getter
+	@AllArgsConstructor
+	public static class ProbeResult {
+		private final boolean up;
+		private final long latencyMs;
+		private final String detail;
+		private final long checkedAt;
+	}
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		Map<String, Long> scheduled = new LinkedHashMap<>();
+		//one thread per probe so a hung SMTP handshake cannot delay the Mongo probe
+		scheduler = Executors.newScheduledThreadPool(6, r -> {
+			Thread thread = new Thread(r, "health-probe");
+			thread.setDaemon(true);
+			return thread;
+		});
+		schedule(scheduled, MONGO, probeIntervalMs, this::probeMongo);
+		if (redisEnabled) {
+			schedule(scheduled, REDIS, probeIntervalMs, this::probeRedis);
+		}
+		schedule(scheduled, SCORING, probeIntervalMs, this::probeScoring);
+		schedule(scheduled, SMTP, smtpIntervalMs, this::probeSmtp);
+		schedule(scheduled, QUEUES, probeIntervalMs, this::probeQueues);
+		schedule(scheduled, DEADLOCKS, probeIntervalMs, this::probeDeadlocks);
+		intervals = scheduled;
+		Gauge.builder("health.ready", this, service -> service.isReady() ? 1 : 0).register(meterRegistry);
+	}
+	
+	@PreDestroy
+	public void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+	
+	public boolean isLive() {
+		ProbeResult deadlocks = results.get(DEADLOCKS);
+		return deadlocks == null || deadlocks.isUp();
+	}
+	
+	public boolean isReady() {
+		Map<String, Long> intervals = this.intervals;
+		if (intervals.isEmpty()) {
+			return false;
+		}
+		long now = System.currentTimeMillis();
+		for (String name : intervals.keySet()) {
+			if (required.contains(name) && !isUp(name, intervals.get(name), now)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	public Map<String, Object> report() {
+		Map<String, Long> intervals = this.intervals;
+		long now = System.currentTimeMillis();
+		Map<String, Object> checks = new LinkedHashMap<>();
+		for (Map.Entry<String, Long> entry : intervals.entrySet()) {
+			String name = entry.getKey();
+			ProbeResult result = results.get(name);
+			Map<String, Object> check = new LinkedHashMap<>();
+			check.put("status", isUp(name, entry.getValue(), now) ? "UP" : "DOWN");
+			check.put("required", required.contains(name));
+			if (result != null) {
+				check.put("latencyMs", result.getLatencyMs());
+				check.put("detail", result.getDetail());
+				check.put("ageMs", now - result.getCheckedAt());
+			}
+			checks.put(name, check);
+		}
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("status", isReady() ? "UP" : "DOWN");
+		report.put("checks", checks);
+		return report;
+	}
+	
+	private boolean isUp(String name, long intervalMs, long now) {
+		ProbeResult result = results.get(name);
+		return result != null && result.isUp() && now - result.getCheckedAt() <= intervalMs * staleAfterIntervals;
+	}
+	
+	private void schedule(Map<String, Long> scheduled, String name, long intervalMs, Supplier<ProbeResult> probe) {
+		scheduled.put(name, intervalMs);
+		scheduler.scheduleWithFixedDelay(() -> {
+			ProbeResult result;
+			long start = System.nanoTime();
+			try {
+				result = probe.get();
+			}
+			catch (Exception e) {
+				result = new ProbeResult(false, elapsedMs(start), e.getClass().getSimpleName() + ": " + e.getMessage(), System.currentTimeMillis());
+			}
+			ProbeResult previous = results.put(name, result);
+			if (previous == null || previous.isUp() != result.isUp()) {
+				if (result.isUp()) {
+					log.info("Health probe {} is UP ({})", name, result.getDetail());
+				}
+				else {
+					log.warn("Health probe {} is DOWN ({})", name, result.getDetail());
+				}
+			}
+		}, 0, intervalMs, TimeUnit.MILLISECONDS);
+	}
+	
+	private ProbeResult probeMongo() {
+		long start = System.nanoTime();
+		mongoTemplate.executeCommand(new Document("ping", 1));
+		long latency = elapsedMs(start);
+		//waitqueuesize counts threads blocked waiting for a pooled connection, the first sign of an exhausted pool
+		int waiting = (int) sumGauges("mongodb.driver.pool.waitqueuesize");
+		int checkedOut = (int) sumGauges("mongodb.driver.pool.checkedout");
+		String detail = "ping " + latency + "ms, " + checkedOut + " connections checked out, " + waiting + " waiting";
+		return new ProbeResult(latency <= mongoMaxLatencyMs && waiting <= mongoMaxWaitQueue, latency, detail, System.currentTimeMillis());
+	}
+	
+	private ProbeResult probeRedis() {
+		RedisConnectionFactory factory = redisConnectionFactoryProvider.getIfAvailable();
+		if (factory == null) {
+			return new ProbeResult(false, 0, "no Redis connection factory", System.currentTimeMillis());
+		}
+		long start = System.nanoTime();
+		RedisConnection connection = factory.getConnection();
+		try {
+			String reply = connection.ping();
+			return new ProbeResult("PONG".equalsIgnoreCase(reply), elapsedMs(start), "ping " + reply, System.currentTimeMillis());
+		}
+		finally {
+			connection.close();
+		}
+	}
+	
+	//any answer below 500 means the service is reachable; a GET on /predict is rejected with 405 without scoring anything
+	private ProbeResult probeScoring() {
+		long start = System.nanoTime();
+		HttpURLConnection connection = null;
+		try {
+			connection = (HttpURLConnection) new URL(scoringUrl).openConnection();
+			connection.setConnectTimeout(scoringTimeoutMs);
+			connection.setReadTimeout(scoringTimeoutMs);
+			connection.setRequestMethod("GET");
+			int status = connection.getResponseCode();
+			return new ProbeResult(status < 500, elapsedMs(start), "HTTP " + status, System.currentTimeMillis());
+		}
+		catch (IOException e) {
+			return new ProbeResult(false, elapsedMs(start), e.toString(), System.currentTimeMillis());
+		}
+		finally {
+			if (connection != null) {
+				connection.disconnect();
+			}
+		}
+	}
+	
+	private ProbeResult probeSmtp() {
+		JavaMailSender sender = mailSenderProvider.getIfAvailable();
+		if (!(sender instanceof JavaMailSenderImpl)) {
+			return new ProbeResult(false, 0, "no SMTP sender configured", System.currentTimeMillis());
+		}
+		long start = System.nanoTime();
+		try {
+			((JavaMailSenderImpl) sender).testConnection();
+			return new ProbeResult(true, elapsedMs(start), "connected", System.currentTimeMillis());
+		}
+		catch (MessagingException e) {
+			return new ProbeResult(false, elapsedMs(start), e.getMessage(), System.currentTimeMillis());
+		}
+	}
+	
+	private ProbeResult probeQueues() {
+		StringBuilder detail = new StringBuilder();
+		boolean up = true;
+		for (QueueDepthSource source : queueDepthSources) {
+			int depth = source.queueDepth();
+			up &= depth <= maxQueueDepth;
+			if (detail.length() > 0) {
+				detail.append(", ");
+			}
+			detail.append(source.queueName()).append('=').append(depth);
+		}
+		return new ProbeResult(up, 0, detail.toString(), System.currentTimeMillis());
+	}
+	
+	private ProbeResult probeDeadlocks() {
+		long[] deadlocked = ManagementFactory.getThreadMXBean().findDeadlockedThreads();
+		int count = deadlocked == null ? 0 : deadlocked.length;
+		return new ProbeResult(count == 0, 0, count + " deadlocked threads", System.currentTimeMillis());
+	}
+	
+	private double sumGauges(String name) {
+		double sum = 0;
+		for (Gauge gauge : meterRegistry.find(name).gauges()) {
+			sum += gauge.value();
+		}
+		return sum;
+	}
+	
+	private static long elapsedMs(long startNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+}
@@ -0,0 +1,228 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Remembers the outcome of requests sent with an Idempotency-Key so a retry replays the first response
+ * instead of repeating its side effects. The first request for a key claims it with a pending record
+ * (SET NX in Redis when idempotency.redis.enabled, otherwise a local Caffeine map) and replaces it with
+ * the stored response once it finishes. Duplicates arriving meanwhile wait for that response: on the
+ * same instance through an in-flight future, across instances by polling the shared record. A key reused
+ * with a different request fingerprint is reported as a mismatch and never replayed.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+	
+	private static final String REDIS_PREFIX = "idempotency:";
+	
+	public enum State {
+		OWNER, REPLAY, MISMATCH, IN_PROGRESS
+	}
+	
+	@Getter
+	@Setter
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class Record {
+		private String fingerprint;
+		private boolean completed;
+		private int status;
+		private String contentType;
+		private byte[] body;
+	}
+	
+	@Getter
+	@AllArgsConstructor
+	public static class Claim {
+		private final State state;
+		private final Record record;
+	}
+	
+	@Autowired
+	private ObjectMapper objectMapper;
+	
+	@Autowired
+	private ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+	
+	@Value("${idempotency.ttl-seconds:86400}")
+	private long ttlSeconds;
+	
+	@Value("${idempotency.lock-seconds:60}")
+	private long lockSeconds;
+	
+	@Value("${idempotency.wait-ms:10000}")
+	private long waitMs;
+	
+	@Value("${idempotency.poll-ms:50}")
+	private long pollMs;
+	
+	@Value("${idempotency.max-local-entries:100000}")
+	private long maxLocalEntries;
+	
+	@Value("${idempotency.redis.enabled:${cache.profile.redis.enabled:false}}")
+	private boolean redisEnabled;
+	
+	private Cache<String, Record> local;
+	private StringRedisTemplate redis;
+	
+	//keys whose first request is executing on this instance; completed with the stored record, or null when abandoned
+	private final Map<String, CompletableFuture<Record>> inFlight = new ConcurrentHashMap<>();
+	
+	@PostConstruct
+	public void setup() {
+		if (redisEnabled) {
+			redis = redisTemplateProvider.getObject();
+		}
+		else {
+			local = Caffeine.newBuilder().maximumSize(maxLocalEntries).expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).build();
+		}
+	}
+	
+	public Claim claim(String key, String fingerprint) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + waitMs;
+		while (true) {
+			CompletableFuture<Record> slot = new CompletableFuture<>();
+			CompletableFuture<Record> running = inFlight.putIfAbsent(key, slot);
+			if (running != null) {
+				Record record = await(running, deadline);
+				if (record != null) {
+					return resolve(record, fingerprint);
+				}
+				if (System.currentTimeMillis() >= deadline) {
+					return new Claim(State.IN_PROGRESS, null);
+				}
+				//the owner gave up without storing a response, so try to claim the key ourselves
+				continue;
+			}
+			Record existing = claimShared(key, fingerprint, deadline);
+			if (existing == null) {
+				return new Claim(State.OWNER, null);
+			}
+			inFlight.remove(key, slot);
+			slot.complete(existing.isCompleted() ? existing : null);
+			return resolve(existing, fingerprint);
+		}
+	}
+	
+	public void complete(String key, Record record) {
+		record.setCompleted(true);
+		try {
+			put(key, record, ttlSeconds);
+		}
+		catch (Exception e) {
+			log.warn("Storing idempotent response for {} failed: {}", key, e.getMessage());
+		}
+		CompletableFuture<Record> slot = inFlight.remove(key);
+		if (slot != null) {
+			slot.complete(record);
+		}
+	}
+	
+	//releases the claim without a stored response so the next retry executes again
+	public void abandon(String key) {
+		try {
+			delete(key);
+		}
+		catch (Exception e) {
+			log.warn("Releasing idempotency key {} failed: {}", key, e.getMessage());
+		}
+		CompletableFuture<Record> slot = inFlight.remove(key);
+		if (slot != null) {
+			slot.complete(null);
+		}
+	}
+	
+	//returns null once this caller holds the claim, otherwise the record that blocks it
+	private Record claimShared(String key, String fingerprint, long deadline) throws InterruptedException {
+		Record pending = new Record(fingerprint, false, 0, null, null);
+		while (true) {
+			Record existing;
+			try {
+				existing = putIfAbsent(key, pending);
+			}
+			catch (Exception e) {
+				//without the store we cannot deduplicate; executing is better than failing the request
+				log.warn("Idempotency store unavailable for {}: {}", key, e.getMessage());
+				return null;
+			}
+			if (existing == null) {
+				return null;
+			}
+			if (existing.isCompleted() || !fingerprint.equals(existing.getFingerprint()) || System.currentTimeMillis() >= deadline) {
+				return existing;
+			}
+			Thread.sleep(pollMs);
+		}
+	}
+	
+	private Record await(CompletableFuture<Record> running, long deadline) throws InterruptedException {
+		try {
+			return running.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException | ExecutionException e) {
+			return null;
+		}
+	}
+	
+	private static Claim resolve(Record record, String fingerprint) {
+		if (!fingerprint.equals(record.getFingerprint())) {
+			return new Claim(State.MISMATCH, record);
+		}
+		return new Claim(record.isCompleted() ? State.REPLAY : State.IN_PROGRESS, record);
+	}
+	
+	private Record putIfAbsent(String key, Record record) throws Exception {
+		if (redis == null) {
+			return local.asMap().putIfAbsent(key, record);
+		}
+		String json = objectMapper.writeValueAsString(record);
+		Boolean claimed = redis.opsForValue().setIfAbsent(REDIS_PREFIX + key, json, Duration.ofSeconds(lockSeconds));
+		if (Boolean.TRUE.equals(claimed)) {
+			return null;
+		}
+		String existing = redis.opsForValue().get(REDIS_PREFIX + key);
+		//expired between the two calls: report it as still pending so the caller polls and claims again
+		return existing == null ? record : objectMapper.readValue(existing, Record.class);
+	}
+	
+	private void put(String key, Record record, long ttl) throws Exception {
+		if (redis == null) {
+			local.put(key, record);
+		}
+		else {
+			redis.opsForValue().set(REDIS_PREFIX + key, objectMapper.writeValueAsString(record), Duration.ofSeconds(ttl));
+		}
+	}
+	
+	private void delete(String key) {
+		if (redis == null) {
+			local.invalidate(key);
+		}
+		else {
+			redis.delete(REDIS_PREFIX + key);
+		}
+	}
+}
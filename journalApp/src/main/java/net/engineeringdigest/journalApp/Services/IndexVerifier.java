@@ -0,0 +1,64 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * Replacement for spring.data.mongodb.auto-index-creation when startup time matters: after the app is
+ * ready, a background thread ensures every @Indexed/@CompoundIndex declared on the mapped documents.
+ * ensureIndex is a no-op for indexes that already exist, so this is cheap on a warm database.
+ */
+@Slf4j
+@Service
+public class IndexVerifier {
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Value("${mongo.index-verifier.enabled:false}")
+	private boolean enabled;
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		if (enabled) {
+			Thread thread = new Thread(this::verify, "index-verifier");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+	
+	public void verify() {
+		long start = System.currentTimeMillis();
+		MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext = mongoTemplate.getConverter().getMappingContext();
+		IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+		int ensured = 0;
+		for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+			if (!entity.isAnnotationPresent(Document.class)) {
+				continue;
+			}
+			for (IndexDefinition index : resolver.resolveIndexFor(entity.getTypeInformation())) {
+				try {
+					mongoTemplate.indexOps(entity.getCollection()).ensureIndex(index);
+					ensured++;
+				}
+				catch (Exception e) {
+					log.error("Could not ensure index {} on {}", index.getIndexKeys(), entity.getCollection(), e);
+				}
+			}
+		}
+		log.info("Verified {} indexes in {} ms", ensured, System.currentTimeMillis() - start);
+	}
+}
@@ -0,0 +1,116 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.LoanHistoryBucket;
+import net.engineeringdigest.journalApp.Entities.LoanHistoryEntry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One-off move of the legacy USERS.history string lists into LOAN_HISTORY buckets. Runs in the
+ * background after startup in batches ordered by _id; a user's migrated buckets are replaced before the
+ * list is unset, so an interrupted run can simply be repeated. Live appends never go into migrated
+ * buckets (LoanHistoryService.record), so the replace only ever drops entries this migration wrote.
+ * Until a farmer is reached UserEntity still carries the list, so full-document saves keep it.
+ */
+@Slf4j
+@Service
+public class LoanHistoryMigration {
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Autowired
+	private ResourceVersionService resourceVersionService;
+	
+	@Value("${history.migration.enabled:true}")
+	private boolean enabled;
+	
+	@Value("${history.migration.batch-size:500}")
+	private int batchSize;
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		if (enabled) {
+			Thread thread = new Thread(this::migrate, "loan-history-migration");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+	
+	public void migrate() {
+		try {
+			Map<String, ObjectId> bankIds = new HashMap<>();
+			ObjectId lastId = null;
+			long migrated = 0;
+			while (true) {
+				Criteria criteria = Criteria.where("history.0").exists(true);
+				if (lastId != null) {
+					criteria = criteria.and("_id").gt(lastId);
+				}
+				Query query = new Query(criteria).with(Sort.by("_id")).limit(batchSize);
+				query.fields().include("_id").include("history").include("creditScore");
+				List<Document> users = mongoTemplate.find(query, Document.class, "USERS");
+				if (users.isEmpty()) {
+					break;
+				}
+				List<LoanHistoryBucket> buckets = new ArrayList<>();
+				List<ObjectId> userIds = new ArrayList<>();
+				for (Document user : users) {
+					ObjectId userId = user.getObjectId("_id");
+					userIds.add(userId);
+					Number score = (Number) user.get("creditScore");
+					//the legacy list has no timestamps; the document creation time is the best available bound
+					Instant timestamp = userId.getDate().toInstant();
+					List<LoanHistoryEntry> entries = new ArrayList<>();
+					for (Object bankName : user.getList("history", Object.class)) {
+						String name = String.valueOf(bankName);
+						ObjectId bankId = bankIds.computeIfAbsent(name, this::bankId);
+						entries.add(new LoanHistoryEntry(timestamp, bankId, name, LoanHistoryService.APPROVED, score != null ? score.floatValue() : 0));
+					}
+					for (int i = 0; i < entries.size(); i += LoanHistoryBucket.BUCKET_SIZE) {
+						List<LoanHistoryEntry> slice = new ArrayList<>(entries.subList(i, Math.min(entries.size(), i + LoanHistoryBucket.BUCKET_SIZE)));
+						buckets.add(new LoanHistoryBucket(null, userId, slice.size(), timestamp, timestamp, true, slice));
+					}
+					lastId = userId;
+				}
+				mongoTemplate.remove(new Query(Criteria.where("farmerId").in(userIds).and("migrated").is(true)), LoanHistoryBucket.class);
+				mongoTemplate.insert(buckets, LoanHistoryBucket.class);
+				//the version bump makes a save() that loaded the old list retry on the migrated document
+				resourceVersionService.updateMulti(new Query(Criteria.where("_id").in(userIds)), new Update().unset("history").inc("version", 1),
+						ResourceVersionService.USERS);
+				migrated += users.size();
+			}
+			if (migrated > 0) {
+				log.info("Migrated loan history of {} farmers into LOAN_HISTORY", migrated);
+			}
+		}
+		catch (Exception e) {
+			log.error("Error while migrating loan history", e);
+		}
+	}
+	
+	private ObjectId bankId(String bankName) {
+		Query query = new Query(Criteria.where("bankName").is(bankName));
+		query.fields().include("_id");
+		Document bank = mongoTemplate.findOne(query, Document.class, "BANKS");
+		return bank != null ? bank.getObjectId("_id") : null;
+	}
+}
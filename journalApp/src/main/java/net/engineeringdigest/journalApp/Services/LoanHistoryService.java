@@ -0,0 +1,108 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.BankEntity;
+import net.engineeringdigest.journalApp.Entities.LoanHistoryBucket;
+import net.engineeringdigest.journalApp.Entities.LoanHistoryEntry;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Service
+public class LoanHistoryService {
+	
+	public static final String APPROVED = "APPROVED";
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	//appends to the farmer's open bucket, or opens a new one once the current bucket is full. Buckets written
+	//by LoanHistoryMigration are never appended to, so a repeated migration can replace them safely
+	public void record(UserEntity farmer, BankEntity bank, String status) {
+		Instant now = Instant.now();
+		LoanHistoryEntry entry = new LoanHistoryEntry(now, bank.getId(), bank.getBankName(), status, farmer.getCreditScore());
+		Query openBucket = new Query(Criteria.where("farmerId").is(farmer.getId()).and("count").lt(LoanHistoryBucket.BUCKET_SIZE)
+				.and("migrated").is(false));
+		Update update = new Update()
+				.push("entries", entry)
+				.inc("count", 1)
+				.set("lastTimestamp", now)
+				.setOnInsert("firstTimestamp", now)
+				.setOnInsert("migrated", false);
+		try {
+			mongoTemplate.upsert(openBucket, update, LoanHistoryBucket.class);
+		}
+		catch (DuplicateKeyException e) {
+			//a concurrent append opened the bucket first (farmer_open index); this one now finds it
+			mongoTemplate.upsert(openBucket, update, LoanHistoryBucket.class);
+		}
+	}
+	
+	//newest first, _id breaking ties between migrated buckets that share a firstTimestamp; only the bucket headers are scanned to locate the page, then the needed buckets are read
+	public Map<String, Object> getPage(ObjectId farmerId, int page, int size) {
+		Query headers = new Query(Criteria.where("farmerId").is(farmerId)).with(Sort.by(Sort.Direction.DESC, "firstTimestamp", "_id"));
+		headers.fields().include("_id").include("count");
+		List<LoanHistoryBucket> buckets = mongoTemplate.find(headers, LoanHistoryBucket.class);
+		
+		long total = 0;
+		for (LoanHistoryBucket bucket : buckets) {
+			total += bucket.getCount();
+		}
+		long from = (long) page * size;
+		long to = Math.min(total, from + size);
+		List<ObjectId> needed = new ArrayList<>();
+		long seen = 0;
+		long skipInFirst = 0;
+		for (LoanHistoryBucket bucket : buckets) {
+			long bucketEnd = seen + bucket.getCount();
+			if (bucketEnd > from && seen < to) {
+				if (needed.isEmpty()) {
+					skipInFirst = from - seen;
+				}
+				needed.add(bucket.getId());
+			}
+			seen = bucketEnd;
+		}
+		
+		List<LoanHistoryEntry> entries = new ArrayList<>();
+		if (!needed.isEmpty()) {
+			Query query = new Query(Criteria.where("_id").in(needed)).with(Sort.by(Sort.Direction.DESC, "firstTimestamp", "_id"));
+			long skip = skipInFirst;
+			for (LoanHistoryBucket bucket : mongoTemplate.find(query, LoanHistoryBucket.class)) {
+				List<LoanHistoryEntry> newestFirst = new ArrayList<>(bucket.getEntries());
+				Collections.reverse(newestFirst);
+				for (LoanHistoryEntry entry : newestFirst) {
+					if (skip > 0) {
+						skip--;
+						continue;
+					}
+					if (entries.size() < to - from) {
+						entries.add(entry);
+					}
+				}
+			}
+		}
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("page", page);
+		result.put("size", size);
+		result.put("total", total);
+		result.put("entries", entries);
+		return result;
+	}
+}
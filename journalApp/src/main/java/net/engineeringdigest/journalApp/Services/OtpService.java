@@ -19,6 +19,8 @@ public class OtpService {
 	public EmailService emailService;
 	@Autowired
 	public PhoneService phoneService;
+	@Autowired
+	public UserService userService;
 	
 	public String generateOTP(){
 		Random random=new Random();
@@ -29,9 +31,14 @@ public class OtpService {
 		try {
 			String generatedOTP = generateOTP();
 			Instant expiry = Instant.now().plus(5, ChronoUnit.MINUTES);
-			user.setOtpExpiryTime(expiry);
-			user.setOTP(generatedOTP);
-			userRepository.save(user);
+			user = userService.update("otp", user, current -> {
+				current.setOtpExpiryTime(expiry);
+				current.setOTP(generatedOTP);
+				return true;
+			});
+			if (user == null) {
+				return false;
+			}
 			emailService.sendOTP(user, generatedOTP);
 			return true;
 		}
@@ -45,9 +52,14 @@ public class OtpService {
 		try {
 			String generatedOTP = generateOTP();
 			Instant expiry = Instant.now().plus(5, ChronoUnit.MINUTES);
-			user.setOtpExpiryTime(expiry);
-			user.setOTP(generatedOTP);
-			userRepository.save(user);
+			user = userService.update("otp", user, current -> {
+				current.setOtpExpiryTime(expiry);
+				current.setOTP(generatedOTP);
+				return true;
+			});
+			if (user == null) {
+				return false;
+			}
 			phoneService.sendOTP(user, generatedOTP);
 			return true;
 		}
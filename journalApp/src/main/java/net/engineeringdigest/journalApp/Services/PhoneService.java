@@ -1,18 +1,12 @@
 package net.engineeringdigest.journalApp.Services;
 
 
-import com.twilio.Twilio;
-import com.twilio.rest.api.v2010.account.Message;
-import com.twilio.type.PhoneNumber;
 import lombok.extern.slf4j.Slf4j;
 import net.engineeringdigest.journalApp.Entities.UserEntity;
 import net.engineeringdigest.journalApp.Repositories.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.annotation.PostConstruct;
-
 @Service
 @Slf4j
 public class PhoneService {
@@ -20,17 +14,11 @@ public class PhoneService {
 	@Autowired
 	public UserRepository userRepository;
 	
-	@Value("${Twilio.SID}")
-	private String SID_ACCOUNT;
-	@Value("${Twilio.ID}")
-	private String AUTH_ID;
-	@Value("${Twilio.NUMBER}")
-	private String FROM_NUMBER;
+	@Autowired
+	private SmsSender smsSender;
 	
-	@PostConstruct
-	public void setup(){
-		Twilio.init(SID_ACCOUNT,AUTH_ID);
-	}
+	@Autowired
+	private FaultInjector faultInjector;
 	
 	public void sendOTP(UserEntity user, String generatedOTP) {
 		try {
@@ -43,10 +31,8 @@ public class PhoneService {
 					+ "Best regards,\n"
 					+ "🚀 Divine Coders Team\n"
 					+ "📩 Support: support@email.com";
-			Message.creator(
-					new PhoneNumber(user.getPhoneNo()),
-					new PhoneNumber(FROM_NUMBER),
-					message).create();
+			faultInjector.inject(FaultInjector.SMS);
+			smsSender.send(user.getPhoneNo(), message);
 		}
 		catch (Exception e){
 			log.error("Error while sending otp ",e);
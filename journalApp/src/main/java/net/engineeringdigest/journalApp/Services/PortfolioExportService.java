@@ -0,0 +1,200 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.mongodb.client.MongoCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams farmer rows from a USERS cursor straight to the caller's OutputStream as CSV or NDJSON.
+ * Only the selected columns are projected and nothing is collected in memory; the first rows are
+ * flushed immediately so the download starts right away, then every flush-every rows.
+ */
+@Slf4j
+@Service
+public class PortfolioExportService {
+	
+	public static final List<String> EXPORTABLE_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+			"id", "name", "email", "phoneNo", "year", "country", "region", "landSize", "soilType", "pastYield",
+			"cropTypes", "annualIncome", "soilPH", "nitrogenLevel", "organicMatterLevel", "landQualityScore",
+			"pastRainfall", "avgTemperature", "isCreditScoreVerified", "creditScore", "isLoanApproved"));
+	
+	public static final List<String> DEFAULT_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+			"id", "name", "region", "landSize", "soilType", "pastYield", "cropTypes", "annualIncome", "soilPH",
+			"nitrogenLevel", "organicMatterLevel", "landQualityScore", "pastRainfall", "avgTemperature",
+			"creditScore", "isLoanApproved"));
+	
+	private static final JsonFactory JSON = new JsonFactory();
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Value("${export.cursor-batch-size:1000}")
+	private int cursorBatchSize;
+	
+	@Value("${export.flush-every:5000}")
+	private int flushEvery;
+	
+	//returns null when every requested column is exportable, otherwise an error message
+	public String validateColumns(List<String> columns) {
+		for (String column : columns) {
+			if (!EXPORTABLE_COLUMNS.contains(column)) {
+				return "Unknown column '" + column + "'. Allowed: " + EXPORTABLE_COLUMNS;
+			}
+		}
+		return null;
+	}
+	
+	public Query buildFilter(Map<String, String> filters) {
+		Criteria criteria = new Criteria();
+		List<Criteria> parts = new ArrayList<>();
+		//farmers only; USERS also holds the operator account
+		parts.add(Criteria.where("roles").is("User"));
+		for (String field : Arrays.asList("region", "country", "soilType", "cropTypes")) {
+			if (filters.get(field) != null) {
+				parts.add(Criteria.where(field).is(filters.get(field)));
+			}
+		}
+		if (filters.get("minCreditScore") != null) {
+			parts.add(Criteria.where("creditScore").gte(Double.parseDouble(filters.get("minCreditScore"))));
+		}
+		if (filters.get("maxCreditScore") != null) {
+			parts.add(Criteria.where("creditScore").lte(Double.parseDouble(filters.get("maxCreditScore"))));
+		}
+		if (filters.get("loanApproved") != null) {
+			parts.add(Criteria.where("isLoanApproved").is(Boolean.parseBoolean(filters.get("loanApproved"))));
+		}
+		criteria.andOperator(parts.toArray(new Criteria[0]));
+		return new Query(criteria);
+	}
+	
+	public long export(Query filter, List<String> columns, boolean ndjson, OutputStream out) throws IOException {
+		Document projection = new Document();
+		for (String column : columns) {
+			projection.append(column.equals("id") ? "_id" : column, 1);
+		}
+		if (!columns.contains("id")) {
+			projection.append("_id", 0);
+		}
+		long rows = 0;
+		try (MongoCursor<Document> cursor = mongoTemplate.getCollection("USERS")
+				.find(filter.getQueryObject())
+				.projection(projection)
+				.batchSize(cursorBatchSize)
+				.iterator()) {
+			if (ndjson) {
+				JsonGenerator json = JSON.createGenerator(out, JsonEncoding.UTF8);
+				json.setRootValueSeparator(null);
+				while (cursor.hasNext()) {
+					Document doc = cursor.next();
+					json.writeStartObject();
+					for (String column : columns) {
+						json.writeFieldName(column);
+						writeJsonValue(json, value(doc, column));
+					}
+					json.writeEndObject();
+					json.writeRaw('\n');
+					if (++rows == 1 || rows % flushEvery == 0) {
+						json.flush();
+					}
+				}
+				json.flush();
+			}
+			else {
+				Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+				writer.write(String.join(",", columns));
+				writer.write('\n');
+				writer.flush();
+				while (cursor.hasNext()) {
+					Document doc = cursor.next();
+					for (int i = 0; i < columns.size(); i++) {
+						if (i > 0) {
+							writer.write(',');
+						}
+						writeCsvValue(writer, value(doc, columns.get(i)));
+					}
+					writer.write('\n');
+					if (++rows == 1 || rows % flushEvery == 0) {
+						writer.flush();
+					}
+				}
+				writer.flush();
+			}
+		}
+		return rows;
+	}
+	
+	public List<String> resolveColumns(String columns) {
+		if (columns == null || columns.trim().isEmpty()) {
+			return DEFAULT_COLUMNS;
+		}
+		List<String> resolved = new ArrayList<>(new LinkedHashSet<>(Arrays.asList(columns.split(","))));
+		resolved.replaceAll(String::trim);
+		return resolved;
+	}
+	
+	private static Object value(Document doc, String column) {
+		return doc.get(column.equals("id") ? "_id" : column);
+	}
+	
+	private static void writeJsonValue(JsonGenerator json, Object value) throws IOException {
+		if (value == null) {
+			json.writeNull();
+		}
+		else if (value instanceof Number) {
+			if (value instanceof Double || value instanceof Float) {
+				json.writeNumber(((Number) value).doubleValue());
+			}
+			else {
+				json.writeNumber(((Number) value).longValue());
+			}
+		}
+		else if (value instanceof Boolean) {
+			json.writeBoolean((Boolean) value);
+		}
+		else if (value instanceof ObjectId) {
+			json.writeString(((ObjectId) value).toHexString());
+		}
+		else {
+			json.writeString(value.toString());
+		}
+	}
+	
+	private static void writeCsvValue(Writer writer, Object value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		String text = value instanceof ObjectId ? ((ObjectId) value).toHexString() : value.toString();
+		if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+			writer.write('"');
+			writer.write(text.replace("\"", "\"\""));
+			writer.write('"');
+		}
+		else {
+			writer.write(text);
+		}
+	}
+}
@@ -0,0 +1,309 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.BankEntity;
+import net.engineeringdigest.journalApp.Entities.EligibilityRule;
+import net.engineeringdigest.journalApp.Entities.RankingWeights;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import net.engineeringdigest.journalApp.Repositories.BankRepositary;
+import net.engineeringdigest.journalApp.Repositories.UserRepository;
+import net.engineeringdigest.journalApp.utils.ReadRouting;
+import org.bson.Document;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Read-through cache for profile lookups by name: a bounded Caffeine tier in front of an optional
+ * shared Redis tier in front of Mongo. Every caller gets its own copy of the cached entity, so nothing it
+ * changes leaks to other readers; write paths still load from the repository and call evictUser/evictBank
+ * after saving, which clears both tiers and broadcasts the key so every other instance drops its local
+ * copy. A load that overlaps an eviction is returned but not cached, so a value read just before a write
+ * cannot be stored after that write's eviction. Across instances the same rule holds through a per-key
+ * generation in Redis: an eviction increments it, and the Redis store is a compare-and-set against the
+ * generation the loader read before going to Mongo.
+ * Bank profiles embed their approved farmers through DBRefs, so they stay in the local tier only, with
+ * the shorter bank-ttl instead of being evicted on every farmer write.
+ */
+@Slf4j
+@Service
+public class ProfileCache {
+	
+	private static final String USER = "user:";
+	private static final String BANK = "bank:";
+	private static final String REDIS_PREFIX = "profile:";
+	private static final String GENERATION_PREFIX = "profile-gen:";
+	
+	//stores the entry only if no eviction bumped the key's generation since the loader read it; "" stands for no generation yet
+	private static final RedisScript<Long> STORE_IF_CURRENT = new DefaultRedisScript<>(
+			"if (redis.call('GET', KEYS[2]) or '') ~= ARGV[2] then return 0 end "
+					+ "redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[3]) return 1", Long.class);
+	
+	//the generation moves before the entry is deleted, so a store racing the eviction is refused rather than deleted late
+	private static final RedisScript<Long> EVICT = new DefaultRedisScript<>(
+			"redis.call('INCR', KEYS[2]) redis.call('EXPIRE', KEYS[2], ARGV[1]) return redis.call('DEL', KEYS[1])", Long.class);
+	
+	@Autowired
+	private UserRepository userRepository;
+	
+	@Autowired
+	private BankRepositary bankRepositary;
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	@Autowired
+	private ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+	
+	@Autowired
+	private ObjectProvider<RedisConnectionFactory> redisConnectionFactoryProvider;
+	
+	@Value("${cache.profile.max-size:10000}")
+	private long maxSize;
+	
+	@Value("${cache.profile.user-ttl-seconds:300}")
+	private long userTtlSeconds;
+	
+	@Value("${cache.profile.bank-ttl-seconds:30}")
+	private long bankTtlSeconds;
+	
+	@Value("${cache.profile.redis.enabled:false}")
+	private boolean redisEnabled;
+	
+	@Value("${cache.profile.redis.channel:profile-invalidations}")
+	private String channel;
+	
+	private Cache<String, UserEntity> users;
+	private Cache<String, BankEntry> banks;
+	private StringRedisTemplate redis;
+	private RedisMessageListenerContainer listenerContainer;
+	
+	//a bank's ETag includes the USERS counter, which the entity does not carry, so entries remember the stamp they were loaded under
+	private static class BankEntry {
+		final BankEntity bank;
+		final String etag;
+		
+		BankEntry(BankEntity bank, String etag) {
+			this.bank = bank;
+			this.etag = etag;
+		}
+	}
+	
+	//bumped by every local eviction; a load only caches its result if this did not move meanwhile
+	private final AtomicLong evictions = new AtomicLong();
+	
+	@PostConstruct
+	public void setup() {
+		users = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(userTtlSeconds, TimeUnit.SECONDS).recordStats().build();
+		banks = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(bankTtlSeconds, TimeUnit.SECONDS).recordStats().build();
+		CaffeineCacheMetrics.monitor(meterRegistry, users, "userProfiles");
+		CaffeineCacheMetrics.monitor(meterRegistry, banks, "bankProfiles");
+		if (redisEnabled) {
+			redis = redisTemplateProvider.getObject();
+			listenerContainer = new RedisMessageListenerContainer();
+			listenerContainer.setConnectionFactory(redisConnectionFactoryProvider.getObject());
+			listenerContainer.addMessageListener((message, pattern) -> evictLocal(new String(message.getBody(), StandardCharsets.UTF_8)),
+					new ChannelTopic(channel));
+			listenerContainer.afterPropertiesSet();
+			listenerContainer.start();
+		}
+	}
+	
+	@PreDestroy
+	public void shutdown() throws Exception {
+		if (listenerContainer != null) {
+			listenerContainer.destroy();
+		}
+	}
+	
+	public UserEntity getUser(String name) {
+		if (name == null) {
+			return null;
+		}
+		UserEntity user = users.getIfPresent(name);
+		if (user == null) {
+			long epoch = evictions.get();
+			user = load(USER + name, UserEntity.class, userTtlSeconds, true, epoch, key -> userRepository.findByName(name));
+			if (user != null && evictions.get() == epoch) {
+				users.put(name, user);
+			}
+		}
+		return user != null ? copy(user) : null;
+	}
+	
+	public BankEntity getBank(String bankName) {
+		if (bankName == null) {
+			return null;
+		}
+		BankEntry entry = banks.getIfPresent(bankName);
+		return entry != null ? copy(entry.bank) : loadBank(bankName, null);
+	}
+	
+	/**
+	 * Like getBank, but only reuses an entry loaded under the given ETag. Any other entry may predate the
+	 * stamp the caller just read, so the bank is reloaded from the primary, which is at least that recent.
+	 */
+	public BankEntity getBank(String bankName, String etag) {
+		if (bankName == null) {
+			return null;
+		}
+		BankEntry entry = banks.getIfPresent(bankName);
+		if (entry != null && etag != null && etag.equals(entry.etag)) {
+			return copy(entry.bank);
+		}
+		return loadBank(bankName, etag);
+	}
+	
+	public void evictUser(String name) {
+		if (name != null) {
+			evict(USER + name);
+		}
+	}
+	
+	public void evictBank(String bankName) {
+		if (bankName != null) {
+			evict(BANK + bankName);
+		}
+	}
+	
+	private <T> T load(String key, Class<T> type, long ttlSeconds, boolean shared, long epoch, Function<String, T> loader) {
+		long start = System.nanoTime();
+		T value = null;
+		String source = "mongo";
+		boolean useRedis = shared && redis != null;
+		String generation = null;
+		if (useRedis) {
+			try {
+				//read together with the entry, before Mongo, so an eviction by any instance during the load is seen at store time
+				List<String> entry = redis.opsForValue().multiGet(Arrays.asList(REDIS_PREFIX + key, GENERATION_PREFIX + key));
+				String json = entry.get(0);
+				generation = entry.get(1) != null ? entry.get(1) : "";
+				if (json != null) {
+					value = mongoTemplate.getConverter().read(type, Document.parse(json));
+					source = "redis";
+				}
+			}
+			catch (Exception e) {
+				log.warn("Redis profile lookup failed for {}: {}", key, e.getMessage());
+			}
+		}
+		if (value == null) {
+			//cached entries outlive the request, so never fill them from a lagging secondary
+			value = ReadRouting.onPrimary(() -> loader.apply(key));
+			if (value != null && generation != null && evictions.get() == epoch) {
+				try {
+					Document document = new Document();
+					mongoTemplate.getConverter().write(value, document);
+					redis.execute(STORE_IF_CURRENT, Arrays.asList(REDIS_PREFIX + key, GENERATION_PREFIX + key),
+							document.toJson(), generation, String.valueOf(ttlSeconds));
+				}
+				catch (Exception e) {
+					log.warn("Redis profile store failed for {}: {}", key, e.getMessage());
+				}
+			}
+		}
+		Timer.builder("profile.cache.load")
+				.tag("cache", key.startsWith(USER) ? "userProfiles" : "bankProfiles")
+				.tag("source", source)
+				.register(meterRegistry)
+				.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		return value;
+	}
+	
+	private BankEntity loadBank(String bankName, String etag) {
+		long epoch = evictions.get();
+		BankEntity bank = load(BANK + bankName, BankEntity.class, bankTtlSeconds, false, epoch, key -> bankRepositary.findByBankName(bankName));
+		if (bank != null && evictions.get() == epoch) {
+			banks.put(bankName, new BankEntry(bank, etag));
+		}
+		return bank != null ? copy(bank) : null;
+	}
+	
+	private void evict(String key) {
+		evictLocal(key);
+		if (redis != null) {
+			try {
+				//the generation outlives any load still in flight, which is bounded well below the entry TTL
+				redis.execute(EVICT, Arrays.asList(REDIS_PREFIX + key, GENERATION_PREFIX + key), String.valueOf(userTtlSeconds));
+				redis.convertAndSend(channel, key);
+			}
+			catch (Exception e) {
+				log.warn("Redis profile eviction failed for {}: {}", key, e.getMessage());
+			}
+		}
+	}
+	
+	private void evictLocal(String key) {
+		evictions.incrementAndGet();
+		if (key.startsWith(USER)) {
+			users.invalidate(key.substring(USER.length()));
+		}
+		else if (key.startsWith(BANK)) {
+			banks.invalidate(key.substring(BANK.length()));
+		}
+	}
+	
+	private static UserEntity copy(UserEntity user) {
+		UserEntity copy = new UserEntity();
+		BeanUtils.copyProperties(user, copy);
+		if (user.getRoles() != null) {
+			copy.setRoles(new ArrayList<>(user.getRoles()));
+		}
+		return copy;
+	}
+	
+	private static BankEntity copy(BankEntity bank) {
+		BankEntity copy = new BankEntity();
+		BeanUtils.copyProperties(bank, copy);
+		if (bank.getLoansApproved() != null) {
+			List<UserEntity> farmers = new ArrayList<>(bank.getLoansApproved().size());
+			for (UserEntity farmer : bank.getLoansApproved()) {
+				farmers.add(farmer != null ? copy(farmer) : null);
+			}
+			copy.setLoansApproved(farmers);
+		}
+		if (bank.getRoles() != null) {
+			copy.setRoles(new ArrayList<>(bank.getRoles()));
+		}
+		if (bank.getEligibilityRules() != null) {
+			List<EligibilityRule> rules = new ArrayList<>(bank.getEligibilityRules().size());
+			for (EligibilityRule rule : bank.getEligibilityRules()) {
+				rules.add(new EligibilityRule(rule.getId(), rule.getName(), rule.getExpression(), rule.getCreatedAt()));
+			}
+			copy.setEligibilityRules(rules);
+		}
+		if (bank.getRankingWeights() != null) {
+			RankingWeights weights = bank.getRankingWeights();
+			copy.setRankingWeights(new RankingWeights(weights.getCreditScore(), weights.getLandQualityScore(), weights.getPastYield(), weights.getAnnualIncome()));
+		}
+		return copy;
+	}
+}
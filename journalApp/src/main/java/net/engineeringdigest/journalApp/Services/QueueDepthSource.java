@@ -0,0 +1,12 @@
+package net.engineeringdigest.journalApp.Services;
+
+/**
+ * Exposes the backlog of an in-process work queue to the readiness probe.
+ * Implementations must answer from memory; the probe calls them every few seconds.
+ */
+public interface QueueDepthSource {
+	
+	String queueName();
+	
+	int queueDepth();
+}
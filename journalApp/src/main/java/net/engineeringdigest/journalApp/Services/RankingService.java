@@ -0,0 +1,204 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.client.MongoCursor;
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.BankEntity;
+import net.engineeringdigest.journalApp.Entities.RankingWeights;
+import net.engineeringdigest.journalApp.utils.ReadRouting;
+import net.engineeringdigest.journalApp.utils.TopKHeap;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-K farmers for a bank by a weighted composite of creditScore, landQualityScore, pastYield and
+ * annualIncome. Candidates are streamed from a projected USERS cursor (pre-filtered on the indexed
+ * creditScore/region fields when given) through a TopKHeap, then only the K winners are loaded in full.
+ * Results are cached per bank and request until the USERS collection version moves.
+ */
+@Slf4j
+@Service
+public class RankingService {
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Autowired
+	private ProfileCache profileCache;
+	
+	@Autowired
+	private ResourceVersionService resourceVersionService;
+	
+	@Value("${ranking.max-k:500}")
+	private int maxK;
+	
+	@Value("${ranking.cursor-batch-size:2000}")
+	private int cursorBatchSize;
+	
+	//divisors that bring each factor to roughly 0..1 before weighting
+	@Value("${ranking.scale.credit-score:900}")
+	private double creditScoreScale;
+	
+	@Value("${ranking.scale.land-quality-score:100}")
+	private double landQualityScale;
+	
+	@Value("${ranking.scale.past-yield:100}")
+	private double pastYieldScale;
+	
+	@Value("${ranking.scale.annual-income:100000}")
+	private double annualIncomeScale;
+	
+	private Cache<String, CachedRanking> cache;
+	
+	private static final class CachedRanking {
+		private final String usersVersion;
+		private final List<Map<String, Object>> farmers;
+		
+		CachedRanking(String usersVersion, List<Map<String, Object>> farmers) {
+			this.usersVersion = usersVersion;
+			this.farmers = farmers;
+		}
+	}
+	
+	@PostConstruct
+	public void setup() {
+		cache = Caffeine.newBuilder().maximumSize(1000).expireAfterWrite(1, TimeUnit.HOURS).build();
+	}
+	
+	public int getMaxK() {
+		return maxK;
+	}
+	
+	public RankingWeights getWeights(String bankName) {
+		BankEntity bank = profileCache.getBank(bankName);
+		return bank != null && bank.getRankingWeights() != null ? bank.getRankingWeights() : new RankingWeights();
+	}
+	
+	public RankingWeights setWeights(String bankName, RankingWeights weights) {
+		if (weights.getCreditScore() < 0 || weights.getLandQualityScore() < 0 || weights.getPastYield() < 0 || weights.getAnnualIncome() < 0) {
+			throw new IllegalArgumentException("Weights must not be negative");
+		}
+		//$set on the one field, so a concurrent save of the bank (a loan approval) is not overwritten
+		Update update = new Update().set("rankingWeights", weights).set("lastModified", Instant.now());
+		if (resourceVersionService.updateFirst(new Query(Criteria.where("bankName").is(bankName)), update, BankEntity.class).getMatchedCount() == 0) {
+			throw new IllegalArgumentException("Bank not found: " + bankName);
+		}
+		profileCache.evictBank(bankName);
+		return weights;
+	}
+	
+	public List<Map<String, Object>> topFarmers(String bankName, int k, Map<String, String> filters) {
+		RankingWeights weights = getWeights(bankName);
+		String usersVersion = ReadRouting.onPrimary(() -> resourceVersionService.collectionStamp(ResourceVersionService.USERS).getEtag());
+		String key = bankName + "|" + k + "|" + weights + "|" + new TreeMap<>(filters);
+		CachedRanking cached = cache.getIfPresent(key);
+		if (cached != null && cached.usersVersion.equals(usersVersion)) {
+			return cached.farmers;
+		}
+		//a cached ranking outlives the request, so it is built on the primary like ProfileCache entries
+		List<Map<String, Object>> farmers = ReadRouting.onPrimary(() -> rank(k, weights, filters));
+		cache.put(key, new CachedRanking(usersVersion, farmers));
+		return farmers;
+	}
+	
+	private List<Map<String, Object>> rank(int k, RankingWeights weights, Map<String, String> filters) {
+		long start = System.currentTimeMillis();
+		double wCredit = weights.getCreditScore() / creditScoreScale;
+		double wLand = weights.getLandQualityScore() / landQualityScale;
+		double wYield = weights.getPastYield() / pastYieldScale;
+		double wIncome = weights.getAnnualIncome() / annualIncomeScale;
+		
+		Document projection = new Document("creditScore", 1).append("landQualityScore", 1)
+				.append("pastYield", 1).append("annualIncome", 1);
+		TopKHeap heap = new TopKHeap(k);
+		long scanned = 0;
+		try (MongoCursor<Document> cursor = mongoTemplate.getCollection("USERS")
+				.find(preFilter(filters).getCriteriaObject())
+				.projection(projection)
+				.batchSize(cursorBatchSize)
+				.iterator()) {
+			while (cursor.hasNext()) {
+				Document doc = cursor.next();
+				double score = wCredit * number(doc, "creditScore")
+						+ wLand * number(doc, "landQualityScore")
+						+ wYield * number(doc, "pastYield")
+						+ wIncome * number(doc, "annualIncome");
+				heap.offer(score, doc.getObjectId("_id"));
+				scanned++;
+			}
+		}
+		ObjectId[] ids = new ObjectId[heap.size()];
+		double[] scores = heap.drainScores(ids);
+		
+		Document details = new Document("name", 1).append("region", 1).append("country", 1).append("soilType", 1)
+				.append("cropTypes", 1).append("landSize", 1).append("creditScore", 1).append("landQualityScore", 1)
+				.append("pastYield", 1).append("annualIncome", 1).append("isLoanApproved", 1);
+		Map<ObjectId, Document> byId = new HashMap<>();
+		for (Document doc : mongoTemplate.getCollection("USERS").find(new Document("_id", new Document("$in", Arrays.asList(ids)))).projection(details)) {
+			byId.put(doc.getObjectId("_id"), doc);
+		}
+		List<Map<String, Object>> result = new ArrayList<>(ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			Document doc = byId.get(ids[i]);
+			if (doc == null) {
+				continue;
+			}
+			Map<String, Object> row = new LinkedHashMap<>();
+			row.put("rank", result.size() + 1);
+			row.put("farmerId", ids[i].toHexString());
+			row.put("compositeScore", scores[i]);
+			for (String field : details.keySet()) {
+				row.put(field, doc.get(field));
+			}
+			result.add(row);
+		}
+		log.info("Ranked {} candidates into top {} in {} ms", scanned, result.size(), System.currentTimeMillis() - start);
+		return result;
+	}
+	
+	//index-backed pre-filter: creditScore and region are indexed, the rest narrow the cursor further
+	private static Criteria preFilter(Map<String, String> filters) {
+		Criteria criteria = Criteria.where("roles").is("User");
+		if (filters.get("minCreditScore") != null) {
+			criteria = criteria.and("creditScore").gte(Double.parseDouble(filters.get("minCreditScore")));
+		}
+		if (filters.get("region") != null) {
+			criteria = criteria.and("region").is(filters.get("region"));
+		}
+		if (filters.get("soilType") != null) {
+			criteria = criteria.and("soilType").is(filters.get("soilType"));
+		}
+		if (filters.get("cropTypes") != null) {
+			criteria = criteria.and("cropTypes").is(filters.get("cropTypes"));
+		}
+		if (!Boolean.parseBoolean(filters.get("includeApproved"))) {
+			criteria = criteria.and("isLoanApproved").ne(true);
+		}
+		return criteria;
+	}
+	
+	private static double number(Document doc, String field) {
+		Object value = doc.get(field);
+		return value instanceof Number ? ((Number) value).doubleValue() : 0;
+	}
+}
@@ -0,0 +1,226 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-region defaults for scoring inputs a farmer left empty, loaded from reference.regions.location
+ * (a CSV bundled as reference/regions.csv). The file is parsed once into an immutable snapshot of a few
+ * small hash maps, so resolve() costs a map lookup and no I/O. Lookup order is the farmer's country and
+ * region, then the country's default region, then reference.default-country; a region given without a
+ * country selects the country it belongs to when that is unambiguous. reload() swaps in a new snapshot
+ * atomically and keeps the old one when the file does not parse; a file-system location is also
+ * re-read by the scheduler whenever its modification time changes, and a broken one is not retried
+ * until it changes again.
+ */
+@Slf4j
+@Service
+public class RegionalReferenceData {
+	
+	private static final List<String> COLUMNS = Arrays.asList("country", "region", "default", "soilType", "cropTypes", "landSize",
+			"pastYield", "soilPH", "nitrogenLevel", "organicMatterLevel", "landQualityScore", "pastRainfall", "avgTemperature");
+	
+	@Autowired
+	private ResourceLoader resourceLoader;
+	
+	@Value("${reference.regions.location:classpath:reference/regions.csv}")
+	private String location;
+	
+	@Value("${reference.default-country:USA}")
+	private String defaultCountry;
+	
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+	
+	//modification time of the last file reloadIfModified tried, loaded or not, so a broken file is read once
+	private volatile long attemptedModified;
+	
+	@Getter
+	@AllArgsConstructor
+	public static class RegionProfile {
+		private final String country;
+		private final String region;
+		private final String soilType;
+		private final String cropTypes;
+		private final float landSize;
+		private final float pastYield;
+		private final float soilPH;
+		private final int nitrogenLevel;
+		private final int organicMatterLevel;
+		private final int landQualityScore;
+		private final float pastRainfall;
+		private final float avgTemperature;
+	}
+	
+	//keys are lower-case; "country|region" for regions, country alone for its default region
+	private static class Snapshot {
+		final Map<String, RegionProfile> regions;
+		final Map<String, RegionProfile> countryDefaults;
+		//region -> its only country; regions that exist in several countries are left out
+		final Map<String, String> countryOfRegion;
+		final long lastModified;
+		final Instant loadedAt;
+		
+		Snapshot(Map<String, RegionProfile> regions, Map<String, RegionProfile> countryDefaults, Map<String, String> countryOfRegion, long lastModified) {
+			this.regions = Collections.unmodifiableMap(regions);
+			this.countryDefaults = Collections.unmodifiableMap(countryDefaults);
+			this.countryOfRegion = Collections.unmodifiableMap(countryOfRegion);
+			this.lastModified = lastModified;
+			this.loadedAt = Instant.now();
+		}
+	}
+	
+	//the bundled file has to load; a broken reload later only logs and keeps the current data
+	@PostConstruct
+	public void setup() throws Exception {
+		snapshot.set(load(resourceLoader.getResource(location)));
+		attemptedModified = snapshot.get().lastModified;
+		if (!snapshot.get().countryDefaults.containsKey(key(defaultCountry))) {
+			throw new IllegalStateException("reference.default-country " + defaultCountry + " has no default region in " + location);
+		}
+	}
+	
+	public RegionProfile resolve(String country, String region) {
+		Snapshot current = snapshot.get();
+		String countryKey = country != null ? key(country) : null;
+		if (countryKey == null && region != null) {
+			countryKey = current.countryOfRegion.get(key(region));
+		}
+		if (countryKey != null && region != null) {
+			RegionProfile profile = current.regions.get(countryKey + "|" + key(region));
+			if (profile != null) {
+				return profile;
+			}
+		}
+		RegionProfile profile = countryKey != null ? current.countryDefaults.get(countryKey) : null;
+		return profile != null ? profile : current.countryDefaults.get(key(defaultCountry));
+	}
+	
+	//returns false and keeps the current data when the file cannot be read or parsed
+	public boolean reload() {
+		try {
+			Snapshot loaded = load(resourceLoader.getResource(location));
+			if (!loaded.countryDefaults.containsKey(key(defaultCountry))) {
+				throw new IllegalArgumentException("no default region for reference.default-country " + defaultCountry);
+			}
+			snapshot.set(loaded);
+			attemptedModified = loaded.lastModified;
+			log.info("Reloaded regional reference data from {}: {} regions", location, loaded.regions.size());
+			return true;
+		}
+		catch (Exception e) {
+			log.error("Error while reloading regional reference data from {}, keeping the current data", location, e);
+			return false;
+		}
+	}
+	
+	@Scheduled(fixedDelayString = "${reference.reload-check-ms:60000}")
+	public void reloadIfModified() {
+		long lastModified = lastModified(resourceLoader.getResource(location));
+		if (lastModified > 0 && lastModified != attemptedModified) {
+			attemptedModified = lastModified;
+			reload();
+		}
+	}
+	
+	public Map<String, Object> status() {
+		Snapshot current = snapshot.get();
+		Map<String, Object> status = new LinkedHashMap<>();
+		status.put("location", location);
+		status.put("regions", current.regions.size());
+		status.put("countries", current.countryDefaults.size());
+		status.put("loadedAt", current.loadedAt);
+		return status;
+	}
+	
+	private static Snapshot load(Resource resource) throws Exception {
+		Map<String, RegionProfile> regions = new HashMap<>();
+		Map<String, RegionProfile> countryDefaults = new HashMap<>();
+		Map<String, String> countryOfRegion = new HashMap<>();
+		long lastModified = lastModified(resource);
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			int lineNo = 0;
+			boolean header = true;
+			while ((line = reader.readLine()) != null) {
+				lineNo++;
+				if (line.trim().isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] cells = line.split(",", -1);
+				if (header) {
+					if (!COLUMNS.equals(Arrays.asList(line.trim().split("\\s*,\\s*")))) {
+						throw new IllegalArgumentException("Expected header " + String.join(",", COLUMNS));
+					}
+					header = false;
+					continue;
+				}
+				if (cells.length != COLUMNS.size()) {
+					throw new IllegalArgumentException("Line " + lineNo + ": expected " + COLUMNS.size() + " columns, got " + cells.length);
+				}
+				RegionProfile profile;
+				try {
+					profile = new RegionProfile(cells[0].trim(), cells[1].trim(), cells[3].trim(), cells[4].trim(),
+							Float.parseFloat(cells[5].trim()), Float.parseFloat(cells[6].trim()), Float.parseFloat(cells[7].trim()),
+							Integer.parseInt(cells[8].trim()), Integer.parseInt(cells[9].trim()), Integer.parseInt(cells[10].trim()),
+							Float.parseFloat(cells[11].trim()), Float.parseFloat(cells[12].trim()));
+				}
+				catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Line " + lineNo + ": " + e.getMessage());
+				}
+				String country = key(profile.getCountry());
+				String region = key(profile.getRegion());
+				if (regions.put(country + "|" + region, profile) != null) {
+					throw new IllegalArgumentException("Line " + lineNo + ": duplicate region " + profile.getCountry() + "/" + profile.getRegion());
+				}
+				if ("yes".equalsIgnoreCase(cells[2].trim()) && countryDefaults.put(country, profile) != null) {
+					throw new IllegalArgumentException("Line " + lineNo + ": second default region for " + profile.getCountry());
+				}
+				//an empty string marks a region name shared by several countries
+				countryOfRegion.merge(region, country, (first, second) -> first.equals(second) ? first : "");
+			}
+		}
+		countryOfRegion.values().removeIf(String::isEmpty);
+		for (RegionProfile profile : regions.values()) {
+			if (!countryDefaults.containsKey(key(profile.getCountry()))) {
+				throw new IllegalArgumentException("No default region for " + profile.getCountry());
+			}
+		}
+		return new Snapshot(regions, countryDefaults, countryOfRegion, lastModified);
+	}
+	
+	//0 for resources without a usable timestamp, e.g. inside a jar
+	private static long lastModified(Resource resource) {
+		try {
+			return resource.isFile() ? resource.lastModified() : 0;
+		}
+		catch (Exception e) {
+			return 0;
+		}
+	}
+	
+	private static String key(String value) {
+		return value.trim().toLowerCase(Locale.ROOT);
+	}
+}
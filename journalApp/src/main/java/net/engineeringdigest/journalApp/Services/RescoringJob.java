@@ -0,0 +1,335 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.JobCheckpoint;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Re-scores farmers whose stored score is stale: scored by an older scoring.model-version, or whose
+ * scoring inputs no longer match the stored scoreInputsHash. Farmers that were never scored are left to
+ * /getCreditScore. USERS is walked in _id order in fixed-size chunks; each chunk is scored on a small
+ * pool, written back farmer by farmer under a version guard and then checkpointed, so a restart resumes
+ * after the last finished chunk; events, history, eligibility and rollups follow only the writes that
+ * landed. rescoring.max-per-second caps calls to the scoring service so the job never competes with
+ * online /getCreditScore traffic. Scheduled runs start on their own thread like the admin trigger, so the
+ * scheduler is free for other jobs. The cron fires on every instance, so a run first takes a lease on the
+ * shared checkpoint (renewed with every chunk, rescoring.lease-seconds) and the other instances skip it.
+ */
+@Slf4j
+@Service
+public class RescoringJob implements QueueDepthSource {
+	
+	public static final String JOB_ID = "rescoring";
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Autowired
+	private CreditScoreClient creditScoreClient;
+	
+	@Autowired
+	private AnalyticsService analyticsService;
+	
+	@Autowired
+	private ResourceVersionService resourceVersionService;
+	
+	@Autowired
+	private ProfileCache profileCache;
+	
+	@Autowired
+	private EligibilityService eligibilityService;
+	
+	@Autowired
+	private UserEventService userEventService;
+	
+	@Autowired
+	private ScoreHistoryService scoreHistoryService;
+	
+	@Autowired
+	private FarmerColumnStore farmerColumnStore;
+	
+	@Value("${rescoring.enabled:true}")
+	private boolean enabled;
+	
+	@Value("${rescoring.chunk-size:500}")
+	private int chunkSize;
+	
+	@Value("${rescoring.parallelism:4}")
+	private int parallelism;
+	
+	@Value("${rescoring.max-per-second:20}")
+	private double maxPerSecond;
+	
+	@Value("${rescoring.lease-seconds:300}")
+	private long leaseSeconds;
+	
+	private final String instanceId = UUID.randomUUID().toString();
+	
+	private final AtomicBoolean running = new AtomicBoolean();
+	
+	private volatile boolean stopRequested;
+	
+	private long nextPermitNanos;
+	
+	private volatile ThreadPoolExecutor activePool;
+	
+	//hands the run to its own thread; the shared scheduler thread must not be held for the whole run
+	@Scheduled(cron = "${rescoring.cron:0 30 2 * * *}")
+	public void scheduledRun() {
+		if (enabled) {
+			runAsync();
+		}
+	}
+	
+	//returns false when a run is already in progress on this instance
+	public boolean runAsync() {
+		if (!running.compareAndSet(false, true)) {
+			return false;
+		}
+		try {
+			Thread thread = new Thread(this::execute, "rescoring-job");
+			thread.setDaemon(true);
+			thread.start();
+			return true;
+		}
+		catch (RuntimeException e) {
+			running.set(false);
+			throw e;
+		}
+	}
+	
+	public boolean isRunning() {
+		return running.get();
+	}
+	
+	@Override
+	public String queueName() {
+		return "rescoring";
+	}
+	
+	@Override
+	public int queueDepth() {
+		ThreadPoolExecutor pool = activePool;
+		return pool == null ? 0 : pool.getQueue().size();
+	}
+	
+	public JobCheckpoint getCheckpoint() {
+		return mongoTemplate.findById(JOB_ID, JobCheckpoint.class);
+	}
+	
+	@PreDestroy
+	public void stop() {
+		stopRequested = true;
+	}
+	
+	public void run() {
+		if (running.compareAndSet(false, true)) {
+			execute();
+		}
+	}
+	
+	//caller has claimed running
+	private void execute() {
+		ThreadPoolExecutor pool = null;
+		try {
+			if (!acquireLease()) {
+				log.info("Re-scoring is running on another instance, skipping");
+				return;
+			}
+			pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(Math.max(1, parallelism));
+			activePool = pool;
+			String modelVersion = creditScoreClient.getModelVersion();
+			JobCheckpoint checkpoint = getCheckpoint();
+			if (checkpoint == null || checkpoint.isCompleted() || !modelVersion.equals(checkpoint.getModelVersion())) {
+				checkpoint = new JobCheckpoint(JOB_ID, null, modelVersion, false, 0, 0, 0, Instant.now(), Instant.now(), null, null);
+			}
+			else {
+				log.info("Resuming re-scoring after {}", checkpoint.getLastId());
+			}
+			while (!stopRequested) {
+				List<UserEntity> chunk = nextChunk(checkpoint.getLastId());
+				if (chunk.isEmpty()) {
+					checkpoint.setCompleted(true);
+					break;
+				}
+				processChunk(chunk, modelVersion, checkpoint, pool);
+				checkpoint.setLastId(chunk.get(chunk.size() - 1).getId());
+				if (!saveCheckpoint(checkpoint, false)) {
+					log.warn("Re-scoring lease was taken over by another instance, stopping after {}", checkpoint.getLastId());
+					return;
+				}
+			}
+			saveCheckpoint(checkpoint, true);
+			log.info("Re-scoring {}: scanned {}, re-scored {}, failed {}", checkpoint.isCompleted() ? "finished" : "paused",
+					checkpoint.getScanned(), checkpoint.getRescored(), checkpoint.getFailed());
+		}
+		catch (Exception e) {
+			log.error("Error while re-scoring farmers", e);
+		}
+		finally {
+			activePool = null;
+			if (pool != null) {
+				pool.shutdownNow();
+			}
+			running.set(false);
+		}
+	}
+	
+	//takes the lease when it is free, lapsed or already ours; the upsert creates the checkpoint on the first run
+	private boolean acquireLease() {
+		Instant now = Instant.now();
+		Query free = new Query(Criteria.where("_id").is(JOB_ID).orOperator(
+				Criteria.where("leaseUntil").is(null),
+				Criteria.where("leaseUntil").lt(now),
+				Criteria.where("owner").is(instanceId)));
+		try {
+			mongoTemplate.upsert(free, new Update().set("owner", instanceId).set("leaseUntil", now.plusSeconds(leaseSeconds)), JobCheckpoint.class);
+			return true;
+		}
+		catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+	
+	//writes progress only while this instance still holds the lease, renewing it; release hands the lease back
+	private boolean saveCheckpoint(JobCheckpoint checkpoint, boolean release) {
+		Instant now = Instant.now();
+		checkpoint.setUpdatedAt(now);
+		checkpoint.setOwner(release ? null : instanceId);
+		checkpoint.setLeaseUntil(release ? null : now.plusSeconds(leaseSeconds));
+		return mongoTemplate.findAndReplace(new Query(Criteria.where("_id").is(JOB_ID).and("owner").is(instanceId)), checkpoint) != null;
+	}
+	
+	private List<UserEntity> nextChunk(ObjectId lastId) {
+		//only farmers that already have a score; first scores come from /getCreditScore
+		Criteria criteria = Criteria.where("roles").is("User").and("isCreditScoreVerified").is(true);
+		if (lastId != null) {
+			criteria = criteria.and("_id").gt(lastId);
+		}
+		Query query = new Query(criteria).with(Sort.by("_id")).limit(chunkSize);
+		query.fields().include("_id", "name", "roles", "year", "country", "region", "landSize", "soilType", "pastYield", "cropTypes",
+				"annualIncome", "soilPH", "nitrogenLevel", "organicMatterLevel", "landQualityScore", "pastRainfall",
+				"avgTemperature", "isCreditScoreVerified", "isLoanApproved", "creditScore", "scoreModelVersion", "scoreInputsHash", "lastModified", "version");
+		return mongoTemplate.find(query, UserEntity.class);
+	}
+	
+	private void processChunk(List<UserEntity> chunk, String modelVersion, JobCheckpoint checkpoint, ExecutorService pool) {
+		List<UserEntity> stale = new ArrayList<>();
+		//keyed by id: UserEntity hashes by value and changes once its score is set
+		Map<ObjectId, String> hashes = new HashMap<>();
+		for (UserEntity user : chunk) {
+			String hash = creditScoreClient.inputsHash(user);
+			if (!modelVersion.equals(user.getScoreModelVersion()) || !hash.equals(user.getScoreInputsHash())) {
+				stale.add(user);
+				hashes.put(user.getId(), hash);
+			}
+		}
+		checkpoint.setScanned(checkpoint.getScanned() + chunk.size());
+		if (stale.isEmpty()) {
+			return;
+		}
+		List<CompletableFuture<Float>> scores = new ArrayList<>();
+		for (UserEntity user : stale) {
+			scores.add(CompletableFuture.supplyAsync(() -> score(user), pool));
+		}
+		List<UserEntity> rescored = new ArrayList<>();
+		Map<ObjectId, Float> previousScores = new HashMap<>();
+		Instant now = Instant.now();
+		for (int i = 0; i < stale.size(); i++) {
+			UserEntity user = stale.get(i);
+			Float score = scores.get(i).join();
+			if (score == null) {
+				checkpoint.setFailed(checkpoint.getFailed() + 1);
+				continue;
+			}
+			//skip the write if the farmer was edited while being scored; the next run picks the new inputs up.
+			//One write per farmer, so the side effects below follow only the writes that matched
+			Query unchanged = new Query(Criteria.where("_id").is(user.getId()).and("version").is(user.getVersion()));
+			if (mongoTemplate.updateFirst(unchanged, new Update()
+					.set("creditScore", score)
+					.set("isCreditScoreVerified", true)
+					.set("scoreModelVersion", modelVersion)
+					.set("scoreInputsHash", hashes.get(user.getId()))
+					.set("lastModified", now)
+					.inc("version", 1), UserEntity.class).getModifiedCount() == 0) {
+				continue;
+			}
+			if (user.isCreditScoreVerified()) {
+				previousScores.put(user.getId(), user.getCreditScore());
+			}
+			user.setCreditScore(score);
+			user.setCreditScoreVerified(true);
+			user.setVersion(user.getVersion() != null ? user.getVersion() + 1 : 1L);
+			rescored.add(user);
+		}
+		if (rescored.isEmpty()) {
+			return;
+		}
+		resourceVersionService.bump(ResourceVersionService.USERS);
+		checkpoint.setRescored(checkpoint.getRescored() + rescored.size());
+		analyticsService.recordScoreChanges(rescored, previousScores);
+		eligibilityService.reevaluate(rescored);
+		//template updates publish no mapping events, so the columnar snapshot is fed here
+		farmerColumnStore.upsertAll(rescored);
+		for (UserEntity user : rescored) {
+			profileCache.evictUser(user.getName());
+			userEventService.publish(user.getName(), UserEventService.CREDIT_SCORE, UserEventService.scoreEvent(user.getCreditScore(), modelVersion));
+			scoreHistoryService.record(user, user.getCreditScore(), modelVersion, hashes.get(user.getId()));
+		}
+	}
+	
+	private Float score(UserEntity user) {
+		try {
+			throttle();
+			Map<String, Object> response = creditScoreClient.predict(creditScoreClient.buildRequest(user));
+			return response != null ? creditScoreClient.extractScore(response) : null;
+		}
+		catch (Exception e) {
+			log.warn("Re-scoring failed for {}: {}", user.getId(), e.getMessage());
+			return null;
+		}
+	}
+	
+	//spaces scoring calls evenly at max-per-second across all pool threads; 0 disables the limit
+	private void throttle() throws InterruptedException {
+		if (maxPerSecond <= 0) {
+			return;
+		}
+		long interval = (long) (TimeUnit.SECONDS.toNanos(1) / maxPerSecond);
+		long wait;
+		synchronized (this) {
+			long now = System.nanoTime();
+			nextPermitNanos = Math.max(nextPermitNanos, now) + interval;
+			wait = nextPermitNanos - interval - now;
+		}
+		if (wait > 0) {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import net.engineeringdigest.journalApp.Entities.CollectionVersion;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Cheap version stamps for conditional GETs. Single documents are stamped from their _id and
+ * lastModified (read with a two-field projection, so nothing is loaded or resolved), listings from the
+ * COLLECTION_VERSIONS counter that CollectionVersionListener bumps on every write. Template updates
+ * and bulk writes publish no mapping events, so writes to USERS or BANKS that bypass save()/remove() go
+ * through updateFirst/updateMulti/execute here, which bump the counter when a document changed.
+ */
+@Service
+public class ResourceVersionService {
+	
+	public static final String USERS = "USERS";
+	public static final String BANKS = "BANKS";
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Getter
+	@AllArgsConstructor
+	public static class Stamp {
+		private final String etag;
+		private final long lastModified;
+	}
+	
+	public Stamp userStamp(String name) {
+		Document doc = projectStamp(USERS, "name", name);
+		if (doc == null) {
+			return null;
+		}
+		return userStamp(doc.getObjectId("_id"), millis(doc.get("lastModified")));
+	}
+	
+	//the stamp of an already loaded copy, to tell whether a cached profile is the revision userStamp(name) saw
+	public Stamp userStamp(UserEntity user) {
+		return userStamp(user.getId(), millis(user.getLastModified()));
+	}
+	
+	//bank documents embed the approved farmers via DBRef, so the USERS counter is part of the tag
+	public Stamp bankStamp(String bankName) {
+		Document doc = projectStamp(BANKS, "bankName", bankName);
+		if (doc == null) {
+			return null;
+		}
+		CollectionVersion users = collectionVersion(USERS);
+		long lastModified = Math.max(millis(doc.get("lastModified")), millis(users.getUpdatedAt()));
+		return new Stamp("\"b-" + doc.getObjectId("_id").toHexString() + "-" + millis(doc.get("lastModified")) + "-" + users.getVersion() + "\"", lastModified);
+	}
+	
+	public Stamp collectionStamp(String collection) {
+		CollectionVersion version = collectionVersion(collection);
+		return new Stamp("\"c-" + collection + "-" + version.getVersion() + "\"", millis(version.getUpdatedAt()));
+	}
+	
+	public void bump(String collection) {
+		mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(collection)),
+				new Update().inc("version", 1).set("updatedAt", Instant.now()),
+				FindAndModifyOptions.options().upsert(true), CollectionVersion.class);
+	}
+	
+	public UpdateResult updateFirst(Query query, Update update, String collection) {
+		UpdateResult result = mongoTemplate.updateFirst(query, update, collection);
+		bumpIfModified(collection, result.getModifiedCount());
+		return result;
+	}
+	
+	public UpdateResult updateFirst(Query query, Update update, Class<?> entityClass) {
+		UpdateResult result = mongoTemplate.updateFirst(query, update, entityClass);
+		bumpIfModified(mongoTemplate.getCollectionName(entityClass), result.getModifiedCount());
+		return result;
+	}
+	
+	public UpdateResult updateMulti(Query query, Update update, String collection) {
+		UpdateResult result = mongoTemplate.updateMulti(query, update, collection);
+		bumpIfModified(collection, result.getModifiedCount());
+		return result;
+	}
+	
+	//bulk must have been opened on the given collection
+	public BulkWriteResult execute(BulkOperations bulk, String collection) {
+		BulkWriteResult result = bulk.execute();
+		bumpIfModified(collection, result.getModifiedCount() + result.getInsertedCount() + result.getUpserts().size() + result.getDeletedCount());
+		return result;
+	}
+	
+	private void bumpIfModified(String collection, long modified) {
+		if (modified > 0) {
+			bump(collection);
+		}
+	}
+	
+	private static Stamp userStamp(ObjectId id, long lastModified) {
+		return new Stamp("\"u-" + id.toHexString() + "-" + lastModified + "\"", lastModified);
+	}
+	
+	private CollectionVersion collectionVersion(String collection) {
+		CollectionVersion version = mongoTemplate.findById(collection, CollectionVersion.class);
+		return version != null ? version : new CollectionVersion(collection, 0, Instant.EPOCH);
+	}
+	
+	private Document projectStamp(String collection, String field, String value) {
+		Query query = new Query(Criteria.where(field).is(value));
+		query.fields().include("_id").include("lastModified");
+		return mongoTemplate.findOne(query, Document.class, collection);
+	}
+	
+	private static long millis(Object value) {
+		if (value instanceof Date) {
+			return ((Date) value).getTime();
+		}
+		if (value instanceof Instant) {
+			return ((Instant) value).toEpochMilli();
+		}
+		return 0;
+	}
+}
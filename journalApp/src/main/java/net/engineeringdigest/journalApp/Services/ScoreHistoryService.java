@@ -0,0 +1,484 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.ScoreHistoryBucket;
+import net.engineeringdigest.journalApp.Entities.ScorePoint;
+import net.engineeringdigest.journalApp.Entities.ScoreSummary;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time series of every credit score computed for a farmer, in monthly buckets (SCORE_HISTORY). Callers
+ * only enqueue; a writer thread drains the queue in batches of score-history.batch-size, folds the
+ * batch per bucket and writes it with one unordered bulk of upserts that push the raw points and keep
+ * month and per-day summaries up to date. Buckets whose upsert failed are written again at the front of
+ * the next batch, up to score-history.max-attempts times, and at most score-history.batch-size points
+ * wait for a retry. Points of a farmer removed by removeFarmer() are dropped rather than written, and
+ * every batch re-checks that its farmers still exist in USERS, so a score queued on another instance
+ * than the one that ran the purge cannot recreate the deleted buckets either. Trend reads fetch a farmer's buckets for the requested range
+ * with a single _id range query and downsample from the stored summaries (daily, weekly, monthly) or
+ * return the raw points. Retention drops raw points older than score-history.raw-retention-days, keeping
+ * the summaries, and removes whole buckets after score-history.retention-months.
+ */
+@Slf4j
+@Service
+public class ScoreHistoryService implements QueueDepthSource {
+	
+	public static final List<String> GRANULARITIES = Arrays.asList("raw", "daily", "weekly", "monthly");
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	@Autowired
+	private Clock clock;
+	
+	@Value("${score-history.queue-capacity:100000}")
+	private int queueCapacity;
+	
+	@Value("${score-history.batch-size:500}")
+	private int batchSize;
+	
+	@Value("${score-history.linger-ms:200}")
+	private long lingerMs;
+	
+	@Value("${score-history.raw-retention-days:400}")
+	private int rawRetentionDays;
+	
+	@Value("${score-history.retention-months:60}")
+	private int retentionMonths;
+	
+	@Value("${score-history.max-range-days:1830}")
+	private int maxRangeDays;
+	
+	@Value("${score-history.max-attempts:3}")
+	private int maxAttempts;
+	
+	@Value("${score-history.retry-delay-ms:1000}")
+	private long retryDelayMs;
+	
+	private BlockingQueue<Pending> queue;
+	
+	private Thread writer;
+	
+	private volatile boolean stopRequested;
+	
+	//points of a failed write, written first in the next batch; only touched by the writer thread
+	private final List<Pending> retry = new ArrayList<>();
+	
+	//farmers whose history was removed recently; their points still in flight are dropped
+	private final Cache<ObjectId, Boolean> removedFarmers = Caffeine.newBuilder().expireAfterWrite(1, TimeUnit.HOURS).build();
+	
+	//a bulk write and a farmer's removal never overlap, so the removal cannot be undone by a write already running
+	private final Object writeLock = new Object();
+	
+	private static class Pending {
+		final ObjectId farmerId;
+		final ScorePoint point;
+		int attempts;
+		
+		Pending(ObjectId farmerId, ScorePoint point) {
+			this.farmerId = farmerId;
+			this.point = point;
+		}
+	}
+	
+	@PostConstruct
+	public void setup() {
+		queue = new LinkedBlockingQueue<>(queueCapacity);
+		writer = new Thread(this::writeLoop, "score-history");
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	//whatever is still queued is written before the context closes
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		stopRequested = true;
+		writer.interrupt();
+		writer.join(TimeUnit.SECONDS.toMillis(10));
+		List<Pending> rest = new ArrayList<>(retry);
+		retry.clear();
+		queue.drainTo(rest);
+		for (int from = 0; from < rest.size(); from += batchSize) {
+			write(rest.subList(from, Math.min(rest.size(), from + batchSize)));
+		}
+	}
+	
+	//never blocks the caller; when the writer has fallen this far behind the point is dropped and counted
+	public void record(UserEntity farmer, float score, String modelVersion, String inputsHash) {
+		if (farmer == null || farmer.getId() == null || removedFarmers.getIfPresent(farmer.getId()) != null) {
+			return;
+		}
+		ScorePoint point = new ScorePoint(clock.instant(), score, modelVersion, inputsHash);
+		if (!queue.offer(new Pending(farmer.getId(), point))) {
+			meterRegistry.counter("score.history.dropped").increment();
+		}
+	}
+	
+	@Override
+	public String queueName() {
+		return "score-history";
+	}
+	
+	@Override
+	public int queueDepth() {
+		return queue.size();
+	}
+	
+	//waits up to linger-ms after the first point so a burst of scores shares one bulk write
+	private void writeLoop() {
+		List<Pending> batch = new ArrayList<>(batchSize);
+		while (!stopRequested) {
+			try {
+				batch.addAll(retry);
+				retry.clear();
+				if (batch.isEmpty()) {
+					Pending first = queue.poll(1, TimeUnit.SECONDS);
+					if (first == null) {
+						continue;
+					}
+					batch.add(first);
+				}
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+				while (batch.size() < batchSize) {
+					queue.drainTo(batch, batchSize - batch.size());
+					long remaining = deadline - System.nanoTime();
+					if (batch.size() >= batchSize || remaining <= 0) {
+						break;
+					}
+					Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next != null) {
+						batch.add(next);
+					}
+				}
+				write(batch);
+				if (!retry.isEmpty()) {
+					Thread.sleep(retryDelayMs);
+				}
+			}
+			catch (InterruptedException e) {
+				//shutdown() writes whatever is still queued
+				write(batch);
+				return;
+			}
+			finally {
+				batch.clear();
+			}
+		}
+	}
+	
+	//the points of buckets that could not be written go to the retry list
+	private void write(List<Pending> batch) {
+		long start = System.nanoTime();
+		synchronized (writeLock) {
+			List<Pending> live = new ArrayList<>(batch.size());
+			for (Pending pending : batch) {
+				if (removedFarmers.getIfPresent(pending.farmerId) == null) {
+					live.add(pending);
+				}
+			}
+			if (live.isEmpty()) {
+				return;
+			}
+			//the tombstone is local; a farmer deleted through another instance is caught here, before its buckets are upserted
+			Set<ObjectId> existing;
+			try {
+				existing = existingFarmers(live);
+			}
+			catch (Exception e) {
+				retryLater(Collections.singletonList(live), e);
+				return;
+			}
+			Map<String, List<Pending>> byBucket = new LinkedHashMap<>();
+			int points = 0;
+			for (Pending pending : live) {
+				if (!existing.contains(pending.farmerId)) {
+					removedFarmers.put(pending.farmerId, Boolean.TRUE);
+					continue;
+				}
+				points++;
+				YearMonth month = YearMonth.from(pending.point.getTimestamp().atOffset(ZoneOffset.UTC));
+				byBucket.computeIfAbsent(ScoreHistoryBucket.bucketId(pending.farmerId, month), key -> new ArrayList<>()).add(pending);
+			}
+			if (byBucket.isEmpty()) {
+				return;
+			}
+			List<List<Pending>> buckets = new ArrayList<>(byBucket.values());
+			BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ScoreHistoryBucket.class);
+			for (Map.Entry<String, List<Pending>> bucket : byBucket.entrySet()) {
+				bulk.upsert(new Query(Criteria.where("_id").is(bucket.getKey())), bucketUpdate(bucket.getValue()));
+			}
+			try {
+				bulk.execute();
+				meterRegistry.counter("score.history.appended").increment(points);
+			}
+			catch (BulkOperationException e) {
+				//unordered: every upsert not in the error list was applied and must not be repeated
+				List<List<Pending>> failed = new ArrayList<>();
+				for (BulkWriteError error : e.getErrors()) {
+					failed.add(buckets.get(error.getIndex()));
+					points -= buckets.get(error.getIndex()).size();
+				}
+				meterRegistry.counter("score.history.appended").increment(points);
+				retryLater(failed, e);
+			}
+			catch (Exception e) {
+				//nothing says which upserts landed; a bucket written twice counts its points twice
+				retryLater(buckets, e);
+			}
+		}
+		meterRegistry.timer("score.history.flush").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+	}
+	
+	private Set<ObjectId> existingFarmers(List<Pending> batch) {
+		Set<ObjectId> ids = new HashSet<>();
+		for (Pending pending : batch) {
+			ids.add(pending.farmerId);
+		}
+		Query query = new Query(Criteria.where("_id").in(ids));
+		query.fields().include("_id");
+		Set<ObjectId> existing = new HashSet<>();
+		for (Document doc : mongoTemplate.find(query, Document.class, "USERS")) {
+			existing.add(doc.getObjectId("_id"));
+		}
+		return existing;
+	}
+	
+	private void retryLater(List<List<Pending>> buckets, Exception cause) {
+		int retried = 0;
+		int dropped = 0;
+		for (List<Pending> bucket : buckets) {
+			for (Pending pending : bucket) {
+				if (++pending.attempts < maxAttempts && retry.size() < batchSize) {
+					retry.add(pending);
+					retried++;
+				}
+				else {
+					dropped++;
+				}
+			}
+		}
+		meterRegistry.counter("score.history.failed").increment(dropped);
+		log.error("Error while writing credit score points to {} buckets: {} will be retried, {} dropped", buckets.size(), retried, dropped, cause);
+	}
+	
+	//points of one bucket arrive in time order, so the last one is the newest
+	private static Update bucketUpdate(List<Pending> points) {
+		Instant timestamp = points.get(0).point.getTimestamp();
+		YearMonth month = YearMonth.from(timestamp.atOffset(ZoneOffset.UTC));
+		Map<String, ScoreSummary> days = new TreeMap<>();
+		List<ScorePoint> entries = new ArrayList<>();
+		ScoreSummary total = null;
+		for (Pending pending : points) {
+			ScorePoint point = pending.point;
+			entries.add(point);
+			String day = ScoreHistoryBucket.dayKey(point.getTimestamp().atOffset(ZoneOffset.UTC).getDayOfMonth());
+			days.put(day, fold(days.get(day), point.getScore()));
+			total = fold(total, point.getScore());
+		}
+		ScorePoint newest = entries.get(entries.size() - 1);
+		Update update = new Update()
+				.setOnInsert("farmerId", points.get(0).farmerId)
+				.setOnInsert("month", month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant())
+				.setOnInsert("compacted", false)
+				.inc("count", total.getCount())
+				.inc("sum", total.getSum())
+				.min("min", total.getMin())
+				.max("max", total.getMax())
+				.set("lastScore", newest.getScore())
+				.set("lastTimestamp", newest.getTimestamp())
+				.set("lastModelVersion", newest.getModelVersion());
+		update.push("entries").slice(-ScoreHistoryBucket.MAX_ENTRIES).each(entries.toArray());
+		for (Map.Entry<String, ScoreSummary> day : days.entrySet()) {
+			String prefix = "days." + day.getKey() + ".";
+			ScoreSummary summary = day.getValue();
+			update.inc(prefix + "count", summary.getCount())
+					.inc(prefix + "sum", summary.getSum())
+					.min(prefix + "min", summary.getMin())
+					.max(prefix + "max", summary.getMax())
+					.set(prefix + "last", summary.getLast());
+		}
+		return update;
+	}
+	
+	private static ScoreSummary fold(ScoreSummary summary, float score) {
+		if (summary == null) {
+			return new ScoreSummary(1, score, score, score, score);
+		}
+		summary.setCount(summary.getCount() + 1);
+		summary.setSum(summary.getSum() + score);
+		summary.setMin(Math.min(summary.getMin(), score));
+		summary.setMax(Math.max(summary.getMax(), score));
+		summary.setLast(score);
+		return summary;
+	}
+	
+	private static ScoreSummary merge(ScoreSummary into, ScoreSummary next) {
+		if (into == null) {
+			return new ScoreSummary(next.getCount(), next.getSum(), next.getMin(), next.getMax(), next.getLast());
+		}
+		into.setCount(into.getCount() + next.getCount());
+		into.setSum(into.getSum() + next.getSum());
+		into.setMin(Math.min(into.getMin(), next.getMin()));
+		into.setMax(Math.max(into.getMax(), next.getMax()));
+		into.setLast(next.getLast());
+		return into;
+	}
+	
+	/**
+	 * A farmer's score trend between two ISO dates (inclusive, UTC). Blank dates default to the last 90
+	 * days for raw and daily, the last year otherwise. Throws IllegalArgumentException for an unknown
+	 * granularity, unparseable dates or a range over score-history.max-range-days.
+	 */
+	public Map<String, Object> getTrend(ObjectId farmerId, String granularity, String fromDate, String toDate) {
+		if (!GRANULARITIES.contains(granularity)) {
+			throw new IllegalArgumentException("granularity must be one of " + GRANULARITIES);
+		}
+		LocalDate to;
+		LocalDate from;
+		try {
+			to = toDate == null || toDate.isEmpty() ? LocalDate.now(clock.withZone(ZoneOffset.UTC)) : LocalDate.parse(toDate);
+			boolean fine = "raw".equals(granularity) || "daily".equals(granularity);
+			from = fromDate == null || fromDate.isEmpty() ? to.minusDays(fine ? 89 : 364) : LocalDate.parse(fromDate);
+		}
+		catch (Exception e) {
+			throw new IllegalArgumentException("from and to must be ISO dates (yyyy-MM-dd)");
+		}
+		if (from.isAfter(to) || from.plusDays(maxRangeDays).isBefore(to)) {
+			throw new IllegalArgumentException("from must not be after to, and the range may span at most " + maxRangeDays + " days");
+		}
+		
+		Query query = new Query(Criteria.where("_id")
+				.gte(ScoreHistoryBucket.bucketId(farmerId, YearMonth.from(from)))
+				.lte(ScoreHistoryBucket.bucketId(farmerId, YearMonth.from(to))))
+				.with(Sort.by("_id"));
+		if (!"raw".equals(granularity)) {
+			query.fields().exclude("entries");
+		}
+		List<ScoreHistoryBucket> buckets = mongoTemplate.find(query, ScoreHistoryBucket.class);
+		
+		List<Object> points = new ArrayList<>();
+		if ("raw".equals(granularity)) {
+			Instant start = from.atStartOfDay(ZoneOffset.UTC).toInstant();
+			Instant end = to.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+			for (ScoreHistoryBucket bucket : buckets) {
+				for (ScorePoint point : bucket.getEntries()) {
+					if (!point.getTimestamp().isBefore(start) && point.getTimestamp().isBefore(end)) {
+						points.add(point);
+					}
+				}
+			}
+		}
+		else if ("monthly".equals(granularity)) {
+			for (ScoreHistoryBucket bucket : buckets) {
+				YearMonth month = YearMonth.from(bucket.getMonth().atOffset(ZoneOffset.UTC));
+				points.add(point(month.toString(), new ScoreSummary(bucket.getCount(), bucket.getSum(), bucket.getMin(), bucket.getMax(), bucket.getLastScore())));
+			}
+		}
+		else {
+			boolean weekly = "weekly".equals(granularity);
+			Map<LocalDate, ScoreSummary> periods = new TreeMap<>();
+			for (ScoreHistoryBucket bucket : buckets) {
+				YearMonth month = YearMonth.from(bucket.getMonth().atOffset(ZoneOffset.UTC));
+				for (Map.Entry<String, ScoreSummary> day : new TreeMap<>(bucket.getDays()).entrySet()) {
+					LocalDate date = month.atDay(Integer.parseInt(day.getKey().substring(1)));
+					if (date.isBefore(from) || date.isAfter(to)) {
+						continue;
+					}
+					LocalDate period = weekly ? date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : date;
+					periods.put(period, merge(periods.get(period), day.getValue()));
+				}
+			}
+			for (Map.Entry<LocalDate, ScoreSummary> period : periods.entrySet()) {
+				points.add(point(period.getKey().toString(), period.getValue()));
+			}
+		}
+		
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("granularity", granularity);
+		result.put("from", from.toString());
+		result.put("to", to.toString());
+		result.put("points", points);
+		return result;
+	}
+	
+	private static Map<String, Object> point(String period, ScoreSummary summary) {
+		Map<String, Object> point = new LinkedHashMap<>();
+		point.put("period", period);
+		point.put("count", summary.getCount());
+		point.put("avg", summary.getCount() > 0 ? (float) (summary.getSum() / summary.getCount()) : null);
+		point.put("min", summary.getMin());
+		point.put("max", summary.getMax());
+		point.put("last", summary.getLast());
+		return point;
+	}
+	
+	@Scheduled(cron = "${score-history.retention-cron:0 15 3 * * *}")
+	public void applyRetention() {
+		try {
+			LocalDate today = LocalDate.now(clock.withZone(ZoneOffset.UTC));
+			//only whole months are compacted, so a month's daily summaries never mix raw and dropped points
+			Instant rawCutoff = today.minusDays(rawRetentionDays).withDayOfMonth(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+			Instant cutoff = today.minusMonths(retentionMonths).withDayOfMonth(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+			long compacted = mongoTemplate.updateMulti(new Query(Criteria.where("month").lt(rawCutoff).and("compacted").is(false)),
+					new Update().set("entries", new ArrayList<>()).set("compacted", true), ScoreHistoryBucket.class).getModifiedCount();
+			long removed = mongoTemplate.remove(new Query(Criteria.where("month").lt(cutoff)), ScoreHistoryBucket.class).getDeletedCount();
+			log.info("Score history retention: dropped raw points from {} buckets, removed {} buckets", compacted, removed);
+		}
+		catch (Exception e) {
+			log.error("Error while applying score history retention", e);
+		}
+	}
+	
+	//every bucket id of a farmer starts with "<farmerId>:", and ';' sorts right after ':'
+	public long removeFarmer(ObjectId farmerId) {
+		synchronized (writeLock) {
+			removedFarmers.put(farmerId, Boolean.TRUE);
+			queue.removeIf(pending -> pending.farmerId.equals(farmerId));
+			Query query = new Query(Criteria.where("_id").gte(farmerId.toHexString() + ":").lt(farmerId.toHexString() + ";"));
+			return mongoTemplate.remove(query, ScoreHistoryBucket.class).getDeletedCount();
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Entities.ScoreSimulationRequest;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What-if scoring: takes a base feature set and a grid of values for cropTypes, soilType, landSize and
+ * soilPH, and scores every combination in a single batched model call. Besides the per-variant scores it
+ * reports, per feature, the mean change against the base score for each value tried and the spread
+ * between the best and worst value, so the caller can see which lever moves the score most. Nothing is
+ * persisted; the stored credit score is untouched.
+ */
+@Slf4j
+@Service
+public class ScoreSimulationService {
+	
+	public static final List<String> FEATURES = Arrays.asList("cropTypes", "soilType", "landSize", "soilPH");
+	private static final Set<String> NUMERIC = new LinkedHashSet<>(Arrays.asList("landSize", "soilPH"));
+	
+	@Autowired
+	private CreditScoreClient creditScoreClient;
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	@Value("${scoring.simulation.max-variants:200}")
+	private int maxVariants;
+	
+	public Map<String, Object> simulate(UserEntity storedUser, ScoreSimulationRequest request) {
+		UserEntity base = request.getBase() != null ? request.getBase() : storedUser;
+		Map<String, List<Object>> grid = normalise(request.getGrid());
+		List<Map<String, Object>> variants = expand(grid);
+		
+		long start = System.nanoTime();
+		List<Float> scores = creditScoreClient.predictBatch(creditScoreClient.buildRequest(base), variants);
+		meterRegistry.timer("scoring.simulation").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		meterRegistry.summary("scoring.simulation.variants").record(variants.size());
+		
+		float baseScore = scores.get(0);
+		List<Map<String, Object>> scored = new ArrayList<>(variants.size());
+		Map<String, Object> best = null;
+		for (int i = 0; i < variants.size(); i++) {
+			float score = scores.get(i + 1);
+			Map<String, Object> entry = new LinkedHashMap<>();
+			entry.put("inputs", variants.get(i));
+			entry.put("score", score);
+			entry.put("delta", round(score - baseScore));
+			scored.add(entry);
+			if (best == null || score > (float) best.get("score")) {
+				best = entry;
+			}
+		}
+		
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("baseScore", baseScore);
+		result.put("variantCount", variants.size());
+		result.put("variants", scored);
+		result.put("sensitivity", sensitivity(grid, variants, scores, baseScore));
+		result.put("best", best);
+		return result;
+	}
+	
+	//per feature: mean delta for each value tried, and the range between the best and worst value
+	private static Map<String, Object> sensitivity(Map<String, List<Object>> grid, List<Map<String, Object>> variants, List<Float> scores, float baseScore) {
+		Map<String, Object> sensitivity = new LinkedHashMap<>();
+		for (Map.Entry<String, List<Object>> axis : grid.entrySet()) {
+			String feature = axis.getKey();
+			Map<String, Object> byValue = new LinkedHashMap<>();
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			for (Object value : axis.getValue()) {
+				double sum = 0;
+				int count = 0;
+				for (int i = 0; i < variants.size(); i++) {
+					if (value.equals(variants.get(i).get(feature))) {
+						sum += scores.get(i + 1) - baseScore;
+						count++;
+					}
+				}
+				double mean = sum / count;
+				byValue.put(String.valueOf(value), round(mean));
+				min = Math.min(min, mean);
+				max = Math.max(max, mean);
+			}
+			Map<String, Object> summary = new LinkedHashMap<>();
+			summary.put("meanDeltaByValue", byValue);
+			summary.put("range", round(max - min));
+			sensitivity.put(feature, summary);
+		}
+		return sensitivity;
+	}
+	
+	//validates the grid and returns it in FEATURES order with duplicate values removed
+	private Map<String, List<Object>> normalise(Map<String, List<Object>> grid) {
+		if (grid == null || grid.isEmpty()) {
+			throw new IllegalArgumentException("grid must vary at least one of " + FEATURES);
+		}
+		for (String feature : grid.keySet()) {
+			if (!FEATURES.contains(feature)) {
+				throw new IllegalArgumentException("Unsupported grid feature " + feature + ", expected one of " + FEATURES);
+			}
+		}
+		Map<String, List<Object>> normalised = new LinkedHashMap<>();
+		long combinations = 1;
+		for (String feature : FEATURES) {
+			List<Object> values = grid.get(feature);
+			if (values == null) {
+				continue;
+			}
+			Set<Object> distinct = new LinkedHashSet<>();
+			for (Object value : values) {
+				distinct.add(NUMERIC.contains(feature) ? number(feature, value) : text(feature, value));
+			}
+			if (distinct.isEmpty()) {
+				throw new IllegalArgumentException("grid." + feature + " must list at least one value");
+			}
+			combinations *= distinct.size();
+			if (combinations > maxVariants) {
+				throw new IllegalArgumentException("grid expands to more than " + maxVariants + " variants");
+			}
+			normalised.put(feature, new ArrayList<>(distinct));
+		}
+		return normalised;
+	}
+	
+	private static List<Map<String, Object>> expand(Map<String, List<Object>> grid) {
+		List<Map<String, Object>> variants = new ArrayList<>();
+		variants.add(new LinkedHashMap<>());
+		for (Map.Entry<String, List<Object>> axis : grid.entrySet()) {
+			List<Map<String, Object>> next = new ArrayList<>(variants.size() * axis.getValue().size());
+			for (Map<String, Object> partial : variants) {
+				for (Object value : axis.getValue()) {
+					Map<String, Object> variant = new LinkedHashMap<>(partial);
+					variant.put(axis.getKey(), value);
+					next.add(variant);
+				}
+			}
+			variants = next;
+		}
+		return variants;
+	}
+	
+	private static Double number(String feature, Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+		try {
+			return Double.valueOf(String.valueOf(value));
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("grid." + feature + " values must be numbers, got " + value);
+		}
+	}
+	
+	private static String text(String feature, Object value) {
+		if (!(value instanceof String) || ((String) value).trim().isEmpty()) {
+			throw new IllegalArgumentException("grid." + feature + " values must be non-empty strings, got " + value);
+		}
+		return ((String) value).trim();
+	}
+	
+	private static double round(double value) {
+		return Math.round(value * 100) / 100.0;
+	}
+}
@@ -0,0 +1,6 @@
+package net.engineeringdigest.journalApp.Services;
+
+//Transport used by PhoneService so the Twilio client can be swapped out (e.g. in the loadtest profile)
+public interface SmsSender {
+	void send(String to, String body);
+}
@@ -0,0 +1,41 @@
+package net.engineeringdigest.journalApp.Services;
+
+import com.twilio.Twilio;
+import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.type.PhoneNumber;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+@Service
+public class TwilioSmsSender implements SmsSender {
+	
+	@Value("${Twilio.SID}")
+	private String SID_ACCOUNT;
+	@Value("${Twilio.ID}")
+	private String AUTH_ID;
+	@Value("${Twilio.NUMBER}")
+	private String FROM_NUMBER;
+	
+	private volatile boolean initialized;
+	
+	//Twilio is initialised on first use instead of at startup
+	private void init() {
+		if (!initialized) {
+			synchronized (this) {
+				if (!initialized) {
+					Twilio.init(SID_ACCOUNT, AUTH_ID);
+					initialized = true;
+				}
+			}
+		}
+	}
+	
+	@Override
+	public void send(String to, String body) {
+		init();
+		Message.creator(
+				new PhoneNumber(to),
+				new PhoneNumber(FROM_NUMBER),
+				body).create();
+	}
+}
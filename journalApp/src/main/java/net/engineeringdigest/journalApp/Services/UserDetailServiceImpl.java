@@ -1,27 +1,35 @@
 package net.engineeringdigest.journalApp.Services;
 
-import net.engineeringdigest.journalApp.Entities.UserEntity;
-import net.engineeringdigest.journalApp.Repositories.UserRepository;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service("userDetailServiceImpl")
 public class UserDetailServiceImpl implements UserDetailsService {
 
 	@Autowired
-	private UserRepository userRepository;
+	private MongoTemplate mongoTemplate;
 
+	//credentials are read fresh from USERS on every call (three fields by the unique name index), never from ProfileCache
 	@Override
 	public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-		UserEntity user = userRepository.findByName(username);
+		Query query = new Query(Criteria.where("name").is(username));
+		query.fields().include("name").include("password").include("roles");
+		Document user = mongoTemplate.findOne(query, Document.class, ResourceVersionService.USERS);
 		if (user != null) {
+			List<String> roles = user.getList("roles", String.class);
 			return org.springframework.security.core.userdetails.User.builder()
-					.username(user.getName())
-					.password(user.getPassword())
-					.roles(user.getRoles().toArray(new String[0]))
+					.username(user.getString("name"))
+					.password(user.getString("password"))
+					.roles(roles != null ? roles.toArray(new String[0]) : new String[0])
 					.build();
 		}
 		throw new UsernameNotFoundException("User not found with username: " + username);
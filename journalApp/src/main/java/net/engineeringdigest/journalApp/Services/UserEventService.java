@@ -0,0 +1,261 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-Sent Events push channel behind /user/events. Each open stream is an SseEmitter parked on an
+ * async servlet request, so an idle connection holds no request thread; only the emitter and its socket.
+ * Events (loan approval, new credit score, email/phone verification) are written by a small sender pool,
+ * never on the thread that caused them, and a heartbeat comment every events.sse.heartbeat-ms keeps
+ * proxies from closing idle streams and detects clients that went away. With events.redis.enabled every
+ * event is also published on a Redis channel, so a farmer connected to another instance still gets it;
+ * each instance delivers its own events locally and ignores them when they come back from Redis.
+ */
+@Slf4j
+@Service
+public class UserEventService implements QueueDepthSource {
+	
+	public static final String LOAN_APPROVED = "loanApproved";
+	public static final String CREDIT_SCORE = "creditScore";
+	public static final String VERIFIED = "verified";
+	
+	@Autowired
+	private ObjectMapper objectMapper;
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	@Autowired
+	private ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+	
+	@Autowired
+	private ObjectProvider<RedisConnectionFactory> redisConnectionFactoryProvider;
+	
+	//streams are closed after this long and the browser's EventSource reconnects on its own
+	@Value("${events.sse.timeout-ms:1800000}")
+	private long timeoutMs;
+	
+	@Value("${events.sse.max-per-user:5}")
+	private int maxPerUser;
+	
+	@Value("${events.sse.sender-threads:4}")
+	private int senderThreads;
+	
+	@Value("${events.sse.reconnect-ms:5000}")
+	private long reconnectMs;
+	
+	@Value("${events.redis.enabled:${cache.profile.redis.enabled:false}}")
+	private boolean redisEnabled;
+	
+	@Value("${events.redis.channel:user-events}")
+	private String channel;
+	
+	private final String instanceId = UUID.randomUUID().toString();
+	private final AtomicLong eventIds = new AtomicLong();
+	private final Map<String, Set<SseEmitter>> emitters = new ConcurrentHashMap<>();
+	private final AtomicLong open = new AtomicLong();
+	
+	private ThreadPoolExecutor sender;
+	private StringRedisTemplate redis;
+	private RedisMessageListenerContainer listenerContainer;
+	
+	@Getter
+	@Setter
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class Envelope {
+		private String origin;
+		private String username;
+		private String type;
+		private Object data;
+	}
+	
+	@PostConstruct
+	public void setup() {
+		sender = (ThreadPoolExecutor) Executors.newFixedThreadPool(senderThreads, r -> {
+			Thread thread = new Thread(r, "sse-sender");
+			thread.setDaemon(true);
+			return thread;
+		});
+		Gauge.builder("events.sse.connections", open, AtomicLong::get).register(meterRegistry);
+		if (redisEnabled) {
+			redis = redisTemplateProvider.getObject();
+			listenerContainer = new RedisMessageListenerContainer();
+			listenerContainer.setConnectionFactory(redisConnectionFactoryProvider.getObject());
+			listenerContainer.addMessageListener((message, pattern) -> receive(new String(message.getBody(), StandardCharsets.UTF_8)),
+					new ChannelTopic(channel));
+			listenerContainer.afterPropertiesSet();
+			listenerContainer.start();
+		}
+	}
+	
+	@PreDestroy
+	public void shutdown() throws Exception {
+		if (listenerContainer != null) {
+			listenerContainer.destroy();
+		}
+		for (Set<SseEmitter> userEmitters : emitters.values()) {
+			for (SseEmitter emitter : userEmitters) {
+				try {
+					emitter.complete();
+				}
+				catch (Exception e) {
+					//the web server may already have closed the connection
+					log.debug("Closing event stream failed: {}", e.getMessage());
+				}
+			}
+		}
+		sender.shutdownNow();
+	}
+	
+	public SseEmitter subscribe(String username) {
+		SseEmitter emitter = new SseEmitter(timeoutMs);
+		Set<SseEmitter> userEmitters = emitters.compute(username, (name, current) -> {
+			Set<SseEmitter> updated = current != null ? current : new CopyOnWriteArraySet<>();
+			updated.add(emitter);
+			return updated;
+		});
+		open.incrementAndGet();
+		emitter.onCompletion(() -> remove(username, emitter));
+		emitter.onTimeout(emitter::complete);
+		emitter.onError(e -> remove(username, emitter));
+		//a farmer with many tabs open keeps the newest streams; the oldest are closed
+		if (userEmitters.size() > maxPerUser) {
+			for (SseEmitter oldest : userEmitters) {
+				if (userEmitters.size() <= maxPerUser) {
+					break;
+				}
+				remove(username, oldest);
+				oldest.complete();
+			}
+		}
+		enqueue(username, emitter, SseEmitter.event().reconnectTime(reconnectMs).comment("connected"));
+		return emitter;
+	}
+	
+	public void publish(String username, String type, Object data) {
+		if (username == null) {
+			return;
+		}
+		deliver(username, type, data);
+		if (redis != null) {
+			try {
+				redis.convertAndSend(channel, objectMapper.writeValueAsString(new Envelope(instanceId, username, type, data)));
+			}
+			catch (Exception e) {
+				log.warn("Publishing {} event for {} to Redis failed: {}", type, username, e.getMessage());
+			}
+		}
+		meterRegistry.counter("events.sse.published", "type", type).increment();
+	}
+	
+	public static Map<String, Object> scoreEvent(float creditScore, String modelVersion) {
+		Map<String, Object> data = new LinkedHashMap<>();
+		data.put("creditScore", creditScore);
+		data.put("modelVersion", modelVersion);
+		return data;
+	}
+	
+	@Scheduled(fixedDelayString = "${events.sse.heartbeat-ms:20000}")
+	public void heartbeat() {
+		for (Map.Entry<String, Set<SseEmitter>> entry : emitters.entrySet()) {
+			for (SseEmitter emitter : entry.getValue()) {
+				enqueue(entry.getKey(), emitter, SseEmitter.event().comment("heartbeat"));
+			}
+		}
+	}
+	
+	@Override
+	public String queueName() {
+		return "sse-sender";
+	}
+	
+	@Override
+	public int queueDepth() {
+		return sender.getQueue().size();
+	}
+	
+	private void receive(String json) {
+		try {
+			Envelope envelope = objectMapper.readValue(json, Envelope.class);
+			if (!instanceId.equals(envelope.getOrigin())) {
+				deliver(envelope.getUsername(), envelope.getType(), envelope.getData());
+			}
+		}
+		catch (Exception e) {
+			log.warn("Ignoring malformed user event from Redis: {}", e.getMessage());
+		}
+	}
+	
+	private void deliver(String username, String type, Object data) {
+		Set<SseEmitter> userEmitters = emitters.get(username);
+		if (userEmitters == null) {
+			return;
+		}
+		for (SseEmitter emitter : userEmitters) {
+			enqueue(username, emitter, SseEmitter.event()
+					.id(instanceId.substring(0, 8) + "-" + eventIds.incrementAndGet())
+					.name(type)
+					.data(data, MediaType.APPLICATION_JSON));
+		}
+	}
+	
+	private void enqueue(String username, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+		try {
+			sender.execute(() -> {
+				try {
+					emitter.send(event);
+				}
+				catch (Exception e) {
+					//the client went away; the failed write already ends the async request, so only forget the emitter
+					remove(username, emitter);
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			log.debug("Sender stopped, dropping event for {}", username);
+		}
+	}
+	
+	private void remove(String username, SseEmitter emitter) {
+		emitters.computeIfPresent(username, (name, userEmitters) -> {
+			if (userEmitters.remove(emitter)) {
+				open.decrementAndGet();
+			}
+			return userEmitters.isEmpty() ? null : userEmitters;
+		});
+	}
+}
@@ -1,15 +1,26 @@
 package net.engineeringdigest.journalApp.Services;
 
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import net.engineeringdigest.journalApp.Entities.UserEntity;
 import net.engineeringdigest.journalApp.Repositories.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
 
 
 @Slf4j
@@ -22,28 +33,155 @@ public class UserService {
 	@Autowired
 	public PasswordEncoder passwordEncoder;
 	
+	@Autowired
+	public AnalyticsService analyticsService;
+	
+	@Autowired
+	public CreditScoreClient creditScoreClient;
+	
+	@Autowired
+	public ProfileCache profileCache;
+	
+	@Autowired
+	public EligibilityService eligibilityService;
+	
+	@Autowired
+	public MongoTemplate mongoTemplate;
+	
+	@Autowired
+	public ResourceVersionService resourceVersionService;
+	
+	@Autowired
+	public MeterRegistry meterRegistry;
+	
+	@Autowired
+	public UserEventService userEventService;
+	
+	@Autowired
+	public CascadeDeleteService cascadeDeleteService;
+	
+	@Autowired
+	public ScoreHistoryService scoreHistoryService;
+	
+	@Value("${concurrency.user-update.max-attempts:5}")
+	private int maxAttempts;
+	
+	@Value("${concurrency.user-update.backoff-ms:10}")
+	private long backoffMs;
+	
+	@Value("${admin.name:}")
+	private String adminName;
+	
+	@Value("${admin.password:}")
+	private String adminPassword;
+	
+	@Value("${admin.email:}")
+	private String adminEmail;
+	
 	
 	public boolean saveUser(UserEntity userEntity) {
 		try{
+			boolean isNew = userEntity.getId() == null;
 			userEntity.setPassword(passwordEncoder.encode(userEntity.getPassword()));
 			userEntity.setRoles(Arrays.asList("User"));
 			userRepository.save(userEntity);
+			profileCache.evictUser(userEntity.getName());
+			eligibilityService.reevaluate(userEntity);
+			if (isNew) {
+				analyticsService.recordSignup(userEntity);
+			}
 			return true;
 		}
 		catch (Exception e){
 			log.error("error while saving user",e);
 			return false;
 		}
-		
+	
+	}
+	
+	//operator account for /admin/**; it only has the ADMIN role, so farmer queries (roles: User) never see it.
+	//It gets a real email because the unique email index allows a single document without one
+	@EventListener(ApplicationReadyEvent.class)
+	public void ensureAdminAccount() {
+		if (adminName.isEmpty() || adminPassword.isEmpty()) {
+			return;
+		}
+		String email = adminEmail.isEmpty() ? adminName + "@admin.invalid" : adminEmail;
+		UserEntity admin = userRepository.findByName(adminName);
+		if (admin != null) {
+			//accounts created before the email was set still hold the index's one null slot
+			if (admin.getEmail() == null) {
+				admin.setEmail(email);
+				userRepository.save(admin);
+			}
+			return;
+		}
+		admin = new UserEntity();
+		admin.setName(adminName);
+		admin.setEmail(email);
+		admin.setPassword(passwordEncoder.encode(adminPassword));
+		admin.setRoles(Arrays.asList("ADMIN"));
+		userRepository.save(admin);
+		log.info("Created admin account {}", adminName);
 	}
 	
-	//for updating the user details
-	public void saveEntry(UserEntity user){
-		userRepository.save(user);
+	/**
+	 * Compare-and-set update of a farmer. The change is applied to the given entity and saved with its
+	 * version; if another writer got there first, the farmer is reloaded and the change re-applied, up to
+	 * concurrency.user-update.max-attempts times with a short jittered backoff. The change returns false to
+	 * skip the write, e.g. when the reloaded document no longer satisfies its precondition. Returns the
+	 * saved entity, or null if the change skipped the write or the farmer was deleted meanwhile.
+	 */
+	public UserEntity update(String operation, UserEntity user, Predicate<UserEntity> change) {
+		for (int attempt = 1; ; attempt++) {
+			ensureVersioned(user);
+			if (!change.test(user)) {
+				return null;
+			}
+			try {
+				UserEntity saved = userRepository.save(user);
+				profileCache.evictUser(saved.getName());
+				eligibilityService.reevaluate(saved);
+				return saved;
+			}
+			catch (OptimisticLockingFailureException e) {
+				boolean exhausted = attempt >= maxAttempts;
+				meterRegistry.counter("user.update.conflicts", "operation", operation, "outcome", exhausted ? "exhausted" : "retried").increment();
+				if (exhausted) {
+					log.warn("Giving up {} of {} after {} conflicting attempts", operation, user.getName(), attempt);
+					throw e;
+				}
+				backoff(attempt);
+				user = userRepository.findById(user.getId()).orElse(null);
+				if (user == null) {
+					return null;
+				}
+			}
+		}
+	}
+	
+	//documents written before versioning have no version field; without one save() would try an insert
+	private void ensureVersioned(UserEntity user) {
+		if (user.getVersion() == null && user.getId() != null) {
+			resourceVersionService.updateFirst(new Query(Criteria.where("_id").is(user.getId()).and("version").exists(false)),
+					new Update().set("version", 0L), ResourceVersionService.USERS);
+			Long version = userRepository.findById(user.getId()).map(UserEntity::getVersion).orElse(0L);
+			user.setVersion(version);
+		}
+	}
+	
+	private void backoff(int attempt) {
+		try {
+			Thread.sleep(backoffMs * attempt + ThreadLocalRandom.current().nextLong(backoffMs + 1));
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while retrying a conflicting update", e);
+		}
 	}
 	
 	public List<UserEntity> getAll() {
-			List<UserEntity> all = userRepository.findAll();
+			List<UserEntity> all = userRepository.findByRoles("User");
 			return all;
 	}
 	
@@ -61,36 +199,71 @@ public class UserService {
 		return null;
 	}
 	
+	//stores a freshly computed credit score and keeps the dashboard rollups in step
+	public void applyCreditScore(UserEntity user, float creditScore) {
+		//hash of the inputs that were actually scored: if a retry sees edited inputs the re-scoring job catches up
+		String inputsHash = creditScoreClient.inputsHash(user);
+		String modelVersion = creditScoreClient.getModelVersion();
+		boolean[] wasScored = new boolean[1];
+		float[] previousScore = new float[1];
+		UserEntity saved = update("creditScore", user, current -> {
+			wasScored[0] = current.isCreditScoreVerified();
+			previousScore[0] = current.getCreditScore();
+			current.setCreditScore(creditScore);
+			current.setCreditScoreVerified(true);
+			current.setScoreModelVersion(modelVersion);
+			current.setScoreInputsHash(inputsHash);
+			return true;
+		});
+		if (saved != null) {
+			analyticsService.recordScoreChange(saved, wasScored[0], previousScore[0]);
+			userEventService.publish(saved.getName(), UserEventService.CREDIT_SCORE, UserEventService.scoreEvent(creditScore, modelVersion));
+			scoreHistoryService.record(saved, creditScore, modelVersion, inputsHash);
+		}
+	}
+	
+	//removes the account only; bank references, history, matches and rollups are cleaned by the cascade job
 	public void deleteByUserName(String name) {
-		userRepository.deleteByName(name);
+		UserEntity user = userRepository.findByName(name);
+		if (user == null) {
+			return;
+		}
+		//by _id so the delete event carries it; bank references left by a crash before the job is inserted go in the nightly compaction
+		long deleted = mongoTemplate.remove(new Query(Criteria.where("_id").is(user.getId())), UserEntity.class).getDeletedCount();
+		profileCache.evictUser(name);
+		if (deleted > 0) {
+			cascadeDeleteService.enqueue(user);
+		}
 	}
 	
 	
-	public void updateUser(UserEntity updatedUser, UserEntity existingUser) {
+	public UserEntity updateUser(UserEntity updatedUser, UserEntity existingUser) {
 		try{
-				if(updatedUser.getName()!=null && !updatedUser.getName().equals(existingUser.getName())){
-					existingUser.setName(updatedUser.getName());
-				}
-				if(updatedUser.getPhoneNo()!=null && !updatedUser.getPhoneNo().equals(existingUser.getPhoneNo())){
-					existingUser.setPhoneNo(updatedUser.getPhoneNo());
-					existingUser.setPhoneVerified(false);
-				}
-				if(updatedUser.getEmail()!=null && !updatedUser.getEmail().equals(existingUser.getEmail())){
-					existingUser.setEmail(updatedUser.getEmail());
-					existingUser.setEmailVerified(false);
-				}
-			if(updatedUser.getPassword()!=null && updatedUser.getPassword().equals(existingUser.getPassword())){
-				existingUser.setPassword(updatedUser.getPassword());
-				saveUser(existingUser); //as there will be new password and it should be encrypted
-			}
-			else{
-				saveEntry(existingUser); //as the user has not updated the password
-			}
+				//a rename leaves the old name cached, so it is evicted along with the new one
+				profileCache.evictUser(existingUser.getName());
+				return update("profile", existingUser, current -> {
+					if(updatedUser.getName()!=null && !updatedUser.getName().equals(current.getName())){
+						current.setName(updatedUser.getName());
+					}
+					if(updatedUser.getPhoneNo()!=null && !updatedUser.getPhoneNo().equals(current.getPhoneNo())){
+						current.setPhoneNo(updatedUser.getPhoneNo());
+						current.setPhoneVerified(false);
+					}
+					if(updatedUser.getEmail()!=null && !updatedUser.getEmail().equals(current.getEmail())){
+						current.setEmail(updatedUser.getEmail());
+						current.setEmailVerified(false);
+					}
+					if(updatedUser.getPassword()!=null && updatedUser.getPassword().equals(current.getPassword())){
+						current.setPassword(passwordEncoder.encode(updatedUser.getPassword())); //as there will be new password and it should be encrypted
+						current.setRoles(Arrays.asList("User"));
+					}
+					return true;
+				});
 		}
 		catch (Exception e){
 			log.error("error while updating user ---------------------->",e);
 			throw e;
 		}
 	}
-	
+
 }
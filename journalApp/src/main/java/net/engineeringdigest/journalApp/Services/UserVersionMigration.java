@@ -0,0 +1,55 @@
+package net.engineeringdigest.journalApp.Services;
+
+
+import com.mongodb.client.result.UpdateResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+/**
+ * Gives farmers written before UserEntity was versioned a version of 0, so compare-and-set writes and
+ * the re-scoring job's version guard apply to them too. UserService.update also stamps a single missing
+ * version on demand, so requests arriving before this finishes are safe.
+ */
+@Slf4j
+@Service
+public class UserVersionMigration {
+	
+	@Autowired
+	private MongoTemplate mongoTemplate;
+	
+	@Autowired
+	private ResourceVersionService resourceVersionService;
+	
+	@Value("${concurrency.user-update.backfill-versions:true}")
+	private boolean enabled;
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		if (enabled) {
+			Thread thread = new Thread(this::migrate, "user-version-migration");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+	
+	public void migrate() {
+		try {
+			UpdateResult result = resourceVersionService.updateMulti(new Query(Criteria.where("version").exists(false)),
+					new Update().set("version", 0L), ResourceVersionService.USERS);
+			if (result.getModifiedCount() > 0) {
+				log.info("Stamped version 0 on {} unversioned farmers", result.getModifiedCount());
+			}
+		}
+		catch (Exception e) {
+			log.error("Error while backfilling farmer versions", e);
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package net.engineeringdigest.journalApp.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+//Injected wherever time-based behaviour needs to be driven by a fixed clock in tests
+@Configuration
+public class ClockConfig {
+	
+	@Bean
+	public Clock clock() {
+		return Clock.systemUTC();
+	}
+}
@@ -0,0 +1,52 @@
+package net.engineeringdigest.journalApp.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ReflectionUtils;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * faststart profile: beans are created on first use (spring.main.lazy-initialization), except those with
+ * @Scheduled methods, which are only registered with the scheduler when instantiated. Also hosts the
+ * exit hook used by the appcds Maven profile to record a class-data-sharing archive of a full startup.
+ */
+@Slf4j
+@Configuration
+@Profile("faststart")
+public class FastStartConfig {
+	
+	@Value("${faststart.cds-training:false}")
+	private boolean cdsTraining;
+	
+	@Bean
+	public static LazyInitializationExcludeFilter scheduledBeansAreEager() {
+		return (beanName, beanDefinition, beanType) -> {
+			AtomicBoolean scheduled = new AtomicBoolean();
+			ReflectionUtils.doWithMethods(beanType, method -> scheduled.set(true),
+					method -> method.isAnnotationPresent(Scheduled.class));
+			return scheduled.get();
+		};
+	}
+	
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	public void exitAfterCdsTraining(ApplicationReadyEvent event) {
+		if (cdsTraining) {
+			log.info("CDS training run reached readiness, exiting so the archive is written");
+			ApplicationContext context = event.getApplicationContext();
+			System.exit(SpringApplication.exit(context, () -> 0));
+		}
+	}
+}
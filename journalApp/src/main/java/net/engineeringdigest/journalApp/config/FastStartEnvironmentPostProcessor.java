@@ -0,0 +1,49 @@
+package net.engineeringdigest.journalApp.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.Profiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * faststart profile: skips the Redis auto-configuration, but only when nothing uses Redis. The profile
+ * cache, idempotency store and event relay keep their own flags, so a faststart instance in a
+ * Redis-enabled fleet still gets its connection factory.
+ */
+public class FastStartEnvironmentPostProcessor implements EnvironmentPostProcessor {
+	
+	private static final String EXCLUDE = "spring.autoconfigure.exclude";
+	
+	private static final List<String> REDIS_FLAGS = Arrays.asList(
+			"cache.profile.redis.enabled", "idempotency.redis.enabled", "events.redis.enabled");
+	
+	private static final List<String> REDIS_AUTO_CONFIGURATION = Arrays.asList(
+			"org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration",
+			"org.springframework.boot.autoconfigure.data.redis.RedisReactiveAutoConfiguration",
+			"org.springframework.boot.autoconfigure.data.redis.RedisRepositoriesAutoConfiguration");
+	
+	@Override
+	public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+		if (!environment.acceptsProfiles(Profiles.of("faststart"))) {
+			return;
+		}
+		for (String flag : REDIS_FLAGS) {
+			if (environment.getProperty(flag, Boolean.class, false)) {
+				return;
+			}
+		}
+		//the highest source replaces the exclude list rather than merging with it, so the existing entries are carried over
+		List<String> exclude = new ArrayList<>(Binder.get(environment).bind(EXCLUDE, Bindable.listOf(String.class)).orElse(Collections.emptyList()));
+		exclude.addAll(REDIS_AUTO_CONFIGURATION);
+		environment.getPropertySources().addFirst(new MapPropertySource("faststartRedisExclusions",
+				Collections.singletonMap(EXCLUDE, String.join(",", exclude))));
+	}
+}
@@ -0,0 +1,52 @@
+package net.engineeringdigest.journalApp.config;
+
+
+import net.engineeringdigest.journalApp.Services.FaultInjector;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.lang.reflect.Method;
+
+/**
+ * Puts the "mongo" fault target in front of every blocking Mongo repository, so injected latency and
+ * errors reach callers the way a slow or unreachable database would. Injected failures surface as
+ * DataAccessResourceFailureException, like a lost connection. The reactive repositories are left alone;
+ * sleeping there would stall an event-loop thread rather than model a slow database.
+ */
+@Configuration
+public class FaultInjectionConfig {
+	
+	//not registered at all unless faults.enabled, so normal runs pay nothing per repository call
+	@Bean
+	@ConditionalOnProperty(name = "faults.enabled", havingValue = "true")
+	@Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+	public static Advisor mongoFaultAdvisor(ObjectProvider<FaultInjector> faultInjector) {
+		StaticMethodMatcherPointcut pointcut = new StaticMethodMatcherPointcut() {
+			@Override
+			public boolean matches(Method method, Class<?> targetClass) {
+				return method.getDeclaringClass() != Object.class;
+			}
+		};
+		pointcut.setClassFilter(MongoRepository.class::isAssignableFrom);
+		MethodInterceptor interceptor = invocation -> {
+			try {
+				faultInjector.getObject().inject(FaultInjector.MONGO);
+			}
+			catch (FaultInjector.InjectedFault e) {
+				throw new DataAccessResourceFailureException(e.getMessage(), e);
+			}
+			return invocation.proceed();
+		};
+		return new DefaultPointcutAdvisor(pointcut, interceptor);
+	}
+}
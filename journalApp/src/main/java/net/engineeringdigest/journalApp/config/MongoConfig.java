@@ -0,0 +1,10 @@
+package net.engineeringdigest.journalApp.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.config.EnableMongoAuditing;
+
+//Populates @LastModifiedDate fields on every save; used for Last-Modified/ETag headers
+@Configuration
+@EnableMongoAuditing
+public class MongoConfig {
+}
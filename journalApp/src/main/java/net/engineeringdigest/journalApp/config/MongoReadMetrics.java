@@ -0,0 +1,80 @@
+package net.engineeringdigest.journalApp.config;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ServerType;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.ServerDescriptionChangedEvent;
+import com.mongodb.event.ServerListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.engineeringdigest.journalApp.utils.ReadRouting;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records every read command as mongo.reads, tagged with the request route that issued it, the
+ * requested preference and the replica-set member that actually answered. Member types come from the
+ * driver's server monitor; command events of the sync driver fire on the calling thread, so the request
+ * and the routing scope are still available.
+ */
+public class MongoReadMetrics implements CommandListener, ServerListener {
+	
+	private static final Set<String> READ_COMMANDS = new HashSet<>(Arrays.asList("find", "getMore", "aggregate", "count", "distinct"));
+	
+	private final MeterRegistry meterRegistry;
+	
+	private final Map<ServerAddress, String> members = new ConcurrentHashMap<>();
+	
+	public MongoReadMetrics(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+	
+	@Override
+	public void serverDescriptionChanged(ServerDescriptionChangedEvent event) {
+		ServerType type = event.getNewDescription().getType();
+		String member;
+		if (type == ServerType.REPLICA_SET_PRIMARY) {
+			member = "primary";
+		}
+		else if (type == ServerType.REPLICA_SET_SECONDARY) {
+			member = "secondary";
+		}
+		else if (type == ServerType.STANDALONE || type == ServerType.SHARD_ROUTER) {
+			member = "standalone";
+		}
+		else {
+			member = "unknown";
+		}
+		members.put(event.getServerId().getAddress(), member);
+	}
+	
+	@Override
+	public void commandSucceeded(CommandSucceededEvent event) {
+		if (!READ_COMMANDS.contains(event.getCommandName())) {
+			return;
+		}
+		String member = members.getOrDefault(event.getConnectionDescription().getServerAddress(), "unknown");
+		meterRegistry.timer("mongo.reads",
+						"route", route(),
+						"preference", ReadRouting.isSecondary() ? "secondaryPreferred" : "primary",
+						"member", member)
+				.record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+	}
+	
+	private static String route() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes == null) {
+			return "background";
+		}
+		Object pattern = attributes.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+		return pattern == null ? "filter" : pattern.toString();
+	}
+}
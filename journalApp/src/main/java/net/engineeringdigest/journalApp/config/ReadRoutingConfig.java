@@ -0,0 +1,79 @@
+package net.engineeringdigest.journalApp.config;
+
+import com.mongodb.ReadPreference;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.utils.ReadRouting;
+import net.engineeringdigest.journalApp.utils.SecondaryReads;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read routing: methods annotated with @SecondaryReads (controllers, services or repository interface
+ * methods) run with ReadRouting in secondary mode, and RoutingMongoTemplate, which replaces Boot's
+ * MongoTemplate and therefore also backs the repositories, turns that into a secondaryPreferred read
+ * preference. Writes are unaffected and everything unannotated keeps reading from the primary.
+ */
+@Slf4j
+@Configuration
+public class ReadRoutingConfig {
+	
+	//the driver rejects a max staleness below 90 seconds
+	private static final long MIN_MAX_STALENESS_SECONDS = 90;
+	
+	@Value("${mongo.read-routing.enabled:true}")
+	private boolean enabled;
+	
+	@Value("${mongo.read-routing.max-staleness-seconds:90}")
+	private long maxStalenessSeconds;
+	
+	@Bean
+	public MongoTemplate mongoTemplate(MongoDatabaseFactory mongoDatabaseFactory, MongoConverter mongoConverter) {
+		ReadPreference secondary = ReadPreference.primary();
+		if (enabled) {
+			if (maxStalenessSeconds > 0 && maxStalenessSeconds < MIN_MAX_STALENESS_SECONDS) {
+				log.warn("mongo.read-routing.max-staleness-seconds={} is below the driver minimum, using {}", maxStalenessSeconds, MIN_MAX_STALENESS_SECONDS);
+				maxStalenessSeconds = MIN_MAX_STALENESS_SECONDS;
+			}
+			secondary = maxStalenessSeconds > 0
+					? ReadPreference.secondaryPreferred(maxStalenessSeconds, TimeUnit.SECONDS)
+					: ReadPreference.secondaryPreferred();
+		}
+		return new RoutingMongoTemplate(mongoDatabaseFactory, mongoConverter, secondary);
+	}
+	
+	@Bean
+	@Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+	public static Advisor secondaryReadsAdvisor() {
+		MethodInterceptor interceptor = invocation -> {
+			int previous = ReadRouting.enterSecondary();
+			try {
+				return invocation.proceed();
+			}
+			finally {
+				ReadRouting.restore(previous);
+			}
+		};
+		return new DefaultPointcutAdvisor(new AnnotationMatchingPointcut(null, SecondaryReads.class, true), interceptor);
+	}
+	
+	@Bean
+	public MongoClientSettingsBuilderCustomizer mongoReadMetricsCustomizer(MeterRegistry meterRegistry) {
+		MongoReadMetrics metrics = new MongoReadMetrics(meterRegistry);
+		return builder -> builder.addCommandListener(metrics)
+				.applyToServerSettings(settings -> settings.addServerListener(metrics));
+	}
+}
@@ -0,0 +1,35 @@
+package net.engineeringdigest.journalApp.config;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.client.MongoCollection;
+import net.engineeringdigest.journalApp.utils.ReadRouting;
+import org.bson.Document;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+//MongoTemplate that applies the secondary read preference while the calling thread is inside a @SecondaryReads method
+public class RoutingMongoTemplate extends MongoTemplate {
+	
+	private final ReadPreference secondaryPreference;
+	
+	public RoutingMongoTemplate(MongoDatabaseFactory mongoDbFactory, MongoConverter mongoConverter, ReadPreference secondaryPreference) {
+		super(mongoDbFactory, mongoConverter);
+		this.secondaryPreference = secondaryPreference;
+	}
+	
+	@Override
+	protected MongoCollection<Document> prepareCollection(MongoCollection<Document> collection) {
+		return route(super.prepareCollection(collection));
+	}
+	
+	//raw collections are used for cursors and bulk writes; writes ignore the read preference
+	@Override
+	public MongoCollection<Document> getCollection(String collectionName) {
+		return route(super.getCollection(collectionName));
+	}
+	
+	private MongoCollection<Document> route(MongoCollection<Document> collection) {
+		return ReadRouting.isSecondary() ? collection.withReadPreference(secondaryPreference) : collection;
+	}
+}
@@ -44,8 +44,12 @@ public class SpringSecurity extends WebSecurityConfigurerAdapter {
 				.and()
 				.authorizeRequests()
 				.antMatchers("/public/**").permitAll()
+				.antMatchers("/health/**").permitAll()
 				.antMatchers("/user/**").hasRole("User")
 				.antMatchers("/Bank/**").hasRole("BANK")
+				//bulk imports, fault injection, cascades, reloads and metrics are operator-only
+				.antMatchers("/admin/**").hasRole("ADMIN")
+				.antMatchers("/actuator/**").hasRole("ADMIN")
 				.anyRequest().authenticated()
 				.and()
 				.addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class);
@@ -0,0 +1,200 @@
+package net.engineeringdigest.journalApp.filters;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.engineeringdigest.journalApp.Services.IdempotencyService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Makes the side-effecting endpoints in idempotency.paths safe to retry: a request carrying an
+ * Idempotency-Key header is executed once per caller, key and endpoint, and retries get the stored
+ * response back (marked with Idempotent-Replayed: true). Registered as a plain servlet filter, so it runs
+ * after the security chain and the caller is already known. Only 2xx responses are stored: the wrapped
+ * endpoints also report transient failures (SMTP, SMS, Mongo) as 4xx, so a retry after any error
+ * executes again.
+ */
+@Slf4j
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+	
+	public static final String HEADER = "Idempotency-Key";
+	public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+	
+	@Autowired
+	private IdempotencyService idempotencyService;
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	@Value("${idempotency.paths:/Bank/approveLoan,/public/sign-up,/public/bsign-up,/user/sendOTPEmail,/user/sendOTPPhone}")
+	private Set<String> paths;
+	
+	@Value("${idempotency.max-key-length:128}")
+	private int maxKeyLength;
+	
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return request.getHeader(HEADER) == null || !paths.contains(request.getRequestURI().substring(request.getContextPath().length()));
+	}
+	
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+		String idempotencyKey = request.getHeader(HEADER).trim();
+		if (idempotencyKey.isEmpty() || idempotencyKey.length() > maxKeyLength) {
+			reject(response, HttpStatus.BAD_REQUEST, HEADER + " must be 1 to " + maxKeyLength + " characters");
+			return;
+		}
+		byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		String caller = authentication == null ? "anonymous" : authentication.getName();
+		String key = caller + ":" + request.getMethod() + ":" + request.getRequestURI() + ":" + idempotencyKey;
+		String fingerprint = fingerprint(request, body);
+		
+		IdempotencyService.Claim claim;
+		try {
+			claim = idempotencyService.claim(key, fingerprint);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			reject(response, HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for the original request");
+			return;
+		}
+		meterRegistry.counter("idempotency.requests", "outcome", claim.getState().name().toLowerCase()).increment();
+		switch (claim.getState()) {
+			case REPLAY:
+				replay(claim.getRecord(), response);
+				return;
+			case MISMATCH:
+				reject(response, HttpStatus.UNPROCESSABLE_ENTITY, HEADER + " was already used for a different request");
+				return;
+			case IN_PROGRESS:
+				response.setHeader("Retry-After", "1");
+				reject(response, HttpStatus.CONFLICT, "A request with this " + HEADER + " is still being processed");
+				return;
+			default:
+				break;
+		}
+		
+		ContentCachingResponseWrapper captured = new ContentCachingResponseWrapper(response);
+		boolean stored = false;
+		try {
+			filterChain.doFilter(new CachedBodyRequest(request, body), captured);
+			if (captured.getStatus() >= 200 && captured.getStatus() < 300) {
+				idempotencyService.complete(key, new IdempotencyService.Record(fingerprint, true, captured.getStatus(),
+						captured.getContentType(), captured.getContentAsByteArray()));
+				stored = true;
+			}
+		}
+		finally {
+			if (!stored) {
+				idempotencyService.abandon(key);
+			}
+			captured.copyBodyToResponse();
+		}
+	}
+	
+	//written directly rather than through sendError, whose error dispatch would be rejected for anonymous callers
+	private static void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+		response.setStatus(status.value());
+		response.setContentType("text/plain;charset=UTF-8");
+		response.getWriter().write(message);
+	}
+	
+	private static void replay(IdempotencyService.Record record, HttpServletResponse response) throws IOException {
+		response.setStatus(record.getStatus());
+		response.setHeader(REPLAYED_HEADER, "true");
+		if (record.getContentType() != null) {
+			response.setContentType(record.getContentType());
+		}
+		if (record.getBody() != null) {
+			response.setContentLength(record.getBody().length);
+			response.getOutputStream().write(record.getBody());
+		}
+	}
+	
+	private static String fingerprint(HttpServletRequest request, byte[] body) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(body.length + 128);
+		out.write((request.getMethod() + " " + request.getRequestURI() + "?" + request.getQueryString() + "\n").getBytes(StandardCharsets.UTF_8));
+		out.write(body);
+		return DigestUtils.md5DigestAsHex(out.toByteArray());
+	}
+	
+	//replays the body that was read up front for the fingerprint
+	private static class CachedBodyRequest extends HttpServletRequestWrapper {
+		private final byte[] body;
+		
+		CachedBodyRequest(HttpServletRequest request, byte[] body) {
+			super(request);
+			this.body = body;
+		}
+		
+		@Override
+		public ServletInputStream getInputStream() {
+			ByteArrayInputStream in = new ByteArrayInputStream(body);
+			return new ServletInputStream() {
+				@Override
+				public boolean isFinished() {
+					return in.available() == 0;
+				}
+				
+				@Override
+				public boolean isReady() {
+					return true;
+				}
+				
+				//the whole body is already in memory, so a non-blocking reader is told right away
+				@Override
+				public void setReadListener(ReadListener listener) {
+					try {
+						if (!isFinished()) {
+							listener.onDataAvailable();
+						}
+						listener.onAllDataRead();
+					}
+					catch (IOException e) {
+						listener.onError(e);
+					}
+				}
+				
+				@Override
+				public int read() {
+					return in.read();
+				}
+				
+				@Override
+				public int read(byte[] b, int off, int len) {
+					return in.read(b, off, len);
+				}
+			};
+		}
+		
+		@Override
+		public BufferedReader getReader() {
+			return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+		}
+	}
+}
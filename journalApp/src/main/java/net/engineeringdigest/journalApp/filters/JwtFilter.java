@@ -23,6 +23,8 @@ import java.io.IOException;
 @Component
 public class JwtFilter extends OncePerRequestFilter {
 	
+	private static final String EVENTS_PATH = "/user/events";
+	
 	@Autowired
 	private JwtUtil jwtUtil;
 	
@@ -45,6 +47,12 @@ public class JwtFilter extends OncePerRequestFilter {
 				jwt = authorization.substring(7);
 				username = jwtUtil.extractUsername(jwt);
 			}
+			//EventSource cannot send headers, so the event stream alone accepts the token as a query parameter
+			else if (authorization == null && EVENTS_PATH.equals(request.getRequestURI().substring(request.getContextPath().length()))
+					&& request.getParameter("access_token") != null) {
+				jwt = request.getParameter("access_token");
+				username = jwtUtil.extractUsername(jwt);
+			}
 			
 			if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
 				UserDetails userDetails = null;
@@ -0,0 +1,58 @@
+package net.engineeringdigest.journalApp.filters;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Logs and publishes time from JVM start to readiness and to the first completed request, for comparing startup modes
+@Slf4j
+@Component
+public class StartupTimingFilter extends OncePerRequestFilter {
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	private final AtomicBoolean firstRequestSeen = new AtomicBoolean();
+	
+	private final AtomicLong timeToReady = new AtomicLong();
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void onReady() {
+		long sinceJvmStart = sinceJvmStart();
+		timeToReady.set(sinceJvmStart);
+		meterRegistry.gauge("startup.time.to.ready", timeToReady);
+		log.info("Ready {} ms after JVM start", sinceJvmStart);
+	}
+	
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+		try {
+			filterChain.doFilter(request, response);
+		}
+		finally {
+			if (!firstRequestSeen.get() && firstRequestSeen.compareAndSet(false, true)) {
+				long sinceJvmStart = sinceJvmStart();
+				meterRegistry.timer("startup.time.to.first.request").record(sinceJvmStart, TimeUnit.MILLISECONDS);
+				log.info("First request ({} {}) completed {} ms after JVM start", request.getMethod(), request.getRequestURI(), sinceJvmStart);
+			}
+		}
+	}
+	
+	private static long sinceJvmStart() {
+		return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+	}
+}
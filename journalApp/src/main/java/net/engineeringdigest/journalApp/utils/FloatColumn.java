@@ -0,0 +1,63 @@
+package net.engineeringdigest.journalApp.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Fixed-capacity column of primitive floats, either a plain float[] or a direct (off-heap) buffer
+ * so large snapshots stay out of the GC's way. Absolute get/put only, so concurrent readers are safe
+ * as long as writers are excluded by the owner.
+ */
+public final class FloatColumn {
+
+	private final float[] heap;
+	private final FloatBuffer direct;
+	private final int capacity;
+
+	private FloatColumn(int capacity, boolean offHeap) {
+		this.capacity = capacity;
+		if (offHeap) {
+			heap = null;
+			direct = ByteBuffer.allocateDirect(capacity * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		}
+		else {
+			heap = new float[capacity];
+			direct = null;
+		}
+	}
+
+	public static FloatColumn allocate(int capacity, boolean offHeap) {
+		return new FloatColumn(capacity, offHeap);
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public boolean isOffHeap() {
+		return direct != null;
+	}
+
+	public float get(int row) {
+		return heap != null ? heap[row] : direct.get(row);
+	}
+
+	public void set(int row, float value) {
+		if (heap != null) {
+			heap[row] = value;
+		}
+		else {
+			direct.put(row, value);
+		}
+	}
+
+	//copy of the first rows into a column of the new capacity, same storage kind
+	public FloatColumn resize(int newCapacity, int rows) {
+		FloatColumn copy = new FloatColumn(newCapacity, isOffHeap());
+		for (int i = 0; i < rows; i++) {
+			copy.set(i, get(i));
+		}
+		return copy;
+	}
+}
@@ -0,0 +1,48 @@
+package net.engineeringdigest.journalApp.utils;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread read routing used by RoutingMongoTemplate. Reads go to the primary unless the thread is
+ * inside a @SecondaryReads method; onPrimary pins a block to the primary even inside such a method, for
+ * lookups whose result outlives the request (caches).
+ */
+public final class ReadRouting {
+	
+	private static final int PRIMARY = 0;
+	private static final int SECONDARY = 1;
+	private static final int PINNED_PRIMARY = 2;
+	
+	private static final ThreadLocal<Integer> ROUTE = ThreadLocal.withInitial(() -> PRIMARY);
+	
+	private ReadRouting() {
+	}
+	
+	public static boolean isSecondary() {
+		return ROUTE.get() == SECONDARY;
+	}
+	
+	//returns the previous route, to be handed back to restore
+	public static int enterSecondary() {
+		int previous = ROUTE.get();
+		if (previous == PRIMARY) {
+			ROUTE.set(SECONDARY);
+		}
+		return previous;
+	}
+	
+	public static void restore(int previous) {
+		ROUTE.set(previous);
+	}
+	
+	public static <T> T onPrimary(Supplier<T> reads) {
+		int previous = ROUTE.get();
+		ROUTE.set(PINNED_PRIMARY);
+		try {
+			return reads.get();
+		}
+		finally {
+			ROUTE.set(previous);
+		}
+	}
+}
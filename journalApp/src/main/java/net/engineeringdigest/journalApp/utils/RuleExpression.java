@@ -0,0 +1,443 @@
+package net.engineeringdigest.journalApp.utils;
+
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Eligibility rule language: conditions joined by AND, each one of
+ * <pre>
+ *   field (= | != | &gt; | &gt;= | &lt; | &lt;=) value
+ *   field BETWEEN low AND high
+ *   field [NOT] IN (value, value, ...)
+ * </pre>
+ * over a fixed whitelist of farmer fields. Text values may be bare words ("Tamil Nadu") or quoted.
+ * A parsed rule compiles to a Mongo Criteria for bulk matching and evaluates a single UserEntity
+ * through primitive getters and pre-built sets, so matches() allocates nothing.
+ */
+public final class RuleExpression {
+
+	private static final int MAX_LENGTH = 1000;
+	private static final int MAX_CONDITIONS = 20;
+
+	private static final Map<String, ToDoubleFunction<UserEntity>> NUMERIC = new LinkedHashMap<>();
+	private static final Map<String, Function<UserEntity, String>> TEXT = new LinkedHashMap<>();
+	private static final Map<String, Predicate<UserEntity>> FLAGS = new LinkedHashMap<>();
+
+	static {
+		NUMERIC.put("creditScore", UserEntity::getCreditScore);
+		NUMERIC.put("landSize", UserEntity::getLandSize);
+		NUMERIC.put("pastYield", UserEntity::getPastYield);
+		NUMERIC.put("annualIncome", UserEntity::getAnnualIncome);
+		NUMERIC.put("soilPH", UserEntity::getSoilPH);
+		NUMERIC.put("nitrogenLevel", UserEntity::getNitrogenLevel);
+		NUMERIC.put("organicMatterLevel", UserEntity::getOrganicMatterLevel);
+		NUMERIC.put("landQualityScore", UserEntity::getLandQualityScore);
+		NUMERIC.put("pastRainfall", UserEntity::getPastRainfall);
+		NUMERIC.put("avgTemperature", UserEntity::getAvgTemperature);
+		TEXT.put("year", UserEntity::getYear);
+		TEXT.put("country", UserEntity::getCountry);
+		TEXT.put("region", UserEntity::getRegion);
+		TEXT.put("soilType", UserEntity::getSoilType);
+		TEXT.put("cropTypes", UserEntity::getCropTypes);
+		FLAGS.put("isCreditScoreVerified", UserEntity::isCreditScoreVerified);
+		FLAGS.put("isLoanApproved", UserEntity::isLoanApproved);
+	}
+
+	private final String source;
+	private final Condition[] conditions;
+
+	private RuleExpression(String source, Condition[] conditions) {
+		this.source = source;
+		this.conditions = conditions;
+	}
+
+	public static Set<String> fields() {
+		Set<String> fields = new LinkedHashSet<>();
+		fields.addAll(NUMERIC.keySet());
+		fields.addAll(TEXT.keySet());
+		fields.addAll(FLAGS.keySet());
+		return Collections.unmodifiableSet(fields);
+	}
+
+	//throws IllegalArgumentException with a message fit to return to the caller
+	public static RuleExpression parse(String expression) {
+		if (expression == null || expression.trim().isEmpty()) {
+			throw new IllegalArgumentException("Rule expression is empty");
+		}
+		if (expression.length() > MAX_LENGTH) {
+			throw new IllegalArgumentException("Rule expression is longer than " + MAX_LENGTH + " characters");
+		}
+		Parser parser = new Parser(tokenize(expression));
+		List<Condition> conditions = new ArrayList<>();
+		do {
+			conditions.add(parser.condition());
+			if (conditions.size() > MAX_CONDITIONS) {
+				throw new IllegalArgumentException("A rule may have at most " + MAX_CONDITIONS + " conditions");
+			}
+		} while (parser.acceptKeyword("AND"));
+		if (!parser.atEnd()) {
+			throw new IllegalArgumentException("Unexpected '" + parser.peek().text + "', conditions must be joined with AND");
+		}
+		return new RuleExpression(expression.trim(), conditions.toArray(new Condition[0]));
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public Criteria toCriteria() {
+		Criteria[] parts = new Criteria[conditions.length];
+		for (int i = 0; i < conditions.length; i++) {
+			parts[i] = conditions[i].criteria();
+		}
+		return new Criteria().andOperator(parts);
+	}
+
+	public boolean matches(UserEntity farmer) {
+		for (Condition condition : conditions) {
+			if (!condition.test(farmer)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private interface Condition {
+		Criteria criteria();
+
+		boolean test(UserEntity farmer);
+	}
+
+	private static final class Compare implements Condition {
+		private final String field;
+		private final String op;
+		private final double value;
+		private final ToDoubleFunction<UserEntity> getter;
+
+		Compare(String field, String op, double value) {
+			this.field = field;
+			this.op = op;
+			this.value = value;
+			this.getter = NUMERIC.get(field);
+		}
+
+		public Criteria criteria() {
+			Criteria criteria = Criteria.where(field);
+			switch (op) {
+				case "=": return criteria.is(value);
+				case "!=": return criteria.ne(value);
+				case ">": return criteria.gt(value);
+				case ">=": return criteria.gte(value);
+				case "<": return criteria.lt(value);
+				default: return criteria.lte(value);
+			}
+		}
+
+		public boolean test(UserEntity farmer) {
+			double actual = getter.applyAsDouble(farmer);
+			switch (op) {
+				case "=": return actual == value;
+				case "!=": return actual != value;
+				case ">": return actual > value;
+				case ">=": return actual >= value;
+				case "<": return actual < value;
+				default: return actual <= value;
+			}
+		}
+	}
+
+	private static final class Between implements Condition {
+		private final String field;
+		private final double low;
+		private final double high;
+		private final ToDoubleFunction<UserEntity> getter;
+
+		Between(String field, double low, double high) {
+			this.field = field;
+			this.low = low;
+			this.high = high;
+			this.getter = NUMERIC.get(field);
+		}
+
+		public Criteria criteria() {
+			return Criteria.where(field).gte(low).lte(high);
+		}
+
+		public boolean test(UserEntity farmer) {
+			double actual = getter.applyAsDouble(farmer);
+			return actual >= low && actual <= high;
+		}
+	}
+
+	private static final class In implements Condition {
+		private final String field;
+		private final Set<String> values;
+		private final boolean negated;
+		private final Function<UserEntity, String> getter;
+
+		In(String field, Set<String> values, boolean negated) {
+			this.field = field;
+			this.values = values;
+			this.negated = negated;
+			this.getter = TEXT.get(field);
+		}
+
+		public Criteria criteria() {
+			if (values.size() == 1) {
+				String value = values.iterator().next();
+				return negated ? Criteria.where(field).ne(value) : Criteria.where(field).is(value);
+			}
+			return negated ? Criteria.where(field).nin(values) : Criteria.where(field).in(values);
+		}
+
+		public boolean test(UserEntity farmer) {
+			String actual = getter.apply(farmer);
+			return values.contains(actual) != negated;
+		}
+	}
+
+	private static final class Flag implements Condition {
+		private final String field;
+		private final boolean value;
+		private final Predicate<UserEntity> getter;
+
+		Flag(String field, boolean value) {
+			this.field = field;
+			this.value = value;
+			this.getter = FLAGS.get(field);
+		}
+
+		public Criteria criteria() {
+			return Criteria.where(field).is(value);
+		}
+
+		public boolean test(UserEntity farmer) {
+			return getter.test(farmer) == value;
+		}
+	}
+
+	private enum Kind { WORD, NUMBER, STRING, OPERATOR, OPEN, CLOSE, COMMA }
+
+	private static final class Token {
+		private final Kind kind;
+		private final String text;
+
+		Token(Kind kind, String text) {
+			this.kind = kind;
+			this.text = text;
+		}
+
+		boolean isKeyword(String keyword) {
+			return kind == Kind.WORD && text.equalsIgnoreCase(keyword);
+		}
+	}
+
+	private static List<Token> tokenize(String expression) {
+		List<Token> tokens = new ArrayList<>();
+		int i = 0;
+		int length = expression.length();
+		while (i < length) {
+			char c = expression.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			}
+			else if (c == '(') {
+				tokens.add(new Token(Kind.OPEN, "("));
+				i++;
+			}
+			else if (c == ')') {
+				tokens.add(new Token(Kind.CLOSE, ")"));
+				i++;
+			}
+			else if (c == ',') {
+				tokens.add(new Token(Kind.COMMA, ","));
+				i++;
+			}
+			else if (c == '\'' || c == '"') {
+				int end = expression.indexOf(c, i + 1);
+				if (end < 0) {
+					throw new IllegalArgumentException("Unterminated quoted value at position " + i);
+				}
+				tokens.add(new Token(Kind.STRING, expression.substring(i + 1, end)));
+				i = end + 1;
+			}
+			else if (c == '<' || c == '>' || c == '=' || c == '!') {
+				int end = i + 1 < length && expression.charAt(i + 1) == '=' ? i + 2 : i + 1;
+				String op = expression.substring(i, end);
+				if (op.equals("!")) {
+					throw new IllegalArgumentException("Unknown operator '!' at position " + i);
+				}
+				tokens.add(new Token(Kind.OPERATOR, op.equals("==") ? "=" : op));
+				i = end;
+			}
+			else if (Character.isDigit(c) || ((c == '-' || c == '.') && i + 1 < length && Character.isDigit(expression.charAt(i + 1)))) {
+				int end = i + 1;
+				while (end < length && (Character.isDigit(expression.charAt(end)) || expression.charAt(end) == '.')) {
+					end++;
+				}
+				tokens.add(new Token(Kind.NUMBER, expression.substring(i, end)));
+				i = end;
+			}
+			else if (Character.isLetter(c)) {
+				int end = i + 1;
+				while (end < length && (Character.isLetterOrDigit(expression.charAt(end)) || expression.charAt(end) == '_'
+						|| expression.charAt(end) == '-' || expression.charAt(end) == '\'')) {
+					end++;
+				}
+				tokens.add(new Token(Kind.WORD, expression.substring(i, end)));
+				i = end;
+			}
+			else {
+				throw new IllegalArgumentException("Unexpected character '" + c + "' at position " + i);
+			}
+		}
+		return tokens;
+	}
+
+	private static final class Parser {
+		private final List<Token> tokens;
+		private int position;
+
+		Parser(List<Token> tokens) {
+			this.tokens = tokens;
+		}
+
+		boolean atEnd() {
+			return position >= tokens.size();
+		}
+
+		Token peek() {
+			if (atEnd()) {
+				throw new IllegalArgumentException("Rule expression ends unexpectedly");
+			}
+			return tokens.get(position);
+		}
+
+		Token next() {
+			Token token = peek();
+			position++;
+			return token;
+		}
+
+		boolean acceptKeyword(String keyword) {
+			if (!atEnd() && peek().isKeyword(keyword)) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		void expect(Kind kind, String description) {
+			if (next().kind != kind) {
+				throw new IllegalArgumentException("Expected " + description + " near '" + tokens.get(position - 1).text + "'");
+			}
+		}
+
+		Condition condition() {
+			Token fieldToken = next();
+			String field = fieldToken.text;
+			if (fieldToken.kind != Kind.WORD || !(NUMERIC.containsKey(field) || TEXT.containsKey(field) || FLAGS.containsKey(field))) {
+				throw new IllegalArgumentException("Unknown field '" + field + "'. Allowed: " + fields());
+			}
+			if (acceptKeyword("BETWEEN")) {
+				requireNumeric(field, "BETWEEN");
+				double low = number();
+				if (!acceptKeyword("AND")) {
+					throw new IllegalArgumentException("BETWEEN on " + field + " needs 'low AND high'");
+				}
+				double high = number();
+				if (low > high) {
+					throw new IllegalArgumentException("BETWEEN on " + field + " has low bound above high bound");
+				}
+				return new Between(field, low, high);
+			}
+			boolean negated = acceptKeyword("NOT");
+			if (acceptKeyword("IN")) {
+				requireText(field, "IN");
+				expect(Kind.OPEN, "'(' after IN");
+				Set<String> values = new HashSet<>();
+				values.add(text());
+				while (!atEnd() && peek().kind == Kind.COMMA) {
+					position++;
+					values.add(text());
+				}
+				expect(Kind.CLOSE, "')' to close the IN list");
+				return new In(field, values, negated);
+			}
+			if (negated) {
+				throw new IllegalArgumentException("NOT is only supported as NOT IN");
+			}
+			Token op = next();
+			if (op.kind != Kind.OPERATOR) {
+				throw new IllegalArgumentException("Expected a comparison after '" + field + "'");
+			}
+			if (NUMERIC.containsKey(field)) {
+				return new Compare(field, op.text, number());
+			}
+			if (!op.text.equals("=") && !op.text.equals("!=")) {
+				throw new IllegalArgumentException(field + " only supports =, != and IN");
+			}
+			if (FLAGS.containsKey(field)) {
+				Token value = next();
+				if (!value.isKeyword("true") && !value.isKeyword("false")) {
+					throw new IllegalArgumentException(field + " must be compared with true or false");
+				}
+				return new Flag(field, Boolean.parseBoolean(value.text.toLowerCase()) == op.text.equals("="));
+			}
+			return new In(field, Collections.singleton(text()), op.text.equals("!="));
+		}
+
+		private double number() {
+			Token token = next();
+			if (token.kind != Kind.NUMBER) {
+				throw new IllegalArgumentException("Expected a number but found '" + token.text + "'");
+			}
+			try {
+				return Double.parseDouble(token.text);
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid number '" + token.text + "'");
+			}
+		}
+
+		//a quoted value, or consecutive bare words/numbers up to the next comma, bracket or AND
+		private String text() {
+			Token first = next();
+			if (first.kind == Kind.STRING) {
+				return first.text;
+			}
+			if (first.kind != Kind.WORD && first.kind != Kind.NUMBER) {
+				throw new IllegalArgumentException("Expected a value but found '" + first.text + "'");
+			}
+			StringBuilder value = new StringBuilder(first.text);
+			while (!atEnd() && (peek().kind == Kind.WORD || peek().kind == Kind.NUMBER) && !peek().isKeyword("AND")) {
+				value.append(' ').append(next().text);
+			}
+			return value.toString();
+		}
+
+		private void requireNumeric(String field, String operator) {
+			if (!NUMERIC.containsKey(field)) {
+				throw new IllegalArgumentException(operator + " needs a numeric field, " + field + " is not numeric");
+			}
+		}
+
+		private void requireText(String field, String operator) {
+			if (!TEXT.containsKey(field)) {
+				throw new IllegalArgumentException(operator + " needs a text field, " + field + " is not text");
+			}
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package net.engineeringdigest.journalApp.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a read-only controller, service or repository method whose Mongo reads may be served by a
+ * secondary (secondaryPreferred with mongo.read-routing.max-staleness-seconds). Only put it on paths
+ * that can tolerate data a few seconds old; login, session and anything that reads back its own writes
+ * must stay on the primary.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface SecondaryReads {
+}
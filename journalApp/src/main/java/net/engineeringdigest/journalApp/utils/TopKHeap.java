@@ -0,0 +1,115 @@
+package net.engineeringdigest.journalApp.utils;
+
+import org.bson.types.ObjectId;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-capacity min-heap of (score, ObjectId) pairs held in primitive arrays: the root is the weakest
+ * of the best K seen so far, so offer() rejects most candidates with one comparison and memory stays
+ * O(K) however many candidates are streamed through. Ids are stored as their 8 + 4 raw bytes, so no
+ * reference to a cursor document outlives the offer() call.
+ */
+public final class TopKHeap {
+
+	private final double[] scores;
+	private final long[] idHigh;
+	private final int[] idLow;
+	private int size;
+
+	public TopKHeap(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		scores = new double[capacity];
+		idHigh = new long[capacity];
+		idLow = new int[capacity];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean offer(double score, ObjectId id) {
+		if (size < scores.length) {
+			set(size, score, id);
+			siftUp(size++);
+			return true;
+		}
+		if (score <= scores[0]) {
+			return false;
+		}
+		set(0, score, id);
+		siftDown(0);
+		return true;
+	}
+
+	//drains the heap, best score first
+	public double[] drainScores(ObjectId[] idsOut) {
+		int count = size;
+		double[] sorted = new double[count];
+		for (int i = count - 1; i >= 0; i--) {
+			sorted[i] = scores[0];
+			idsOut[i] = id(0);
+			size--;
+			if (size > 0) {
+				swap(0, size);
+				siftDown(0);
+			}
+		}
+		return sorted;
+	}
+
+	private void set(int i, double score, ObjectId id) {
+		ByteBuffer bytes = ByteBuffer.wrap(id.toByteArray());
+		scores[i] = score;
+		idHigh[i] = bytes.getLong();
+		idLow[i] = bytes.getInt();
+	}
+
+	private ObjectId id(int i) {
+		return new ObjectId(ByteBuffer.allocate(12).putLong(idHigh[i]).putInt(idLow[i]).array());
+	}
+
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (scores[i] >= scores[parent]) {
+				return;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int i) {
+		while (true) {
+			int smallest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < size && scores[left] < scores[smallest]) {
+				smallest = left;
+			}
+			if (right < size && scores[right] < scores[smallest]) {
+				smallest = right;
+			}
+			if (smallest == i) {
+				return;
+			}
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	private void swap(int a, int b) {
+		double score = scores[a];
+		scores[a] = scores[b];
+		scores[b] = score;
+		long high = idHigh[a];
+		idHigh[a] = idHigh[b];
+		idHigh[b] = high;
+		int low = idLow[a];
+		idLow[a] = idLow[b];
+		idLow[b] = low;
+	}
+}
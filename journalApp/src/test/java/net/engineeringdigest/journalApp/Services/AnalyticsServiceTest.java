@@ -0,0 +1,91 @@
+package net.engineeringdigest.journalApp.Services;
+
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import net.engineeringdigest.journalApp.Entities.PortfolioRollup;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AnalyticsServiceTest {
+	
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final BulkOperations bulk = mock(BulkOperations.class);
+	private final Date readAt = new Date(1_700_000_000_000L);
+	private AnalyticsService service;
+	
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setup() {
+		service = new AnalyticsService();
+		ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+		when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PortfolioRollup.class)).thenReturn(bulk);
+		//the stored global rollup is one farmer short of USERS
+		when(mongoTemplate.findAll(Document.class, "PORTFOLIO_ROLLUPS")).thenReturn(Collections.singletonList(
+				new Document("_id", AnalyticsService.GLOBAL).append("farmerCount", 1L).append("updatedAt", readAt)));
+		MongoCollection<Document> users = mock(MongoCollection.class);
+		AggregateIterable<Document> usersAggregate = mock(AggregateIterable.class);
+		when(mongoTemplate.getCollection("USERS")).thenReturn(users);
+		when(users.aggregate(anyList())).thenReturn(usersAggregate);
+		when(usersAggregate.allowDiskUse(anyBoolean())).thenReturn(usersAggregate);
+		when(usersAggregate.iterator()).thenAnswer(invocation -> cursor(new Document("_id", null).append("farmerCount", 2).append("scoredCount", 0)
+				.append("creditScoreSum", 0).append("land_0", 2).append("land_1", 0).append("land_2", 0).append("land_3", 0)
+				.append("land_4", 0).append("land_5", 0).append("land_6", 0)));
+		MongoCollection<Document> banks = mock(MongoCollection.class);
+		AggregateIterable<Document> banksAggregate = mock(AggregateIterable.class);
+		when(mongoTemplate.getCollection("BANKS")).thenReturn(banks);
+		when(banks.aggregate(anyList())).thenReturn(banksAggregate);
+		when(banksAggregate.into(any())).thenReturn(new ArrayList<>());
+	}
+	
+	@Test
+	void correctionsOnlyApplyToRollupsUntouchedSinceTheyWereRead() {
+		service.reconcile();
+		
+		//read first, so a live $inc after the aggregation started is not mistaken for drift
+		InOrder order = inOrder(mongoTemplate);
+		order.verify(mongoTemplate).findAll(Document.class, "PORTFOLIO_ROLLUPS");
+		order.verify(mongoTemplate, atLeastOnce()).getCollection("USERS");
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(bulk).upsert(query.capture(), update.capture());
+		assertEquals(readAt, query.getValue().getQueryObject().get("updatedAt"));
+		assertEquals(1L, ((Document) update.getValue().getUpdateObject().get("$inc")).get("farmerCount"));
+		verify(bulk).execute();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static MongoCursor<Document> cursor(Document... rows) {
+		List<Document> list = new ArrayList<>();
+		Collections.addAll(list, rows);
+		MongoCursor<Document> cursor = mock(MongoCursor.class);
+		Iterator<Document> iterator = list.iterator();
+		when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+		when(cursor.next()).thenAnswer(invocation -> iterator.next());
+		return cursor;
+	}
+}
@@ -0,0 +1,124 @@
+package net.engineeringdigest.journalApp.Services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class ApprovalDigestServiceTest {
+	
+	private final MutableClock clock = new MutableClock(Instant.parse("2024-06-01T10:00:00Z"));
+	private final EmailService emailService = mock(EmailService.class);
+	private ApprovalDigestService service;
+	
+	@BeforeEach
+	void setup() {
+		service = new ApprovalDigestService();
+		ReflectionTestUtils.setField(service, "emailService", emailService);
+		ReflectionTestUtils.setField(service, "clock", clock);
+		ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(service, "windowSeconds", 60L);
+		ReflectionTestUtils.setField(service, "maxBanks", 3);
+		service.setup();
+	}
+	
+	@AfterEach
+	void shutdown() throws InterruptedException {
+		service.shutdown();
+	}
+	
+	@Test
+	void approvalsInsideTheWindowAreSentAsOneDigest() {
+		UserEntity farmer = farmer("ravi");
+		service.approved(farmer, "SBI");
+		clock.advance(Duration.ofSeconds(30));
+		service.approved(farmer, "HDFC");
+		service.flushExpired();
+		verify(emailService, after(200).never()).sendDigest(any(), anyCollection());
+		
+		clock.advance(Duration.ofSeconds(30));
+		service.flushExpired();
+		verify(emailService, timeout(1000)).sendDigest(farmer, Arrays.asList("SBI", "HDFC"));
+		verify(emailService, never()).sendAlert(any(), anyString());
+	}
+	
+	@Test
+	void singleApprovalFallsBackToThePlainAlert() {
+		UserEntity farmer = farmer("meena");
+		service.approved(farmer, "SBI");
+		clock.advance(Duration.ofSeconds(61));
+		service.flushExpired();
+		verify(emailService, timeout(1000)).sendAlert(farmer, "SBI");
+	}
+	
+	@Test
+	void fullBufferIsSentBeforeTheWindowExpires() {
+		UserEntity farmer = farmer("arjun");
+		service.approved(farmer, "SBI");
+		service.approved(farmer, "HDFC");
+		service.approved(farmer, "HDFC");
+		service.approved(farmer, "ICICI");
+		verify(emailService, timeout(1000)).sendDigest(farmer, Arrays.asList("SBI", "HDFC", "ICICI"));
+	}
+	
+	@Test
+	void openWindowsAreNotReportedAsBacklog() {
+		service.approved(farmer("ravi"), "SBI");
+		service.approved(farmer("meena"), "HDFC");
+		//both windows are waiting on the clock, not on the sender
+		assertEquals(0, service.queueDepth());
+	}
+	
+	private static UserEntity farmer(String name) {
+		UserEntity farmer = new UserEntity();
+		farmer.setName(name);
+		farmer.setEmail(name + "@example.com");
+		return farmer;
+	}
+	
+	private static class MutableClock extends Clock {
+		private Instant now;
+		
+		MutableClock(Instant now) {
+			this.now = now;
+		}
+		
+		void advance(Duration duration) {
+			now = now.plus(duration);
+		}
+		
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+		
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+		
+		@Override
+		public Instant instant() {
+			return now;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package net.engineeringdigest.journalApp.Services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkImportServiceTest {
+	
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final MongoConverter converter = mock(MongoConverter.class);
+	private final PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+	private BulkImportService service;
+	
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setup() {
+		service = new BulkImportService();
+		ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(service, "passwordEncoder", passwordEncoder);
+		ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(service, "analyticsService", mock(AnalyticsService.class));
+		ReflectionTestUtils.setField(service, "resourceVersionService", mock(ResourceVersionService.class));
+		ReflectionTestUtils.setField(service, "eligibilityService", mock(EligibilityService.class));
+		ReflectionTestUtils.setField(service, "farmerColumnStore", mock(FarmerColumnStore.class));
+		ReflectionTestUtils.setField(service, "batchSize", 100);
+		ReflectionTestUtils.setField(service, "hashThreads", 1);
+		ReflectionTestUtils.setField(service, "maxReportedFailures", 10);
+		service.setup();
+		when(passwordEncoder.encode(anyString())).thenReturn("hashed");
+		when(mongoTemplate.getConverter()).thenReturn(converter);
+		when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("USERS"))).thenReturn(Collections.emptyList());
+		when(mongoTemplate.getCollection("USERS")).thenReturn(mock(MongoCollection.class));
+	}
+	
+	@AfterEach
+	void shutdown() {
+		service.shutdown();
+	}
+	
+	@Test
+	void aRejectedRowDoesNotBlockItsNameForALaterRow() throws Exception {
+		String csv = "name,password,email\n"
+				+ "ravi,pw,ravi@example.com\n"
+				+ "asha,pw,ravi@example.com\n"
+				+ "asha,pw,asha@example.com\n";
+		
+		Map<String, Object> report = service.importFarmers(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), false);
+		
+		assertEquals(2L, report.get("inserted"));
+		assertEquals(1L, report.get("duplicates"));
+		ArgumentCaptor<UserEntity> written = ArgumentCaptor.forClass(UserEntity.class);
+		verify(converter, times(2)).write(written.capture(), any(Document.class));
+		//insertMany skips auditing, so the timestamp is set before conversion
+		for (UserEntity user : written.getAllValues()) {
+			assertNotNull(user.getLastModified());
+		}
+		verify(mongoTemplate.getCollection("USERS")).insertMany(any(List.class), any(InsertManyOptions.class));
+	}
+}
@@ -0,0 +1,75 @@
+package net.engineeringdigest.journalApp.Services;
+
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import net.engineeringdigest.journalApp.Entities.ChangeStreamToken;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChangeStreamServiceTest {
+	
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = cursor();
+	private ChangeStreamService service;
+	
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setup() {
+		service = new ChangeStreamService();
+		ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(service, "batchSize", 100);
+		ReflectionTestUtils.setField(service, "maxWaitMs", 200L);
+		ReflectionTestUtils.setField(service, "idleSaveMs", 0L);
+		ReflectionTestUtils.setField(service, "instanceId", "host-a");
+		ReflectionTestUtils.setField(service, "running", true);
+		MongoCollection<Document> users = mock(MongoCollection.class);
+		ChangeStreamIterable<Document> stream = mock(ChangeStreamIterable.class);
+		when(mongoTemplate.getCollection("USERS")).thenReturn(users);
+		when(users.watch()).thenReturn(stream);
+		when(stream.fullDocument(any())).thenReturn(stream);
+		when(stream.batchSize(anyInt())).thenReturn(stream);
+		when(stream.maxAwaitTime(anyLong(), any())).thenReturn(stream);
+		when(stream.cursor()).thenReturn(cursor);
+	}
+	
+	@Test
+	void anIdleStreamStillAdvancesThisInstancesToken() {
+		BsonDocument postBatch = new BsonDocument("_data", new BsonString("8263A1"));
+		when(cursor.tryNext()).thenReturn(null);
+		when(cursor.getResumeToken()).thenAnswer(invocation -> {
+			ReflectionTestUtils.setField(service, "running", false);
+			return postBatch;
+		});
+		
+		ReflectionTestUtils.invokeMethod(service, "tail", "USERS", Collections.emptyList());
+		
+		verify(mongoTemplate).findById("USERS:host-a", ChangeStreamToken.class);
+		ArgumentCaptor<ChangeStreamToken> saved = ArgumentCaptor.forClass(ChangeStreamToken.class);
+		verify(mongoTemplate).save(saved.capture());
+		assertEquals("USERS:host-a", saved.getValue().getId());
+		assertEquals("8263A1", saved.getValue().getToken().getString("_data"));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor() {
+		return mock(MongoChangeStreamCursor.class);
+	}
+}
@@ -0,0 +1,101 @@
+package net.engineeringdigest.journalApp.Services;
+
+import net.engineeringdigest.journalApp.Entities.BankEntity;
+import net.engineeringdigest.journalApp.Entities.EligibilityMatch;
+import net.engineeringdigest.journalApp.Entities.EligibilityRule;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EligibilityServiceTest {
+	
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final ResourceVersionService resourceVersionService = mock(ResourceVersionService.class);
+	private final BulkOperations bulk = mock(BulkOperations.class);
+	private EligibilityService service;
+	
+	@BeforeEach
+	void setup() {
+		service = new EligibilityService();
+		ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(service, "resourceVersionService", resourceVersionService);
+		when(resourceVersionService.collectionStamp(ResourceVersionService.BANKS)).thenReturn(new ResourceVersionService.Stamp("\"c-BANKS-1\"", 0));
+		when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EligibilityMatch.class)).thenReturn(bulk);
+	}
+	
+	@Test
+	void onlyMatchesOfLoadedRulesAreRemoved() {
+		BankEntity bank = bank("SBI", rule("r1", "landSize > 5"), rule("r2", "creditScore > 700"));
+		when(mongoTemplate.find(any(Query.class), eq(BankEntity.class))).thenReturn(Collections.singletonList(bank));
+		service.load();
+		UserEntity farmer = new UserEntity();
+		farmer.setId(new ObjectId());
+		farmer.setLandSize(8);
+		farmer.setCreditScore(650);
+		
+		service.reevaluate(farmer);
+		
+		verify(bulk).upsert(any(Query.class), any(Update.class));
+		ArgumentCaptor<Query> removal = ArgumentCaptor.forClass(Query.class);
+		verify(bulk).remove(removal.capture());
+		Document criteria = removal.getValue().getQueryObject();
+		//a rule added elsewhere and not loaded here keeps its matches
+		assertEquals(new Document("$in", Arrays.asList("r1", "r2")), criteria.get("ruleId"));
+		assertEquals(new Document("$nin", Collections.singletonList(EligibilityMatch.matchId("SBI", "r1", farmer.getId()))), criteria.get("_id"));
+		verify(bulk).execute();
+	}
+	
+	@Test
+	void nothingIsRemovedBeforeAnyRuleIsLoaded() {
+		UserEntity farmer = new UserEntity();
+		farmer.setId(new ObjectId());
+		
+		service.reevaluate(farmer);
+		
+		verify(bulk, never()).remove(any(Query.class));
+		verify(bulk, never()).execute();
+	}
+	
+	@Test
+	void eligibleFarmersAreReadOnlyForTheBanksCurrentRules() {
+		when(mongoTemplate.findOne(any(Query.class), eq(BankEntity.class))).thenReturn(bank("SBI"));
+		
+		List<Document> farmers = service.getEligibleFarmers("SBI", 0, 20);
+		
+		assertTrue(farmers.isEmpty());
+		verify(mongoTemplate, never()).getCollection("ELIGIBILITY");
+	}
+	
+	private static BankEntity bank(String name, EligibilityRule... rules) {
+		BankEntity bank = new BankEntity();
+		bank.setBankName(name);
+		bank.setEligibilityRules(Arrays.asList(rules));
+		return bank;
+	}
+	
+	private static EligibilityRule rule(String id, String expression) {
+		return new EligibilityRule(id, id, expression, Instant.now());
+	}
+}
@@ -0,0 +1,177 @@
+package net.engineeringdigest.journalApp.Services;
+
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FarmerColumnStoreTest {
+	
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final ObjectId farmerA = new ObjectId();
+	private final ObjectId farmerB = new ObjectId();
+	private final ObjectId farmerC = new ObjectId();
+	private FarmerColumnStore store;
+	
+	@BeforeEach
+	void setup() {
+		store = new FarmerColumnStore();
+		ReflectionTestUtils.setField(store, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(store, "enabled", true);
+		ReflectionTestUtils.setField(store, "offHeap", false);
+		ReflectionTestUtils.setField(store, "initialCapacity", 16);
+	}
+	
+	@Test
+	void aggregatesAreFilteredAndGrouped() {
+		streamFarmers(Arrays.asList(farmer(farmerA, "North", 2), farmer(farmerB, "North", 4), farmer(farmerC, "South", 10)), null);
+		store.rebuild();
+		
+		Map<String, String> params = new HashMap<>();
+		params.put("min.landSize", "3");
+		Map<String, Object> groups = groups(store.aggregate("landSize", "region", params));
+		assertEquals(1L, stats(groups, "North").get("count"));
+		assertEquals(4.0, stats(groups, "North").get("sum"));
+		assertEquals(10.0, stats(groups, "South").get("max"));
+		
+		Map<String, Object> histogram = store.histogram("landSize", 2, 0, 8, Collections.emptyMap());
+		assertTrue(Arrays.equals(new long[]{1, 1}, (long[]) histogram.get("counts")));
+		assertEquals(1L, histogram.get("aboveMax"));
+	}
+	
+	@Test
+	void changesDuringARebuildAreReplayedOntoTheNewSnapshot() {
+		streamFarmers(Arrays.asList(farmer(farmerA, "North", 2), farmer(farmerB, "North", 4)), null);
+		store.rebuild();
+		
+		//while the second scan runs, A (already streamed) is deleted and C is created
+		streamFarmers(Arrays.asList(farmer(farmerA, "North", 2), farmer(farmerB, "North", 4)), () -> {
+			store.remove(farmerA);
+			store.upsert(entity(farmerC, "South", 7));
+		});
+		store.rebuild();
+		
+		Map<String, Object> groups = groups(store.aggregate("landSize", "region", Collections.emptyMap()));
+		assertEquals(1L, stats(groups, "North").get("count"));
+		assertEquals(4.0, stats(groups, "North").get("sum"));
+		assertEquals(7.0, stats(groups, "South").get("sum"));
+	}
+	
+	@Test
+	void writesBeforeTheFirstSnapshotAreNotLost() {
+		streamFarmers(Collections.singletonList(farmer(farmerA, "North", 2)), () -> store.upsert(entity(farmerB, "North", 5)));
+		store.rebuild();
+		
+		assertEquals(2L, store.aggregate("landSize", null, Collections.emptyMap()).get("count"));
+	}
+	
+	@Test
+	void theOperatorAccountIsNeverCounted() {
+		streamFarmers(Collections.singletonList(farmer(farmerA, "North", 2)), null);
+		store.rebuild();
+		UserEntity admin = entity(farmerB, null, 0);
+		admin.setRoles(Collections.singletonList("ADMIN"));
+		
+		store.upsert(admin);
+		
+		assertEquals(1L, store.aggregate("landSize", null, Collections.emptyMap()).get("count"));
+	}
+	
+	@Test
+	void scheduledRebuildRunsOnTheSnapshotThread() throws InterruptedException {
+		AtomicReference<String> thread = new AtomicReference<>();
+		CountDownLatch scanned = new CountDownLatch(1);
+		when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("USERS"))).thenAnswer(invocation -> {
+			thread.set(Thread.currentThread().getName());
+			scanned.countDown();
+			return iterator(Collections.emptyList(), null);
+		});
+		
+		store.scheduledRebuild();
+		
+		assertTrue(scanned.await(2, TimeUnit.SECONDS));
+		assertEquals("columnar-snapshot", thread.get());
+	}
+	
+	private void streamFarmers(List<Document> farmers, Runnable afterFirst) {
+		when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("USERS"))).thenAnswer(invocation -> iterator(farmers, afterFirst));
+	}
+	
+	//runs afterFirst once the first document has been handed out, like a write landing mid-scan
+	private static CloseableIterator<Document> iterator(List<Document> farmers, Runnable afterFirst) {
+		Iterator<Document> delegate = farmers.iterator();
+		return new CloseableIterator<Document>() {
+			private boolean first = true;
+			private Runnable due;
+			
+			@Override
+			public boolean hasNext() {
+				if (due != null) {
+					Runnable hook = due;
+					due = null;
+					hook.run();
+				}
+				return delegate.hasNext();
+			}
+			
+			@Override
+			public Document next() {
+				Document farmer = delegate.next();
+				if (first) {
+					first = false;
+					due = afterFirst;
+				}
+				return farmer;
+			}
+			
+			@Override
+			public void close() {
+			}
+		};
+	}
+	
+	private static Document farmer(ObjectId id, String region, float landSize) {
+		return new Document("_id", id).append("region", region).append("landSize", landSize);
+	}
+	
+	private static UserEntity entity(ObjectId id, String region, float landSize) {
+		UserEntity farmer = new UserEntity();
+		farmer.setId(id);
+		farmer.setRoles(Collections.singletonList("User"));
+		farmer.setRegion(region);
+		farmer.setLandSize(landSize);
+		return farmer;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> groups(Map<String, Object> result) {
+		return (Map<String, Object>) result.get("groups");
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> stats(Map<String, Object> groups, String group) {
+		return (Map<String, Object>) groups.get(group);
+	}
+}
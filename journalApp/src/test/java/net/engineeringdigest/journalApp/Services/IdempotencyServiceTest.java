@@ -0,0 +1,85 @@
+package net.engineeringdigest.journalApp.Services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class IdempotencyServiceTest {
+	
+	private static final String KEY = "approve-42";
+	
+	private IdempotencyService service;
+	
+	@BeforeEach
+	void setup() {
+		service = new IdempotencyService();
+		ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(service, "ttlSeconds", 60L);
+		ReflectionTestUtils.setField(service, "lockSeconds", 10L);
+		ReflectionTestUtils.setField(service, "waitMs", 2000L);
+		ReflectionTestUtils.setField(service, "pollMs", 10L);
+		ReflectionTestUtils.setField(service, "maxLocalEntries", 100L);
+		ReflectionTestUtils.setField(service, "redisEnabled", false);
+		service.setup();
+	}
+	
+	@Test
+	void aRetryReplaysTheStoredResponse() throws Exception {
+		assertEquals(IdempotencyService.State.OWNER, service.claim(KEY, "fp").getState());
+		service.complete(KEY, response("fp", "approved"));
+		
+		IdempotencyService.Claim retry = service.claim(KEY, "fp");
+		assertEquals(IdempotencyService.State.REPLAY, retry.getState());
+		assertEquals(200, retry.getRecord().getStatus());
+		assertArrayEquals("approved".getBytes(StandardCharsets.UTF_8), retry.getRecord().getBody());
+	}
+	
+	@Test
+	void aKeyReusedForAnotherRequestIsAMismatch() throws Exception {
+		service.claim(KEY, "fp");
+		service.complete(KEY, response("fp", "approved"));
+		
+		assertEquals(IdempotencyService.State.MISMATCH, service.claim(KEY, "other").getState());
+	}
+	
+	@Test
+	void aDuplicateWaitsForTheFirstRequestToFinish() throws Exception {
+		assertEquals(IdempotencyService.State.OWNER, service.claim(KEY, "fp").getState());
+		CompletableFuture<IdempotencyService.Claim> duplicate = CompletableFuture.supplyAsync(() -> {
+			try {
+				return service.claim(KEY, "fp");
+			}
+			catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		Thread.sleep(100);
+		assertFalse(duplicate.isDone());
+		
+		service.complete(KEY, response("fp", "approved"));
+		assertEquals(IdempotencyService.State.REPLAY, duplicate.get(2, TimeUnit.SECONDS).getState());
+	}
+	
+	@Test
+	void aDuplicateGivesUpAfterTheWaitAndAnAbandonedKeyRunsAgain() throws Exception {
+		ReflectionTestUtils.setField(service, "waitMs", 100L);
+		service.claim(KEY, "fp");
+		assertEquals(IdempotencyService.State.IN_PROGRESS, service.claim(KEY, "fp").getState());
+		
+		service.abandon(KEY);
+		assertEquals(IdempotencyService.State.OWNER, service.claim(KEY, "fp").getState());
+	}
+	
+	private static IdempotencyService.Record response(String fingerprint, String body) {
+		return new IdempotencyService.Record(fingerprint, false, 200, "text/plain", body.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,94 @@
+package net.engineeringdigest.journalApp.Services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.engineeringdigest.journalApp.Entities.BankEntity;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import net.engineeringdigest.journalApp.Repositories.BankRepositary;
+import net.engineeringdigest.journalApp.Repositories.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProfileCacheTest {
+	
+	private static final Instant OLD = Instant.ofEpochMilli(1);
+	private static final Instant NEW = Instant.ofEpochMilli(2);
+	
+	private final UserRepository userRepository = mock(UserRepository.class);
+	private final BankRepositary bankRepositary = mock(BankRepositary.class);
+	private ProfileCache cache;
+	
+	@BeforeEach
+	void setup() {
+		cache = new ProfileCache();
+		ReflectionTestUtils.setField(cache, "userRepository", userRepository);
+		ReflectionTestUtils.setField(cache, "bankRepositary", bankRepositary);
+		ReflectionTestUtils.setField(cache, "mongoTemplate", mock(MongoTemplate.class));
+		ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(cache, "maxSize", 100L);
+		ReflectionTestUtils.setField(cache, "userTtlSeconds", 300L);
+		ReflectionTestUtils.setField(cache, "bankTtlSeconds", 30L);
+		ReflectionTestUtils.setField(cache, "redisEnabled", false);
+		cache.setup();
+	}
+	
+	@Test
+	void aBankIsReloadedWhenTheCallerHoldsANewerStamp() {
+		when(bankRepositary.findByBankName("SBI")).thenReturn(bank(1), bank(2));
+		
+		assertEquals(OLD, cache.getBank("SBI", "\"b-1-1-7\"").getLastModified());
+		assertEquals(OLD, cache.getBank("SBI", "\"b-1-1-7\"").getLastModified());
+		//a farmer write moved the USERS counter; the cached copy predates it
+		assertEquals(NEW, cache.getBank("SBI", "\"b-1-1-8\"").getLastModified());
+		assertEquals(NEW, cache.getBank("SBI").getLastModified());
+		verify(bankRepositary, times(2)).findByBankName("SBI");
+	}
+	
+	@Test
+	void theSharedEntryIsStoredAgainstTheGenerationReadBeforeMongo() {
+		StringRedisTemplate redis = mock(StringRedisTemplate.class, RETURNS_DEEP_STUBS);
+		ReflectionTestUtils.setField(cache, "redis", redis);
+		when(redis.opsForValue().multiGet(Arrays.asList("profile:user:ravi", "profile-gen:user:ravi"))).thenReturn(Arrays.asList(null, "4"));
+		UserEntity farmer = new UserEntity();
+		farmer.setName("ravi");
+		farmer.setEmail("ravi@example.com");
+		farmer.setPassword("hash");
+		when(userRepository.findByName("ravi")).thenReturn(farmer);
+		ReflectionTestUtils.setField(cache, "mongoTemplate", mongoTemplate());
+		
+		cache.getUser("ravi");
+		
+		//another instance evicting in between moves the generation past 4, and the script then refuses the store
+		verify(redis).execute(any(), eq(Arrays.asList("profile:user:ravi", "profile-gen:user:ravi")), anyString(), eq("4"), eq("300"));
+	}
+	
+	private static MongoTemplate mongoTemplate() {
+		MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+		when(mongoTemplate.getConverter()).thenReturn(mock(MongoConverter.class));
+		return mongoTemplate;
+	}
+	
+	private static BankEntity bank(long lastModified) {
+		BankEntity bank = new BankEntity();
+		bank.setBankName("SBI");
+		bank.setBankCredentials("hash");
+		bank.setLastModified(Instant.ofEpochMilli(lastModified));
+		return bank;
+	}
+}
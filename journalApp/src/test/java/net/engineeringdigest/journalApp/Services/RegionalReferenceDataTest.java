@@ -0,0 +1,150 @@
+package net.engineeringdigest.journalApp.Services;
+
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RegionalReferenceDataTest {
+	
+	private static final String HEADER = "country,region,default,soilType,cropTypes,landSize,pastYield,soilPH,nitrogenLevel,"
+			+ "organicMatterLevel,landQualityScore,pastRainfall,avgTemperature\n";
+	
+	private static final String CSV = "# comment lines and blank lines are skipped\n\n" + HEADER
+			+ "USA,Midwest,yes,Loamy,Corn,350,60,6.4,38,30,85,480,22.0\n"
+			+ "USA,South,no,Clay,Cotton,200,40,6.0,30,25,70,1100,27.5\n"
+			+ "India,Punjab,yes,Alluvial,Wheat,4,45,7.8,28,12,78,650,24.0\n"
+			+ "India,South,no,Red,Rice,2,38,6.2,22,15,66,900,28.0\n"
+			+ "Kenya,Rift Valley,yes,Volcanic,Maize,3,25,5.9,20,35,72,950,18.5\n";
+	
+	private final ResourceLoader resourceLoader = mock(ResourceLoader.class);
+	private RegionalReferenceData data;
+	
+	@BeforeEach
+	void setup() throws Exception {
+		data = new RegionalReferenceData();
+		ReflectionTestUtils.setField(data, "resourceLoader", resourceLoader);
+		ReflectionTestUtils.setField(data, "location", "classpath:reference/regions.csv");
+		ReflectionTestUtils.setField(data, "defaultCountry", "USA");
+		serve(CSV);
+		data.setup();
+	}
+	
+	@Test
+	void regionsResolveCaseInsensitively() {
+		RegionalReferenceData.RegionProfile profile = data.resolve(" india ", "SOUTH");
+		assertEquals("India", profile.getCountry());
+		assertEquals("Rice", profile.getCropTypes());
+		assertEquals(2f, profile.getLandSize());
+		assertEquals(22, profile.getNitrogenLevel());
+		assertEquals(28f, profile.getAvgTemperature());
+	}
+	
+	@Test
+	void missingPartsFallBackToDefaults() {
+		//unknown region: the country's default region
+		assertEquals("Punjab", data.resolve("India", "Kerala").getRegion());
+		//region only: the one country it belongs to
+		assertEquals("Kenya", data.resolve(null, "rift valley").getCountry());
+		//a region name several countries use does not pick a country
+		assertEquals("Midwest", data.resolve(null, "South").getRegion());
+		//unknown country: the default country's default region
+		assertEquals("Midwest", data.resolve("Peru", null).getRegion());
+		assertEquals("Midwest", data.resolve(null, null).getRegion());
+	}
+	
+	@Test
+	void aBrokenReloadKeepsTheCurrentData() {
+		serve(HEADER + "USA,Midwest,yes,Loamy,Corn,lots,60,6.4,38,30,85,480,22.0\n");
+		assertFalse(data.reload());
+		assertEquals(350f, data.resolve("USA", "Midwest").getLandSize());
+		assertEquals(5, data.status().get("regions"));
+		
+		serve(HEADER + "USA,Midwest,yes,Sandy,Soy,300,55,6.5,35,28,80,500,21.0\n");
+		assertEquals(true, data.reload());
+		assertEquals("Sandy", data.resolve("India", "Punjab").getSoilType());
+	}
+	
+	@Test
+	void aBrokenFileIsNotReReadUntilItChanges(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("regions.csv");
+		when(resourceLoader.getResource("classpath:reference/regions.csv")).thenReturn(new FileSystemResource(file));
+		write(file, HEADER + "USA,Midwest,yes,Loamy,Corn,lots,60,6.4,38,30,85,480,22.0\n", 1000);
+		data.reloadIfModified();
+		assertEquals(350f, data.resolve("USA", "Midwest").getLandSize());
+		
+		//same modification time: the check does not read the file again
+		write(file, HEADER + "USA,Midwest,yes,Sandy,Soy,300,55,6.5,35,28,80,500,21.0\n", 1000);
+		data.reloadIfModified();
+		assertEquals(350f, data.resolve("USA", "Midwest").getLandSize());
+		
+		write(file, HEADER + "USA,Midwest,yes,Sandy,Soy,300,55,6.5,35,28,80,500,21.0\n", 2000);
+		data.reloadIfModified();
+		assertEquals(300f, data.resolve("USA", "Midwest").getLandSize());
+	}
+	
+	@Test
+	void aRegionThatDidNotResolveIsNotSentWithTheDefaultCountry() {
+		CreditScoreClient client = new CreditScoreClient();
+		ReflectionTestUtils.setField(client, "regionalReferenceData", data);
+		UserEntity farmer = new UserEntity();
+		farmer.setRegion("South");
+		Map<String, Object> request = client.buildRequest(farmer);
+		assertEquals("USA", request.get("country"));
+		assertEquals("Midwest", request.get("region"));
+		
+		farmer.setRegion("Rift Valley");
+		request = client.buildRequest(farmer);
+		assertEquals("Kenya", request.get("country"));
+		assertEquals("Rift Valley", request.get("region"));
+	}
+	
+	@Test
+	void invalidFilesAreRejected() {
+		assertRejected("country,region\nUSA,Midwest\n");
+		assertRejected(HEADER + "USA,Midwest,yes,Loamy,Corn,350,60\n");
+		assertRejected(HEADER + "USA,Midwest,yes,Loamy,Corn,350,60,6.4,38,30,85,480,22.0\n"
+				+ "usa,midwest,no,Loamy,Corn,350,60,6.4,38,30,85,480,22.0\n");
+		assertRejected(HEADER + "USA,Midwest,yes,Loamy,Corn,350,60,6.4,38,30,85,480,22.0\n"
+				+ "USA,West,yes,Loamy,Corn,350,60,6.4,38,30,85,480,22.0\n");
+		assertRejected(HEADER + "USA,Midwest,yes,Loamy,Corn,350,60,6.4,38,30,85,480,22.0\n"
+				+ "India,Punjab,no,Alluvial,Wheat,4,45,7.8,28,12,78,650,24.0\n");
+		//parses, but reference.default-country has no default region
+		assertRejected(HEADER + "India,Punjab,yes,Alluvial,Wheat,4,45,7.8,28,12,78,650,24.0\n");
+	}
+	
+	private void assertRejected(String csv) {
+		serve(csv);
+		assertFalse(data.reload());
+		RegionalReferenceData fresh = new RegionalReferenceData();
+		ReflectionTestUtils.setField(fresh, "resourceLoader", resourceLoader);
+		ReflectionTestUtils.setField(fresh, "location", "classpath:reference/regions.csv");
+		ReflectionTestUtils.setField(fresh, "defaultCountry", "USA");
+		assertThrows(Exception.class, fresh::setup);
+	}
+	
+	private static void write(Path file, String csv, long modified) throws Exception {
+		Files.write(file, csv.getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+	}
+	
+	private void serve(String csv) {
+		when(resourceLoader.getResource("classpath:reference/regions.csv")).thenReturn(new ByteArrayResource(csv.getBytes(StandardCharsets.UTF_8)));
+	}
+}
@@ -0,0 +1,165 @@
+package net.engineeringdigest.journalApp.Services;
+
+import com.mongodb.client.result.UpdateResult;
+import net.engineeringdigest.journalApp.Entities.JobCheckpoint;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RescoringJobTest {
+	
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final CreditScoreClient creditScoreClient = mock(CreditScoreClient.class);
+	private final AnalyticsService analyticsService = mock(AnalyticsService.class);
+	private final EligibilityService eligibilityService = mock(EligibilityService.class);
+	private final UserEventService userEventService = mock(UserEventService.class);
+	private final ScoreHistoryService scoreHistoryService = mock(ScoreHistoryService.class);
+	private final ResourceVersionService resourceVersionService = mock(ResourceVersionService.class);
+	private final FarmerColumnStore farmerColumnStore = mock(FarmerColumnStore.class);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private RescoringJob job;
+	
+	@BeforeEach
+	void setup() {
+		job = new RescoringJob();
+		ReflectionTestUtils.setField(job, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(job, "creditScoreClient", creditScoreClient);
+		ReflectionTestUtils.setField(job, "analyticsService", analyticsService);
+		ReflectionTestUtils.setField(job, "eligibilityService", eligibilityService);
+		ReflectionTestUtils.setField(job, "userEventService", userEventService);
+		ReflectionTestUtils.setField(job, "scoreHistoryService", scoreHistoryService);
+		ReflectionTestUtils.setField(job, "resourceVersionService", resourceVersionService);
+		ReflectionTestUtils.setField(job, "profileCache", mock(ProfileCache.class));
+		ReflectionTestUtils.setField(job, "farmerColumnStore", farmerColumnStore);
+		ReflectionTestUtils.setField(job, "enabled", true);
+		ReflectionTestUtils.setField(job, "chunkSize", 100);
+		ReflectionTestUtils.setField(job, "parallelism", 1);
+		ReflectionTestUtils.setField(job, "leaseSeconds", 300L);
+		when(creditScoreClient.getModelVersion()).thenReturn("v2");
+		//the run blocks on its first checkpoint read until the test lets it go
+		when(mongoTemplate.findById(RescoringJob.JOB_ID, JobCheckpoint.class)).thenAnswer(invocation -> {
+			release.await();
+			return null;
+		});
+		when(mongoTemplate.find(any(Query.class), eq(UserEntity.class))).thenReturn(Collections.emptyList());
+	}
+	
+	@AfterEach
+	void shutdown() {
+		release.countDown();
+		job.stop();
+	}
+	
+	@Test
+	void scheduledRunReturnsWhileTheJobKeepsRunning() {
+		assertTimeoutPreemptively(Duration.ofSeconds(1), () -> job.scheduledRun());
+		//runAsync claims the run itself, so a second trigger is refused straight away
+		assertTrue(job.isRunning());
+		assertFalse(job.runAsync());
+		
+		release.countDown();
+		verify(mongoTemplate, timeout(2000)).findAndReplace(any(Query.class), any(JobCheckpoint.class));
+	}
+	
+	@Test
+	void onlyFarmersWithAScoreAreScanned() {
+		release.countDown();
+		job.run();
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate).find(query.capture(), eq(UserEntity.class));
+		Document criteria = query.getValue().getQueryObject();
+		assertEquals("User", criteria.get("roles"));
+		assertEquals(true, criteria.get("isCreditScoreVerified"));
+	}
+	
+	@Test
+	void aRunHeldByAnotherInstanceIsSkipped() {
+		when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(JobCheckpoint.class))).thenThrow(new DuplicateKeyException("lease held"));
+		
+		job.run();
+		
+		verify(mongoTemplate, never()).findById(RescoringJob.JOB_ID, JobCheckpoint.class);
+		assertFalse(job.isRunning());
+	}
+	
+	@Test
+	void sideEffectsFollowOnlyTheWritesThatLanded() {
+		release.countDown();
+		UserEntity kept = farmer("kept");
+		UserEntity edited = farmer("edited");
+		when(mongoTemplate.find(any(Query.class), eq(UserEntity.class))).thenReturn(Arrays.asList(kept, edited), Collections.emptyList());
+		when(creditScoreClient.inputsHash(any(UserEntity.class))).thenReturn("new-hash");
+		Map<String, Object> response = new HashMap<>();
+		when(creditScoreClient.predict(any())).thenReturn(response);
+		when(creditScoreClient.extractScore(response)).thenReturn(720f);
+		//the second farmer was edited while being scored, so its version guard does not match
+		when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(UserEntity.class))).thenAnswer(invocation -> {
+			Query query = invocation.getArgument(0);
+			boolean matches = query.getQueryObject().get("_id").equals(kept.getId());
+			return UpdateResult.acknowledged(1, matches ? 1L : 0L, new BsonObjectId(new ObjectId()));
+		});
+		
+		job.run();
+		
+		ArgumentCaptor<List<UserEntity>> reevaluated = listCaptor();
+		verify(eligibilityService).reevaluate(reevaluated.capture());
+		assertEquals(Collections.singletonList(kept), reevaluated.getValue());
+		verify(farmerColumnStore).upsertAll(Collections.singletonList(kept));
+		verify(userEventService).publish(eq("kept"), anyString(), any());
+		verify(userEventService, never()).publish(eq("edited"), anyString(), any());
+		verify(scoreHistoryService).record(eq(kept), anyFloat(), eq("v2"), eq("new-hash"));
+		verify(scoreHistoryService, never()).record(eq(edited), anyFloat(), anyString(), anyString());
+		verify(analyticsService).recordScoreChanges(anyList(), anyMap());
+		verify(resourceVersionService).bump(ResourceVersionService.USERS);
+	}
+	
+	private static UserEntity farmer(String name) {
+		UserEntity farmer = new UserEntity();
+		farmer.setId(new ObjectId());
+		farmer.setName(name);
+		farmer.setVersion(3L);
+		farmer.setCreditScoreVerified(true);
+		farmer.setCreditScore(600);
+		farmer.setScoreModelVersion("v1");
+		return farmer;
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static ArgumentCaptor<List<UserEntity>> listCaptor() {
+		return (ArgumentCaptor) ArgumentCaptor.forClass(List.class);
+	}
+}
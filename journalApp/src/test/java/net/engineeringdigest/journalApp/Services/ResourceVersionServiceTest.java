@@ -0,0 +1,86 @@
+package net.engineeringdigest.journalApp.Services;
+
+import com.mongodb.client.result.UpdateResult;
+import net.engineeringdigest.journalApp.Entities.CollectionVersion;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ResourceVersionServiceTest {
+	
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final AtomicLong usersVersion = new AtomicLong();
+	private ResourceVersionService service;
+	
+	@BeforeEach
+	void setup() {
+		service = new ResourceVersionService();
+		ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+		//the counter document behaves like the real one: findAndModify increments it, findById reads it
+		when(mongoTemplate.findById(ResourceVersionService.USERS, CollectionVersion.class))
+				.thenAnswer(invocation -> new CollectionVersion(ResourceVersionService.USERS, usersVersion.get(), Instant.ofEpochMilli(usersVersion.get())));
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(CollectionVersion.class)))
+				.thenAnswer(invocation -> {
+					usersVersion.incrementAndGet();
+					return null;
+				});
+	}
+	
+	@Test
+	void updateMultiChangesTheCollectionEtag() {
+		Query query = new Query(Criteria.where("version").exists(false));
+		Update update = new Update().set("version", 0L);
+		when(mongoTemplate.updateMulti(query, update, ResourceVersionService.USERS)).thenReturn(UpdateResult.acknowledged(3, 3L, null));
+		
+		String before = service.collectionStamp(ResourceVersionService.USERS).getEtag();
+		service.updateMulti(query, update, ResourceVersionService.USERS);
+		
+		assertNotEquals(before, service.collectionStamp(ResourceVersionService.USERS).getEtag());
+	}
+	
+	@Test
+	void updateThatChangesNothingKeepsTheEtag() {
+		Query query = new Query(Criteria.where("version").exists(false));
+		Update update = new Update().set("version", 0L);
+		when(mongoTemplate.updateMulti(query, update, ResourceVersionService.USERS)).thenReturn(UpdateResult.acknowledged(0, 0L, null));
+		
+		String before = service.collectionStamp(ResourceVersionService.USERS).getEtag();
+		service.updateMulti(query, update, ResourceVersionService.USERS);
+		
+		assertEquals(before, service.collectionStamp(ResourceVersionService.USERS).getEtag());
+	}
+	
+	@Test
+	void aLoadedCopyCarriesTheStampOfItsRevision() {
+		ObjectId id = new ObjectId();
+		Instant saved = Instant.ofEpochMilli(1_700_000_000_000L);
+		when(mongoTemplate.findOne(any(Query.class), eq(Document.class), eq(ResourceVersionService.USERS)))
+				.thenReturn(new Document("_id", id).append("lastModified", Date.from(saved)));
+		UserEntity copy = new UserEntity();
+		copy.setId(id);
+		copy.setLastModified(saved);
+		
+		assertEquals(service.userStamp("ravi").getEtag(), service.userStamp(copy).getEtag());
+		copy.setLastModified(saved.minusSeconds(5));
+		assertNotEquals(service.userStamp("ravi").getEtag(), service.userStamp(copy).getEtag());
+	}
+}
@@ -0,0 +1,232 @@
+package net.engineeringdigest.journalApp.Services;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.DeleteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.engineeringdigest.journalApp.Entities.ScoreHistoryBucket;
+import net.engineeringdigest.journalApp.Entities.ScoreSummary;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ScoreHistoryServiceTest {
+	
+	private final MutableClock clock = new MutableClock(Instant.parse("2026-01-31T23:00:00Z"));
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final ObjectId farmerA = new ObjectId();
+	private final ObjectId farmerB = new ObjectId();
+	private ScoreHistoryService service;
+	
+	@BeforeEach
+	void setup() {
+		service = new ScoreHistoryService();
+		ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(service, "clock", clock);
+		ReflectionTestUtils.setField(service, "batchSize", 500);
+		ReflectionTestUtils.setField(service, "maxAttempts", 3);
+		ReflectionTestUtils.setField(service, "maxRangeDays", 1830);
+		//no writer thread: shutdown() writes the queue synchronously
+		ReflectionTestUtils.setField(service, "queue", new LinkedBlockingQueue<>());
+		ReflectionTestUtils.setField(service, "writer", new Thread(() -> { }));
+		when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("USERS")))
+				.thenReturn(Arrays.asList(new Document("_id", farmerA), new Document("_id", farmerB)));
+	}
+	
+	@Test
+	void pointsAreFoldedPerFarmerAndMonth() throws Exception {
+		BulkOperations bulk = mock(BulkOperations.class);
+		when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ScoreHistoryBucket.class)).thenReturn(bulk);
+		record(farmerA, 600);
+		clock.advance(Duration.ofHours(2));
+		record(farmerA, 650);
+		record(farmerB, 500);
+		clock.advance(Duration.ofHours(4));
+		record(farmerA, 700);
+		
+		service.shutdown();
+		
+		Map<String, Document> updates = upserts(bulk, 3);
+		Document february = updates.get(ScoreHistoryBucket.bucketId(farmerA, YearMonth.of(2026, 2)));
+		Document inc = (Document) february.get("$inc");
+		assertEquals(2, inc.get("count"));
+		assertEquals(1350.0, inc.get("sum"));
+		assertEquals(2, inc.get("days.d01.count"));
+		assertEquals(650f, ((Document) february.get("$min")).get("min"));
+		assertEquals(700f, ((Document) february.get("$max")).get("max"));
+		assertEquals(700f, ((Document) february.get("$set")).get("lastScore"));
+		assertEquals(700f, ((Document) february.get("$set")).get("days.d01.last"));
+		Document january = updates.get(ScoreHistoryBucket.bucketId(farmerA, YearMonth.of(2026, 1)));
+		assertEquals(1, ((Document) january.get("$inc")).get("days.d31.count"));
+		assertTrue(updates.containsKey(ScoreHistoryBucket.bucketId(farmerB, YearMonth.of(2026, 2))));
+	}
+	
+	@Test
+	void onlyTheFailedBucketIsWrittenAgain() throws Exception {
+		BulkOperations failing = mock(BulkOperations.class);
+		BulkOperations retried = mock(BulkOperations.class);
+		when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ScoreHistoryBucket.class)).thenReturn(failing, retried);
+		BulkWriteError error = new BulkWriteError(50, "time limit exceeded", new BsonDocument(), 1);
+		when(failing.execute()).thenThrow(new BulkOperationException("bulk failed",
+				new MongoBulkWriteException(BulkWriteResult.unacknowledged(), Collections.singletonList(error), null, new ServerAddress())));
+		record(farmerA, 600);
+		record(farmerB, 500);
+		
+		service.shutdown();
+		service.shutdown();
+		
+		Map<String, Document> updates = upserts(retried, 1);
+		assertTrue(updates.containsKey(ScoreHistoryBucket.bucketId(farmerB, YearMonth.of(2026, 1))));
+	}
+	
+	@Test
+	void pointsOfARemovedFarmerAreDropped() throws Exception {
+		when(mongoTemplate.remove(any(Query.class), eq(ScoreHistoryBucket.class))).thenReturn(DeleteResult.acknowledged(1));
+		record(farmerA, 600);
+		
+		service.removeFarmer(farmerA);
+		record(farmerA, 610);
+		service.shutdown();
+		
+		verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(ScoreHistoryBucket.class));
+	}
+	
+	@Test
+	void pointsOfAFarmerDeletedElsewhereAreDropped() throws Exception {
+		BulkOperations bulk = mock(BulkOperations.class);
+		when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ScoreHistoryBucket.class)).thenReturn(bulk);
+		//farmer B was deleted and purged through another instance, whose tombstone this one never saw
+		when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("USERS"))).thenReturn(Collections.singletonList(new Document("_id", farmerA)));
+		record(farmerA, 600);
+		record(farmerB, 500);
+		
+		service.shutdown();
+		
+		Map<String, Document> updates = upserts(bulk, 1);
+		assertTrue(updates.containsKey(ScoreHistoryBucket.bucketId(farmerA, YearMonth.of(2026, 1))));
+	}
+	
+	@Test
+	void trendsAreDownsampledFromTheDaySummaries() {
+		ScoreHistoryBucket bucket = new ScoreHistoryBucket();
+		bucket.setMonth(Instant.parse("2026-02-01T00:00:00Z"));
+		bucket.setCount(5);
+		bucket.setSum(3100);
+		bucket.setMin(600);
+		bucket.setMax(800);
+		bucket.setLastScore(800);
+		//2026-02-01 is a Sunday, so it belongs to the week of 26 January
+		bucket.getDays().put("d01", new ScoreSummary(1, 600, 600, 600, 600));
+		bucket.getDays().put("d02", new ScoreSummary(2, 1300, 640, 660, 660));
+		bucket.getDays().put("d08", new ScoreSummary(1, 700, 700, 700, 700));
+		bucket.getDays().put("d20", new ScoreSummary(1, 800, 800, 800, 800));
+		when(mongoTemplate.find(any(Query.class), eq(ScoreHistoryBucket.class))).thenReturn(Collections.singletonList(bucket));
+		
+		List<Map<String, Object>> weekly = points(service.getTrend(farmerA, "weekly", "2026-02-01", "2026-02-15"));
+		assertEquals(2, weekly.size());
+		assertEquals("2026-01-26", weekly.get(0).get("period"));
+		assertEquals("2026-02-02", weekly.get(1).get("period"));
+		assertEquals(3, weekly.get(1).get("count"));
+		assertEquals(2000f / 3, (float) weekly.get(1).get("avg"), 0.001);
+		assertEquals(640f, weekly.get(1).get("min"));
+		assertEquals(700f, weekly.get(1).get("last"));
+		
+		assertEquals(3, points(service.getTrend(farmerA, "daily", "2026-02-01", "2026-02-15")).size());
+		
+		List<Map<String, Object>> monthly = points(service.getTrend(farmerA, "monthly", "2026-02-01", "2026-02-28"));
+		assertEquals("2026-02", monthly.get(0).get("period"));
+		assertEquals(620f, monthly.get(0).get("avg"));
+		
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate, times(3)).find(query.capture(), eq(ScoreHistoryBucket.class));
+		Document id = (Document) query.getValue().getQueryObject().get("_id");
+		assertEquals(ScoreHistoryBucket.bucketId(farmerA, YearMonth.of(2026, 2)), id.get("$gte"));
+		assertEquals(ScoreHistoryBucket.bucketId(farmerA, YearMonth.of(2026, 2)), id.get("$lte"));
+	}
+	
+	private void record(ObjectId farmerId, float score) {
+		UserEntity farmer = new UserEntity();
+		farmer.setId(farmerId);
+		service.record(farmer, score, "v1", "hash");
+	}
+	
+	private static Map<String, Document> upserts(BulkOperations bulk, int expected) {
+		ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+		ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+		verify(bulk, times(expected)).upsert(queries.capture(), updates.capture());
+		Map<String, Document> byId = new HashMap<>();
+		for (int i = 0; i < expected; i++) {
+			byId.put((String) queries.getAllValues().get(i).getQueryObject().get("_id"), updates.getAllValues().get(i).getUpdateObject());
+		}
+		return byId;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static List<Map<String, Object>> points(Map<String, Object> trend) {
+		return new ArrayList<>((List<Map<String, Object>>) (List<?>) trend.get("points"));
+	}
+	
+	private static class MutableClock extends Clock {
+		private Instant now;
+		
+		MutableClock(Instant now) {
+			this.now = now;
+		}
+		
+		void advance(Duration duration) {
+			now = now.plus(duration);
+		}
+		
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+		
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+		
+		@Override
+		public Instant instant() {
+			return now;
+		}
+	}
+}
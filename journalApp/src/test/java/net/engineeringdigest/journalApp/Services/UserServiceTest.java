@@ -0,0 +1,104 @@
+package net.engineeringdigest.journalApp.Services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import net.engineeringdigest.journalApp.Repositories.UserRepository;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserServiceTest {
+	
+	private final UserRepository userRepository = mock(UserRepository.class);
+	private final ProfileCache profileCache = mock(ProfileCache.class);
+	private final EligibilityService eligibilityService = mock(EligibilityService.class);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final ObjectId id = new ObjectId();
+	private UserService service;
+	
+	@BeforeEach
+	void setup() {
+		service = new UserService();
+		service.userRepository = userRepository;
+		service.profileCache = profileCache;
+		service.eligibilityService = eligibilityService;
+		service.meterRegistry = meterRegistry;
+		ReflectionTestUtils.setField(service, "maxAttempts", 3);
+		ReflectionTestUtils.setField(service, "backoffMs", 0L);
+	}
+	
+	@Test
+	void aConflictingSaveIsRetriedOnTheReloadedDocument() {
+		UserEntity stale = farmer(1L, "North");
+		UserEntity reloaded = farmer(2L, "South");
+		when(userRepository.save(any(UserEntity.class)))
+				.thenThrow(new OptimisticLockingFailureException("version 1 is stale"))
+				.thenAnswer(invocation -> invocation.getArgument(0));
+		when(userRepository.findById(id)).thenReturn(Optional.of(reloaded));
+		List<String> seen = new ArrayList<>();
+		
+		UserEntity saved = service.update("profile", stale, current -> {
+			seen.add(current.getRegion());
+			current.setLandSize(12);
+			return true;
+		});
+		
+		assertSame(reloaded, saved);
+		assertEquals(12f, saved.getLandSize());
+		//the change is re-applied to the fresh copy instead of overwriting it with the stale one
+		assertEquals(2, seen.size());
+		assertEquals("South", seen.get(1));
+		assertEquals(1.0, meterRegistry.counter("user.update.conflicts", "operation", "profile", "outcome", "retried").count());
+		verify(profileCache).evictUser("ravi");
+		verify(eligibilityService).reevaluate(reloaded);
+	}
+	
+	@Test
+	void conflictsPastMaxAttemptsAreRethrown() {
+		when(userRepository.save(any(UserEntity.class))).thenThrow(new OptimisticLockingFailureException("conflict"));
+		when(userRepository.findById(id)).thenAnswer(invocation -> Optional.of(farmer(2L, "North")));
+		
+		assertThrows(OptimisticLockingFailureException.class, () -> service.update("profile", farmer(1L, "North"), current -> true));
+		
+		verify(userRepository, times(3)).save(any(UserEntity.class));
+		assertEquals(2.0, meterRegistry.counter("user.update.conflicts", "operation", "profile", "outcome", "retried").count());
+		assertEquals(1.0, meterRegistry.counter("user.update.conflicts", "operation", "profile", "outcome", "exhausted").count());
+	}
+	
+	@Test
+	void aChangeThatNoLongerAppliesStopsTheRetry() {
+		when(userRepository.save(any(UserEntity.class))).thenThrow(new OptimisticLockingFailureException("conflict"));
+		when(userRepository.findById(id)).thenReturn(Optional.of(farmer(2L, "South")));
+		
+		assertNull(service.update("region", farmer(1L, "North"), current -> "North".equals(current.getRegion())));
+		
+		verify(userRepository, times(1)).save(any(UserEntity.class));
+		verify(eligibilityService, never()).reevaluate(any(UserEntity.class));
+	}
+	
+	private UserEntity farmer(long version, String region) {
+		UserEntity farmer = new UserEntity();
+		farmer.setId(id);
+		farmer.setName("ravi");
+		farmer.setVersion(version);
+		farmer.setRegion(region);
+		return farmer;
+	}
+}
@@ -0,0 +1,42 @@
+package net.engineeringdigest.journalApp.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FastStartEnvironmentPostProcessorTest {
+	
+	private static final String KAFKA = "org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration";
+	
+	@Test
+	void redisIsExcludedOnlyWhileNothingUsesIt() {
+		StandardEnvironment disabled = faststart(false);
+		new FastStartEnvironmentPostProcessor().postProcessEnvironment(disabled, new SpringApplication());
+		String exclude = disabled.getProperty("spring.autoconfigure.exclude");
+		assertTrue(exclude.startsWith(KAFKA + ","));
+		assertTrue(exclude.contains("RedisAutoConfiguration"));
+		
+		StandardEnvironment enabled = faststart(true);
+		new FastStartEnvironmentPostProcessor().postProcessEnvironment(enabled, new SpringApplication());
+		assertEquals(KAFKA, enabled.getProperty("spring.autoconfigure.exclude[0]"));
+		assertNull(enabled.getProperty("spring.autoconfigure.exclude"));
+	}
+	
+	private static StandardEnvironment faststart(boolean redis) {
+		StandardEnvironment environment = new StandardEnvironment();
+		environment.setActiveProfiles("faststart");
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("spring.autoconfigure.exclude[0]", KAFKA);
+		properties.put("idempotency.redis.enabled", String.valueOf(redis));
+		environment.getPropertySources().addLast(new MapPropertySource("yml", properties));
+		return environment;
+	}
+}
@@ -0,0 +1,86 @@
+package net.engineeringdigest.journalApp.utils;
+
+import net.engineeringdigest.journalApp.Entities.UserEntity;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleExpressionTest {
+	
+	private static UserEntity farmer(float creditScore, float landSize, String region, String soilType) {
+		UserEntity farmer = new UserEntity();
+		farmer.setCreditScore(creditScore);
+		farmer.setLandSize(landSize);
+		farmer.setRegion(region);
+		farmer.setSoilType(soilType);
+		return farmer;
+	}
+	
+	@Test
+	void betweenKeepsItsOwnAndBeforeTheNextCondition() {
+		RuleExpression rule = RuleExpression.parse("landSize BETWEEN 1 AND 5 AND creditScore > 700");
+		
+		assertTrue(rule.matches(farmer(750, 3, null, null)));
+		assertFalse(rule.matches(farmer(650, 3, null, null)));
+		assertFalse(rule.matches(farmer(750, 6, null, null)));
+		List<?> parts = (List<?>) rule.toCriteria().getCriteriaObject().get("$and");
+		assertEquals(2, parts.size());
+		assertEquals(new Document("landSize", new Document("$gte", 1.0).append("$lte", 5.0)), parts.get(0));
+	}
+	
+	@Test
+	void bareMultiWordValueStopsAtAnd() {
+		RuleExpression rule = RuleExpression.parse("region = Tamil Nadu AND soilType NOT IN (Sandy, 'Red Soil')");
+		
+		assertTrue(rule.matches(farmer(0, 0, "Tamil Nadu", "Loamy")));
+		assertFalse(rule.matches(farmer(0, 0, "Tamil Nadu", "Red Soil")));
+		assertFalse(rule.matches(farmer(0, 0, "Tamil", "Loamy")));
+	}
+	
+	@Test
+	void flagsCompareWithBooleans() {
+		RuleExpression rule = RuleExpression.parse("isLoanApproved != true");
+		UserEntity farmer = farmer(0, 0, null, null);
+		
+		assertTrue(rule.matches(farmer));
+		farmer.setLoanApproved(true);
+		assertFalse(rule.matches(farmer));
+	}
+	
+	@Test
+	void unknownFieldsAreRejected() {
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> RuleExpression.parse("password = secret"));
+		assertTrue(e.getMessage().startsWith("Unknown field 'password'"));
+		assertThrows(IllegalArgumentException.class, () -> RuleExpression.parse("creditScore > 700 AND income > 5"));
+	}
+	
+	@Test
+	void malformedExpressionsAreRejected() {
+		String[] malformed = {
+				"",
+				"creditScore >",
+				"creditScore > 700 OR landSize > 1",
+				"creditScore > high",
+				"creditScore ! 700",
+				"soilType IN (Loamy, Clayey",
+				"region = 'Punjab",
+				"landSize BETWEEN 5 AND 1",
+				"landSize BETWEEN 1 5",
+				"soilType > 3",
+				"creditScore IN (1, 2)",
+				"isLoanApproved = maybe",
+				"creditScore NOT > 1",
+				"creditScore > 700 AND",
+				"creditScore > 700; drop"
+		};
+		for (String expression : malformed) {
+			assertThrows(IllegalArgumentException.class, () -> RuleExpression.parse(expression), expression);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package net.engineeringdigest.journalApp.utils;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopKHeapTest {
+	
+	@Test
+	void keepsTheBestScoresBestFirst() {
+		TopKHeap heap = new TopKHeap(3);
+		Map<Double, ObjectId> ids = new HashMap<>();
+		for (double score : new double[]{5, 1, 9, 3, 7, 2}) {
+			ObjectId id = new ObjectId();
+			ids.put(score, id);
+			heap.offer(score, id);
+		}
+		assertEquals(3, heap.size());
+		
+		ObjectId[] drained = new ObjectId[3];
+		assertArrayEquals(new double[]{9, 7, 5}, heap.drainScores(drained));
+		assertArrayEquals(new ObjectId[]{ids.get(9.0), ids.get(7.0), ids.get(5.0)}, drained);
+		assertEquals(0, heap.size());
+	}
+	
+	@Test
+	void candidatesNoBetterThanTheWeakestAreRejected() {
+		TopKHeap heap = new TopKHeap(2);
+		assertTrue(heap.offer(4, new ObjectId()));
+		assertTrue(heap.offer(6, new ObjectId()));
+		assertFalse(heap.offer(4, new ObjectId()));
+		assertFalse(heap.offer(1, new ObjectId()));
+		assertTrue(heap.offer(5, new ObjectId()));
+		assertArrayEquals(new double[]{6, 5}, heap.drainScores(new ObjectId[2]));
+	}
+	
+	@Test
+	void matchesASortOfAllCandidates() {
+		Random random = new Random(42);
+		double[] scores = new double[1000];
+		TopKHeap heap = new TopKHeap(50);
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = random.nextDouble();
+			heap.offer(scores[i], new ObjectId());
+		}
+		Arrays.sort(scores);
+		double[] expected = new double[50];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = scores[scores.length - 1 - i];
+		}
+		assertArrayEquals(expected, heap.drainScores(new ObjectId[50]));
+	}
+	
+	@Test
+	void fewerCandidatesThanCapacity() {
+		TopKHeap heap = new TopKHeap(10);
+		heap.offer(2, new ObjectId());
+		heap.offer(8, new ObjectId());
+		assertArrayEquals(new double[]{8, 2}, heap.drainScores(new ObjectId[2]));
+		assertThrows(IllegalArgumentException.class, () -> new TopKHeap(0));
+	}
+}